@@ -0,0 +1,89 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * This class builds realistic Access-Request packets for the benchmarks: User-Name and a PAP User-Password
+ * followed by the attributes a NAS usually sends, until the requested attribute count is reached
+ */
+public class AccessRequests {
+
+    /**
+     * Attributes added after User-Name and User-Password, in this order, cycling when more are needed
+     */
+    private static final int[] NAS_ATTRIBUTES = {
+            RadiusConstants.NAS_IP_ADDRESS, RadiusConstants.NAS_PORT, RadiusConstants.SERVICE_TYPE,
+            RadiusConstants.FRAMED_PROTOCOL, RadiusConstants.CALLED_STATION_ID, RadiusConstants.CALLING_STATION_ID,
+            RadiusConstants.NAS_IDENTIFIER, RadiusConstants.NAS_PORT_TYPE, RadiusConstants.VENDOR_SPECIFIC,
+            RadiusConstants.CLASS
+    };
+
+    private AccessRequests() {
+    }
+
+    /**
+     * This method builds an Access-Request packet
+     * @param identifier Identifier field
+     * @param requestAuthenticator Request Authenticator field
+     * @param username User-Name attribute value
+     * @param password Plain password, hidden with the Shared Secret as a User-Password attribute
+     * @param sharedSecret Shared Secret between the RADIUS Client and the Server
+     * @param attributeCount Total number of attributes, at least 2
+     * @return The packet in byte array format
+     */
+    public static byte[] build(int identifier, byte[] requestAuthenticator, String username, byte[] password,
+                               byte[] sharedSecret, int attributeCount){
+        Random random = new Random(identifier);
+        ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+
+        writeAttribute(attributes, RadiusConstants.USER_NAME, username.getBytes(StandardCharsets.UTF_8));
+        writeAttribute(attributes, RadiusConstants.USER_PASSWORD,
+                LegacyCodec.encodePassword(password, requestAuthenticator, sharedSecret));
+
+        for(int i = 2; i < attributeCount; i++){
+            int type = NAS_ATTRIBUTES[(i - 2) % NAS_ATTRIBUTES.length];
+            byte[] value;
+            switch(type){
+                case RadiusConstants.CALLED_STATION_ID:
+                case RadiusConstants.CALLING_STATION_ID:
+                    value = String.format("%02X-%02X-%02X-%02X-%02X-%02X", random.nextInt(256),
+                            random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256),
+                            random.nextInt(256)).getBytes(StandardCharsets.US_ASCII);
+                    break;
+                case RadiusConstants.NAS_IDENTIFIER:
+                    value = ("nas-" + random.nextInt(1000) + ".example.net").getBytes(StandardCharsets.US_ASCII);
+                    break;
+                case RadiusConstants.VENDOR_SPECIFIC:
+                case RadiusConstants.CLASS:
+                    value = new byte[8 + random.nextInt(24)];
+                    random.nextBytes(value);
+                    break;
+                default:
+                    value = new byte[4];
+                    random.nextBytes(value);
+            }
+            writeAttribute(attributes, type, value);
+        }
+
+        int length = RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH + attributes.size();
+        byte[] packet = new byte[length];
+        packet[0] = (byte) RadiusConstants.ACCESS_REQUEST_CODE;
+        packet[1] = (byte) identifier;
+        packet[2] = (byte) (length >> 8);
+        packet[3] = (byte) length;
+        System.arraycopy(requestAuthenticator, 0, packet, 4, 16);
+        System.arraycopy(attributes.toByteArray(), 0, packet, RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH,
+                attributes.size());
+        return packet;
+    }
+
+    private static void writeAttribute(ByteArrayOutputStream attributes, int type, byte[] value){
+        attributes.write(type);
+        attributes.write(value.length + 2);
+        attributes.write(value, 0, value.length);
+    }
+}
@@ -0,0 +1,103 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.repository.CredentialStore;
+import org.danielmartinez.radius.repository.HeapCredentialStore;
+import org.danielmartinez.radius.repository.OffHeapCredentialStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User credential stores: the original ConcurrentHashMap keyed by String and the off-heap table keyed by the
+ * User-Name bytes. lookup measures a password lookup straight from a received packet, load the time to store every
+ * user. The memory taken by each store (heap growth after a full GC, plus off-heap bytes) is printed once per trial
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Thread)
+public class CredentialStoreBenchmark {
+
+    @Param({"heap", "off-heap"})
+    public String store;
+
+    @Param({"100000", "1000000"})
+    public int users;
+
+    private byte[][] usernames;
+
+    private byte[][] passwords;
+
+    private CredentialStore credentialStore;
+
+    /**
+     * User-Names of the lookups, one after another in a direct buffer, as they would be in received packets
+     */
+    private ByteBuffer packets;
+
+    private int[] offsets;
+
+    private final byte[] password = new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH];
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        Random random = new Random(42);
+        usernames = new byte[users][];
+        passwords = new byte[users][];
+        for(int i = 0; i < users; i++){
+            usernames[i] = ("subscriber" + i + "@realm" + (i % 100) + ".example").getBytes(StandardCharsets.UTF_8);
+            passwords[i] = ("pw" + Long.toHexString(random.nextLong())).getBytes(StandardCharsets.UTF_8);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        credentialStore = fill();
+        System.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        long offHeap = credentialStore instanceof OffHeapCredentialStore ? credentialStore.getFootprintBytes() : 0;
+        System.out.printf("%n%s store, %d users: heap %.1f MB, off-heap %.1f MB%n", store, users,
+                Math.max(0, heapAfter - heapBefore) / 1048576.0, offHeap / 1048576.0);
+
+        int lookups = 4096;
+        offsets = new int[lookups];
+        packets = ByteBuffer.allocateDirect(lookups * 64);
+        for(int i = 0; i < lookups; i++){
+            offsets[i] = packets.position();
+            packets.put(usernames[random.nextInt(users)]);
+        }
+    }
+
+    private CredentialStore fill(){
+        CredentialStore loaded = store.equals("heap") ? new HeapCredentialStore() : new OffHeapCredentialStore();
+        for(int i = 0; i < users; i++){
+            loaded.put(usernames[i], passwords[i]);
+        }
+        return loaded;
+    }
+
+    @Benchmark
+    public int lookup(){
+        int i = next++ & (offsets.length - 1);
+        int length = (i + 1 < offsets.length ? offsets[i + 1] : packets.position()) - offsets[i];
+        return credentialStore.getPassword(packets, offsets[i], length, password);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public CredentialStore load(){
+        return fill();
+    }
+}
@@ -0,0 +1,130 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.core.RadiusServer;
+import org.danielmartinez.radius.core.ServerConfiguration;
+import org.danielmartinez.radius.core.VirtualThreads;
+import org.danielmartinez.radius.logging.LogLevel;
+import org.danielmartinez.radius.logging.RadiusLogger;
+import org.danielmartinez.radius.repository.BackendCredentialStore;
+import org.danielmartinez.radius.repository.CredentialCache;
+import org.danielmartinez.radius.repository.SharedSecret;
+import org.danielmartinez.radius.repository.SimulatedCredentialBackend;
+import org.danielmartinez.radius.repository.UserManager;
+import org.danielmartinez.radius.util.PooledThreadLocal;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bursts of Access-Requests whose passwords are loaded from a simulated backend with a high latency, processed in
+ * blocking style by a fixed pool of platform threads (WORKER_POOL mode) or by a virtual thread per request
+ * (VIRTUAL_THREADS mode). Passwords are not cached, so every request waits for the backend; the backend loads
+ * on enough threads to answer a whole burst at once, so only the threads that process the requests limit it.
+ * The score is the time to answer a burst. Like the server, a virtual thread gives its per-thread state back to the
+ * pools of PooledThreadLocal when its request ends; the GC profiler shows what is still allocated per burst.
+ * The virtual-threads executor needs Java 21, older runtimes fail its setup
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    @Param({"fixed-pool", "virtual-threads"})
+    public String executor;
+
+    @Param({"16"})
+    public int poolThreads;
+
+    @Param({"20"})
+    public int backendLatencyMillis;
+
+    @Param({"1000"})
+    public int burst;
+
+    private RadiusServer server;
+
+    private ExecutorService requestExecutor;
+
+    private ExecutorService loaders;
+
+    private byte[][] requests;
+
+    private final InetSocketAddress source = new InetSocketAddress("127.0.0.1", 50000);
+
+    @Setup
+    public void setUp() throws Exception {
+        RadiusLogger.install(new RadiusLogger(LogLevel.OFF, 8192, 0, Map.of(), OutputStream.nullOutputStream()));
+
+        requestExecutor = executor.equals("virtual-threads") ? VirtualThreads.newThreadPerTaskExecutor("request-")
+                : Executors.newFixedThreadPool(poolThreads);
+        loaders = Executors.newFixedThreadPool(burst);
+
+        SimulatedCredentialBackend backend = new SimulatedCredentialBackend(backendLatencyMillis,
+                TimeUnit.MILLISECONDS);
+        byte[] sharedSecret = "ABC".getBytes(StandardCharsets.UTF_8);
+        backend.addClient("127.0.0.1", sharedSecret);
+        requests = new byte[burst][];
+        for(int i = 0; i < burst; i++){
+            byte[] password = ("password" + i).getBytes(StandardCharsets.UTF_8);
+            backend.addUser("user" + i, password);
+            requests[i] = AccessRequests.build(i & 0xFF, new byte[16], "user" + i, password, sharedSecret, 5);
+        }
+
+        // A time to live of 0 caches nothing, so every request loads its password
+        CredentialCache<String, byte[]> passwords = new CredentialCache<>(burst, 0, 0, 0, 10, TimeUnit.SECONDS,
+                backend::loadPassword, loaders);
+        CredentialCache<InetAddress, SharedSecret> sharedSecrets = new CredentialCache<>(16, 1, 1, 0, 10,
+                TimeUnit.HOURS, address -> new SharedSecret(backend.loadSharedSecret(address)), loaders);
+        sharedSecrets.get(source.getAddress());
+
+        // Every request is answered, so neither retransmissions nor the lockout get in the way
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDuplicateCacheSize(0);
+        configuration.setAccountingLogFile(null);
+        configuration.setLockoutTableSize(0);
+        UserManager userManager = new UserManager(new BackendCredentialStore(passwords), sharedSecrets);
+        userManager.addBackendClientRange("127.0.0.1");
+        server = new RadiusServer(configuration, userManager);
+    }
+
+    @TearDown
+    public void tearDown(){
+        requestExecutor.shutdownNow();
+        loaders.shutdownNow();
+    }
+
+    @Benchmark
+    public int accessRequestBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(requests.length);
+        AtomicInteger answered = new AtomicInteger();
+        boolean virtualThreads = executor.equals("virtual-threads");
+        for(byte[] request: requests){
+            requestExecutor.execute(() -> {
+                ByteBuffer response = ByteBuffer.allocate(RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH);
+                if(server.handlePacket(ByteBuffer.wrap(request), source, response)){
+                    answered.incrementAndGet();
+                }
+                if(virtualThreads){
+                    PooledThreadLocal.releaseAll();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        return answered.get();
+    }
+}
@@ -0,0 +1,141 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.packet.Attribute;
+import org.danielmartinez.radius.packet.RadiusPacket;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps the original implementation of the packet and authentication hot paths, so the benchmarks
+ * can compare every change against the same baseline
+ */
+public class LegacyCodec {
+
+    private LegacyCodec() {
+    }
+
+    /**
+     * Original RadiusServer.parseUDPData: eager parse into RadiusPacket and Attribute objects
+     */
+    public static RadiusPacket parseUDPData(byte[] data){
+        int radiusCode = data[0] & 0xFF;
+        int radiusIdentifier = data[1] & 0xFF;
+        int radiusLength = (((data[2] & 0xFF) << 8) | (data[3] & 0xFF));
+
+        byte[] radiusAuthenticator = new byte[16];
+        System.arraycopy(data, 4, radiusAuthenticator, 0, 16);
+
+        List<Attribute> radiusAttributes = new ArrayList<>();
+        int radiusAttributeStartPosition = RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH;
+        while (radiusAttributeStartPosition < radiusLength) {
+            int attributeType = data[radiusAttributeStartPosition] & 0xFF;
+            int attributeLength = data[radiusAttributeStartPosition + 1] & 0xFF;
+            byte[] attributeValue = new byte[attributeLength - 2];
+            System.arraycopy(data, radiusAttributeStartPosition + 2, attributeValue, 0, attributeLength - 2);
+            radiusAttributes.add(new Attribute(attributeType, attributeLength, attributeValue));
+            radiusAttributeStartPosition += attributeLength;
+        }
+
+        return new RadiusPacket(radiusCode, radiusIdentifier, radiusLength, radiusAuthenticator, radiusAttributes);
+    }
+
+    /**
+     * Original RadiusPacket.createAccessAccept/createAccessReject followed by toByteArray: the packet is
+     * serialized once to measure it, once to hash it and once to send it
+     */
+    public static byte[] encodeResponse(int code, int identifier, byte[] requestAuthenticator, byte[] sharedSecret){
+        RadiusPacket response = new RadiusPacket(code, identifier, requestAuthenticator);
+        response.setLength(serialize(response, response.getAuthenticator()).length);
+
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            dos.write(serialize(response, requestAuthenticator));
+            dos.write(sharedSecret);
+            dos.flush();
+            md5.update(baos.toByteArray());
+            response.setAuthenticator(md5.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        return serialize(response, response.getAuthenticator());
+    }
+
+    /**
+     * Original UserManager.encodePassword
+     */
+    public static byte[] encodePassword(byte[] plainPassword, byte[] requestAuthenticator, byte[] sharedSecret) {
+        byte[] encodedPassword;
+
+        if (plainPassword.length % 16 == 0) {
+            encodedPassword = new byte[plainPassword.length];
+        } else {
+            int paddingBytes = 16 - (plainPassword.length % 16);
+            encodedPassword = new byte[plainPassword.length + paddingBytes];
+        }
+
+        System.arraycopy(plainPassword, 0, encodedPassword, 0, plainPassword.length);
+
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] bn = new byte[sharedSecret.length + requestAuthenticator.length];
+
+            for (int i = 0; i < bn.length; i++) {
+                if (i < sharedSecret.length)
+                    bn[i] = sharedSecret[i];
+                else
+                    bn[i] = requestAuthenticator[i - sharedSecret.length];
+            }
+
+            md5.update(bn);
+            bn = md5.digest();
+
+            for (int i = 0; i < 16; i++) {
+                encodedPassword[i] = (byte) (bn[i] ^ encodedPassword[i]);
+            }
+
+            for (int i = 16; i < encodedPassword.length; i += 16) {
+                md5.reset();
+                md5.update(sharedSecret);
+                md5.update(encodedPassword, i - 16, 16);
+                bn = md5.digest();
+                for (int j = 0; j < 16; j++) {
+                    encodedPassword[i + j] = (byte) (bn[j] ^ encodedPassword[i + j]);
+                }
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        return encodedPassword;
+    }
+
+    private static byte[] serialize(RadiusPacket packet, byte[] authenticator){
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            dos.writeByte(packet.getCode());
+            dos.writeByte(packet.getIdentifier());
+            dos.writeShort(packet.getLength());
+            dos.write(authenticator);
+            for(Attribute attribute: packet.getAttributes()){
+                dos.writeByte(attribute.getType());
+                dos.writeByte(attribute.getLength());
+                dos.write(attribute.getValue());
+            }
+            dos.flush();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
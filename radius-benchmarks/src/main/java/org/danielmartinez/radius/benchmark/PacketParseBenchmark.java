@@ -0,0 +1,58 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.core.RadiusServer;
+import org.danielmartinez.radius.packet.RadiusPacket;
+import org.danielmartinez.radius.packet.RadiusPacketView;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of Access-Request packets with a realistic number of attributes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketParseBenchmark {
+
+    @Param({"5", "10", "20", "40"})
+    public int attributeCount;
+
+    private byte[] packet;
+
+    private ByteBuffer directPacket;
+
+    private final RadiusPacketView view = new RadiusPacketView();
+
+    @Setup
+    public void setUp(){
+        packet = AccessRequests.build(1, new byte[16], "frans1", "fran123!".getBytes(StandardCharsets.UTF_8),
+                "ABC".getBytes(StandardCharsets.UTF_8), attributeCount);
+        directPacket = ByteBuffer.allocateDirect(packet.length);
+        directPacket.put(packet).flip();
+    }
+
+    @Benchmark
+    public RadiusPacket legacyParse(){
+        return LegacyCodec.parseUDPData(packet);
+    }
+
+    @Benchmark
+    public RadiusPacket parseUDPData(){
+        return RadiusServer.parseUDPData(packet);
+    }
+
+    @Benchmark
+    public void viewDirectBuffer(Blackhole blackhole){
+        RadiusPacketView request = view.wrap(directPacket);
+        blackhole.consume(request.findAttribute(RadiusConstants.USER_NAME));
+        blackhole.consume(request.findAttribute(RadiusConstants.USER_PASSWORD));
+    }
+}
@@ -0,0 +1,77 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.repository.SharedSecret;
+import org.danielmartinez.radius.repository.UserManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PAP verification (RFC 2865, section 5.2) for several password and secret lengths: the original implementation,
+ * the current encodePassword through SharedSecret, and the in-place check used by the server. SharedSecret clones a
+ * secret-primed MD5 state only for secrets of one MD5 block or more, which SharedSecretBenchmark measures
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PapBenchmark {
+
+    @Param({"16", "64", "128"})
+    public int passwordLength;
+
+    @Param({"16", "64"})
+    public int secretLength;
+
+    private byte[] password;
+
+    private byte[] requestAuthenticator;
+
+    private byte[] secret;
+
+    private SharedSecret sharedSecret;
+
+    private ByteBuffer clientHash;
+
+    private ByteBuffer authenticator;
+
+    private final UserManager userManager = new UserManager();
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(42);
+        password = new byte[passwordLength];
+        requestAuthenticator = new byte[16];
+        secret = new byte[secretLength];
+        random.nextBytes(password);
+        random.nextBytes(requestAuthenticator);
+        random.nextBytes(secret);
+
+        sharedSecret = new SharedSecret(secret);
+        byte[] hash = LegacyCodec.encodePassword(password, requestAuthenticator, secret);
+        clientHash = ByteBuffer.allocateDirect(hash.length);
+        clientHash.put(hash).flip();
+        authenticator = ByteBuffer.allocateDirect(16);
+        authenticator.put(requestAuthenticator).flip();
+    }
+
+    @Benchmark
+    public byte[] legacyEncodePassword(){
+        return LegacyCodec.encodePassword(password, requestAuthenticator, secret);
+    }
+
+    @Benchmark
+    public byte[] primedEncodePassword(){
+        return userManager.encodePassword(password, requestAuthenticator, sharedSecret);
+    }
+
+    @Benchmark
+    public boolean inPlaceValidateHash(){
+        return userManager.validateHash(password, clientHash, 0, clientHash.limit(), authenticator, 0,
+                sharedSecret);
+    }
+}
@@ -0,0 +1,94 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.packet.Attribute;
+import org.danielmartinez.radius.packet.RadiusPacketView;
+import org.danielmartinez.radius.packet.ResponseEncoder;
+import org.danielmartinez.radius.repository.ReplyProfiles;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of an Access-Accept with the reply profile of the user (Session-Timeout, Idle-Timeout, Filter-Id,
+ * Framed-IP-Netmask and Class): attributes built as Attribute objects for every request, against the block of
+ * ReplyProfiles looked up from the User-Name bytes and copied as it is
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplyProfileBenchmark {
+
+    @Param({"1000", "100000"})
+    public int users;
+
+    private final byte[] sharedSecret = "ABC".getBytes(StandardCharsets.UTF_8);
+
+    private final RadiusPacketView request = new RadiusPacketView();
+
+    private final ResponseEncoder encoder = new ResponseEncoder();
+
+    private ReplyProfiles profiles;
+
+    private ByteBuffer destination;
+
+    private int userNameOffset;
+
+    private int userNameLength;
+
+    @Setup
+    public void setUp(){
+        ReplyProfiles.Builder builder = new ReplyProfiles.Builder();
+        builder.addGroup("gold", Arrays.asList(
+                ReplyProfiles.parseAttribute("Session-Timeout", "86400"),
+                ReplyProfiles.parseAttribute("Idle-Timeout", "900"),
+                ReplyProfiles.parseAttribute("Filter-Id", "gold"),
+                ReplyProfiles.parseAttribute("Framed-IP-Netmask", "255.255.255.0")));
+        for(int i = 0; i < users; i++){
+            builder.addUser("user" + i, "gold",
+                    List.of(ReplyProfiles.parseAttribute("Class", "subscriber-" + i)));
+        }
+        profiles = builder.build();
+
+        byte[] packet = AccessRequests.build(1, new byte[16], "user" + (users / 2),
+                "fran123!".getBytes(StandardCharsets.UTF_8), sharedSecret, 10);
+        ByteBuffer requestBuffer = ByteBuffer.allocateDirect(packet.length);
+        requestBuffer.put(packet).flip();
+        request.wrap(requestBuffer);
+        userNameOffset = request.findAttribute(RadiusConstants.USER_NAME) + 2;
+        userNameLength = (requestBuffer.get(userNameOffset - 1) & 0xFF) - 2;
+        destination = ByteBuffer.allocateDirect(RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH);
+    }
+
+    @Benchmark
+    public int attributesPerRequest(){
+        destination.clear();
+        byte[] userName = new byte[userNameLength];
+        for(int i = 0; i < userNameLength; i++){
+            userName[i] = request.getBuffer().get(userNameOffset + i);
+        }
+        List<Attribute> attributes = new ArrayList<>(5);
+        attributes.add(ReplyProfiles.parseAttribute("Session-Timeout", "86400"));
+        attributes.add(ReplyProfiles.parseAttribute("Idle-Timeout", "900"));
+        attributes.add(ReplyProfiles.parseAttribute("Filter-Id", "gold"));
+        attributes.add(ReplyProfiles.parseAttribute("Framed-IP-Netmask", "255.255.255.0"));
+        attributes.add(ReplyProfiles.parseAttribute("Class",
+                "subscriber-" + new String(userName, StandardCharsets.UTF_8).substring(4)));
+        return encoder.encode(destination, RadiusConstants.ACCESS_ACCEPT_CODE, request, attributes, sharedSecret);
+    }
+
+    @Benchmark
+    public int preEncodedProfile(){
+        destination.clear();
+        return encoder.encodeAccessAccept(destination, request, sharedSecret,
+                profiles.lookup(request.getBuffer(), userNameOffset, userNameLength));
+    }
+}
@@ -0,0 +1,72 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.packet.RadiusPacket;
+import org.danielmartinez.radius.packet.RadiusPacketView;
+import org.danielmartinez.radius.packet.ResponseEncoder;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of Access-Accept and Access-Reject replies, Response Authenticator included
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseEncodeBenchmark {
+
+    @Param({"ACCEPT", "REJECT"})
+    public String response;
+
+    private int code;
+
+    private final byte[] requestAuthenticator = new byte[16];
+
+    private final byte[] sharedSecret = "ABC".getBytes(StandardCharsets.UTF_8);
+
+    private final RadiusPacketView request = new RadiusPacketView();
+
+    private final ResponseEncoder encoder = new ResponseEncoder();
+
+    private ByteBuffer destination;
+
+    @Setup
+    public void setUp(){
+        code = "ACCEPT".equals(response) ? RadiusConstants.ACCESS_ACCEPT_CODE : RadiusConstants.ACCESS_REJECT_CODE;
+        byte[] packet = AccessRequests.build(1, requestAuthenticator, "frans1",
+                "fran123!".getBytes(StandardCharsets.UTF_8), sharedSecret, 10);
+        ByteBuffer requestBuffer = ByteBuffer.allocateDirect(packet.length);
+        requestBuffer.put(packet).flip();
+        request.wrap(requestBuffer);
+        destination = ByteBuffer.allocateDirect(RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH);
+    }
+
+    @Benchmark
+    public byte[] legacyEncode(){
+        return LegacyCodec.encodeResponse(code, 1, requestAuthenticator, sharedSecret);
+    }
+
+    @Benchmark
+    public byte[] radiusPacket(){
+        RadiusPacket packet = code == RadiusConstants.ACCESS_ACCEPT_CODE
+                ? RadiusPacket.createAccessAccept(1, requestAuthenticator, sharedSecret)
+                : RadiusPacket.createAccessReject(1, requestAuthenticator, sharedSecret,
+                        RadiusConstants.ACCESS_REJECT_BAD_CREDENTIALS);
+        return packet.toByteArray();
+    }
+
+    @Benchmark
+    public int responseEncoder(){
+        destination.clear();
+        return code == RadiusConstants.ACCESS_ACCEPT_CODE
+                ? encoder.encodeAccessAccept(destination, request, sharedSecret)
+                : encoder.encodeAccessReject(destination, request, sharedSecret,
+                        RadiusConstants.ACCESS_REJECT_BAD_CREDENTIALS);
+    }
+}
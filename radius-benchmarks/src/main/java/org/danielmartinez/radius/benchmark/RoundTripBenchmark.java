@@ -0,0 +1,73 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.core.RadiusServer;
+import org.danielmartinez.radius.core.ServerConfiguration;
+import org.danielmartinez.radius.logging.LogLevel;
+import org.danielmartinez.radius.logging.RadiusLogger;
+import org.danielmartinez.radius.repository.UserManager;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full in-process request to response path: view, authentication and encoding of the reply, without sockets.
+ * The log of the server is written to a null stream, otherwise it floods the JMH output
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoundTripBenchmark {
+
+    @Param({"true", "false"})
+    public boolean validPassword;
+
+    @Param({"5", "40"})
+    public int attributeCount;
+
+    @Param({"OFF", "INFO", "DEBUG"})
+    public LogLevel logLevel;
+
+    private RadiusServer server;
+
+    private ByteBuffer request;
+
+    private ByteBuffer response;
+
+    private final InetSocketAddress source = new InetSocketAddress("127.0.0.1", 50000);
+
+    @Setup
+    public void setUp(){
+        // Rate limits are disabled, so every event goes through the ring buffer
+        RadiusLogger.install(new RadiusLogger(logLevel, 8192, 0, Map.of(), OutputStream.nullOutputStream()));
+
+        // The same request is sent over and over, so duplicate detection would replay it instead of processing it
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDuplicateCacheSize(0);
+        configuration.setAccountingLogFile(null);
+        // The wrong password would lock the user out, and later requests would be rejected without checking it
+        configuration.setLockoutTableSize(0);
+        server = new RadiusServer(configuration, new UserManager());
+
+        byte[] password = (validPassword ? "fran123!" : "wrong").getBytes(StandardCharsets.UTF_8);
+        byte[] packet = AccessRequests.build(1, new byte[16], "frans1", password,
+                "ABC".getBytes(StandardCharsets.UTF_8), attributeCount);
+        request = ByteBuffer.allocateDirect(packet.length);
+        request.put(packet).flip();
+        response = ByteBuffer.allocateDirect(RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH);
+    }
+
+    @Benchmark
+    public boolean accessRequest(){
+        response.clear();
+        return server.handlePacket(request, source, response);
+    }
+}
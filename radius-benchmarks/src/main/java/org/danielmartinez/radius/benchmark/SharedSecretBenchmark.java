@@ -0,0 +1,69 @@
+package org.danielmartinez.radius.benchmark;
+
+import org.danielmartinez.radius.repository.SharedSecret;
+import org.danielmartinez.radius.util.Digests;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One block of the PAP hiding algorithm, MD5(secret + Request Authenticator), for several secret lengths: hashing
+ * the secret with the digest of the thread, cloning an MD5 state primed with the secret, and SharedSecret, which
+ * clones only for the secrets where it pays off
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SharedSecretBenchmark {
+
+    @Param({"16", "32", "64", "128"})
+    public int secretLength;
+
+    private byte[] secret;
+
+    private byte[] requestAuthenticator;
+
+    private MessageDigest primedMd5;
+
+    private SharedSecret sharedSecret;
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(42);
+        secret = new byte[secretLength];
+        requestAuthenticator = new byte[16];
+        random.nextBytes(secret);
+        random.nextBytes(requestAuthenticator);
+
+        primedMd5 = Digests.newMd5();
+        primedMd5.update(secret);
+        sharedSecret = new SharedSecret(secret);
+    }
+
+    @Benchmark
+    public byte[] hashSecret(){
+        MessageDigest md5 = Digests.md5();
+        md5.update(secret);
+        md5.update(requestAuthenticator);
+        return md5.digest();
+    }
+
+    @Benchmark
+    public byte[] clonePrimedState() throws CloneNotSupportedException {
+        MessageDigest md5 = (MessageDigest) primedMd5.clone();
+        md5.update(requestAuthenticator);
+        return md5.digest();
+    }
+
+    @Benchmark
+    public byte[] sharedSecret(){
+        MessageDigest md5 = sharedSecret.newPrimedDigest();
+        md5.update(requestAuthenticator);
+        return md5.digest();
+    }
+}
@@ -0,0 +1,339 @@
+package org.danielmartinez.radius.accounting;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements an append-only binary log of accounting records with group commit. Threads that append a
+ * record only copy it to an in-memory batch; a committer thread writes the whole batch and forces it to disk with a
+ * single fsync, and then notifies every record of the batch. While a batch is being forced, the next one fills up, so
+ * the number of fsync calls depends on the disk latency and not on the request rate.
+ * File layout: a header with the magic "RACL" and the format version, followed by the records. Every record is
+ *   length (4 bytes, bytes that follow up to and including the CRC)
+ *   time (8 bytes, milliseconds since the epoch)
+ *   client address (16 bytes, IPv4 addresses are written IPv4-mapped)
+ *   client port (2 bytes)
+ *   RADIUS packet (Length field bytes, the Accounting-Request as received)
+ *   CRC32 of the previous fields except the length (4 bytes)
+ * When a write or fsync fails the log stops accepting records, since their durability can no longer be promised
+ */
+public class AccountingLog implements Closeable {
+
+    private static final int MAGIC = 0x5241434C;
+
+    private static final short VERSION = 1;
+
+    /**
+     * Bytes of a record besides the RADIUS packet: length, time, address, port and CRC32
+     */
+    public static final int RECORD_OVERHEAD = 4 + 8 + 16 + 2 + 4;
+
+    private final FileChannel channel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signaled when the filling batch receives its first record, or when the log is closed
+     */
+    private final Condition recordAppended = lock.newCondition();
+
+    /**
+     * Signaled when the filling batch is handed over to the committer and its buffer becomes available again
+     */
+    private final Condition batchSwapped = lock.newCondition();
+
+    /**
+     * Signaled when a batch is durable or the log fails
+     */
+    private final Condition batchCommitted = lock.newCondition();
+
+    private ByteBuffer filling;
+
+    private ByteBuffer committing;
+
+    private List<Runnable> fillingCallbacks = new ArrayList<>();
+
+    private List<Runnable> committingCallbacks = new ArrayList<>();
+
+    /**
+     * Records in the batch being filled
+     */
+    private int fillingRecords;
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Number of the batch being filled. Batches are numbered from 1
+     */
+    private long fillingBatch = 1;
+
+    /**
+     * Number of the last batch forced to disk
+     */
+    private long durableBatch = 0;
+
+    private IOException failure;
+
+    private boolean closed;
+
+    private final Thread committer;
+
+    // Statistics, updated by the committer thread
+    private volatile long batches;
+    private volatile long records;
+    private volatile long bytes;
+    private volatile long largestBatch;
+
+    // Constructor
+    public AccountingLog(Path path, int batchBytes) throws IOException {
+        if(batchBytes < 8192){
+            throw new IllegalArgumentException("The accounting batch size must be at least 8192 bytes");
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if(channel.size() == 0){
+            ByteBuffer header = ByteBuffer.allocate(6).putInt(MAGIC).putShort(VERSION);
+            header.flip();
+            channel.write(header);
+            channel.force(true);
+        }
+
+        this.filling = ByteBuffer.allocateDirect(batchBytes);
+        this.committing = ByteBuffer.allocateDirect(batchBytes);
+
+        this.committer = new Thread(this::commit, "radius-accounting-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * This method appends a record to the current batch. It only waits when the batch is full
+     * @param packet Buffer that holds the RADIUS packet between its position and its limit. It is not modified
+     * @param source Address and port of the RADIUS Client
+     * @param onDurable Called by the committer thread once the record is on disk, may be null
+     * @return The number of the batch that holds the record, to be passed to awaitDurable()
+     * @throws IOException If the log has failed or is closed
+     */
+    public long append(ByteBuffer packet, InetSocketAddress source, Runnable onDurable) throws IOException {
+        int packetLength = packet.remaining();
+        int recordLength = RECORD_OVERHEAD + packetLength;
+        if(recordLength > filling.capacity()){
+            throw new IllegalArgumentException("The record does not fit in a batch: " + recordLength + " bytes");
+        }
+
+        lock.lock();
+        try {
+            while(failure == null && !closed && filling.remaining() < recordLength){
+                batchSwapped.awaitUninterruptibly();
+            }
+            checkOpen();
+
+            int start = filling.position();
+            filling.putInt(recordLength - 4);
+            filling.putLong(System.currentTimeMillis());
+            putAddress(filling, source.getAddress());
+            filling.putShort((short) source.getPort());
+            filling.put(packet.duplicate());
+
+            ByteBuffer covered = filling.duplicate();
+            covered.limit(filling.position()).position(start + 4);
+            crc.reset();
+            crc.update(covered);
+            filling.putInt((int) crc.getValue());
+
+            if(onDurable != null){
+                fillingCallbacks.add(onDurable);
+            }
+            fillingRecords++;
+            if(start == 0){
+                recordAppended.signal();
+            }
+            return fillingBatch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method waits until a batch is on disk
+     * @param batch Number of the batch, as returned by append()
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return Boolean: True if the batch is durable, false if the log failed or the timeout expired
+     */
+    public boolean awaitDurable(long batch, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while(durableBatch < batch && failure == null && remaining > 0){
+                remaining = batchCommitted.awaitNanos(remaining);
+            }
+            return durableBatch >= batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void putAddress(ByteBuffer destination, InetAddress address){
+        if(address instanceof Inet4Address){
+            destination.putLong(0);
+            destination.putShort((short) 0);
+            destination.putShort((short) 0xFFFF);
+            destination.put(address.getAddress());
+        } else {
+            destination.put(address.getAddress());
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if(failure != null){
+            throw new IOException("The accounting log has failed", failure);
+        }
+        if(closed){
+            throw new IOException("The accounting log is closed");
+        }
+    }
+
+    /**
+     * This method contains the loop of the committer thread
+     */
+    private void commit(){
+        while(true){
+            long batch;
+            int batchRecords;
+            lock.lock();
+            try {
+                while(filling.position() == 0 && !closed){
+                    recordAppended.awaitUninterruptibly();
+                }
+                if(filling.position() == 0){
+                    return;
+                }
+
+                // Hand the filled batch over to this thread, appenders continue on the other buffer
+                ByteBuffer buffer = committing;
+                committing = filling;
+                filling = buffer;
+                List<Runnable> callbacks = committingCallbacks;
+                committingCallbacks = fillingCallbacks;
+                fillingCallbacks = callbacks;
+                batch = fillingBatch++;
+                batchRecords = fillingRecords;
+                fillingRecords = 0;
+                batchSwapped.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            int batchBytes = committing.position();
+            try {
+                committing.flip();
+                while(committing.hasRemaining()){
+                    channel.write(committing);
+                }
+                channel.force(false);
+            } catch (IOException e){
+                fail(e);
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableBatch = batch;
+                batchCommitted.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            batches++;
+            records += batchRecords;
+            bytes += batchBytes;
+            largestBatch = Math.max(largestBatch, batchRecords);
+
+            for(Runnable callback: committingCallbacks){
+                callback.run();
+            }
+            committingCallbacks.clear();
+            committing.clear();
+        }
+    }
+
+    private void fail(IOException e){
+        lock.lock();
+        try {
+            failure = e;
+            batchCommitted.signalAll();
+            batchSwapped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method writes the pending records and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            recordAppended.signal();
+            batchSwapped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * This method returns the error that stopped the log
+     * @return The error, or null if the log has not failed
+     */
+    public IOException getFailure(){
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Getters
+    public long getBatches() { return batches; }
+
+    public long getRecords() { return records; }
+
+    public long getBytes() { return bytes; }
+
+    public long getLargestBatch() { return largestBatch; }
+
+    @Override
+    public String toString() {
+        long committedBatches = batches;
+        return "[" +
+                "batches=" + committedBatches +
+                ", records=" + records +
+                ", bytes=" + bytes +
+                ", averageBatch=" + (committedBatches == 0 ? 0 : records / committedBatches) +
+                ", largestBatch=" + largestBatch +
+                ']';
+    }
+}
@@ -0,0 +1,96 @@
+package org.danielmartinez.radius.accounting;
+
+import java.net.InetAddress;
+import java.time.Instant;
+
+/**
+ * This class contains a copy of an accounting session, taken from the SessionTable. Counters are the last values
+ * reported by the NAS, which are totals since the start of the session (RFC 2866)
+ */
+public class AccountingSession {
+
+    private final InetAddress nasAddress;
+
+    private final String sessionId;
+
+    private final String userName;
+
+    private final long startMillis;
+
+    private final long lastUpdateMillis;
+
+    private final long sessionTime;
+
+    private final long inputOctets;
+
+    private final long outputOctets;
+
+    private final long inputPackets;
+
+    private final long outputPackets;
+
+    // Constructor
+    public AccountingSession(InetAddress nasAddress, String sessionId, String userName, long startMillis,
+                             long lastUpdateMillis, long sessionTime, long inputOctets, long outputOctets,
+                             long inputPackets, long outputPackets) {
+        this.nasAddress = nasAddress;
+        this.sessionId = sessionId;
+        this.userName = userName;
+        this.startMillis = startMillis;
+        this.lastUpdateMillis = lastUpdateMillis;
+        this.sessionTime = sessionTime;
+        this.inputOctets = inputOctets;
+        this.outputOctets = outputOctets;
+        this.inputPackets = inputPackets;
+        this.outputPackets = outputPackets;
+    }
+
+    // Getters
+    public InetAddress getNasAddress() { return nasAddress; }
+
+    public String getSessionId() { return sessionId; }
+
+    /**
+     * @return The User-Name of the session, or null if the NAS did not send it
+     */
+    public String getUserName() { return userName; }
+
+    /**
+     * @return The time when the first record of the session was received, in milliseconds since the epoch
+     */
+    public long getStartMillis() { return startMillis; }
+
+    /**
+     * @return The time when the last record of the session was received, in milliseconds since the epoch
+     */
+    public long getLastUpdateMillis() { return lastUpdateMillis; }
+
+    /**
+     * @return The Acct-Session-Time reported by the NAS, in seconds
+     */
+    public long getSessionTime() { return sessionTime; }
+
+    public long getInputOctets() { return inputOctets; }
+
+    public long getOutputOctets() { return outputOctets; }
+
+    public long getInputPackets() { return inputPackets; }
+
+    public long getOutputPackets() { return outputPackets; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "nas=" + nasAddress.getHostAddress() +
+                ", sessionId=" + sessionId +
+                ", userName=" + userName +
+                ", start=" + Instant.ofEpochMilli(startMillis) +
+                ", lastUpdate=" + Instant.ofEpochMilli(lastUpdateMillis) +
+                ", sessionTime=" + sessionTime +
+                ", inputOctets=" + inputOctets +
+                ", outputOctets=" + outputOctets +
+                ", inputPackets=" + inputPackets +
+                ", outputPackets=" + outputPackets +
+                ']';
+    }
+}
@@ -0,0 +1,232 @@
+package org.danielmartinez.radius.accounting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class stores fixed-size records in a direct buffer, outside the Java heap, and finds them by a byte key kept
+ * inside every record. Records are located through an open addressing index of int slots with linear probing, so a
+ * table of millions of records is one buffer and one int[] instead of millions of objects.
+ * A record keeps its slot while it exists, so other records can link to it by slot number. Record layout:
+ *   hash of the key (4 bytes)
+ *   fields of the owner, from FIELDS_OFFSET up to the key offset
+ *   key length (1 byte) and key (up to the maximum key length)
+ * This class is not thread safe
+ */
+final class RecordArena {
+
+    /**
+     * Offset of the first field of the owner in every record
+     */
+    static final int FIELDS_OFFSET = 4;
+
+    private static final int FREE_END = -1;
+
+    private static final int IN_USE = -2;
+
+    private final ByteBuffer records;
+
+    private final int recordBytes;
+
+    private final int keyOffset;
+
+    private final int maxKeyLength;
+
+    private final int capacity;
+
+    /**
+     * Slot + 1 of the record found at every position, or 0 if the position is empty
+     */
+    private final int[] index;
+
+    private final int indexMask;
+
+    /**
+     * Next free slot of every free slot, or IN_USE
+     */
+    private final int[] nextFree;
+
+    private int freeHead;
+
+    private int size;
+
+    // Constructor
+    RecordArena(int capacity, int keyOffset, int maxKeyLength) {
+        if(capacity < 1){
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.keyOffset = keyOffset;
+        this.maxKeyLength = maxKeyLength;
+        this.recordBytes = keyOffset + 1 + maxKeyLength;
+        this.records = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, recordBytes));
+
+        // The index is kept at most half full, so probe sequences stay short
+        int indexSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+        this.index = new int[indexSize];
+        this.indexMask = indexSize - 1;
+
+        this.nextFree = new int[capacity];
+        for(int slot = 0; slot < capacity; slot++){
+            nextFree[slot] = slot + 1 < capacity ? slot + 1 : FREE_END;
+        }
+        this.freeHead = 0;
+    }
+
+    /**
+     * This method calculates the hash of a key
+     * @param key Buffer with the key
+     * @param length Length of the key
+     * @return The hash
+     */
+    static int hash(byte[] key, int length){
+        // FNV-1a, followed by a final mix so the low bits used by the index depend on every byte
+        int hash = 0x811C9DC5;
+        for(int i = 0; i < length; i++){
+            hash = (hash ^ (key[i] & 0xFF)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * This method finds a record
+     * @param key Buffer with the key
+     * @param length Length of the key
+     * @param hash Hash of the key, as returned by hash()
+     * @return The slot of the record, or -1 if there is no record with the key
+     */
+    int find(byte[] key, int length, int hash){
+        for(int position = hash & indexMask; ; position = (position + 1) & indexMask){
+            int entry = index[position];
+            if(entry == 0){
+                return -1;
+            }
+            int slot = entry - 1;
+            if(keyEquals(slot, key, length, hash)){
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * This method adds a record with all its fields set to 0. The key must not be in the arena already
+     * @param key Buffer with the key
+     * @param length Length of the key, at most the maximum key length
+     * @param hash Hash of the key, as returned by hash()
+     * @return The slot of the record, or -1 if the arena is full
+     */
+    int add(byte[] key, int length, int hash){
+        if(length > maxKeyLength){
+            throw new IllegalArgumentException("The key is longer than " + maxKeyLength + " bytes");
+        }
+        if(freeHead == FREE_END){
+            return -1;
+        }
+        int slot = freeHead;
+        freeHead = nextFree[slot];
+        nextFree[slot] = IN_USE;
+        size++;
+
+        int offset = offset(slot);
+        for(int i = 0; i < keyOffset; i += 4){
+            records.putInt(offset + i, 0);
+        }
+        records.putInt(offset, hash);
+        records.put(offset + keyOffset, (byte) length);
+        for(int i = 0; i < length; i++){
+            records.put(offset + keyOffset + 1 + i, key[i]);
+        }
+
+        int position = hash & indexMask;
+        while(index[position] != 0){
+            position = (position + 1) & indexMask;
+        }
+        index[position] = slot + 1;
+        return slot;
+    }
+
+    /**
+     * This method removes a record. Its slot can be reused by the next record added
+     * @param slot Slot of the record
+     */
+    void remove(int slot){
+        int position = records.getInt(offset(slot)) & indexMask;
+        while(index[position] != slot + 1){
+            position = (position + 1) & indexMask;
+        }
+
+        // Backward shift deletion: the records that follow in the probe sequence are moved back, so lookups never
+        // stop at a hole that was left before their home position
+        int hole = position;
+        for(int next = (hole + 1) & indexMask; index[next] != 0; next = (next + 1) & indexMask){
+            int home = records.getInt(offset(index[next] - 1)) & indexMask;
+            boolean movable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if(movable){
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = 0;
+
+        nextFree[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    private boolean keyEquals(int slot, byte[] key, int length, int hash){
+        int offset = offset(slot);
+        if(records.getInt(offset) != hash || (records.get(offset + keyOffset) & 0xFF) != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(records.get(offset + keyOffset + 1 + i) != key[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method copies the key of a record
+     * @param slot Slot of the record
+     * @param destination Buffer where the key is copied, at least the maximum key length
+     * @return The length of the key
+     */
+    int copyKey(int slot, byte[] destination){
+        int offset = offset(slot);
+        int length = records.get(offset + keyOffset) & 0xFF;
+        for(int i = 0; i < length; i++){
+            destination[i] = records.get(offset + keyOffset + 1 + i);
+        }
+        return length;
+    }
+
+    boolean inUse(int slot) { return nextFree[slot] == IN_USE; }
+
+    int offset(int slot) { return slot * recordBytes; }
+
+    // Field access, by slot and offset of the field in the record
+
+    int getInt(int slot, int field) { return records.getInt(offset(slot) + field); }
+
+    void putInt(int slot, int field, int value) { records.putInt(offset(slot) + field, value); }
+
+    long getLong(int slot, int field) { return records.getLong(offset(slot) + field); }
+
+    void putLong(int slot, int field, long value) { records.putLong(offset(slot) + field, value); }
+
+    // Getters
+    int getSize() { return size; }
+
+    int getCapacity() { return capacity; }
+
+    int getMaxKeyLength() { return maxKeyLength; }
+
+    /**
+     * This method returns the memory used by the arena
+     * @return Bytes of the records buffer, which is outside the heap, plus bytes of the index and the free list
+     */
+    long getFootprintBytes() { return (long) records.capacity() + 4L * index.length + 4L * nextFree.length; }
+}
@@ -0,0 +1,619 @@
+package org.danielmartinez.radius.accounting;
+
+import org.danielmartinez.radius.packet.RadiusPacketView;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps the active accounting sessions, identified by NAS and Acct-Session-Id, and the running totals of
+ * every user. Start, Interim-Update and Stop records update them incrementally: a session keeps the last counters
+ * reported by the NAS, and the difference with the previous ones is added to the totals of its user, so the totals
+ * never need a scan of the sessions or of the accounting log.
+ * Sessions and users are fixed-size records in RecordArena instances, outside the Java heap. Every session is linked
+ * into a list of the sessions of its user and a list of the sessions of its NAS, so both questions are answered
+ * without a scan. A Accounting-On or Accounting-Off record closes every session of its NAS.
+ * Sessions that receive no record during the idle timeout are expired by a background thread, and so are the users
+ * without active sessions. Records that cannot be tracked (the table is full, the Acct-Session-Id or User-Name is
+ * too long, or an Interim-Update or Stop belongs to a session that is not in the table) are counted and otherwise
+ * ignored
+ */
+public class SessionTable implements Closeable, SessionTableMXBean {
+
+    /**
+     * Longest Acct-Session-Id that is tracked. Session records are 128 bytes long
+     */
+    public static final int MAX_SESSION_ID_LENGTH = 43;
+
+    /**
+     * Longest User-Name that is tracked. User records are 128 bytes long
+     */
+    public static final int MAX_USER_NAME_LENGTH = 63;
+
+    /**
+     * Slots checked by the expiry thread while it holds the lock
+     */
+    private static final int EXPIRY_CHUNK = 4096;
+
+    private static final int NONE = -1;
+
+    // Session record fields
+    private static final int SESSION_USER = RecordArena.FIELDS_OFFSET;
+    private static final int SESSION_PREVIOUS_OF_USER = SESSION_USER + 4;
+    private static final int SESSION_NEXT_OF_USER = SESSION_PREVIOUS_OF_USER + 4;
+    private static final int SESSION_PREVIOUS_OF_NAS = SESSION_NEXT_OF_USER + 4;
+    private static final int SESSION_NEXT_OF_NAS = SESSION_PREVIOUS_OF_NAS + 4;
+    private static final int SESSION_TIME = SESSION_NEXT_OF_NAS + 4;
+    private static final int SESSION_START = 32;
+    private static final int SESSION_LAST_UPDATE = SESSION_START + 8;
+    private static final int SESSION_COUNTERS = SESSION_LAST_UPDATE + 8;
+    // Session key: NAS index (4 bytes) and Acct-Session-Id
+    private static final int SESSION_KEY = SESSION_COUNTERS + 4 * 8;
+
+    // User record fields
+    private static final int USER_ACTIVE_SESSIONS = RecordArena.FIELDS_OFFSET;
+    private static final int USER_FIRST_SESSION = USER_ACTIVE_SESSIONS + 4;
+    private static final int USER_SESSIONS = USER_FIRST_SESSION + 4;
+    private static final int USER_LAST_UPDATE = USER_SESSIONS + 4;
+    private static final int USER_SESSION_TIME = USER_LAST_UPDATE + 8;
+    private static final int USER_COUNTERS = USER_SESSION_TIME + 8;
+    // User key: User-Name
+    private static final int USER_KEY = USER_COUNTERS + 4 * 8;
+
+    /**
+     * Counters of a session and of a user, in the order they are stored
+     */
+    private static final int INPUT_OCTETS = 0;
+    private static final int OUTPUT_OCTETS = 1;
+    private static final int INPUT_PACKETS = 2;
+    private static final int OUTPUT_PACKETS = 3;
+    private static final int COUNTERS = 4;
+
+    private final RecordArena sessions;
+
+    private final RecordArena users;
+
+    /**
+     * Index of every NAS that sent a record. NAS are few, and are never removed
+     */
+    private final Map<InetAddress, Integer> nasIndexes = new HashMap<>();
+
+    private final List<InetAddress> nasAddresses = new ArrayList<>();
+
+    private int[] nasFirstSession = new int[16];
+
+    private final long idleTimeoutMillis;
+
+    // Buffers for the keys, only used while holding the lock
+    private final byte[] sessionKey = new byte[4 + MAX_SESSION_ID_LENGTH];
+    private final byte[] userKey = new byte[MAX_USER_NAME_LENGTH];
+    private final long[] reported = new long[COUNTERS];
+
+    private final Thread expiry;
+
+    private volatile boolean closed;
+
+    // Statistics, updated while holding the lock
+    private long starts;
+    private long interimUpdates;
+    private long stops;
+    private long nasRestarts;
+    private long expiredSessions;
+    private long untracked;
+
+    // Constructor
+    public SessionTable(int maxSessions, int maxUsers, long idleTimeout, TimeUnit unit) {
+        this.sessions = new RecordArena(maxSessions, SESSION_KEY, 4 + MAX_SESSION_ID_LENGTH);
+        this.users = new RecordArena(maxUsers, USER_KEY, MAX_USER_NAME_LENGTH);
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+        Arrays.fill(nasFirstSession, NONE);
+
+        this.expiry = new Thread(this::expire, "radius-session-expiry");
+        this.expiry.setDaemon(true);
+        this.expiry.start();
+    }
+
+    /**
+     * This method applies an Accounting-Request to the table. The request must be valid: it is only read
+     * @param request View of the Accounting-Request
+     * @param nasAddress Address of the NAS that sent the request
+     * @param nowMillis Current time, in milliseconds since the epoch
+     * @return Boolean: True if the request was applied, false if it cannot be tracked
+     */
+    public boolean update(RadiusPacketView request, InetAddress nasAddress, long nowMillis){
+        // The attributes are located before taking the lock
+        long statusType = -1;
+        int sessionIdOffset = -1;
+        int userNameOffset = -1;
+        long sessionTime = -1;
+        long inputOctets = -1, outputOctets = -1, inputGigawords = 0, outputGigawords = 0;
+        long inputPackets = -1, outputPackets = -1;
+        request.resetAttributes();
+        while(request.nextAttribute()){
+            int offset = request.attributeValueOffset() - 2;
+            switch(request.attributeType()){
+                case RadiusConstants.ACCT_STATUS_TYPE: statusType = request.integerAttributeValue(offset); break;
+                case RadiusConstants.ACCT_SESSION_ID: sessionIdOffset = offset; break;
+                case RadiusConstants.USER_NAME: userNameOffset = offset; break;
+                case RadiusConstants.ACCT_SESSION_TIME: sessionTime = request.integerAttributeValue(offset); break;
+                case RadiusConstants.ACCT_INPUT_OCTETS: inputOctets = request.integerAttributeValue(offset); break;
+                case RadiusConstants.ACCT_OUTPUT_OCTETS: outputOctets = request.integerAttributeValue(offset); break;
+                case RadiusConstants.ACCT_INPUT_GIGAWORDS:
+                    inputGigawords = Math.max(0, request.integerAttributeValue(offset));
+                    break;
+                case RadiusConstants.ACCT_OUTPUT_GIGAWORDS:
+                    outputGigawords = Math.max(0, request.integerAttributeValue(offset));
+                    break;
+                case RadiusConstants.ACCT_INPUT_PACKETS: inputPackets = request.integerAttributeValue(offset); break;
+                case RadiusConstants.ACCT_OUTPUT_PACKETS: outputPackets = request.integerAttributeValue(offset); break;
+                default:
+                    break;
+            }
+        }
+
+        ByteBuffer buffer = request.getBuffer();
+        synchronized(this){
+            int nas = nasIndex(nasAddress);
+            if(statusType == RadiusConstants.ACCT_STATUS_ACCOUNTING_ON
+                    || statusType == RadiusConstants.ACCT_STATUS_ACCOUNTING_OFF){
+                // The NAS restarted, so none of its sessions is active anymore
+                while(nasFirstSession[nas] != NONE){
+                    closeSession(nasFirstSession[nas]);
+                }
+                nasRestarts++;
+                return true;
+            }
+            if(statusType != RadiusConstants.ACCT_STATUS_START && statusType != RadiusConstants.ACCT_STATUS_STOP
+                    && statusType != RadiusConstants.ACCT_STATUS_INTERIM_UPDATE){
+                untracked++;
+                return false;
+            }
+
+            int sessionKeyLength = sessionKey(buffer, nas, sessionIdOffset);
+            if(sessionKeyLength < 0){
+                untracked++;
+                return false;
+            }
+            int hash = RecordArena.hash(sessionKey, sessionKeyLength);
+            int session = sessions.find(sessionKey, sessionKeyLength, hash);
+            if(statusType == RadiusConstants.ACCT_STATUS_START && session != NONE){
+                // A new session that reuses the Acct-Session-Id of one whose Stop was lost
+                closeSession(session);
+                session = NONE;
+            }
+            if(session == NONE && statusType != RadiusConstants.ACCT_STATUS_START){
+                // The session was already closed, by expiry or by a Stop that was retransmitted, or its Start was
+                // never seen. Its counters are cumulative, so adding them would count them again in the totals
+                untracked++;
+                return false;
+            }
+            if(session == NONE){
+                session = openSession(buffer, nas, hash, sessionKeyLength, userNameOffset, nowMillis);
+                if(session == NONE){
+                    untracked++;
+                    return false;
+                }
+            }
+
+            reported[INPUT_OCTETS] = inputOctets < 0 ? -1 : inputGigawords << 32 | inputOctets;
+            reported[OUTPUT_OCTETS] = outputOctets < 0 ? -1 : outputGigawords << 32 | outputOctets;
+            reported[INPUT_PACKETS] = inputPackets;
+            reported[OUTPUT_PACKETS] = outputPackets;
+            applyCounters(session, sessionTime, nowMillis);
+
+            if(statusType == RadiusConstants.ACCT_STATUS_START){
+                starts++;
+            } else if(statusType == RadiusConstants.ACCT_STATUS_INTERIM_UPDATE){
+                interimUpdates++;
+            } else {
+                stops++;
+                closeSession(session);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * This method writes the key of a session in sessionKey
+     * @return The length of the key, or -1 if there is no Acct-Session-Id or it is too long
+     */
+    private int sessionKey(ByteBuffer buffer, int nas, int sessionIdOffset){
+        if(sessionIdOffset < 0){
+            return -1;
+        }
+        int length = (buffer.get(sessionIdOffset + 1) & 0xFF) - 2;
+        if(length > MAX_SESSION_ID_LENGTH){
+            return -1;
+        }
+        sessionKey[0] = (byte) (nas >>> 24);
+        sessionKey[1] = (byte) (nas >>> 16);
+        sessionKey[2] = (byte) (nas >>> 8);
+        sessionKey[3] = (byte) nas;
+        for(int i = 0; i < length; i++){
+            sessionKey[4 + i] = buffer.get(sessionIdOffset + 2 + i);
+        }
+        return 4 + length;
+    }
+
+    /**
+     * This method adds a session and links it to its NAS and to its user. The user is added if it is not tracked
+     * @return The slot of the session, or NONE if the table is full
+     */
+    private int openSession(ByteBuffer buffer, int nas, int hash, int sessionKeyLength, int userNameOffset,
+                            long nowMillis){
+        int session = sessions.add(sessionKey, sessionKeyLength, hash);
+        if(session == NONE){
+            return NONE;
+        }
+        sessions.putLong(session, SESSION_START, nowMillis);
+
+        sessions.putInt(session, SESSION_PREVIOUS_OF_NAS, NONE);
+        sessions.putInt(session, SESSION_NEXT_OF_NAS, nasFirstSession[nas]);
+        if(nasFirstSession[nas] != NONE){
+            sessions.putInt(nasFirstSession[nas], SESSION_PREVIOUS_OF_NAS, session);
+        }
+        nasFirstSession[nas] = session;
+
+        // Sessions without User-Name, or whose user cannot be tracked, are not linked to a user
+        int user = findUser(buffer, userNameOffset, true);
+        sessions.putInt(session, SESSION_USER, user);
+        sessions.putInt(session, SESSION_PREVIOUS_OF_USER, NONE);
+        sessions.putInt(session, SESSION_NEXT_OF_USER, NONE);
+        if(user != NONE){
+            int first = users.getInt(user, USER_FIRST_SESSION);
+            sessions.putInt(session, SESSION_NEXT_OF_USER, first);
+            if(first != NONE){
+                sessions.putInt(first, SESSION_PREVIOUS_OF_USER, session);
+            }
+            users.putInt(user, USER_FIRST_SESSION, session);
+            users.putInt(user, USER_ACTIVE_SESSIONS, users.getInt(user, USER_ACTIVE_SESSIONS) + 1);
+            users.putInt(user, USER_SESSIONS, users.getInt(user, USER_SESSIONS) + 1);
+        }
+        return session;
+    }
+
+    /**
+     * This method finds the user of a User-Name attribute
+     * @param buffer Buffer that holds the attribute
+     * @param userNameOffset Index of the attribute, or -1 if there is none
+     * @param add True to add the user if it is not tracked
+     * @return The slot of the user, or NONE
+     */
+    private int findUser(ByteBuffer buffer, int userNameOffset, boolean add){
+        if(userNameOffset < 0){
+            return NONE;
+        }
+        int length = (buffer.get(userNameOffset + 1) & 0xFF) - 2;
+        if(length > MAX_USER_NAME_LENGTH){
+            return NONE;
+        }
+        for(int i = 0; i < length; i++){
+            userKey[i] = buffer.get(userNameOffset + 2 + i);
+        }
+        int hash = RecordArena.hash(userKey, length);
+        int user = users.find(userKey, length, hash);
+        if(user == NONE && add){
+            user = users.add(userKey, length, hash);
+            if(user != NONE){
+                users.putInt(user, USER_FIRST_SESSION, NONE);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * This method stores the counters reported for a session and adds their increase to the totals of its user.
+     * Counters that are missing, or lower than the stored ones (a record that arrived out of order), are ignored
+     */
+    private void applyCounters(int session, long sessionTime, long nowMillis){
+        int user = sessions.getInt(session, SESSION_USER);
+        sessions.putLong(session, SESSION_LAST_UPDATE, nowMillis);
+        if(user != NONE){
+            users.putLong(user, USER_LAST_UPDATE, nowMillis);
+        }
+
+        long storedTime = sessions.getInt(session, SESSION_TIME) & 0xFFFFFFFFL;
+        if(sessionTime > storedTime){
+            sessions.putInt(session, SESSION_TIME, (int) sessionTime);
+            if(user != NONE){
+                users.putLong(user, USER_SESSION_TIME,
+                        users.getLong(user, USER_SESSION_TIME) + sessionTime - storedTime);
+            }
+        }
+
+        for(int counter = 0; counter < COUNTERS; counter++){
+            long stored = sessions.getLong(session, SESSION_COUNTERS + 8 * counter);
+            if(reported[counter] > stored){
+                sessions.putLong(session, SESSION_COUNTERS + 8 * counter, reported[counter]);
+                if(user != NONE){
+                    int field = USER_COUNTERS + 8 * counter;
+                    users.putLong(user, field, users.getLong(user, field) + reported[counter] - stored);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method removes a session and unlinks it from its NAS and its user. The totals of the user keep its
+     * counters
+     */
+    private void closeSession(int session){
+        int previous = sessions.getInt(session, SESSION_PREVIOUS_OF_NAS);
+        int next = sessions.getInt(session, SESSION_NEXT_OF_NAS);
+        if(previous != NONE){
+            sessions.putInt(previous, SESSION_NEXT_OF_NAS, next);
+        } else {
+            nasFirstSession[sessionNas(session)] = next;
+        }
+        if(next != NONE){
+            sessions.putInt(next, SESSION_PREVIOUS_OF_NAS, previous);
+        }
+
+        int user = sessions.getInt(session, SESSION_USER);
+        if(user != NONE){
+            previous = sessions.getInt(session, SESSION_PREVIOUS_OF_USER);
+            next = sessions.getInt(session, SESSION_NEXT_OF_USER);
+            if(previous != NONE){
+                sessions.putInt(previous, SESSION_NEXT_OF_USER, next);
+            } else {
+                users.putInt(user, USER_FIRST_SESSION, next);
+            }
+            if(next != NONE){
+                sessions.putInt(next, SESSION_PREVIOUS_OF_USER, previous);
+            }
+            users.putInt(user, USER_ACTIVE_SESSIONS, users.getInt(user, USER_ACTIVE_SESSIONS) - 1);
+        }
+        sessions.remove(session);
+    }
+
+    private int sessionNas(int session){
+        return sessions.getInt(session, SESSION_KEY + 1);
+    }
+
+    private int nasIndex(InetAddress nasAddress){
+        Integer index = nasIndexes.get(nasAddress);
+        if(index != null){
+            return index;
+        }
+        int newIndex = nasAddresses.size();
+        nasAddresses.add(nasAddress);
+        nasIndexes.put(nasAddress, newIndex);
+        if(newIndex == nasFirstSession.length){
+            nasFirstSession = Arrays.copyOf(nasFirstSession, newIndex * 2);
+            Arrays.fill(nasFirstSession, newIndex, nasFirstSession.length, NONE);
+        }
+        return newIndex;
+    }
+
+    /**
+     * This method contains the loop of the expiry thread. Every second it checks all the sessions and users, a
+     * chunk at a time, so the lock is never held for long
+     */
+    private void expire(){
+        try {
+            while(!closed){
+                Thread.sleep(1000);
+                long oldest = System.currentTimeMillis() - idleTimeoutMillis;
+                for(int start = 0; start < sessions.getCapacity(); start += EXPIRY_CHUNK){
+                    expireSessions(start, Math.min(start + EXPIRY_CHUNK, sessions.getCapacity()), oldest);
+                }
+                for(int start = 0; start < users.getCapacity(); start += EXPIRY_CHUNK){
+                    expireUsers(start, Math.min(start + EXPIRY_CHUNK, users.getCapacity()), oldest);
+                }
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void expireSessions(int from, int to, long oldest){
+        for(int session = from; session < to; session++){
+            if(sessions.inUse(session) && sessions.getLong(session, SESSION_LAST_UPDATE) < oldest){
+                closeSession(session);
+                expiredSessions++;
+            }
+        }
+    }
+
+    private synchronized void expireUsers(int from, int to, long oldest){
+        for(int user = from; user < to; user++){
+            if(users.inUse(user) && users.getInt(user, USER_ACTIVE_SESSIONS) == 0
+                    && users.getLong(user, USER_LAST_UPDATE) < oldest){
+                users.remove(user);
+            }
+        }
+    }
+
+    // Queries
+
+    /**
+     * This method lists the active sessions of a user
+     * @param userName The User-Name
+     * @return The sessions, empty if the user has none or is not tracked
+     */
+    public synchronized List<AccountingSession> getSessionsOfUser(String userName){
+        List<AccountingSession> result = new ArrayList<>();
+        int user = findUser(userName);
+        if(user != NONE){
+            for(int session = users.getInt(user, USER_FIRST_SESSION); session != NONE;
+                session = sessions.getInt(session, SESSION_NEXT_OF_USER)){
+                result.add(toAccountingSession(session));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method lists the active sessions of a NAS
+     * @param nasAddress Address of the NAS
+     * @return The sessions, empty if the NAS has none
+     */
+    public synchronized List<AccountingSession> getSessionsOfNas(InetAddress nasAddress){
+        List<AccountingSession> result = new ArrayList<>();
+        Integer nas = nasIndexes.get(nasAddress);
+        if(nas != null){
+            for(int session = nasFirstSession[nas]; session != NONE;
+                session = sessions.getInt(session, SESSION_NEXT_OF_NAS)){
+                result.add(toAccountingSession(session));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method returns the accounting totals of a user
+     * @param userName The User-Name
+     * @return The totals, or null if the user is not tracked
+     */
+    public synchronized UserAccounting getUserAccounting(String userName){
+        int user = findUser(userName);
+        if(user == NONE){
+            return null;
+        }
+        return new UserAccounting(userName, users.getInt(user, USER_ACTIVE_SESSIONS),
+                users.getInt(user, USER_SESSIONS) & 0xFFFFFFFFL, users.getLong(user, USER_LAST_UPDATE),
+                users.getLong(user, USER_SESSION_TIME), users.getLong(user, USER_COUNTERS + 8 * INPUT_OCTETS),
+                users.getLong(user, USER_COUNTERS + 8 * OUTPUT_OCTETS),
+                users.getLong(user, USER_COUNTERS + 8 * INPUT_PACKETS),
+                users.getLong(user, USER_COUNTERS + 8 * OUTPUT_PACKETS));
+    }
+
+    private int findUser(String userName){
+        byte[] name = userName.getBytes(StandardCharsets.UTF_8);
+        if(name.length > MAX_USER_NAME_LENGTH){
+            return NONE;
+        }
+        return users.find(name, name.length, RecordArena.hash(name, name.length));
+    }
+
+    private AccountingSession toAccountingSession(int session){
+        int keyLength = sessions.copyKey(session, sessionKey);
+        String sessionId = new String(sessionKey, 4, keyLength - 4, StandardCharsets.UTF_8);
+        String userName = null;
+        int user = sessions.getInt(session, SESSION_USER);
+        if(user != NONE){
+            userName = new String(userKey, 0, users.copyKey(user, userKey), StandardCharsets.UTF_8);
+        }
+        return new AccountingSession(nasAddresses.get(sessionNas(session)), sessionId, userName,
+                sessions.getLong(session, SESSION_START), sessions.getLong(session, SESSION_LAST_UPDATE),
+                sessions.getInt(session, SESSION_TIME) & 0xFFFFFFFFL,
+                sessions.getLong(session, SESSION_COUNTERS + 8 * INPUT_OCTETS),
+                sessions.getLong(session, SESSION_COUNTERS + 8 * OUTPUT_OCTETS),
+                sessions.getLong(session, SESSION_COUNTERS + 8 * INPUT_PACKETS),
+                sessions.getLong(session, SESSION_COUNTERS + 8 * OUTPUT_PACKETS));
+    }
+
+    // JMX operations
+
+    @Override
+    public List<String> listSessionsOfUser(String userName){
+        List<String> lines = new ArrayList<>();
+        for(AccountingSession session: getSessionsOfUser(userName)){
+            lines.add(session.toString());
+        }
+        return lines;
+    }
+
+    @Override
+    public List<String> listSessionsOfNas(String nasAddress){
+        List<String> lines = new ArrayList<>();
+        try {
+            for(AccountingSession session: getSessionsOfNas(InetAddress.getByName(nasAddress))){
+                lines.add(session.toString());
+            }
+        } catch (UnknownHostException e){
+            throw new IllegalArgumentException("Invalid NAS address: " + nasAddress);
+        }
+        return lines;
+    }
+
+    @Override
+    public String showUserAccounting(String userName){
+        UserAccounting userAccounting = getUserAccounting(userName);
+        return userAccounting == null ? null : userAccounting.toString();
+    }
+
+    /**
+     * This method registers the table in the platform MBean server
+     * @param name Value of the name key of the MBean, to tell apart several servers in the same process
+     */
+    public void register(String name){
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            mBeanServer.registerMBean(this,
+                    new ObjectName("org.danielmartinez.radius:type=SessionTable,name=" + ObjectName.quote(name)));
+        } catch (InstanceAlreadyExistsException e){
+            throw new IllegalStateException("The session table is already registered for " + name, e);
+        } catch (JMException e){
+            throw new IllegalStateException("The session table cannot be registered: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * This method stops the expiry thread. The table can still be used, but sessions no longer expire
+     */
+    @Override
+    public void close(){
+        closed = true;
+        expiry.interrupt();
+    }
+
+    // Getters
+    @Override
+    public synchronized int getActiveSessions() { return sessions.getSize(); }
+
+    @Override
+    public synchronized int getTrackedUsers() { return users.getSize(); }
+
+    @Override
+    public synchronized int getNasCount() { return nasAddresses.size(); }
+
+    @Override
+    public synchronized long getStarts() { return starts; }
+
+    @Override
+    public synchronized long getInterimUpdates() { return interimUpdates; }
+
+    @Override
+    public synchronized long getStops() { return stops; }
+
+    @Override
+    public synchronized long getNasRestarts() { return nasRestarts; }
+
+    @Override
+    public synchronized long getExpiredSessions() { return expiredSessions; }
+
+    @Override
+    public synchronized long getUntracked() { return untracked; }
+
+    @Override
+    public long getFootprintBytes() { return sessions.getFootprintBytes() + users.getFootprintBytes(); }
+
+    @Override
+    public synchronized String toString() {
+        return "[" +
+                "sessions=" + sessions.getSize() + "/" + sessions.getCapacity() +
+                ", users=" + users.getSize() + "/" + users.getCapacity() +
+                ", starts=" + starts +
+                ", interimUpdates=" + interimUpdates +
+                ", stops=" + stops +
+                ", expired=" + expiredSessions +
+                ", untracked=" + untracked +
+                ']';
+    }
+}
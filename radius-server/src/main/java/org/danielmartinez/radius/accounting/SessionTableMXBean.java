@@ -0,0 +1,77 @@
+package org.danielmartinez.radius.accounting;
+
+import java.util.List;
+
+/**
+ * JMX view of the accounting session table
+ */
+public interface SessionTableMXBean {
+
+    /**
+     * @return The number of active sessions
+     */
+    int getActiveSessions();
+
+    /**
+     * @return The number of users with active sessions or with totals that have not expired yet
+     */
+    int getTrackedUsers();
+
+    /**
+     * @return The number of NAS that sent accounting records
+     */
+    int getNasCount();
+
+    /**
+     * @return The number of Start records applied
+     */
+    long getStarts();
+
+    /**
+     * @return The number of Interim-Update records applied
+     */
+    long getInterimUpdates();
+
+    /**
+     * @return The number of Stop records applied
+     */
+    long getStops();
+
+    /**
+     * @return The number of Accounting-On and Accounting-Off records, which close every session of their NAS
+     */
+    long getNasRestarts();
+
+    /**
+     * @return The number of sessions closed because they received no record during the idle timeout
+     */
+    long getExpiredSessions();
+
+    /**
+     * @return The number of records that could not be tracked
+     */
+    long getUntracked();
+
+    /**
+     * @return The memory used by the table in bytes, most of it outside the heap
+     */
+    long getFootprintBytes();
+
+    /**
+     * @param userName The User-Name
+     * @return The active sessions of the user, one line per session
+     */
+    List<String> listSessionsOfUser(String userName);
+
+    /**
+     * @param nasAddress The IP address of the NAS
+     * @return The active sessions of the NAS, one line per session
+     */
+    List<String> listSessionsOfNas(String nasAddress);
+
+    /**
+     * @param userName The User-Name
+     * @return The accounting totals of the user, or null if the user is not tracked
+     */
+    String showUserAccounting(String userName);
+}
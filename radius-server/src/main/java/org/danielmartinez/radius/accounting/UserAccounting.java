@@ -0,0 +1,80 @@
+package org.danielmartinez.radius.accounting;
+
+import java.time.Instant;
+
+/**
+ * This class contains a copy of the accounting totals of a user, taken from the SessionTable. Totals add the
+ * counters of the active sessions of the user and the final counters of the sessions that have already finished
+ */
+public class UserAccounting {
+
+    private final String userName;
+
+    private final int activeSessions;
+
+    private final long sessions;
+
+    private final long lastUpdateMillis;
+
+    private final long sessionTime;
+
+    private final long inputOctets;
+
+    private final long outputOctets;
+
+    private final long inputPackets;
+
+    private final long outputPackets;
+
+    // Constructor
+    public UserAccounting(String userName, int activeSessions, long sessions, long lastUpdateMillis,
+                          long sessionTime, long inputOctets, long outputOctets, long inputPackets,
+                          long outputPackets) {
+        this.userName = userName;
+        this.activeSessions = activeSessions;
+        this.sessions = sessions;
+        this.lastUpdateMillis = lastUpdateMillis;
+        this.sessionTime = sessionTime;
+        this.inputOctets = inputOctets;
+        this.outputOctets = outputOctets;
+        this.inputPackets = inputPackets;
+        this.outputPackets = outputPackets;
+    }
+
+    // Getters
+    public String getUserName() { return userName; }
+
+    public int getActiveSessions() { return activeSessions; }
+
+    /**
+     * @return The number of sessions of the user, active or finished, since the user is tracked
+     */
+    public long getSessions() { return sessions; }
+
+    public long getLastUpdateMillis() { return lastUpdateMillis; }
+
+    public long getSessionTime() { return sessionTime; }
+
+    public long getInputOctets() { return inputOctets; }
+
+    public long getOutputOctets() { return outputOctets; }
+
+    public long getInputPackets() { return inputPackets; }
+
+    public long getOutputPackets() { return outputPackets; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "userName=" + userName +
+                ", activeSessions=" + activeSessions +
+                ", sessions=" + sessions +
+                ", lastUpdate=" + Instant.ofEpochMilli(lastUpdateMillis) +
+                ", sessionTime=" + sessionTime +
+                ", inputOctets=" + inputOctets +
+                ", outputOctets=" + outputOctets +
+                ", inputPackets=" + inputPackets +
+                ", outputPackets=" + outputPackets +
+                ']';
+    }
+}
@@ -0,0 +1,183 @@
+package org.danielmartinez.radius.core;
+
+import org.danielmartinez.radius.repository.UserManager;
+import org.danielmartinez.radius.transport.ReceivedDatagram;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class decides which datagrams are processed when the server receives more than it can answer. Datagrams are
+ * shed by the receiver threads before they are queued, looking only at the header bytes and the source address:
+ * packets too short or too long, with a code the server does not process or from an unknown client, packets of a
+ * RADIUS Client over its request rate, and packets received while the limit of requests in flight is reached.
+ * A client whose Shared Secret is still being loaded from the credential backend is not unknown: its packets are
+ * admitted and wait for the load.
+ * Requests that waited longer than the deadline are discarded later, before any work is spent on them: the NAS has
+ * already retransmitted them or given up, so their response would be ignored.
+ * Status-Server requests are never shed because of the rate or the in-flight limit, so the server can still be
+ * checked while it is overloaded
+ */
+public class AdmissionControl {
+
+    /**
+     * RADIUS Clients with a token bucket of their own at most. Clients beyond this number share one bucket
+     */
+    private static final int MAXIMUM_BUCKETS = 65536;
+
+    private final UserManager userManager;
+
+    /**
+     * Maximum number of requests in flight. 0 disables the limit
+     */
+    private final int maxInFlight;
+
+    /**
+     * Nanoseconds between two requests of a RADIUS Client at the sustained rate. 0 disables the rate limit
+     */
+    private final long emissionIntervalNanos;
+
+    /**
+     * Nanoseconds a RADIUS Client can be ahead of its sustained rate, which allows bursts of requests
+     */
+    private final long burstToleranceNanos;
+
+    /**
+     * Maximum age of a request when its processing starts. 0 disables the deadline
+     */
+    private final long deadlineNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Theoretical arrival time of the next request of every RADIUS Client (GCRA). A request is admitted if it does
+     * not arrive earlier than that time minus the burst tolerance
+     */
+    private final ConcurrentHashMap<InetAddress, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Bucket shared by the RADIUS Clients that do not fit in the map
+     */
+    private final AtomicLong overflowBucket = new AtomicLong(Long.MIN_VALUE);
+
+    // Constructor
+    public AdmissionControl(UserManager userManager, int maxInFlight, int nasRateLimit, int nasBurst,
+                            long deadline, TimeUnit unit) {
+        this.userManager = userManager;
+        this.maxInFlight = maxInFlight;
+        this.emissionIntervalNanos = nasRateLimit == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / nasRateLimit;
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, nasBurst - 1);
+        this.deadlineNanos = unit.toNanos(deadline);
+    }
+
+    /**
+     * This method decides if a received datagram is processed. When it is admitted, it counts as in flight until
+     * release() is called
+     * @param datagram: The received datagram
+     * @return String: Null if the datagram is admitted, or the reason why it is discarded
+     */
+    public String admit(ReceivedDatagram datagram){
+        ByteBuffer data = datagram.getData();
+        int length = data.remaining();
+        if(length < RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH || length >
+                RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH){
+            return RadiusConstants.PACKET_DISCARDED_PACKET_LENGTH;
+        }
+
+        int code = data.get(data.position()) & 0xFF;
+        if(code != RadiusConstants.ACCESS_REQUEST_CODE && code != RadiusConstants.ACCOUNTING_REQUEST_CODE
+                && code != RadiusConstants.STATUS_SERVER_CODE){
+            return RadiusConstants.PACKET_DISCARDED_RADIUS_CODE_UNKNOWN;
+        }
+
+        InetAddress address = datagram.getSource().getAddress();
+        if(userManager.isUnknownClient(address)){
+            return RadiusConstants.ACCESS_REJECT_NO_SHARED_SECRET;
+        }
+
+        if(code == RadiusConstants.STATUS_SERVER_CODE){
+            inFlight.incrementAndGet();
+            return null;
+        }
+
+        if(emissionIntervalNanos > 0 && !takeToken(address, datagram.getReceivedNanos())){
+            return RadiusConstants.PACKET_DISCARDED_RATE_LIMIT;
+        }
+
+        if(maxInFlight > 0){
+            int current;
+            do {
+                current = inFlight.get();
+                if(current >= maxInFlight){
+                    return RadiusConstants.PACKET_DISCARDED_OVERLOAD;
+                }
+            } while(!inFlight.compareAndSet(current, current + 1));
+        } else {
+            inFlight.incrementAndGet();
+        }
+        return null;
+    }
+
+    /**
+     * This method takes a token from the bucket of a RADIUS Client
+     * @param address: Source address of the RADIUS Client
+     * @param now: Time when the request was received
+     * @return Boolean: True if the request is within the rate of the client
+     */
+    private boolean takeToken(InetAddress address, long now){
+        AtomicLong bucket = buckets.get(address);
+        if(bucket == null){
+            bucket = buckets.size() < MAXIMUM_BUCKETS
+                    ? buckets.computeIfAbsent(address, key -> new AtomicLong(Long.MIN_VALUE))
+                    : overflowBucket;
+        }
+        while(true){
+            long arrival = bucket.get();
+            // A bucket never used, or idle for long, starts full
+            long base = arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival;
+            if(base - now > burstToleranceNanos){
+                return false;
+            }
+            if(bucket.compareAndSet(arrival, base + emissionIntervalNanos)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * This method ends the processing of an admitted datagram
+     */
+    public void release(){
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * This method checks if a request is too old to be processed
+     * @param receivedNanos: Time when the request was received
+     * @return Boolean: True if the request waited longer than the deadline
+     */
+    public boolean isExpired(long receivedNanos){
+        return deadlineNanos > 0 && System.nanoTime() - receivedNanos > deadlineNanos;
+    }
+
+    // Getters
+    public int getInFlight() { return inFlight.get(); }
+
+    public int getMaxInFlight() { return maxInFlight; }
+
+    public int getTrackedClients() { return buckets.size(); }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "inFlight=" + inFlight.get() +
+                ", maxInFlight=" + maxInFlight +
+                ", rateLimitedClients=" + buckets.size() +
+                ']';
+    }
+}
@@ -0,0 +1,177 @@
+package org.danielmartinez.radius.core;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class detects retransmitted requests and keeps the response sent to them, so it can be replayed without
+ * processing the request again (RFC 5080, section 2.2.2). A request is a duplicate of another one when both come
+ * from the same source address and port and have the same Identifier and Request Authenticator.
+ * The cache is bounded: it is a set-associative table, and when a set is full the entry closest to its expiration
+ * is evicted. Entries expire after a fixed time. Lookups do not allocate and do not take locks
+ */
+public class DuplicateRequestCache {
+
+    /**
+     * Entries in every set of the table
+     */
+    private static final int WAYS = 4;
+
+    /**
+     * A cached response. Entries are immutable, so they can be published to other threads through the table
+     */
+    private static final class Entry {
+        final InetAddress address;
+        final int port;
+        final int identifier;
+        final long authenticatorHigh;
+        final long authenticatorLow;
+        final byte[] response;
+        final long expiresAtNanos;
+
+        Entry(InetAddress address, int port, int identifier, long authenticatorHigh, long authenticatorLow,
+              byte[] response, long expiresAtNanos) {
+            this.address = address;
+            this.port = port;
+            this.identifier = identifier;
+            this.authenticatorHigh = authenticatorHigh;
+            this.authenticatorLow = authenticatorLow;
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean matches(InetAddress address, int port, int identifier, long authenticatorHigh,
+                        long authenticatorLow){
+            return this.port == port && this.identifier == identifier && this.authenticatorHigh == authenticatorHigh
+                    && this.authenticatorLow == authenticatorLow && this.address.equals(address);
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> table;
+
+    private final int setMask;
+
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Constructor
+    public DuplicateRequestCache(int capacity, long ttlNanos) {
+        int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+        this.table = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * This method looks for the response to a previous transmission of a request
+     * @param source Source address and port of the request
+     * @param identifier Identifier field of the request
+     * @param packet Buffer that holds the request
+     * @param authenticatorOffset Index of the Request Authenticator in the buffer
+     * @param response Buffer where the cached response is copied, starting at its position. When the response is
+     *                 found, the position and the limit of the buffer delimit it
+     * @return Boolean: True if the request is a duplicate and its response was copied
+     */
+    public boolean replay(InetSocketAddress source, int identifier, ByteBuffer packet, int authenticatorOffset,
+                          ByteBuffer response){
+        InetAddress address = source.getAddress();
+        int port = source.getPort();
+        long authenticatorHigh = packet.getLong(authenticatorOffset);
+        long authenticatorLow = packet.getLong(authenticatorOffset + 8);
+        int set = set(address, port, identifier, authenticatorHigh, authenticatorLow);
+        long now = System.nanoTime();
+
+        for(int i = set; i < set + WAYS; i++){
+            Entry entry = table.get(i);
+            if(entry != null && entry.matches(address, port, identifier, authenticatorHigh, authenticatorLow)){
+                if(now - entry.expiresAtNanos >= 0){
+                    break;
+                }
+                int start = response.position();
+                response.limit(response.capacity());
+                response.put(entry.response);
+                response.limit(response.position()).position(start);
+                hits.increment();
+                return true;
+            }
+        }
+
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * This method stores the response sent to a request
+     * @param source Source address and port of the request
+     * @param identifier Identifier field of the request
+     * @param packet Buffer that holds the request
+     * @param authenticatorOffset Index of the Request Authenticator in the buffer
+     * @param response Buffer that holds the response between its position and its limit. It is not modified
+     */
+    public void store(InetSocketAddress source, int identifier, ByteBuffer packet, int authenticatorOffset,
+                      ByteBuffer response){
+        InetAddress address = source.getAddress();
+        int port = source.getPort();
+        long authenticatorHigh = packet.getLong(authenticatorOffset);
+        long authenticatorLow = packet.getLong(authenticatorOffset + 8);
+        int set = set(address, port, identifier, authenticatorHigh, authenticatorLow);
+        long now = System.nanoTime();
+
+        byte[] responseBytes = new byte[response.remaining()];
+        response.duplicate().get(responseBytes);
+        Entry entry = new Entry(address, port, identifier, authenticatorHigh, authenticatorLow, responseBytes,
+                now + ttlNanos);
+
+        // Take a free, expired or identical slot. Otherwise evict the entry that expires first
+        int victim = set;
+        for(int i = set; i < set + WAYS; i++){
+            Entry current = table.get(i);
+            if(current == null || now - current.expiresAtNanos >= 0
+                    || current.matches(address, port, identifier, authenticatorHigh, authenticatorLow)){
+                table.set(i, entry);
+                return;
+            }
+            if(current.expiresAtNanos - table.get(victim).expiresAtNanos < 0){
+                victim = i;
+            }
+        }
+        table.set(victim, entry);
+        evictions.increment();
+    }
+
+    private int set(InetAddress address, int port, int identifier, long authenticatorHigh, long authenticatorLow){
+        long hash = address.hashCode() * 31L + port;
+        hash = hash * 31 + identifier;
+        hash = hash * 31 + authenticatorHigh;
+        hash = hash * 31 + authenticatorLow;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return ((int) hash & setMask) * WAYS;
+    }
+
+    // Getters
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+
+    public int getCapacity() { return table.length(); }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "capacity=" + getCapacity() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                ']';
+    }
+}
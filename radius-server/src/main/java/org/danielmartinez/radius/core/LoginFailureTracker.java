@@ -0,0 +1,283 @@
+package org.danielmartinez.radius.core;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the failed logins of every user (User-Name) and of every device (Calling-Station-Id), and locks
+ * out the ones with too many failures, so a burst of password guesses is rejected before any password is hashed.
+ * Failures are counted in a sliding window: the count of the current window plus the count of the previous one,
+ * weighted by the part of the previous window that is still inside the sliding one. A user or a device is locked out
+ * for a fixed time when its count reaches the threshold, and a successful login clears the failures of the user.
+ * The table is bounded, so millions of different user names sent by an attacker cannot exhaust the memory: it is a
+ * set-associative table like DuplicateRequestCache, and when a set is full the entry with the fewest failures is
+ * evicted, locked out entries last. Keys are 64-bit hashes with a random seed, so they cannot be crafted to collide
+ * with the key of a legitimate user. Lookups do not allocate and do not take locks
+ */
+public class LoginFailureTracker {
+
+    /**
+     * Entries in every set of the table
+     */
+    private static final int WAYS = 8;
+
+    /**
+     * Salts that keep user names and devices apart, even when their values are equal
+     */
+    private static final long USER_SALT = 0x5553455200000000L;
+    private static final long STATION_SALT = 0x5354415400000000L;
+
+    /**
+     * Failures of a user or a device. Entries are immutable, and they are replaced with compare-and-set
+     */
+    private static final class Entry {
+        final long key;
+        final long windowStartNanos;
+        final int current;
+        final int previous;
+        final long lockedUntilNanos;
+
+        Entry(long key, long windowStartNanos, int current, int previous, long lockedUntilNanos) {
+            this.key = key;
+            this.windowStartNanos = windowStartNanos;
+            this.current = current;
+            this.previous = previous;
+            this.lockedUntilNanos = lockedUntilNanos;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> table;
+
+    private final int setMask;
+
+    private final long seed = new SecureRandom().nextLong();
+
+    /**
+     * Failures of a user within the window that lock it out. 0 disables the lockout of users
+     */
+    private final int userThreshold;
+
+    /**
+     * Failures of a device within the window that lock it out. 0 disables the lockout of devices
+     */
+    private final int stationThreshold;
+
+    private final long windowNanos;
+
+    private final long lockoutNanos;
+
+    private final LongAdder lockouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Constructor
+    public LoginFailureTracker(int capacity, int userThreshold, int stationThreshold, long windowNanos,
+                               long lockoutNanos) {
+        int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+        this.table = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+        this.userThreshold = userThreshold;
+        this.stationThreshold = stationThreshold;
+        this.windowNanos = windowNanos;
+        this.lockoutNanos = lockoutNanos;
+    }
+
+    /**
+     * This method checks if a login attempt must be rejected without checking its password
+     * @param buffer Buffer that holds the request
+     * @param userNameOffset Index of the User-Name value in the buffer
+     * @param userNameLength Length of the User-Name value
+     * @param stationOffset Index of the Calling-Station-Id value in the buffer, or -1 if the request has none
+     * @param stationLength Length of the Calling-Station-Id value
+     * @return Boolean: True if the user or the device is locked out
+     */
+    public boolean isLockedOut(ByteBuffer buffer, int userNameOffset, int userNameLength, int stationOffset,
+                               int stationLength){
+        long now = System.nanoTime();
+        boolean lockedOut = (userThreshold > 0
+                && isLockedOut(key(USER_SALT, buffer, userNameOffset, userNameLength), now))
+                || (stationThreshold > 0 && stationOffset >= 0
+                && isLockedOut(key(STATION_SALT, buffer, stationOffset, stationLength), now));
+        if(lockedOut){
+            rejected.increment();
+        }
+        return lockedOut;
+    }
+
+    /**
+     * This method records a login attempt with wrong credentials
+     * @param buffer Buffer that holds the request
+     * @param userNameOffset Index of the User-Name value in the buffer
+     * @param userNameLength Length of the User-Name value
+     * @param stationOffset Index of the Calling-Station-Id value in the buffer, or -1 if the request has none
+     * @param stationLength Length of the Calling-Station-Id value
+     */
+    public void recordFailure(ByteBuffer buffer, int userNameOffset, int userNameLength, int stationOffset,
+                              int stationLength){
+        long now = System.nanoTime();
+        if(userThreshold > 0){
+            recordFailure(key(USER_SALT, buffer, userNameOffset, userNameLength), userThreshold, now);
+        }
+        if(stationThreshold > 0 && stationOffset >= 0){
+            recordFailure(key(STATION_SALT, buffer, stationOffset, stationLength), stationThreshold, now);
+        }
+    }
+
+    /**
+     * This method records a successful login, which clears the failures of the user. The failures of the device
+     * are kept, since a device that guesses passwords of many users may find a right one
+     * @param buffer Buffer that holds the request
+     * @param userNameOffset Index of the User-Name value in the buffer
+     * @param userNameLength Length of the User-Name value
+     */
+    public void recordSuccess(ByteBuffer buffer, int userNameOffset, int userNameLength){
+        if(userThreshold == 0){
+            return;
+        }
+        long key = key(USER_SALT, buffer, userNameOffset, userNameLength);
+        int set = set(key);
+        for(int i = set; i < set + WAYS; i++){
+            Entry entry = table.get(i);
+            if(entry != null && entry.key == key){
+                table.compareAndSet(i, entry, null);
+                return;
+            }
+        }
+    }
+
+    private boolean isLockedOut(long key, long now){
+        int set = set(key);
+        for(int i = set; i < set + WAYS; i++){
+            Entry entry = table.get(i);
+            if(entry != null && entry.key == key){
+                return entry.lockedUntilNanos - now > 0;
+            }
+        }
+        return false;
+    }
+
+    private void recordFailure(long key, int threshold, long now){
+        int set = set(key);
+        while(true){
+            int slot = -1;
+            Entry found = null;
+            for(int i = set; i < set + WAYS; i++){
+                Entry entry = table.get(i);
+                if(entry != null && entry.key == key){
+                    slot = i;
+                    found = entry;
+                    break;
+                }
+            }
+
+            Entry updated;
+            Entry replaced = found;
+            if(found == null){
+                slot = victim(set, now);
+                replaced = table.get(slot);
+                updated = failed(key, now, 0, 0, now, now, threshold);
+            } else {
+                // Slide the window forward. Failures older than two windows are forgotten
+                long windowStart = found.windowStartNanos;
+                int current = found.current;
+                int previous = found.previous;
+                long elapsedWindows = (now - windowStart) / windowNanos;
+                if(elapsedWindows > 0){
+                    previous = elapsedWindows == 1 ? current : 0;
+                    current = 0;
+                    windowStart += elapsedWindows * windowNanos;
+                }
+                updated = failed(key, windowStart, current, previous, found.lockedUntilNanos, now, threshold);
+            }
+
+            if(table.compareAndSet(slot, replaced, updated)){
+                if(found == null && replaced != null && isActive(replaced, now)){
+                    evictions.increment();
+                }
+                if(updated.lockedUntilNanos - now > 0 && (found == null || found.lockedUntilNanos - now <= 0)){
+                    lockouts.increment();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * This method adds a failure to the counts of a window, and locks out the key if the threshold is reached. A
+     * lockout in progress is not extended
+     */
+    private Entry failed(long key, long windowStart, int current, int previous, long lockedUntil, long now,
+                         int threshold){
+        current++;
+        long weight = windowNanos - (now - windowStart);
+        double estimate = current + previous * ((double) weight / windowNanos);
+        if(lockedUntil - now <= 0 && estimate >= threshold){
+            lockedUntil = now + lockoutNanos;
+        }
+        return new Entry(key, windowStart, current, previous, lockedUntil);
+    }
+
+    /**
+     * This method selects the slot of a set where a new entry is stored: a free slot, an entry whose failures are
+     * all forgotten, or the entry with the fewest failures that is not locked out
+     */
+    private int victim(int set, long now){
+        int victim = set;
+        long victimScore = Long.MAX_VALUE;
+        for(int i = set; i < set + WAYS; i++){
+            Entry entry = table.get(i);
+            if(entry == null || !isActive(entry, now)){
+                return i;
+            }
+            long score = (entry.lockedUntilNanos - now > 0 ? Integer.MAX_VALUE : 0L) + entry.current
+                    + entry.previous;
+            if(score < victimScore){
+                victim = i;
+                victimScore = score;
+            }
+        }
+        return victim;
+    }
+
+    private boolean isActive(Entry entry, long now){
+        return entry.lockedUntilNanos - now > 0 || now - entry.windowStartNanos < 2 * windowNanos;
+    }
+
+    private long key(long salt, ByteBuffer buffer, int offset, int length){
+        long hash = seed ^ salt ^ length;
+        for(int i = 0; i < length; i++){
+            hash = (hash ^ (buffer.get(offset + i) & 0xFF)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private int set(long key){
+        return ((int) (key >>> 32) & setMask) * WAYS;
+    }
+
+    // Getters
+    public long getLockouts() { return lockouts.sum(); }
+
+    public long getRejected() { return rejected.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+
+    public int getCapacity() { return table.length(); }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "capacity=" + getCapacity() +
+                ", lockouts=" + getLockouts() +
+                ", rejected=" + getRejected() +
+                ", evictions=" + getEvictions() +
+                ']';
+    }
+}
@@ -0,0 +1,1404 @@
+package org.danielmartinez.radius.core;
+
+import org.danielmartinez.radius.accounting.AccountingLog;
+import org.danielmartinez.radius.accounting.SessionTable;
+import org.danielmartinez.radius.exception.RadiusException;
+import org.danielmartinez.radius.logging.LogEvent;
+import org.danielmartinez.radius.logging.RadiusLogger;
+import org.danielmartinez.radius.metrics.AggregatedMetrics;
+import org.danielmartinez.radius.metrics.ServerMetrics;
+import org.danielmartinez.radius.packet.Attribute;
+import org.danielmartinez.radius.packet.RadiusPacket;
+import org.danielmartinez.radius.packet.RadiusPacketView;
+import org.danielmartinez.radius.packet.ResponseEncoder;
+import org.danielmartinez.radius.transport.DatagramChannelTransport;
+import org.danielmartinez.radius.transport.DatagramSocketTransport;
+import org.danielmartinez.radius.transport.ReceivedDatagram;
+import org.danielmartinez.radius.transport.Transport;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.danielmartinez.radius.util.PooledThreadLocal;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.danielmartinez.radius.repository.BackendCredentialStore;
+import org.danielmartinez.radius.repository.CredentialCache;
+import org.danielmartinez.radius.repository.HeapCredentialStore;
+import org.danielmartinez.radius.repository.OffHeapCredentialStore;
+import org.danielmartinez.radius.repository.ReplyProfiles;
+import org.danielmartinez.radius.repository.SharedSecret;
+import org.danielmartinez.radius.repository.SimulatedCredentialBackend;
+import org.danielmartinez.radius.repository.UserDatabase;
+import org.danielmartinez.radius.repository.UserManager;
+
+/**
+ * This class represents the RADIUS Server that follows the RFC 2865 guidelines
+ */
+public class RadiusServer {
+
+    /**
+     * Maximum time a request waits for its accounting record to be durable when there is no deferred sender
+     */
+    private static final long ACCOUNTING_COMMIT_TIMEOUT_SECONDS = 5;
+
+    /**
+     * Startup options of the server
+     */
+    private final ServerConfiguration configuration;
+
+    /**
+     * Users and clients known by the server, shared by all the threads
+     */
+    private final UserManager userManager;
+
+    /**
+     * Responses kept to answer retransmitted requests. Null if duplicate detection is disabled
+     */
+    private final DuplicateRequestCache duplicateCache;
+
+    /**
+     * Log where accounting records are made durable before they are acknowledged. Null if accounting is disabled
+     */
+    private final AccountingLog accountingLog;
+
+    /**
+     * Active accounting sessions and totals per user. Null if accounting or the session table is disabled
+     */
+    private final SessionTable sessionTable;
+
+    /**
+     * Failed logins of users and calling stations, to lock out password guessing. Null if the lockout is disabled
+     */
+    private final LoginFailureTracker loginFailures;
+
+    /**
+     * Limits that shed requests early when the server is overloaded
+     */
+    private final AdmissionControl admissionControl;
+
+    /**
+     * Requests deferred until their credentials, a password or the Shared Secret of their client, are loaded from
+     * the backend
+     */
+    private final AtomicInteger pendingAuthentications = new AtomicInteger();
+
+    /**
+     * Threads that resume the Access-Requests deferred until their credentials are loaded. Shared by the shards,
+     * and only started once a request is deferred
+     */
+    private final ExecutorService resumeExecutor;
+
+    /**
+     * Counters and latency histograms of the server
+     */
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    /**
+     * Metrics of all the shards in SHARDED mode, reported by Status-Server. Null in the other modes
+     */
+    private volatile AggregatedMetrics aggregatedMetrics;
+
+    /**
+     * State of the request being processed by each thread, when the processing steps run one after another
+     */
+    private static final PooledThreadLocal<RequestContext> REQUEST_CONTEXT =
+            PooledThreadLocal.withInitial(RequestContext::new);
+
+    /**
+     * Encoder of the responses sent by each thread
+     */
+    private static final PooledThreadLocal<ResponseEncoder> RESPONSE_ENCODER =
+            PooledThreadLocal.withInitial(ResponseEncoder::new);
+
+    // Constructor
+    public RadiusServer() {
+        this(new ServerConfiguration(), new UserManager());
+    }
+
+    // Constructor
+    public RadiusServer(ServerConfiguration configuration, UserManager userManager) {
+        this.configuration = configuration;
+        this.userManager = userManager;
+        this.duplicateCache = newDuplicateCache(configuration);
+        this.accountingLog = openAccountingLog(configuration);
+        this.sessionTable = accountingLog == null || configuration.getAccountingSessions() == 0 ? null
+                : new SessionTable(configuration.getAccountingSessions(), configuration.getAccountingSessions(),
+                        configuration.getAccountingIdleTimeoutSeconds(), TimeUnit.SECONDS);
+        this.loginFailures = configuration.getLockoutTableSize() == 0 ? null
+                : new LoginFailureTracker(configuration.getLockoutTableSize(),
+                        configuration.getLockoutUserThreshold(), configuration.getLockoutStationThreshold(),
+                        TimeUnit.SECONDS.toNanos(configuration.getLockoutWindowSeconds()),
+                        TimeUnit.SECONDS.toNanos(configuration.getLockoutDurationSeconds()));
+        this.admissionControl = newAdmissionControl(configuration, userManager);
+        this.resumeExecutor = newResumeExecutor();
+    }
+
+    /**
+     * This constructor creates a shard of a server, which listens on the same port with a socket of its own. The
+     * shard shares the users, the accounting log, the sessions and the lockout of the server, and has a duplicate
+     * cache, admission control and metrics of its own, so the shards do not share state while they process packets
+     * @param server: The server
+     */
+    private RadiusServer(RadiusServer server) {
+        this.configuration = server.configuration;
+        this.userManager = server.userManager;
+        this.duplicateCache = newDuplicateCache(configuration);
+        this.accountingLog = server.accountingLog;
+        this.sessionTable = server.sessionTable;
+        this.loginFailures = server.loginFailures;
+        this.admissionControl = newAdmissionControl(configuration, userManager);
+        this.resumeExecutor = server.resumeExecutor;
+    }
+
+    private static DuplicateRequestCache newDuplicateCache(ServerConfiguration configuration){
+        return configuration.getDuplicateCacheSize() == 0 ? null
+                : new DuplicateRequestCache(configuration.getDuplicateCacheSize(),
+                        TimeUnit.SECONDS.toNanos(configuration.getDuplicateCacheTtlSeconds()));
+    }
+
+    private static AdmissionControl newAdmissionControl(ServerConfiguration configuration, UserManager userManager){
+        return new AdmissionControl(userManager, configuration.getMaxInFlight(), configuration.getNasRateLimit(),
+                configuration.getNasBurst(), configuration.getRequestDeadlineMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This method creates the threads that resume deferred Access-Requests, one per processor. They wait for work
+     * in an unbounded queue, which never holds more than the maximum of pending authentications
+     * @return ExecutorService: The threads, started on demand and stopped when idle
+     */
+    private static ExecutorService newResumeExecutor(){
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "radius-auth-resume-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * This method opens the accounting log selected in the configuration
+     * @param configuration: Startup options of the server
+     * @return AccountingLog: The log, or null if accounting is disabled
+     */
+    private static AccountingLog openAccountingLog(ServerConfiguration configuration){
+        if(configuration.getAccountingLogFile() == null){
+            return null;
+        }
+        try {
+            return new AccountingLog(Paths.get(configuration.getAccountingLogFile()),
+                    configuration.getAccountingBatchBytes());
+        } catch (IOException e){
+            throw new UncheckedIOException("The accounting log cannot be opened: " + e.getMessage(), e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ServerConfiguration configuration = ServerConfiguration.fromArgs(args);
+        RadiusLogger.install(new RadiusLogger(configuration.getLogLevel(), configuration.getLogBufferSize(),
+                configuration.getLogRateLimit(), configuration.getLogSampling(), System.out));
+        UserManager userManager = configuration.getCredentialBackendType()
+                == ServerConfiguration.CredentialBackendType.NONE ? openUserManager(configuration)
+                : openCredentialBackend(configuration);
+        if(configuration.getReplyProfilesFile() != null){
+            loadReplyProfiles(userManager, Paths.get(configuration.getReplyProfilesFile()));
+        }
+        RadiusServer radiusServer = new RadiusServer(configuration, userManager);
+        radiusServer.start();
+    }
+
+    /**
+     * This method creates the users and clients kept by the server, from the files of the configuration
+     * @param configuration: Startup options of the server
+     * @return UserManager: The users and clients
+     */
+    private static UserManager openUserManager(ServerConfiguration configuration) throws IOException {
+        UserManager userManager = new UserManager(configuration.getUserStoreType()
+                == ServerConfiguration.UserStoreType.OFF_HEAP ? new OffHeapCredentialStore()
+                : new HeapCredentialStore());
+        if(configuration.getUserDatabaseFile() != null){
+            UserDatabase database = UserDatabase.open(Paths.get(configuration.getUserDatabaseFile()));
+            userManager.install(database);
+            RadiusLogger.get().log(LogEvent.USER_DATABASE_LOADED, database.toString(), database.getGeneration());
+        }
+        if(configuration.getUsersFile() != null){
+            int users = userManager.loadUsers(Paths.get(configuration.getUsersFile()));
+            RadiusLogger.get().log(LogEvent.USERS_LOADED, configuration.getUsersFile(), users);
+        }
+        if(configuration.getClientsFile() != null){
+            int clients = userManager.loadClients(Paths.get(configuration.getClientsFile()));
+            RadiusLogger.get().log(LogEvent.CLIENTS_LOADED, configuration.getClientsFile(), clients);
+        }
+        return userManager;
+    }
+
+    /**
+     * This method compiles the reply profiles of a file and replaces the ones in use
+     * @param userManager: The users, whose profiles are replaced
+     * @param path: Path of the reply profiles file
+     */
+    private static void loadReplyProfiles(UserManager userManager, Path path) throws IOException {
+        ReplyProfiles profiles = ReplyProfiles.load(path);
+        userManager.installReplyProfiles(profiles);
+        RadiusLogger.get().log(LogEvent.REPLY_PROFILES_LOADED, profiles.toString(), profiles.getUserCount());
+    }
+
+    /**
+     * This method creates the users and clients looked up in the credential backend of the configuration, through
+     * a cache of the passwords and a cache of the Shared Secrets. The simulated backend is filled with the files of
+     * the configuration
+     * @param configuration: Startup options of the server
+     * @return UserManager: The users and clients
+     */
+    private static UserManager openCredentialBackend(ServerConfiguration configuration) throws IOException {
+        SimulatedCredentialBackend backend = new SimulatedCredentialBackend(configuration.getBackendLatencyMillis(),
+                TimeUnit.MILLISECONDS);
+        if(configuration.getUsersFile() != null){
+            int users = backend.loadUsers(Paths.get(configuration.getUsersFile()));
+            RadiusLogger.get().log(LogEvent.USERS_LOADED, configuration.getUsersFile(), users);
+        }
+        if(configuration.getClientsFile() != null){
+            int clients = backend.loadClients(Paths.get(configuration.getClientsFile()));
+            RadiusLogger.get().log(LogEvent.CLIENTS_LOADED, configuration.getClientsFile(), clients);
+        }
+
+        // The loaders bound the calls in flight to the backend. Loads beyond their queue fail right away
+        AtomicInteger loaderCount = new AtomicInteger();
+        ThreadPoolExecutor loaders = new ThreadPoolExecutor(configuration.getBackendThreads(),
+                configuration.getBackendThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(configuration.getBackendThreads() * 64), runnable -> {
+                    Thread loader = new Thread(runnable, "radius-credential-loader-" + loaderCount.incrementAndGet());
+                    loader.setDaemon(true);
+                    return loader;
+                });
+
+        CredentialCache<String, byte[]> passwords = new CredentialCache<>(configuration.getCredentialCacheSize(),
+                configuration.getCredentialCacheTtlSeconds() * 1000L,
+                configuration.getCredentialCacheNegativeTtlSeconds() * 1000L,
+                configuration.getCredentialCacheRefreshAhead(), configuration.getBackendTimeoutMillis(),
+                TimeUnit.MILLISECONDS, backend::loadPassword, loaders);
+        CredentialCache<InetAddress, SharedSecret> sharedSecrets = new CredentialCache<>(
+                configuration.getCredentialCacheSize(), configuration.getCredentialCacheTtlSeconds() * 1000L,
+                configuration.getCredentialCacheNegativeTtlSeconds() * 1000L,
+                configuration.getCredentialCacheRefreshAhead(), configuration.getBackendTimeoutMillis(),
+                TimeUnit.MILLISECONDS, address -> {
+                    byte[] sharedSecret = backend.loadSharedSecret(address);
+                    return sharedSecret == null ? null : new SharedSecret(sharedSecret);
+                }, loaders);
+        UserManager userManager = new UserManager(new BackendCredentialStore(passwords), sharedSecrets);
+        List<String> clientRanges = configuration.getBackendClientRanges() != null
+                ? configuration.getBackendClientRanges() : backend.getClientIds();
+        for(String clientRange: clientRanges){
+            userManager.addBackendClientRange(clientRange);
+        }
+        return userManager;
+    }
+
+    /**
+     * This method initializes the RADIUS Server
+     */
+    public void start(){
+        boolean sharded = configuration.getExecutionMode() == ServerConfiguration.ExecutionMode.SHARDED;
+        try(Transport transport = openTransport(configuration.getPort(), sharded)){
+
+            RadiusLogger.get().log(LogEvent.SERVER_STARTED, "RADIUS Server started", transport.getLocalPort());
+            registerMetrics(transport.getLocalPort());
+            if(configuration.getUserDatabaseFile() != null && configuration.getUserDatabaseReloadSeconds() > 0){
+                startFileWatcher(Paths.get(configuration.getUserDatabaseFile()),
+                        configuration.getUserDatabaseReloadSeconds(), "radius-user-db-watcher",
+                        this::reloadUserDatabase);
+            }
+            if(configuration.getReplyProfilesFile() != null && configuration.getReplyProfilesReloadSeconds() > 0){
+                startFileWatcher(Paths.get(configuration.getReplyProfilesFile()),
+                        configuration.getReplyProfilesReloadSeconds(), "radius-reply-profiles-watcher",
+                        path -> loadReplyProfiles(userManager, path));
+            }
+
+            switch(configuration.getExecutionMode()){
+                case WORKER_POOL:
+                    runWorkerPool(transport);
+                    break;
+                case PIPELINE:
+                    runPipeline(transport);
+                    break;
+                case SHARDED:
+                    runShards(transport);
+                    break;
+                case VIRTUAL_THREADS:
+                    runVirtualThreads(transport);
+                    break;
+                case SINGLE_THREAD:
+                default:
+                    receive(transport, datagram -> processDatagram(transport, datagram));
+            }
+        } catch (IOException e){
+            RadiusLogger.get().log(LogEvent.IO_ERROR, e.getMessage());
+        } catch (RuntimeException e){
+            RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * This method exposes the metrics of the server through JMX. A failure does not stop the server
+     * @param port: The port where the server listens, which names the MBean
+     */
+    private void registerMetrics(int port){
+        try {
+            // The shards register their metrics when they are created
+            if(configuration.getExecutionMode() != ServerConfiguration.ExecutionMode.SHARDED){
+                metrics.register("port-" + port);
+            }
+            if(sessionTable != null){
+                sessionTable.register("port-" + port);
+            }
+        } catch (IllegalStateException e){
+            RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * This method opens the transport selected in the configuration
+     * @param port: The UDP port where the transport listens
+     * @param reusePort: If true, the transport is bound with SO_REUSEPORT, so it can share the port with others
+     * @return Transport: The UDP endpoint where the server listens
+     */
+    private Transport openTransport(int port, boolean reusePort) throws IOException {
+        switch(configuration.getTransportType()){
+            case CHANNEL:
+                return new DatagramChannelTransport(port, configuration.getBufferPoolSize(), reusePort);
+            case SOCKET:
+            default:
+                return new DatagramSocketTransport(port, configuration.getBufferPoolSize(), reusePort);
+        }
+    }
+
+    /**
+     * This method runs the receiver threads, which hand every datagram over to a pool of worker threads
+     * @param transport: The transport where the server listens
+     */
+    private void runWorkerPool(Transport transport) throws IOException {
+        WorkerPool workerPool = new WorkerPool(configuration.getWorkerThreads(),
+                configuration.getWorkerQueueCapacity(), datagram -> processDatagram(transport, datagram));
+        workerPool.start();
+
+        RadiusLogger.get().log(LogEvent.WORKER_POOL_STARTED, "Receivers: " + configuration.getReceiverThreads(),
+                configuration.getWorkerThreads());
+
+        Consumer<ReceivedDatagram> dispatcher = datagram -> {
+            if(!workerPool.submit(datagram)){
+                admissionControl.release();
+                transport.release(datagram.getData());
+                metrics.packetDiscarded(RadiusConstants.PACKET_DISCARDED_QUEUE_FULL);
+                RadiusLogger.get().log(LogEvent.QUEUE_FULL, datagram.getSource(),
+                        RadiusConstants.PACKET_DISCARDED_QUEUE_FULL);
+            }
+        };
+
+        startReceivers(transport, dispatcher);
+
+        if(configuration.getQueueReportIntervalSeconds() > 0){
+            startQueueReporter(workerPool::getQueueDepth, () -> "perWorker="
+                    + Arrays.toString(workerPool.getQueueDepthPerWorker()) + " dropped="
+                    + workerPool.getDroppedDatagrams());
+        }
+
+        try {
+            receive(transport, dispatcher);
+        } finally {
+            workerPool.stop();
+        }
+    }
+
+    /**
+     * This method runs the receiver threads, which start a virtual thread for every datagram. The request is
+     * processed in blocking style: its password is looked up and its accounting record made durable while the
+     * virtual thread waits, which does not hold a platform thread. The virtual threads are only bounded by the
+     * limit of requests in flight. The per-thread state of the request path (the request context, the encoder,
+     * the digest and the scratch arrays) is borrowed from pools and given back when the virtual thread ends, so it
+     * is not built again for every request. Runtimes older than Java 21 run the worker pool instead
+     * @param transport: The transport where the server listens
+     */
+    private void runVirtualThreads(Transport transport) throws IOException {
+        if(!VirtualThreads.isSupported()){
+            RadiusLogger.get().log(LogEvent.RUNTIME_ERROR,
+                    "Virtual threads require Java 21 or later, the worker pool is used instead");
+            runWorkerPool(transport);
+            return;
+        }
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("radius-request-");
+
+        RadiusLogger.get().log(LogEvent.VIRTUAL_THREADS_STARTED, "Virtual thread per request",
+                configuration.getReceiverThreads());
+
+        // A virtual thread ends with its request, so it gives its per-thread buffers and digests back to the pools
+        Consumer<ReceivedDatagram> dispatcher = datagram -> executor.execute(() -> {
+            try {
+                processDatagram(transport, datagram, null);
+            } finally {
+                PooledThreadLocal.releaseAll();
+            }
+        });
+        startReceivers(transport, dispatcher);
+
+        if(configuration.getQueueReportIntervalSeconds() > 0){
+            startQueueReporter(admissionControl::getInFlight, () -> "virtualThreads="
+                    + admissionControl.getInFlight());
+        }
+
+        try {
+            receive(transport, dispatcher);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * This method starts the additional receiver threads of the configuration. The current thread acts as the
+     * first one
+     * @param transport: The transport where the server listens
+     * @param dispatcher: Logic applied to every admitted datagram
+     */
+    private void startReceivers(Transport transport, Consumer<ReceivedDatagram> dispatcher){
+        for(int i = 1; i < configuration.getReceiverThreads(); i++){
+            Thread receiver = new Thread(() -> {
+                try {
+                    receive(transport, dispatcher);
+                } catch (IOException e){
+                    RadiusLogger.get().log(LogEvent.IO_ERROR, e.getMessage());
+                } catch (RuntimeException e){
+                    RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+                }
+            }, "radius-receiver-" + i);
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+    }
+
+    /**
+     * This method runs the receiver thread, which hands every datagram over to a pipeline of stages
+     * @param transport: The transport where the server listens
+     */
+    private void runPipeline(Transport transport) throws IOException {
+        RequestPipeline pipeline = new RequestPipeline(this, transport, configuration.getPipelineLanes(),
+                configuration.getPipelineDepth(), configuration.getPipelineBatch(), configuration.isPipelineSpin());
+        pipeline.start();
+        try {
+            pipeline.register("port-" + transport.getLocalPort());
+        } catch (IllegalStateException e){
+            RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+        }
+
+        RadiusLogger.get().log(LogEvent.PIPELINE_STARTED, "Depth: " + configuration.getPipelineDepth()
+                + ", batch: " + configuration.getPipelineBatch(), configuration.getPipelineLanes());
+
+        if(configuration.getQueueReportIntervalSeconds() > 0){
+            startQueueReporter(pipeline::getInFlight, () -> pipeline + " stages=["
+                    + String.join(" | ", pipeline.toLines()) + "]");
+        }
+
+        try {
+            receive(transport, datagram -> {
+                if(!pipeline.submit(datagram)){
+                    admissionControl.release();
+                    transport.release(datagram.getData());
+                    metrics.packetDiscarded(RadiusConstants.PACKET_DISCARDED_QUEUE_FULL);
+                    RadiusLogger.get().log(LogEvent.QUEUE_FULL, datagram.getSource(),
+                            RadiusConstants.PACKET_DISCARDED_QUEUE_FULL);
+                }
+            });
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    /**
+     * This method runs the shards of the server. Every shard has a socket of its own on the port and a thread that
+     * receives, processes and answers its packets, as in SINGLE_THREAD mode. The kernel spreads the datagrams among
+     * the sockets by source address and port, so the packets of a RADIUS Client always reach the same shard and no
+     * packet is handed over between threads. The current thread runs the first shard, which is this server
+     * @param transport: The transport of the first shard, bound with SO_REUSEPORT
+     */
+    private void runShards(Transport transport) throws IOException {
+        int port = transport.getLocalPort();
+        List<RadiusServer> shards = new ArrayList<>();
+        List<Transport> transports = new ArrayList<>();
+        shards.add(this);
+        transports.add(transport);
+        try {
+            for(int i = 1; i < configuration.getShards(); i++){
+                transports.add(openTransport(port, true));
+                shards.add(new RadiusServer(this));
+            }
+        } catch (IOException e){
+            for(Transport opened: transports.subList(1, transports.size())){
+                opened.close();
+            }
+            throw e;
+        }
+
+        List<ServerMetrics> parts = new ArrayList<>();
+        for(RadiusServer shard: shards){
+            parts.add(shard.metrics);
+        }
+        AggregatedMetrics aggregated = new AggregatedMetrics(parts);
+        for(RadiusServer shard: shards){
+            shard.aggregatedMetrics = aggregated;
+        }
+        try {
+            aggregated.register("port-" + port);
+            for(int i = 0; i < shards.size(); i++){
+                shards.get(i).metrics.register("port-" + port + "-shard-" + i);
+            }
+        } catch (IllegalStateException e){
+            RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+        }
+
+        RadiusLogger.get().log(LogEvent.SHARDS_STARTED, "Transport: " + configuration.getTransportType(),
+                shards.size());
+
+        for(int i = 1; i < shards.size(); i++){
+            RadiusServer shard = shards.get(i);
+            Transport shardTransport = transports.get(i);
+            Thread thread = new Thread(() -> {
+                try(Transport opened = shardTransport){
+                    shard.receive(opened, datagram -> shard.processDatagram(opened, datagram));
+                } catch (IOException e){
+                    RadiusLogger.get().log(LogEvent.IO_ERROR, e.getMessage());
+                } catch (RuntimeException e){
+                    RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+                }
+            }, "radius-shard-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        if(configuration.getQueueReportIntervalSeconds() > 0){
+            startQueueReporter(() -> {
+                int inFlight = 0;
+                for(RadiusServer shard: shards){
+                    inFlight += shard.admissionControl.getInFlight();
+                }
+                return inFlight;
+            }, () -> {
+                StringBuilder detail = new StringBuilder("shards=[");
+                for(int i = 0; i < shards.size(); i++){
+                    RadiusServer shard = shards.get(i);
+                    detail.append(i == 0 ? "" : " | ").append("received=")
+                            .append(shard.metrics.getTotalPacketsReceived())
+                            .append(shard.duplicateCache != null ? " duplicateCache=" + shard.duplicateCache : "")
+                            .append(" admission=").append(shard.admissionControl);
+                }
+                return detail.append(']').toString();
+            });
+        }
+
+        receive(transport, datagram -> processDatagram(transport, datagram));
+    }
+
+    /**
+     * This method starts a thread that periodically reports the queue depth of the execution mode
+     * @param depth: Number of requests waiting or in flight
+     * @param detail: Description of the queues of the execution mode
+     */
+    private void startQueueReporter(IntSupplier depth, Supplier<String> detail){
+        long intervalMillis = configuration.getQueueReportIntervalSeconds() * 1000L;
+        // In SHARDED mode the detail reports the duplicate cache and the admission control of every shard
+        boolean sharded = configuration.getExecutionMode() == ServerConfiguration.ExecutionMode.SHARDED;
+        Thread reporter = new Thread(() -> {
+            try {
+                while(true){
+                    Thread.sleep(intervalMillis);
+                    RadiusLogger.get().log(LogEvent.QUEUE_REPORT, detail.get()
+                            + (duplicateCache != null && !sharded ? " duplicateCache=" + duplicateCache : "")
+                            + (accountingLog != null ? " accountingLog=" + accountingLog : "")
+                            + (sessionTable != null ? " sessions=" + sessionTable : "")
+                            + (loginFailures != null ? " lockout=" + loginFailures : "")
+                            + (userManager.getClientSecretCache() != null ? " credentials="
+                            + userManager.getCredentialStore() + " clientSecrets="
+                            + userManager.getClientSecretCache() + " pendingAuthentications="
+                            + pendingAuthentications.get() : "")
+                            + (sharded ? "" : " admission=" + admissionControl),
+                            depth.getAsInt());
+                }
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }, "radius-queue-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * Logic that loads a watched file again
+     */
+    private interface FileReloader {
+        void reload(Path path) throws IOException;
+    }
+
+    /**
+     * This method starts a thread that loads a file again every time it changes. New versions of a file may be
+     * renamed over it, so the thread checks the identity and the modification time of the file, and reloads it when
+     * they change. Requests keep being processed while it is loaded, and a file that cannot be loaded leaves the
+     * current version in use
+     * @param path: Path of the file
+     * @param intervalSeconds: Seconds between two checks
+     * @param name: Name of the thread
+     * @param reloader: Logic that loads the file
+     */
+    private void startFileWatcher(Path path, int intervalSeconds, String name, FileReloader reloader){
+        long intervalMillis = intervalSeconds * 1000L;
+        Thread watcher = new Thread(() -> {
+            Object fileKey = null;
+            FileTime modified = null;
+            try {
+                while(true){
+                    Thread.sleep(intervalMillis);
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        if(fileKey == null){
+                            fileKey = attributes.fileKey();
+                            modified = attributes.lastModifiedTime();
+                            continue;
+                        }
+                        if(Objects.equals(fileKey, attributes.fileKey())
+                                && attributes.lastModifiedTime().equals(modified)){
+                            continue;
+                        }
+                        fileKey = attributes.fileKey();
+                        modified = attributes.lastModifiedTime();
+                        reloader.reload(path);
+                    } catch (IOException e){
+                        RadiusLogger.get().log(LogEvent.IO_ERROR, e.getMessage());
+                    } catch (IllegalArgumentException e){
+                        RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+                    }
+                }
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * This method installs a new generation of the user database file. A file of the generation in use is ignored
+     * @param path: Path of the user database file
+     */
+    private void reloadUserDatabase(Path path) throws IOException {
+        UserDatabase database = UserDatabase.open(path);
+        UserDatabase previous = userManager.getUserDatabase();
+        if(previous == null || previous.getGeneration() != database.getGeneration()){
+            userManager.install(database);
+            RadiusLogger.get().log(LogEvent.USER_DATABASE_LOADED, database.toString(), database.getGeneration());
+        }
+    }
+
+    /**
+     * This method receives UDP packets and hands each of them over to the consumer. Packets that are not admitted
+     * are discarded right away, without being queued
+     * @param transport: The transport where the server listens
+     * @param consumer: Logic applied to every admitted datagram
+     */
+    private void receive(Transport transport, Consumer<ReceivedDatagram> consumer) throws IOException {
+        while(true){
+            // Receive a new UDP packet
+            ReceivedDatagram datagram = transport.receive();
+            String reason = admissionControl.admit(datagram);
+            if(reason == null){
+                consumer.accept(datagram);
+            } else {
+                transport.release(datagram.getData());
+                metrics.packetDiscarded(reason);
+                RadiusLogger.get().log(LogEvent.PACKET_SHED, datagram.getSource(), reason);
+            }
+        }
+    }
+
+    /**
+     * This method processes a received datagram and sends the response, if any. The buffers of the request and
+     * the response are given back to the transport afterwards
+     * @param transport: The transport where the server listens
+     * @param datagram: The received datagram, already admitted
+     */
+    private void processDatagram(Transport transport, ReceivedDatagram datagram){
+        processDatagram(transport, datagram, transport::send);
+    }
+
+    /**
+     * This method processes a received datagram and sends the response, if any
+     * @param transport: The transport where the server listens
+     * @param datagram: The received datagram, already admitted
+     * @param deferredSender: Sends the responses that are not ready when the request is processed. If null, the
+     *                      current thread waits for them
+     */
+    private void processDatagram(Transport transport, ReceivedDatagram datagram, ResponseSender deferredSender){
+        ByteBuffer responseBuffer = transport.acquireBuffer();
+        try {
+            if(handlePacket(datagram.getData(), datagram.getSource(), responseBuffer, deferredSender, transport,
+                    datagram.getReceivedNanos())){
+                transport.send(responseBuffer, datagram.getSource());
+            }
+        } catch (IOException e){
+            RadiusLogger.get().log(LogEvent.IO_ERROR, datagram.getSource(), e.getMessage());
+        } catch (RuntimeException e){
+            // A failure is confined to its datagram, so the receive loop keeps running
+            metrics.packetDiscarded(e.getMessage());
+            RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, datagram.getSource(), e.getMessage());
+        } finally {
+            admissionControl.release();
+            transport.release(datagram.getData());
+            transport.release(responseBuffer);
+        }
+    }
+
+    /**
+     * This method processes a received RADIUS packet and encodes the response. It does not depend on the
+     * transport, so it can also be driven in-process
+     * @param request: Buffer that holds the received UDP Data between its position and its limit
+     * @param source: Source address and port of the received UDP Packet
+     * @param response: Buffer where the response is encoded. When a response is produced, the position and the
+     *                limit of the buffer delimit it
+     * @return Boolean: True if a response was encoded, false if the packet was discarded
+     */
+    public boolean handlePacket(ByteBuffer request, InetSocketAddress source, ByteBuffer response){
+        return handlePacket(request, source, response, null);
+    }
+
+    /**
+     * This method processes a received RADIUS packet and encodes the response. Responses that can only be sent
+     * later, such as the Accounting-Response sent once its record is durable, are handed over to a sender
+     * @param request: Buffer that holds the received UDP Data between its position and its limit
+     * @param source: Source address and port of the received UDP Packet
+     * @param response: Buffer where the response is encoded. When a response is produced, the position and the
+     *                limit of the buffer delimit it
+     * @param deferredSender: Sends the responses that are not ready when this method returns. If null, this method
+     *                      waits for them and returns them in the response buffer
+     * @return Boolean: True if a response was encoded, false if the packet was discarded or its response is sent
+     *         later by deferredSender
+     */
+    public boolean handlePacket(ByteBuffer request, InetSocketAddress source, ByteBuffer response,
+                                ResponseSender deferredSender){
+        return handlePacket(request, source, response, deferredSender, null, System.nanoTime());
+    }
+
+    private boolean handlePacket(ByteBuffer request, InetSocketAddress source, ByteBuffer response,
+                                 ResponseSender deferredSender, Transport transport, long receivedNanos){
+        RequestContext context = REQUEST_CONTEXT.get();
+        context.reset(request, source, response, deferredSender, transport);
+        // The time waited in the queues counts towards the deadline and the latency of the request
+        context.receivedNanos = receivedNanos;
+        try {
+            decodeRequest(context);
+            authenticateRequest(context);
+            encodeResponse(context);
+            return completeRequest(context);
+        } finally {
+            // Deferred requests record their latency when their response is sent
+            if(context.state != RequestContext.DEFERRED){
+                metrics.recordLatency(ServerMetrics.Stage.TOTAL, System.nanoTime() - context.receivedNanos);
+            }
+            context.clear();
+        }
+    }
+
+    /**
+     * This method runs the first processing step of a request: the client is identified by the source address, the
+     * packet is validated and, if it is a retransmission of an already answered request, the cached response is
+     * replayed
+     * @param context: The request, in RECEIVED state
+     */
+    void decodeRequest(RequestContext context){
+        long decodeStart = System.nanoTime();
+        try {
+            checkDeadline(context);
+
+            // A client whose Shared Secret is being loaded from the credential backend is waited for elsewhere
+            if(deferDecode(context)){
+                context.state = RequestContext.DEFERRED;
+                return;
+            }
+
+            // Get SharedSecret of the client from the source address, before any work is spent on the packet
+            context.sharedSecret = userManager.getClientSecret(context.source.getAddress());
+            if(context.sharedSecret == null){
+                // A response cannot be authenticated without a Shared Secret, so the packet is discarded
+                throw new RadiusException(RadiusConstants.ACCESS_REJECT_NO_SHARED_SECRET);
+            }
+
+            // Point the view of the context to the received UDP Packet
+            RadiusPacketView receiveRadiusPacket = context.view.wrap(context.request);
+            metrics.recordLatency(ServerMetrics.Stage.PARSE, System.nanoTime() - decodeStart);
+            metrics.packetReceived(receiveRadiusPacket.getCode());
+            RadiusLogger.get().logPacket(LogEvent.PACKET_RECEIVED, context.source, context.request, null);
+
+            // Status-Server requests are not subject to duplicate detection (RFC 5997, section 3)
+            context.detectDuplicates = duplicateCache != null
+                    && receiveRadiusPacket.getCode() != RadiusConstants.STATUS_SERVER_CODE;
+
+            // Replay the response if the packet is a retransmission of an already answered request
+            if(context.detectDuplicates && duplicateCache.replay(context.source,
+                    receiveRadiusPacket.getIdentifier(), context.request,
+                    receiveRadiusPacket.getAuthenticatorOffset(), context.response)){
+                RadiusLogger.get().logPacket(LogEvent.DUPLICATE_REPLAYED, context.source, context.response,
+                        "Cached response replayed");
+                context.state = RequestContext.REPLAYED;
+                return;
+            }
+            context.state = RequestContext.DECODED;
+        } catch (RadiusException e){
+            discardRequest(context, e);
+        }
+    }
+
+    /**
+     * This method runs the second processing step of a request: the credentials of an Access-Request are checked.
+     * Other requests are processed entirely in this step, since they do not need any other
+     * @param context: The request. Nothing is done unless it is in DECODED state
+     */
+    void authenticateRequest(RequestContext context){
+        if(context.state != RequestContext.DECODED){
+            return;
+        }
+        try {
+            // The credentials are the most expensive part, so the deadline is checked again before them
+            checkDeadline(context);
+            context.state = processRadiusPacket(context);
+        } catch (RadiusException e){
+            discardRequest(context, e);
+        }
+    }
+
+    /**
+     * This method runs the third processing step of a request: the response to an Access-Request is encoded, and
+     * new responses are stored to answer retransmissions
+     * @param context: The request. Nothing is done unless it is in AUTHENTICATED or ENCODED state
+     */
+    void encodeResponse(RequestContext context){
+        if(context.state == RequestContext.AUTHENTICATED){
+            encodeAccessResponse(context.view, context.source, context.sharedSecret, context.response,
+                    context.rejectReason);
+            context.state = RequestContext.ENCODED;
+        }
+        if(context.state == RequestContext.ENCODED && context.detectDuplicates){
+            duplicateCache.store(context.source, context.view.getIdentifier(), context.request,
+                    context.view.getAuthenticatorOffset(), context.response);
+        }
+    }
+
+    /**
+     * This method runs the last processing step of a request, which accounts for the response
+     * @param context: The request, after the encode step
+     * @return Boolean: True if the response buffer holds a response to send
+     */
+    boolean completeRequest(RequestContext context){
+        if(context.state == RequestContext.ENCODED){
+            RadiusLogger.get().logPacket(LogEvent.RESPONSE_SENT, context.source, context.response, null);
+        } else if(context.state != RequestContext.REPLAYED){
+            return false;
+        }
+        metrics.responseSent(context.response.get(context.response.position()));
+        return true;
+    }
+
+    /**
+     * This method discards a request that waited longer than the deadline. The NAS has already retransmitted it
+     * or given up, so its response would be wasted work
+     * @param context: The request
+     */
+    private void checkDeadline(RequestContext context){
+        if(admissionControl.isExpired(context.receivedNanos)){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_DEADLINE);
+        }
+    }
+
+    private void discardRequest(RequestContext context, RadiusException e){
+        RadiusLogger.get().log(LogEvent.PACKET_DISCARDED, context.source, e.getMessage());
+        metrics.packetDiscarded(e.getMessage());
+        context.state = RequestContext.DISCARDED;
+    }
+
+    /**
+     * This method returns the metrics of the server
+     * @return The metrics
+     */
+    public ServerMetrics getMetrics() { return metrics; }
+
+    /**
+     * This method returns the log where accounting records are stored
+     * @return The accounting log, or null if accounting is disabled
+     */
+    public AccountingLog getAccountingLog() { return accountingLog; }
+
+    /**
+     * This method returns the table of active accounting sessions
+     * @return The session table, or null if it is disabled
+     */
+    public SessionTable getSessionTable() { return sessionTable; }
+
+    /**
+     * This method returns the cache used to detect retransmitted requests
+     * @return The duplicate request cache, or null if duplicate detection is disabled
+     */
+    public DuplicateRequestCache getDuplicateCache() { return duplicateCache; }
+
+    /**
+     * This method returns the limits that shed requests when the server is overloaded
+     * @return The admission control
+     */
+    public AdmissionControl getAdmissionControl() { return admissionControl; }
+
+    /**
+     * This method returns the tracker of failed logins
+     * @return The tracker, or null if the lockout is disabled
+     */
+    public LoginFailureTracker getLoginFailures() { return loginFailures; }
+
+    /**
+     * This method parses a UDP Packet Data that corresponds to a RADIUS Packet
+     * @param data: It contains the UDP Data in byte[] format
+     * @return RadiusPacket: Byte fields in the UDP Data parsed to Java Data format
+     */
+    public static RadiusPacket parseUDPData(byte[] data){
+        return new RadiusPacketView().wrap(ByteBuffer.wrap(data)).toRadiusPacket();
+    }
+
+    /**
+     * This method processes a RADIUS packet and checks if it meets the requirements. Then, it determines
+     * how to process the packet. The length of the packet has already been checked when the view was wrapped
+     * @param context: The request, whose view wraps the received RADIUS packet
+     * @return The state of the request: AUTHENTICATED for an Access-Request, whose response is encoded in the next
+     *         step, ENCODED if the response is in the response buffer, or DEFERRED if it is sent later
+     */
+    private int processRadiusPacket(RequestContext context){
+        RadiusPacketView radiusPacket = context.view;
+        // Process RADIUS Code Field
+        switch(radiusPacket.getCode()){
+            case RadiusConstants.ACCESS_REQUEST_CODE:
+                if(deferAuthentication(context)){
+                    return RequestContext.DEFERRED;
+                }
+                context.rejectReason = authenticateAccessRequest(radiusPacket, context.sharedSecret);
+                return RequestContext.AUTHENTICATED;
+            case RadiusConstants.ACCOUNTING_REQUEST_CODE:
+                return processAccountingRequest(radiusPacket, context.source, context.sharedSecret,
+                        context.response, context.deferredSender, context.receivedNanos) ? RequestContext.ENCODED
+                        : RequestContext.DEFERRED;
+            case RadiusConstants.STATUS_SERVER_CODE:
+                processStatusServer(radiusPacket, context.source, context.sharedSecret, context.response);
+                return RequestContext.ENCODED;
+            default:
+                throw new RadiusException(RadiusConstants.PACKET_DISCARDED_RADIUS_CODE_UNKNOWN);
+        }
+    }
+
+    /**
+     * This method defers a request whose client is not cached, while its Shared Secret is loaded from the
+     * credential backend. The password of an Access-Request is loaded at the same time, so the request waits once
+     * for both, and it resumes from the decode step
+     * @param context: The request, in RECEIVED state
+     * @return Boolean: True if the request is deferred
+     */
+    private boolean deferDecode(RequestContext context){
+        if(!canDefer(context)){
+            return false;
+        }
+        CompletableFuture<?> sharedSecret = userManager.prepareClientSecret(context.source.getAddress());
+        if(sharedSecret == null){
+            return false;
+        }
+        CompletableFuture<?> credentials = sharedSecret;
+        RadiusPacketView radiusPacket = context.view.wrap(context.request);
+        if(radiusPacket.getCode() == RadiusConstants.ACCESS_REQUEST_CODE){
+            CompletableFuture<?> password = preparePassword(radiusPacket);
+            if(password != null){
+                credentials = CompletableFuture.allOf(sharedSecret, password);
+            }
+        }
+        defer(context, credentials);
+        return true;
+    }
+
+    /**
+     * This method defers an Access-Request whose password has to be loaded from the credential backend, so the
+     * thread that processes it goes on with other requests instead of waiting. It resumes from the authenticate
+     * step once the password is loaded
+     * @param context: The request, an Access-Request in DECODED state
+     * @return Boolean: True if the request is deferred
+     */
+    private boolean deferAuthentication(RequestContext context){
+        if(!canDefer(context)){
+            return false;
+        }
+        CompletableFuture<?> password = preparePassword(context.view);
+        if(password == null){
+            return false;
+        }
+        defer(context, password);
+        return true;
+    }
+
+    private boolean canDefer(RequestContext context){
+        return configuration.getMaxPendingAuthentications() > 0 && context.deferredSender != null
+                && !context.resumed;
+    }
+
+    private CompletableFuture<?> preparePassword(RadiusPacketView radiusPacket){
+        int userNameOffset = radiusPacket.findAttribute(RadiusConstants.USER_NAME);
+        if(userNameOffset < 0){
+            return null;
+        }
+        ByteBuffer packet = radiusPacket.getBuffer();
+        return userManager.preparePassword(packet, userNameOffset + 2, (packet.get(userNameOffset + 1) & 0xFF) - 2);
+    }
+
+    /**
+     * This method sets a request aside until the credentials it needs are loaded. The request is copied into a
+     * buffer of the transport, since its buffer is reused, and a context of its own keeps what the steps already
+     * run found, so it resumes from the step it is in; its response is sent by the deferred sender. Requests wait
+     * at most the backend timeout, and no more than the maximum of pending authentications wait at the same time
+     * @param context: The request, in RECEIVED or DECODED state
+     * @param credentials: Completed when the credentials are loaded
+     */
+    private void defer(RequestContext context, CompletableFuture<?> credentials){
+        if(pendingAuthentications.incrementAndGet() > configuration.getMaxPendingAuthentications()){
+            pendingAuthentications.decrementAndGet();
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_PENDING_LIMIT);
+        }
+        ByteBuffer request = acquireBuffer(context.transport);
+        request.put(context.request.duplicate()).flip();
+        RequestContext deferred = new RequestContext();
+        deferred.reset(request, context.source, null, context.deferredSender, context.transport);
+        deferred.receivedNanos = context.receivedNanos;
+        deferred.resumed = true;
+        if(context.state == RequestContext.DECODED){
+            deferred.view.wrap(request);
+            deferred.sharedSecret = context.sharedSecret;
+            deferred.detectDuplicates = context.detectDuplicates;
+            deferred.state = RequestContext.DECODED;
+        }
+        // The continuation never runs in this thread, whose request context is in use
+        credentials.orTimeout(configuration.getBackendTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((loaded, error) -> resumeRequest(deferred, error), resumeExecutor);
+    }
+
+    /**
+     * This method resumes a request deferred by defer() from the step it was in, once its credentials are loaded,
+     * and sends its response. The buffers of the request and the response are given back to the transport
+     * afterwards
+     * @param context: The deferred request, in RECEIVED or DECODED state
+     * @param error: The error of the load, or null if the credentials are loaded
+     */
+    private void resumeRequest(RequestContext context, Throwable error){
+        pendingAuthentications.decrementAndGet();
+        try {
+            if(error != null){
+                discardRequest(context, new RadiusException(RadiusConstants.PACKET_DISCARDED_CREDENTIAL_BACKEND));
+                return;
+            }
+            context.response = acquireBuffer(context.transport);
+            if(context.state == RequestContext.RECEIVED){
+                decodeRequest(context);
+            }
+            authenticateRequest(context);
+            encodeResponse(context);
+            if(completeRequest(context)){
+                context.deferredSender.send(context.response, context.source);
+            }
+        } catch (IOException e){
+            RadiusLogger.get().log(LogEvent.IO_ERROR, context.source, e.getMessage());
+        } finally {
+            metrics.recordLatency(ServerMetrics.Stage.TOTAL, System.nanoTime() - context.receivedNanos);
+            releaseBuffer(context.transport, context.request);
+            if(context.response != null){
+                releaseBuffer(context.transport, context.response);
+            }
+            context.clear();
+        }
+    }
+
+    /**
+     * This method takes a buffer for a request or a response that outlives the processing of its datagram
+     * @param transport: The transport that lends the buffer, or null to allocate it
+     * @return A cleared buffer, given back with releaseBuffer()
+     */
+    private static ByteBuffer acquireBuffer(Transport transport){
+        return transport == null ? ByteBuffer.allocate(RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH)
+                : transport.acquireBuffer();
+    }
+
+    private static void releaseBuffer(Transport transport, ByteBuffer buffer){
+        if(transport != null){
+            transport.release(buffer);
+        }
+    }
+
+    /**
+     * This method returns the number of requests waiting for their credentials
+     * @return The pending authentications
+     */
+    public int getPendingAuthentications() { return pendingAuthentications.get(); }
+
+    /**
+     * This method processes a RADIUS Accounting-Request packet (RFC 2866). The Request Authenticator is checked,
+     * the request is applied to the session table, the Accounting-Response is encoded and the request is appended
+     * to the accounting log. The response is only sent once the record is durable: it is handed over to
+     * deferredSender by the committer of the log or, without a sender, this method waits for the record
+     * @param radiusPacket View of the RADIUS Accounting-Request received
+     * @param source Source address and port of the request
+     * @param sharedSecret Shared Secret of the client that sent the request
+     * @param response Buffer where the Accounting-Response is encoded
+     * @param deferredSender Sends the Accounting-Response once the record is durable, may be null
+     * @param receivedNanos Time when the request was received
+     * @return Boolean: True if the response is in the response buffer, false if it is sent later by deferredSender
+     */
+    private boolean processAccountingRequest(RadiusPacketView radiusPacket, InetSocketAddress source,
+                                             SharedSecret sharedSecret, ByteBuffer response,
+                                             ResponseSender deferredSender, long receivedNanos){
+        if(accountingLog == null){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_ACCOUNTING_LOG);
+        }
+        if(!radiusPacket.verifyAccountingAuthenticator(sharedSecret.getBytes())){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_ACCOUNTING_AUTHENTICATOR);
+        }
+
+        int statusTypeOffset = radiusPacket.findAttribute(RadiusConstants.ACCT_STATUS_TYPE);
+        RadiusLogger.get().log(LogEvent.ACCOUNTING_REQUEST, source, null,
+                statusTypeOffset < 0 ? -1 : radiusPacket.integerAttributeValue(statusTypeOffset));
+        if(sessionTable != null){
+            sessionTable.update(radiusPacket, source.getAddress(), System.currentTimeMillis());
+        }
+
+        // The Accounting-Response is encoded while the request is still in the buffer
+        long encodeStart = System.nanoTime();
+        RESPONSE_ENCODER.get().encode(response, RadiusConstants.ACCOUNTING_RESPONSE_CODE, radiusPacket,
+                Collections.emptyList(), sharedSecret.getBytes());
+        metrics.recordLatency(ServerMetrics.Stage.ENCODE, System.nanoTime() - encodeStart);
+
+        int packetStart = radiusPacket.getAuthenticatorOffset() - 4;
+        ByteBuffer record = radiusPacket.getBuffer().duplicate();
+        record.limit(packetStart + radiusPacket.getLength()).position(packetStart);
+        try {
+            if(deferredSender == null){
+                long batch = accountingLog.append(record, source, null);
+                if(!accountingLog.awaitDurable(batch, ACCOUNTING_COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+                    throw new RadiusException(RadiusConstants.PACKET_DISCARDED_ACCOUNTING_LOG);
+                }
+                return true;
+            }
+
+            // The request buffer is reused once this method returns, so the response keeps its own copy of the
+            // request header, which identifies it in the duplicate request cache
+            byte[] requestHeader = new byte[RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH];
+            record.duplicate().get(requestHeader);
+            byte[] accountingResponse = new byte[response.remaining()];
+            response.duplicate().get(accountingResponse);
+            accountingLog.append(record, source,
+                    () -> sendAccountingResponse(deferredSender, source, requestHeader, accountingResponse,
+                            receivedNanos));
+            return false;
+        } catch (IOException e){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_ACCOUNTING_LOG);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_ACCOUNTING_LOG);
+        }
+    }
+
+    /**
+     * This method sends an Accounting-Response once its record is durable. It runs in the committer thread of the
+     * accounting log
+     * @param sender Sender of the response
+     * @param destination Source address and port of the request
+     * @param requestHeader First 20 bytes of the request: Code, Identifier, Length and Request Authenticator
+     * @param accountingResponse The encoded Accounting-Response
+     * @param receivedNanos Time when the request was received
+     */
+    private void sendAccountingResponse(ResponseSender sender, InetSocketAddress destination, byte[] requestHeader,
+                                        byte[] accountingResponse, long receivedNanos){
+        ByteBuffer response = ByteBuffer.wrap(accountingResponse);
+        if(duplicateCache != null){
+            duplicateCache.store(destination, requestHeader[1] & 0xFF, ByteBuffer.wrap(requestHeader), 4, response);
+        }
+        try {
+            sender.send(response, destination);
+            metrics.responseSent(RadiusConstants.ACCOUNTING_RESPONSE_CODE);
+            RadiusLogger.get().logPacket(LogEvent.RESPONSE_SENT, destination, ByteBuffer.wrap(accountingResponse),
+                    null);
+        } catch (IOException e){
+            RadiusLogger.get().log(LogEvent.IO_ERROR, destination, e.getMessage());
+        } finally {
+            metrics.recordLatency(ServerMetrics.Stage.TOTAL, System.nanoTime() - receivedNanos);
+        }
+    }
+
+    /**
+     * This method checks if all conditions of a RADIUS Access-Request packet are met and authenticates the user.
+     * Only the attributes needed to authenticate the user are copied out of the received packet
+     * @param radiusPacket View of the RADIUS Access-Request received
+     * @param sharedSecret Shared Secret of the client that sent the request
+     * @return The Access-Reject reason, or null if the user is authenticated
+     */
+    private String authenticateAccessRequest(RadiusPacketView radiusPacket, SharedSecret sharedSecret){
+        // Get Username and password if received
+        int userNameOffset = radiusPacket.findAttribute(RadiusConstants.USER_NAME);
+        int userPasswordOffset = radiusPacket.findAttribute(RadiusConstants.USER_PASSWORD);
+
+        if(userPasswordOffset < 0){
+            return RadiusConstants.ACCESS_REJECT_NO_PASSWORD;
+        }
+
+        if(userNameOffset < 0){
+            return RadiusConstants.ACCESS_REJECT_NO_USER_NAME;
+        }
+
+        // Reject locked out users and calling stations before any password is hashed
+        ByteBuffer packet = radiusPacket.getBuffer();
+        int userNameLength = (packet.get(userNameOffset + 1) & 0xFF) - 2;
+        int stationOffset = radiusPacket.findAttribute(RadiusConstants.CALLING_STATION_ID);
+        int stationLength = stationOffset < 0 ? 0 : (packet.get(stationOffset + 1) & 0xFF) - 2;
+        if(loginFailures != null && loginFailures.isLockedOut(packet, userNameOffset + 2, userNameLength,
+                stationOffset < 0 ? -1 : stationOffset + 2, stationLength)){
+            return RadiusConstants.ACCESS_REJECT_LOCKED_OUT;
+        }
+
+        // Reject unknown users before the User-Name is copied or looked up. They count as failures of the station
+        if(!userManager.mightUserExist(packet, userNameOffset + 2, userNameLength)){
+            if(loginFailures != null){
+                loginFailures.recordFailure(packet, userNameOffset + 2, userNameLength,
+                        stationOffset < 0 ? -1 : stationOffset + 2, stationLength);
+            }
+            return RadiusConstants.ACCESS_REJECT_UNKNOWN_USER_NAME;
+        }
+
+        // Authenticate
+        long authStart = System.nanoTime();
+        boolean isUserAuthenticated = userManager.isUserAuthenticated(packet, userNameOffset + 2, userNameLength,
+                packet, userPasswordOffset + 2, (packet.get(userPasswordOffset + 1) & 0xFF) - 2,
+                packet, radiusPacket.getAuthenticatorOffset(), sharedSecret);
+        metrics.recordLatency(ServerMetrics.Stage.AUTH, System.nanoTime() - authStart);
+
+        if(loginFailures != null){
+            if(isUserAuthenticated){
+                loginFailures.recordSuccess(packet, userNameOffset + 2, userNameLength);
+            } else {
+                loginFailures.recordFailure(packet, userNameOffset + 2, userNameLength,
+                        stationOffset < 0 ? -1 : stationOffset + 2, stationLength);
+            }
+        }
+
+        return isUserAuthenticated ? null : RadiusConstants.ACCESS_REJECT_BAD_CREDENTIALS;
+    }
+
+    /**
+     * This method encodes the response to a RADIUS Access-Request packet
+     * @param radiusPacket View of the RADIUS Access-Request received
+     * @param source Source address and port of the request
+     * @param sharedSecret Shared Secret of the client that sent the request
+     * @param response Buffer where the Access-Accept or Access-Reject response is encoded
+     * @param rejectReason The Access-Reject reason, or null if the user is authenticated
+     */
+    private void encodeAccessResponse(RadiusPacketView radiusPacket, InetSocketAddress source,
+                                      SharedSecret sharedSecret, ByteBuffer response, String rejectReason){
+        if(rejectReason == null){
+            // Send Access-Accept
+            RadiusLogger.get().log(LogEvent.ACCESS_ACCEPT, source, "User is authenticated");
+            long encodeStart = System.nanoTime();
+            ReplyProfiles profiles = userManager.getReplyProfiles();
+            if(profiles.isEmpty()){
+                RESPONSE_ENCODER.get().encodeAccessAccept(response, radiusPacket, sharedSecret.getBytes());
+            } else {
+                // The attributes of the user are already encoded: they are copied as they are
+                ByteBuffer packet = radiusPacket.getBuffer();
+                int userNameOffset = radiusPacket.findAttribute(RadiusConstants.USER_NAME);
+                RESPONSE_ENCODER.get().encodeAccessAccept(response, radiusPacket, sharedSecret.getBytes(),
+                        profiles.lookup(packet, userNameOffset + 2, (packet.get(userNameOffset + 1) & 0xFF) - 2));
+            }
+            metrics.recordLatency(ServerMetrics.Stage.ENCODE, System.nanoTime() - encodeStart);
+        }
+
+        else{
+            // Send Access-Reject
+            rejectAccessRequest(radiusPacket, source, sharedSecret, response, rejectReason);
+        }
+    }
+
+    /**
+     * This method encodes an Access-Reject response and accounts for its reason
+     * @param radiusPacket View of the RADIUS Access-Request received
+     * @param source Source address and port of the request
+     * @param sharedSecret Shared Secret of the client that sent the request
+     * @param response Buffer where the Access-Reject response is encoded
+     * @param reason One of the Access-Reject reasons of RadiusConstants
+     */
+    private void rejectAccessRequest(RadiusPacketView radiusPacket, InetSocketAddress source,
+                                     SharedSecret sharedSecret, ByteBuffer response, String reason){
+        RadiusLogger.get().log(LogEvent.ACCESS_REJECT, source, reason);
+        metrics.accessRejected(reason);
+        long encodeStart = System.nanoTime();
+        RESPONSE_ENCODER.get().encodeAccessReject(response, radiusPacket, sharedSecret.getBytes(), reason);
+        metrics.recordLatency(ServerMetrics.Stage.ENCODE, System.nanoTime() - encodeStart);
+    }
+
+    /**
+     * This method processes a RADIUS Status-Server packet (RFC 5997). The request must carry a valid
+     * Message-Authenticator, otherwise it is discarded. The response is an Access-Accept with the metrics of the
+     * server in Reply-Message attributes, one attribute per line
+     * @param radiusPacket View of the RADIUS Status-Server received
+     * @param source Source address and port of the request
+     * @param sharedSecret Shared Secret of the client that sent the request
+     * @param response Buffer where the Access-Accept response is encoded
+     */
+    private void processStatusServer(RadiusPacketView radiusPacket, InetSocketAddress source,
+                                     SharedSecret sharedSecret, ByteBuffer response){
+        int messageAuthenticatorOffset = radiusPacket.findAttribute(RadiusConstants.MESSAGE_AUTHENTICATOR);
+        if(messageAuthenticatorOffset < 0
+                || !radiusPacket.verifyMessageAuthenticator(messageAuthenticatorOffset, sharedSecret.getBytes())){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_MESSAGE_AUTHENTICATOR);
+        }
+
+        List<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute(RadiusConstants.MESSAGE_AUTHENTICATOR, 18, new byte[16]));
+        int length = RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH + 18;
+        AggregatedMetrics shards = aggregatedMetrics;
+        for(String line: (shards != null ? shards.sum() : metrics).toLines()){
+            byte[] value = line.getBytes(StandardCharsets.UTF_8);
+            value = Arrays.copyOf(value, Math.min(value.length, 253));
+            if(length + value.length + 2 > RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH){
+                break;
+            }
+            attributes.add(new Attribute(RadiusConstants.REPLY_MESSAGE, value.length + 2, value));
+            length += value.length + 2;
+        }
+
+        RadiusLogger.get().log(LogEvent.STATUS_SERVER, source, null);
+        RESPONSE_ENCODER.get().encode(response, RadiusConstants.ACCESS_ACCEPT_CODE, radiusPacket, attributes,
+                sharedSecret.getBytes());
+    }
+}
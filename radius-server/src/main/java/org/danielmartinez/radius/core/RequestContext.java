@@ -0,0 +1,115 @@
+package org.danielmartinez.radius.core;
+
+import org.danielmartinez.radius.packet.RadiusPacketView;
+import org.danielmartinez.radius.repository.SharedSecret;
+import org.danielmartinez.radius.transport.ReceivedDatagram;
+import org.danielmartinez.radius.transport.Transport;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * This class holds the state of a request while it goes through the processing steps of RadiusServer: decode,
+ * authenticate, encode and complete. The steps can run in one thread or in the stages of a RequestPipeline, so
+ * everything a later step needs is kept here instead of in local variables. Contexts are reused, one request after
+ * another
+ */
+final class RequestContext {
+
+    // States of the request, in processing order
+    static final int RECEIVED = 0;
+    // The packet is valid and comes from a known client
+    static final int DECODED = 1;
+    // The Access-Request credentials were checked, the response is not encoded yet
+    static final int AUTHENTICATED = 2;
+    // A new response is in the response buffer
+    static final int ENCODED = 3;
+    // A cached response to a retransmission is in the response buffer
+    static final int REPLAYED = 4;
+    // The response is sent later by the deferred sender, once the record is durable or the credentials are loaded
+    static final int DEFERRED = 5;
+    // The packet is discarded, nothing is sent
+    static final int DISCARDED = 6;
+
+    /**
+     * View of the request, wrapped once by the decode step and read by the following ones
+     */
+    final RadiusPacketView view = new RadiusPacketView();
+
+    ByteBuffer request;
+
+    InetSocketAddress source;
+
+    ByteBuffer response;
+
+    ResponseSender deferredSender;
+
+    /**
+     * Transport that received the request, which lends the buffers of a request deferred until its credentials are
+     * loaded. Null when the server is driven in-process
+     */
+    Transport transport;
+
+    int state;
+
+    SharedSecret sharedSecret;
+
+    boolean detectDuplicates;
+
+    /**
+     * Access-Reject reason found by the authenticate step, or null to send an Access-Accept
+     */
+    String rejectReason;
+
+    /**
+     * Time when the request was received, for the latency of the whole processing
+     */
+    long receivedNanos;
+
+    /**
+     * True if the request resumes once the credentials it waited for are loaded, so it is not deferred a second
+     * time
+     */
+    boolean resumed;
+
+    // Used by RequestPipeline only
+    ReceivedDatagram datagram;
+    int lane;
+    long enqueuedNanos;
+
+    /**
+     * This method prepares the context for a new request
+     * @param request Buffer that holds the received UDP Data between its position and its limit
+     * @param source Source address and port of the request
+     * @param response Buffer where the response is encoded
+     * @param deferredSender Sends the responses that are not ready when the processing returns, may be null
+     * @param transport Transport that received the request, may be null
+     */
+    void reset(ByteBuffer request, InetSocketAddress source, ByteBuffer response, ResponseSender deferredSender,
+               Transport transport){
+        this.request = request;
+        this.source = source;
+        this.response = response;
+        this.deferredSender = deferredSender;
+        this.transport = transport;
+        this.state = RECEIVED;
+        this.sharedSecret = null;
+        this.detectDuplicates = false;
+        this.rejectReason = null;
+        this.receivedNanos = System.nanoTime();
+        this.resumed = false;
+    }
+
+    /**
+     * This method drops the references to the buffers of the last request, so they are not kept alive
+     */
+    void clear(){
+        this.request = null;
+        this.source = null;
+        this.response = null;
+        this.deferredSender = null;
+        this.transport = null;
+        this.sharedSecret = null;
+        this.datagram = null;
+    }
+}
@@ -0,0 +1,353 @@
+package org.danielmartinez.radius.core;
+
+import org.danielmartinez.radius.logging.LogEvent;
+import org.danielmartinez.radius.logging.RadiusLogger;
+import org.danielmartinez.radius.metrics.ServerMetrics;
+import org.danielmartinez.radius.metrics.StageMetrics;
+import org.danielmartinez.radius.transport.ReceivedDatagram;
+import org.danielmartinez.radius.transport.Transport;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class processes requests in a pipeline of stages, each one run by its own thread: the receiver thread hands
+ * every datagram to the decode stage, followed by the authenticate, encode and send stages. Consecutive stages are
+ * connected by single-producer/single-consumer rings, so a request moves from one stage to the next without locks.
+ * Every stage takes up to a batch of requests from its ring at once, and the send stage sends their responses in a
+ * burst.
+ * The pipeline can be replicated in lanes. The datagrams of a RADIUS Client (source address and port) always go to
+ * the same lane, so they are answered in the order they arrived. Every lane owns a fixed set of request contexts,
+ * which go back to the receiver once their response is sent: when a lane has none free, the datagram is dropped,
+ * so the number of requests in flight is bounded
+ */
+public class RequestPipeline implements RequestPipelineMXBean {
+
+    /**
+     * Stages of the pipeline, in processing order
+     */
+    public enum Stage {
+        // Client lookup, validation of the packet and replay of retransmissions
+        DECODE,
+        // Validation of the Access-Request credentials, and processing of the other requests
+        AUTHENTICATE,
+        // Encoding of the Access-Request responses
+        ENCODE,
+        // Sending of the responses and release of the buffers
+        SEND
+    }
+
+    /**
+     * Checks of an empty input ring made before parking
+     */
+    private static final int SPINS = 256;
+
+    /**
+     * Maximum time a stage without work parks before checking again
+     */
+    private static final long PARK_NANOS = 200_000;
+
+    private final RadiusServer server;
+
+    private final Transport transport;
+
+    private final ResponseSender sender;
+
+    private final int lanes;
+
+    private final int batchSize;
+
+    /**
+     * If true, idle stages spin instead of parking. Only sensible when every stage has a core of its own
+     */
+    private final boolean spin;
+
+    /**
+     * Input ring of every stage of every lane
+     */
+    private final List<List<SpscRingBuffer<RequestContext>>> stageQueues = new ArrayList<>();
+
+    /**
+     * Free contexts of every lane, given back by the send stage to the receiver
+     */
+    private final List<SpscRingBuffer<RequestContext>> freeContexts = new ArrayList<>();
+
+    private final StageMetrics[] stageMetrics = new StageMetrics[Stage.values().length];
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running = true;
+
+    // Constructor
+    public RequestPipeline(RadiusServer server, Transport transport, int lanes, int depth, int batchSize,
+                           boolean spin) {
+        this.server = server;
+        this.transport = transport;
+        this.sender = transport::send;
+        this.lanes = lanes;
+        this.batchSize = batchSize;
+        this.spin = spin;
+
+        for(Stage stage: Stage.values()){
+            stageMetrics[stage.ordinal()] = new StageMetrics(stage.name().toLowerCase(), lanes);
+        }
+        for(int lane = 0; lane < lanes; lane++){
+            List<SpscRingBuffer<RequestContext>> queues = new ArrayList<>();
+            for(Stage stage: Stage.values()){
+                queues.add(new SpscRingBuffer<>(depth));
+                int stageLane = lane;
+                Thread thread = new Thread(() -> run(stageLane, stage),
+                        "radius-" + stage.name().toLowerCase() + "-" + lane);
+                thread.setDaemon(true);
+                threads.add(thread);
+            }
+            stageQueues.add(queues);
+
+            SpscRingBuffer<RequestContext> free = new SpscRingBuffer<>(depth);
+            for(int i = 0; i < depth; i++){
+                RequestContext context = new RequestContext();
+                context.lane = lane;
+                free.offer(context);
+            }
+            freeContexts.add(free);
+        }
+    }
+
+    /**
+     * This method starts the threads of all the stages
+     */
+    public void start(){
+        for(Thread thread: threads){
+            thread.start();
+        }
+    }
+
+    /**
+     * This method stops the threads of all the stages. The requests in flight are discarded
+     */
+    public void stop(){
+        running = false;
+        for(Thread thread: threads){
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * This method hands a datagram over to the lane of its source. It never blocks, and it must always be called
+     * by the same receiver thread, which is the only producer of the decode rings
+     * @param datagram: The received datagram
+     * @return Boolean: True if accepted, false if dropped because its lane has no free request context
+     */
+    public boolean submit(ReceivedDatagram datagram){
+        int lane = (datagram.sourceHash() & Integer.MAX_VALUE) % lanes;
+        RequestContext context = freeContexts.get(lane).poll();
+        if(context == null){
+            dropped.increment();
+            return false;
+        }
+        context.reset(datagram.getData(), datagram.getSource(), transport.acquireBuffer(), sender, transport);
+        context.datagram = datagram;
+        context.receivedNanos = datagram.getReceivedNanos();
+        context.enqueuedNanos = context.receivedNanos;
+        stageQueues.get(lane).get(Stage.DECODE.ordinal()).put(context);
+        return true;
+    }
+
+    /**
+     * This method contains the loop executed by the thread of a stage
+     * @param lane: The lane of the thread
+     * @param stage: The stage run by the thread
+     */
+    private void run(int lane, Stage stage){
+        SpscRingBuffer<RequestContext> input = stageQueues.get(lane).get(stage.ordinal());
+        SpscRingBuffer<RequestContext> output = stage == Stage.SEND ? freeContexts.get(lane)
+                : stageQueues.get(lane).get(stage.ordinal() + 1);
+        StageMetrics metrics = stageMetrics[stage.ordinal()];
+        RequestContext[] batch = new RequestContext[batchSize];
+
+        while(running){
+            int count = input.drainTo(batch, batchSize);
+            if(count == 0){
+                input.await(SPINS, spin ? 0 : PARK_NANOS);
+                continue;
+            }
+
+            long batchStart = System.nanoTime();
+            long requestStart = batchStart;
+            for(int i = 0; i < count; i++){
+                RequestContext context = batch[i];
+                try {
+                    process(stage, context);
+                } catch (RuntimeException e){
+                    context.state = RequestContext.DISCARDED;
+                    RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, context.source, e.getMessage());
+                }
+                long requestEnd = System.nanoTime();
+                metrics.recordRequest(batchStart - context.enqueuedNanos, requestEnd - requestStart);
+                requestStart = requestEnd;
+            }
+            metrics.recordBatch(requestStart - batchStart);
+
+            for(int i = 0; i < count; i++){
+                batch[i].enqueuedNanos = requestStart;
+                output.put(batch[i]);
+                batch[i] = null;
+            }
+        }
+    }
+
+    private void process(Stage stage, RequestContext context){
+        switch(stage){
+            case DECODE:
+                server.decodeRequest(context);
+                break;
+            case AUTHENTICATE:
+                server.authenticateRequest(context);
+                break;
+            case ENCODE:
+                server.encodeResponse(context);
+                break;
+            case SEND:
+            default:
+                send(context);
+        }
+    }
+
+    /**
+     * This method sends the response of a request, if any, and gives its buffers back to the transport
+     * @param context: The request, after the encode stage
+     */
+    private void send(RequestContext context){
+        try {
+            if(server.completeRequest(context)){
+                transport.send(context.response, context.source);
+            }
+        } catch (IOException e){
+            RadiusLogger.get().log(LogEvent.IO_ERROR, context.source, e.getMessage());
+        } finally {
+            // Deferred requests record their latency when their response is sent
+            if(context.state != RequestContext.DEFERRED){
+                server.getMetrics().recordLatency(ServerMetrics.Stage.TOTAL,
+                        System.nanoTime() - context.receivedNanos);
+            }
+            server.getAdmissionControl().release();
+            transport.release(context.datagram.getData());
+            transport.release(context.response);
+            context.clear();
+        }
+    }
+
+    /**
+     * This method registers the pipeline in the platform MBean server
+     * @param name Value of the name key of the MBean, to tell apart several servers in the same process
+     */
+    public void register(String name){
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            mBeanServer.registerMBean(this,
+                    new ObjectName("org.danielmartinez.radius:type=RequestPipeline,name=" + ObjectName.quote(name)));
+        } catch (InstanceAlreadyExistsException e){
+            throw new IllegalStateException("The pipeline is already registered for " + name, e);
+        } catch (JMException e){
+            throw new IllegalStateException("The pipeline cannot be registered: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * This method returns the number of requests being processed in all the lanes
+     * @return The number of request contexts that are not free
+     */
+    public int getInFlight(){
+        int inFlight = 0;
+        for(SpscRingBuffer<RequestContext> free: freeContexts){
+            inFlight += free.capacity() - free.size();
+        }
+        return inFlight;
+    }
+
+    public StageMetrics getStageMetrics(Stage stage) { return stageMetrics[stage.ordinal()]; }
+
+    @Override
+    public Map<String, Integer> getOccupancy() {
+        Map<String, Integer> values = new LinkedHashMap<>();
+        for(Stage stage: Stage.values()){
+            int occupancy = 0;
+            for(List<SpscRingBuffer<RequestContext>> queues: stageQueues){
+                occupancy += queues.get(stage.ordinal()).size();
+            }
+            values.put(stage.name().toLowerCase(), occupancy);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getUtilization() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for(StageMetrics metrics: stageMetrics){
+            values.put(metrics.getName(), metrics.getUtilization());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getAverageBatch() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for(StageMetrics metrics: stageMetrics){
+            values.put(metrics.getName(), metrics.getAverageBatch());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getLatencies() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for(StageMetrics metrics: stageMetrics){
+            values.put(metrics.getName() + "_wait_p50", metrics.getWait().getValueAtPercentile(50) / 1000.0);
+            values.put(metrics.getName() + "_wait_p99", metrics.getWait().getValueAtPercentile(99) / 1000.0);
+            values.put(metrics.getName() + "_service_p50", metrics.getService().getValueAtPercentile(50) / 1000.0);
+            values.put(metrics.getName() + "_service_p99", metrics.getService().getValueAtPercentile(99) / 1000.0);
+        }
+        return values;
+    }
+
+    @Override
+    public long getDropped() { return dropped.sum(); }
+
+    @Override
+    public String getSummary() {
+        return String.join("\n", toLines());
+    }
+
+    /**
+     * This method writes the metrics of every stage in text format
+     * @return One line per stage, with the occupancy of its input rings
+     */
+    public List<String> toLines(){
+        List<String> lines = new ArrayList<>();
+        Map<String, Integer> occupancy = getOccupancy();
+        for(StageMetrics metrics: stageMetrics){
+            lines.add(metrics + " queued=" + occupancy.get(metrics.getName()));
+        }
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "lanes=" + lanes +
+                ", inFlight=" + getInFlight() +
+                ", dropped=" + dropped.sum() +
+                ']';
+    }
+}
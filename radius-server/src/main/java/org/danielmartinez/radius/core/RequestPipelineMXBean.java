@@ -0,0 +1,39 @@
+package org.danielmartinez.radius.core;
+
+import java.util.Map;
+
+/**
+ * JMX view of the request pipeline. Latencies are given in microseconds
+ */
+public interface RequestPipelineMXBean {
+
+    /**
+     * @return The number of requests waiting in the input queue of every stage, across all the lanes
+     */
+    Map<String, Integer> getOccupancy();
+
+    /**
+     * @return The fraction of time every stage was processing requests, in the range [0 - 1]
+     */
+    Map<String, Double> getUtilization();
+
+    /**
+     * @return The average number of requests every stage takes from its input queue at once
+     */
+    Map<String, Double> getAverageBatch();
+
+    /**
+     * @return The 50th and 99th percentiles of the queue wait and of the service time of every stage
+     */
+    Map<String, Double> getLatencies();
+
+    /**
+     * @return The number of datagrams dropped because their lane had no free request slot
+     */
+    long getDropped();
+
+    /**
+     * @return All the metrics in text format, one line per stage
+     */
+    String getSummary();
+}
@@ -0,0 +1,20 @@
+package org.danielmartinez.radius.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * This interface sends responses that are not ready when the processing of their request returns, such as
+ * Accounting-Response packets, which are sent once their record is durable
+ */
+@FunctionalInterface
+public interface ResponseSender {
+
+    /**
+     * This method sends a response
+     * @param response Buffer that holds the response between its position and its limit
+     * @param destination Address and port of the RADIUS Client
+     */
+    void send(ByteBuffer response, InetSocketAddress destination) throws IOException;
+}
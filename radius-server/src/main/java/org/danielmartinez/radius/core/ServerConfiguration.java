@@ -0,0 +1,849 @@
+package org.danielmartinez.radius.core;
+
+import org.danielmartinez.radius.logging.LogEvent;
+import org.danielmartinez.radius.logging.LogLevel;
+import org.danielmartinez.radius.logging.RadiusLogger;
+import org.danielmartinez.radius.repository.PrefixTrie;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class contains the startup options of the RADIUS Server
+ */
+public class ServerConfiguration {
+
+    /**
+     * Execution modes supported by the RADIUS Server
+     */
+    public enum ExecutionMode {
+        // One thread receives, processes and answers every packet
+        SINGLE_THREAD,
+        // Receiver threads hand every packet to a pool of worker threads
+        WORKER_POOL,
+        // One receiver thread hands every packet to a pipeline of stages, each one with its own thread
+        PIPELINE,
+        // Every shard has a socket of its own on the port (SO_REUSEPORT) and a thread that receives, processes and
+        // answers its packets
+        SHARDED,
+        // Receiver threads start a virtual thread for every packet, which may block while it is processed (Java 21)
+        VIRTUAL_THREADS
+    }
+
+    /**
+     * Transports supported by the RADIUS Server
+     */
+    public enum TransportType {
+        // java.net.DatagramSocket with pooled heap buffers
+        SOCKET,
+        // java.nio.channels.DatagramChannel with pooled direct buffers
+        CHANNEL
+    }
+
+    /**
+     * Stores of the user credentials supported by the RADIUS Server
+     */
+    public enum UserStoreType {
+        // ConcurrentHashMap keyed by String
+        HEAP,
+        // Open-addressing table keyed by the User-Name bytes, outside the Java heap
+        OFF_HEAP
+    }
+
+    /**
+     * External stores of the users and the clients supported by the RADIUS Server
+     */
+    public enum CredentialBackendType {
+        // Users and clients are kept by the server
+        NONE,
+        // In-memory stand-in for an external store, with a fixed latency per call
+        SIMULATED
+    }
+
+    /**
+     * UDP port where the server listens for RADIUS packets
+     */
+    private int port = RadiusConstants.RADIUS_LISTENING_PORT;
+
+    /**
+     * Execution mode of the server
+     */
+    private ExecutionMode executionMode = ExecutionMode.SINGLE_THREAD;
+
+    /**
+     * Transport used to receive and send datagrams
+     */
+    private TransportType transportType = TransportType.SOCKET;
+
+    /**
+     * Number of buffers preallocated by the transport
+     */
+    private int bufferPoolSize = 256;
+
+    /**
+     * Number of threads reading from the socket in WORKER_POOL and VIRTUAL_THREADS modes
+     */
+    private int receiverThreads = 1;
+
+    /**
+     * Number of threads processing packets in WORKER_POOL mode
+     */
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum number of packets waiting in the queue of each worker
+     */
+    private int workerQueueCapacity = 1024;
+
+    /**
+     * Number of sockets bound to the port, each one with its own thread, in SHARDED mode
+     */
+    private int shards = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of parallel copies of the stages in PIPELINE mode
+     */
+    private int pipelineLanes = 1;
+
+    /**
+     * Requests in flight per lane in PIPELINE mode, also the capacity of the rings between the stages
+     */
+    private int pipelineDepth = 1024;
+
+    /**
+     * Maximum number of requests a stage takes from its input ring at once in PIPELINE mode
+     */
+    private int pipelineBatch = 32;
+
+    /**
+     * If true, idle stages spin instead of parking in PIPELINE mode
+     */
+    private boolean pipelineSpin = false;
+
+    /**
+     * Maximum number of requests admitted and not answered yet. 0 disables the limit
+     */
+    private int maxInFlight = 8192;
+
+    /**
+     * Requests per second admitted from every RADIUS Client. 0 disables the rate limit
+     */
+    private int nasRateLimit = 0;
+
+    /**
+     * Requests a RADIUS Client can send at once over its rate limit
+     */
+    private int nasBurst = 100;
+
+    /**
+     * Milliseconds a request can wait before its processing starts, below the retransmission timeout of the NAS.
+     * 0 disables the deadline
+     */
+    private int requestDeadlineMillis = 3000;
+
+    /**
+     * Users and calling stations whose failed logins are tracked at the same time. 0 disables the lockout
+     */
+    private int lockoutTableSize = 65536;
+
+    /**
+     * Failed logins of a user within the window that lock it out. 0 disables the lockout of users
+     */
+    private int lockoutUserThreshold = 10;
+
+    /**
+     * Failed logins from a calling station within the window that lock it out. 0 disables the lockout of stations
+     */
+    private int lockoutStationThreshold = 50;
+
+    /**
+     * Seconds of the sliding window where failed logins are counted
+     */
+    private int lockoutWindowSeconds = 60;
+
+    /**
+     * Seconds a user or a calling station stays locked out
+     */
+    private int lockoutDurationSeconds = 300;
+
+    /**
+     * Maximum number of responses kept to answer retransmitted requests. 0 disables duplicate detection
+     */
+    private int duplicateCacheSize = 4096;
+
+    /**
+     * Seconds a response is kept to answer retransmitted requests
+     */
+    private int duplicateCacheTtlSeconds = 10;
+
+    /**
+     * Seconds between two queue depth reports. 0 disables the report
+     */
+    private int queueReportIntervalSeconds = 0;
+
+    /**
+     * File with the IP addresses or CIDR ranges of the clients and their Shared Secrets. Null keeps only the default
+     * loopback clients
+     */
+    private String clientsFile = null;
+
+    /**
+     * File with the users and their passwords. Null keeps only the default users
+     */
+    private String usersFile = null;
+
+    /**
+     * Store where the user credentials are kept
+     */
+    private UserStoreType userStoreType = UserStoreType.HEAP;
+
+    /**
+     * User database file with the users and the clients, built by UserDatabaseBuilder. Null keeps the users and
+     * clients in the store selected by userStoreType
+     */
+    private String userDatabaseFile = null;
+
+    /**
+     * Seconds between two checks for a new generation of the user database file. 0 disables the reload
+     */
+    private int userDatabaseReloadSeconds = 5;
+
+    /**
+     * File with the reply profiles of the users and groups. Null sends no attributes in the Access-Accept
+     */
+    private String replyProfilesFile = null;
+
+    /**
+     * Seconds between two checks for changes of the reply profiles file. 0 disables the reload
+     */
+    private int replyProfilesReloadSeconds = 5;
+
+    /**
+     * External store where the users and the clients are looked up, through a cache
+     */
+    private CredentialBackendType credentialBackendType = CredentialBackendType.NONE;
+
+    /**
+     * Requests that wait for the backend without holding a thread of the server, for a password or the Shared
+     * Secret of their client. 0 disables the asynchronous authentication, so the requests wait for the backend in
+     * the thread that processes them
+     */
+    private int maxPendingAuthentications = 4096;
+
+    /**
+     * Milliseconds every call to the simulated backend takes
+     */
+    private int backendLatencyMillis = 5;
+
+    /**
+     * Threads that load credentials from the backend, which bounds the concurrent calls to it
+     */
+    private int backendThreads = 16;
+
+    /**
+     * Milliseconds a request waits for the backend before it is discarded
+     */
+    private int backendTimeoutMillis = 1000;
+
+    /**
+     * IP addresses and CIDR ranges whose Shared Secret is looked up in the backend. Null to use the clients the
+     * simulated backend is filled with
+     */
+    private List<String> backendClientRanges;
+
+    /**
+     * Entries of the cache of the passwords, and of the cache of the Shared Secrets
+     */
+    private int credentialCacheSize = 65536;
+
+    /**
+     * Seconds a credential loaded from the backend is used
+     */
+    private int credentialCacheTtlSeconds = 300;
+
+    /**
+     * Seconds a user or client unknown to the backend is remembered as unknown. 0 disables the negative caching
+     */
+    private int credentialCacheNegativeTtlSeconds = 30;
+
+    /**
+     * Fraction of the time to live after which a used credential is reloaded in the background. 0 disables it
+     */
+    private double credentialCacheRefreshAhead = 0.8;
+
+    /**
+     * Minimum level of the logged events
+     */
+    private LogLevel logLevel = LogLevel.INFO;
+
+    /**
+     * Events of each kind logged per second at most. 0 disables the limit
+     */
+    private int logRateLimit = 1000;
+
+    /**
+     * Sampling rate of the events: an event with rate N is logged once every N occurrences
+     */
+    private Map<LogEvent, Integer> logSampling = new EnumMap<>(LogEvent.class);
+
+    /**
+     * Events that can wait in the log buffer to be written
+     */
+    private int logBufferSize = 8192;
+
+    /**
+     * File where Accounting-Request packets are stored. Null disables accounting, and Accounting-Request packets
+     * are discarded
+     */
+    private String accountingLogFile = "radius-accounting.log";
+
+    /**
+     * Bytes of accounting records that are forced to disk together at most
+     */
+    private int accountingBatchBytes = 1024 * 1024;
+
+    /**
+     * Accounting sessions tracked at the same time, and users with accounting totals. 0 disables the session table
+     */
+    private int accountingSessions = 65536;
+
+    /**
+     * Seconds without records after which a session is considered finished
+     */
+    private int accountingIdleTimeoutSeconds = 3600;
+
+    // Constructor
+    public ServerConfiguration() {
+    }
+
+    /**
+     * This method builds a configuration from the command line arguments. Every argument follows
+     * the format --option=value
+     * @param args: Command line arguments
+     * @return ServerConfiguration: The configuration with the given options applied over the defaults
+     */
+    public static ServerConfiguration fromArgs(String[] args){
+        ServerConfiguration configuration = new ServerConfiguration();
+
+        for(String arg: args){
+            if(!arg.startsWith("--") || !arg.contains("=")){
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+
+            String option = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            switch(option){
+                case "port":
+                    configuration.setPort(Integer.parseInt(value));
+                    break;
+                case "mode":
+                    configuration.setExecutionMode(ExecutionMode.valueOf(value.toUpperCase().replace('-', '_')));
+                    break;
+                case "transport":
+                    configuration.setTransportType(TransportType.valueOf(value.toUpperCase()));
+                    break;
+                case "buffer-pool-size":
+                    configuration.setBufferPoolSize(Integer.parseInt(value));
+                    break;
+                case "receivers":
+                    configuration.setReceiverThreads(Integer.parseInt(value));
+                    break;
+                case "workers":
+                    configuration.setWorkerThreads(Integer.parseInt(value));
+                    break;
+                case "queue-capacity":
+                    configuration.setWorkerQueueCapacity(Integer.parseInt(value));
+                    break;
+                case "shards":
+                    configuration.setShards(Integer.parseInt(value));
+                    break;
+                case "pipeline-lanes":
+                    configuration.setPipelineLanes(Integer.parseInt(value));
+                    break;
+                case "pipeline-depth":
+                    configuration.setPipelineDepth(Integer.parseInt(value));
+                    break;
+                case "pipeline-batch":
+                    configuration.setPipelineBatch(Integer.parseInt(value));
+                    break;
+                case "pipeline-spin":
+                    configuration.setPipelineSpin(Boolean.parseBoolean(value));
+                    break;
+                case "max-in-flight":
+                    configuration.setMaxInFlight(Integer.parseInt(value));
+                    break;
+                case "nas-rate-limit":
+                    configuration.setNasRateLimit(Integer.parseInt(value));
+                    break;
+                case "nas-burst":
+                    configuration.setNasBurst(Integer.parseInt(value));
+                    break;
+                case "request-deadline":
+                    configuration.setRequestDeadlineMillis(Integer.parseInt(value));
+                    break;
+                case "lockout-table-size":
+                    configuration.setLockoutTableSize(Integer.parseInt(value));
+                    break;
+                case "lockout-user-threshold":
+                    configuration.setLockoutUserThreshold(Integer.parseInt(value));
+                    break;
+                case "lockout-station-threshold":
+                    configuration.setLockoutStationThreshold(Integer.parseInt(value));
+                    break;
+                case "lockout-window":
+                    configuration.setLockoutWindowSeconds(Integer.parseInt(value));
+                    break;
+                case "lockout-duration":
+                    configuration.setLockoutDurationSeconds(Integer.parseInt(value));
+                    break;
+                case "duplicate-cache-size":
+                    configuration.setDuplicateCacheSize(Integer.parseInt(value));
+                    break;
+                case "duplicate-cache-ttl":
+                    configuration.setDuplicateCacheTtlSeconds(Integer.parseInt(value));
+                    break;
+                case "queue-report-interval":
+                    configuration.setQueueReportIntervalSeconds(Integer.parseInt(value));
+                    break;
+                case "clients":
+                    configuration.setClientsFile(value);
+                    break;
+                case "users":
+                    configuration.setUsersFile(value);
+                    break;
+                case "user-store":
+                    configuration.setUserStoreType(UserStoreType.valueOf(value.toUpperCase().replace('-', '_')));
+                    break;
+                case "user-db":
+                    configuration.setUserDatabaseFile(value);
+                    break;
+                case "user-db-reload-interval":
+                    configuration.setUserDatabaseReloadSeconds(Integer.parseInt(value));
+                    break;
+                case "reply-profiles":
+                    configuration.setReplyProfilesFile(value);
+                    break;
+                case "reply-profiles-reload-interval":
+                    configuration.setReplyProfilesReloadSeconds(Integer.parseInt(value));
+                    break;
+                case "credential-backend":
+                    configuration.setCredentialBackendType(CredentialBackendType.valueOf(value.toUpperCase()));
+                    break;
+                case "max-pending-authentications":
+                    configuration.setMaxPendingAuthentications(Integer.parseInt(value));
+                    break;
+                case "backend-latency":
+                    configuration.setBackendLatencyMillis(Integer.parseInt(value));
+                    break;
+                case "backend-threads":
+                    configuration.setBackendThreads(Integer.parseInt(value));
+                    break;
+                case "backend-timeout":
+                    configuration.setBackendTimeoutMillis(Integer.parseInt(value));
+                    break;
+                case "backend-client-ranges":
+                    configuration.setBackendClientRanges(value.isEmpty() ? List.of()
+                            : Arrays.asList(value.split(",")));
+                    break;
+                case "credential-cache-size":
+                    configuration.setCredentialCacheSize(Integer.parseInt(value));
+                    break;
+                case "credential-cache-ttl":
+                    configuration.setCredentialCacheTtlSeconds(Integer.parseInt(value));
+                    break;
+                case "credential-cache-negative-ttl":
+                    configuration.setCredentialCacheNegativeTtlSeconds(Integer.parseInt(value));
+                    break;
+                case "credential-cache-refresh-ahead":
+                    configuration.setCredentialCacheRefreshAhead(Double.parseDouble(value));
+                    break;
+                case "log-level":
+                    configuration.setLogLevel(LogLevel.valueOf(value.toUpperCase()));
+                    break;
+                case "log-rate-limit":
+                    configuration.setLogRateLimit(Integer.parseInt(value));
+                    break;
+                case "log-sampling":
+                    configuration.setLogSampling(RadiusLogger.parseSampling(value));
+                    break;
+                case "log-buffer-size":
+                    configuration.setLogBufferSize(Integer.parseInt(value));
+                    break;
+                case "accounting-log":
+                    configuration.setAccountingLogFile(value.equalsIgnoreCase("none") ? null : value);
+                    break;
+                case "accounting-batch-bytes":
+                    configuration.setAccountingBatchBytes(Integer.parseInt(value));
+                    break;
+                case "accounting-sessions":
+                    configuration.setAccountingSessions(Integer.parseInt(value));
+                    break;
+                case "accounting-idle-timeout":
+                    configuration.setAccountingIdleTimeoutSeconds(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if(configuration.getUserDatabaseFile() != null
+                && (configuration.getUsersFile() != null || configuration.getClientsFile() != null)){
+            throw new IllegalArgumentException("The user database already holds the users and the clients");
+        }
+        if(configuration.getUserDatabaseFile() != null
+                && configuration.getCredentialBackendType() != CredentialBackendType.NONE){
+            throw new IllegalArgumentException("The user database cannot be combined with a credential backend");
+        }
+        return configuration;
+    }
+
+    // Getters and Setters
+    public int getPort() { return port; }
+    public void setPort(int port) { this.port = port; }
+
+    public ExecutionMode getExecutionMode() { return executionMode; }
+    public void setExecutionMode(ExecutionMode executionMode) { this.executionMode = executionMode; }
+
+    public TransportType getTransportType() { return transportType; }
+    public void setTransportType(TransportType transportType) { this.transportType = transportType; }
+
+    public int getBufferPoolSize() { return bufferPoolSize; }
+    public void setBufferPoolSize(int bufferPoolSize) {
+        if(bufferPoolSize < 1){
+            throw new IllegalArgumentException("The buffer pool size must be positive");
+        }
+        this.bufferPoolSize = bufferPoolSize;
+    }
+
+    public int getReceiverThreads() { return receiverThreads; }
+    public void setReceiverThreads(int receiverThreads) {
+        if(receiverThreads < 1){
+            throw new IllegalArgumentException("At least one receiver thread is required");
+        }
+        this.receiverThreads = receiverThreads;
+    }
+
+    public int getWorkerThreads() { return workerThreads; }
+    public void setWorkerThreads(int workerThreads) {
+        if(workerThreads < 1){
+            throw new IllegalArgumentException("At least one worker thread is required");
+        }
+        this.workerThreads = workerThreads;
+    }
+
+    public int getWorkerQueueCapacity() { return workerQueueCapacity; }
+    public void setWorkerQueueCapacity(int workerQueueCapacity) {
+        if(workerQueueCapacity < 1){
+            throw new IllegalArgumentException("The worker queue capacity must be positive");
+        }
+        this.workerQueueCapacity = workerQueueCapacity;
+    }
+
+    public int getShards() { return shards; }
+    public void setShards(int shards) {
+        if(shards < 1){
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = shards;
+    }
+
+    public int getPipelineLanes() { return pipelineLanes; }
+    public void setPipelineLanes(int pipelineLanes) {
+        if(pipelineLanes < 1){
+            throw new IllegalArgumentException("At least one pipeline lane is required");
+        }
+        this.pipelineLanes = pipelineLanes;
+    }
+
+    public int getPipelineDepth() { return pipelineDepth; }
+    public void setPipelineDepth(int pipelineDepth) {
+        if(pipelineDepth < 2 || Integer.bitCount(pipelineDepth) != 1){
+            throw new IllegalArgumentException("The pipeline depth must be a power of two");
+        }
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    public int getPipelineBatch() { return pipelineBatch; }
+    public void setPipelineBatch(int pipelineBatch) {
+        if(pipelineBatch < 1){
+            throw new IllegalArgumentException("The pipeline batch must be positive");
+        }
+        this.pipelineBatch = pipelineBatch;
+    }
+
+    public boolean isPipelineSpin() { return pipelineSpin; }
+    public void setPipelineSpin(boolean pipelineSpin) { this.pipelineSpin = pipelineSpin; }
+
+    public int getMaxInFlight() { return maxInFlight; }
+    public void setMaxInFlight(int maxInFlight) {
+        if(maxInFlight < 0){
+            throw new IllegalArgumentException("The maximum number of requests in flight cannot be negative");
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getNasRateLimit() { return nasRateLimit; }
+    public void setNasRateLimit(int nasRateLimit) {
+        if(nasRateLimit < 0){
+            throw new IllegalArgumentException("The NAS rate limit cannot be negative");
+        }
+        this.nasRateLimit = nasRateLimit;
+    }
+
+    public int getNasBurst() { return nasBurst; }
+    public void setNasBurst(int nasBurst) {
+        if(nasBurst < 1){
+            throw new IllegalArgumentException("The NAS burst must be positive");
+        }
+        this.nasBurst = nasBurst;
+    }
+
+    public int getRequestDeadlineMillis() { return requestDeadlineMillis; }
+    public void setRequestDeadlineMillis(int requestDeadlineMillis) {
+        if(requestDeadlineMillis < 0){
+            throw new IllegalArgumentException("The request deadline cannot be negative");
+        }
+        this.requestDeadlineMillis = requestDeadlineMillis;
+    }
+
+    public int getLockoutTableSize() { return lockoutTableSize; }
+    public void setLockoutTableSize(int lockoutTableSize) {
+        if(lockoutTableSize < 0){
+            throw new IllegalArgumentException("The lockout table size cannot be negative");
+        }
+        this.lockoutTableSize = lockoutTableSize;
+    }
+
+    public int getLockoutUserThreshold() { return lockoutUserThreshold; }
+    public void setLockoutUserThreshold(int lockoutUserThreshold) {
+        if(lockoutUserThreshold < 0){
+            throw new IllegalArgumentException("The lockout threshold of users cannot be negative");
+        }
+        this.lockoutUserThreshold = lockoutUserThreshold;
+    }
+
+    public int getLockoutStationThreshold() { return lockoutStationThreshold; }
+    public void setLockoutStationThreshold(int lockoutStationThreshold) {
+        if(lockoutStationThreshold < 0){
+            throw new IllegalArgumentException("The lockout threshold of calling stations cannot be negative");
+        }
+        this.lockoutStationThreshold = lockoutStationThreshold;
+    }
+
+    public int getLockoutWindowSeconds() { return lockoutWindowSeconds; }
+    public void setLockoutWindowSeconds(int lockoutWindowSeconds) {
+        if(lockoutWindowSeconds < 1){
+            throw new IllegalArgumentException("The lockout window must be positive");
+        }
+        this.lockoutWindowSeconds = lockoutWindowSeconds;
+    }
+
+    public int getLockoutDurationSeconds() { return lockoutDurationSeconds; }
+    public void setLockoutDurationSeconds(int lockoutDurationSeconds) {
+        if(lockoutDurationSeconds < 1){
+            throw new IllegalArgumentException("The lockout duration must be positive");
+        }
+        this.lockoutDurationSeconds = lockoutDurationSeconds;
+    }
+
+    public int getDuplicateCacheSize() { return duplicateCacheSize; }
+    public void setDuplicateCacheSize(int duplicateCacheSize) {
+        if(duplicateCacheSize < 0){
+            throw new IllegalArgumentException("The duplicate cache size cannot be negative");
+        }
+        this.duplicateCacheSize = duplicateCacheSize;
+    }
+
+    public int getDuplicateCacheTtlSeconds() { return duplicateCacheTtlSeconds; }
+    public void setDuplicateCacheTtlSeconds(int duplicateCacheTtlSeconds) {
+        if(duplicateCacheTtlSeconds < 1){
+            throw new IllegalArgumentException("The duplicate cache TTL must be positive");
+        }
+        this.duplicateCacheTtlSeconds = duplicateCacheTtlSeconds;
+    }
+
+    public int getQueueReportIntervalSeconds() { return queueReportIntervalSeconds; }
+    public void setQueueReportIntervalSeconds(int queueReportIntervalSeconds) {
+        this.queueReportIntervalSeconds = queueReportIntervalSeconds;
+    }
+
+    public String getClientsFile() { return clientsFile; }
+    public void setClientsFile(String clientsFile) { this.clientsFile = clientsFile; }
+
+    public String getUsersFile() { return usersFile; }
+    public void setUsersFile(String usersFile) { this.usersFile = usersFile; }
+
+    public UserStoreType getUserStoreType() { return userStoreType; }
+    public void setUserStoreType(UserStoreType userStoreType) { this.userStoreType = userStoreType; }
+
+    public String getUserDatabaseFile() { return userDatabaseFile; }
+    public void setUserDatabaseFile(String userDatabaseFile) { this.userDatabaseFile = userDatabaseFile; }
+
+    public CredentialBackendType getCredentialBackendType() { return credentialBackendType; }
+    public void setCredentialBackendType(CredentialBackendType credentialBackendType) {
+        this.credentialBackendType = credentialBackendType;
+    }
+
+    public int getMaxPendingAuthentications() { return maxPendingAuthentications; }
+    public void setMaxPendingAuthentications(int maxPendingAuthentications) {
+        if(maxPendingAuthentications < 0){
+            throw new IllegalArgumentException("The maximum number of pending authentications cannot be negative");
+        }
+        this.maxPendingAuthentications = maxPendingAuthentications;
+    }
+
+    public int getBackendLatencyMillis() { return backendLatencyMillis; }
+    public void setBackendLatencyMillis(int backendLatencyMillis) {
+        if(backendLatencyMillis < 0){
+            throw new IllegalArgumentException("The backend latency cannot be negative");
+        }
+        this.backendLatencyMillis = backendLatencyMillis;
+    }
+
+    public int getBackendThreads() { return backendThreads; }
+    public void setBackendThreads(int backendThreads) {
+        if(backendThreads < 1){
+            throw new IllegalArgumentException("At least one backend thread is required");
+        }
+        this.backendThreads = backendThreads;
+    }
+
+    public int getBackendTimeoutMillis() { return backendTimeoutMillis; }
+    public void setBackendTimeoutMillis(int backendTimeoutMillis) {
+        if(backendTimeoutMillis < 1){
+            throw new IllegalArgumentException("The backend timeout must be positive");
+        }
+        this.backendTimeoutMillis = backendTimeoutMillis;
+    }
+
+    public int getCredentialCacheSize() { return credentialCacheSize; }
+    public void setCredentialCacheSize(int credentialCacheSize) {
+        if(credentialCacheSize < 1){
+            throw new IllegalArgumentException("The credential cache size must be positive");
+        }
+        this.credentialCacheSize = credentialCacheSize;
+    }
+
+    public int getCredentialCacheTtlSeconds() { return credentialCacheTtlSeconds; }
+    public void setCredentialCacheTtlSeconds(int credentialCacheTtlSeconds) {
+        if(credentialCacheTtlSeconds < 1){
+            throw new IllegalArgumentException("The credential cache TTL must be positive");
+        }
+        this.credentialCacheTtlSeconds = credentialCacheTtlSeconds;
+    }
+
+    public int getCredentialCacheNegativeTtlSeconds() { return credentialCacheNegativeTtlSeconds; }
+    public void setCredentialCacheNegativeTtlSeconds(int credentialCacheNegativeTtlSeconds) {
+        if(credentialCacheNegativeTtlSeconds < 0){
+            throw new IllegalArgumentException("The credential cache negative TTL cannot be negative");
+        }
+        this.credentialCacheNegativeTtlSeconds = credentialCacheNegativeTtlSeconds;
+    }
+
+    public List<String> getBackendClientRanges() { return backendClientRanges; }
+    public void setBackendClientRanges(List<String> backendClientRanges) {
+        // Every range is parsed as the user manager will, so an invalid one fails at startup
+        PrefixTrie<Boolean> ranges = new PrefixTrie<>();
+        for(String range: backendClientRanges){
+            ranges.add(range, Boolean.TRUE);
+        }
+        this.backendClientRanges = backendClientRanges;
+    }
+
+    public double getCredentialCacheRefreshAhead() { return credentialCacheRefreshAhead; }
+    public void setCredentialCacheRefreshAhead(double credentialCacheRefreshAhead) {
+        if(credentialCacheRefreshAhead < 0 || credentialCacheRefreshAhead >= 1){
+            throw new IllegalArgumentException("The refresh-ahead fraction must be at least 0 and less than 1");
+        }
+        this.credentialCacheRefreshAhead = credentialCacheRefreshAhead;
+    }
+
+    public int getUserDatabaseReloadSeconds() { return userDatabaseReloadSeconds; }
+    public void setUserDatabaseReloadSeconds(int userDatabaseReloadSeconds) {
+        if(userDatabaseReloadSeconds < 0){
+            throw new IllegalArgumentException("The user database reload interval cannot be negative");
+        }
+        this.userDatabaseReloadSeconds = userDatabaseReloadSeconds;
+    }
+
+    public String getReplyProfilesFile() { return replyProfilesFile; }
+    public void setReplyProfilesFile(String replyProfilesFile) { this.replyProfilesFile = replyProfilesFile; }
+
+    public int getReplyProfilesReloadSeconds() { return replyProfilesReloadSeconds; }
+    public void setReplyProfilesReloadSeconds(int replyProfilesReloadSeconds) {
+        if(replyProfilesReloadSeconds < 0){
+            throw new IllegalArgumentException("The reply profiles reload interval cannot be negative");
+        }
+        this.replyProfilesReloadSeconds = replyProfilesReloadSeconds;
+    }
+
+    public LogLevel getLogLevel() { return logLevel; }
+    public void setLogLevel(LogLevel logLevel) { this.logLevel = logLevel; }
+
+    public int getLogRateLimit() { return logRateLimit; }
+    public void setLogRateLimit(int logRateLimit) {
+        if(logRateLimit < 0){
+            throw new IllegalArgumentException("The log rate limit cannot be negative");
+        }
+        this.logRateLimit = logRateLimit;
+    }
+
+    public Map<LogEvent, Integer> getLogSampling() { return logSampling; }
+    public void setLogSampling(Map<LogEvent, Integer> logSampling) { this.logSampling = logSampling; }
+
+    public int getLogBufferSize() { return logBufferSize; }
+    public void setLogBufferSize(int logBufferSize) {
+        if(logBufferSize < 1){
+            throw new IllegalArgumentException("The log buffer size must be positive");
+        }
+        this.logBufferSize = logBufferSize;
+    }
+
+    public String getAccountingLogFile() { return accountingLogFile; }
+    public void setAccountingLogFile(String accountingLogFile) { this.accountingLogFile = accountingLogFile; }
+
+    public int getAccountingBatchBytes() { return accountingBatchBytes; }
+    public void setAccountingBatchBytes(int accountingBatchBytes) {
+        if(accountingBatchBytes < 8192){
+            throw new IllegalArgumentException("The accounting batch size must be at least 8192 bytes");
+        }
+        this.accountingBatchBytes = accountingBatchBytes;
+    }
+
+    public int getAccountingSessions() { return accountingSessions; }
+    public void setAccountingSessions(int accountingSessions) {
+        if(accountingSessions < 0){
+            throw new IllegalArgumentException("The number of accounting sessions cannot be negative");
+        }
+        this.accountingSessions = accountingSessions;
+    }
+
+    public int getAccountingIdleTimeoutSeconds() { return accountingIdleTimeoutSeconds; }
+    public void setAccountingIdleTimeoutSeconds(int accountingIdleTimeoutSeconds) {
+        if(accountingIdleTimeoutSeconds < 1){
+            throw new IllegalArgumentException("The accounting idle timeout must be positive");
+        }
+        this.accountingIdleTimeoutSeconds = accountingIdleTimeoutSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "port=" + port +
+                ", executionMode=" + executionMode +
+                ", transportType=" + transportType +
+                ", receiverThreads=" + receiverThreads +
+                ", workerThreads=" + workerThreads +
+                ", workerQueueCapacity=" + workerQueueCapacity +
+                ", shards=" + shards +
+                ", maxInFlight=" + maxInFlight +
+                ", nasRateLimit=" + nasRateLimit +
+                ", duplicateCacheSize=" + duplicateCacheSize +
+                ", logLevel=" + logLevel +
+                ", accountingLogFile=" + accountingLogFile +
+                ']';
+    }
+}
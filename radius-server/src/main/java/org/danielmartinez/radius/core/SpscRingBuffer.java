@@ -0,0 +1,175 @@
+package org.danielmartinez.radius.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements a bounded single-producer/single-consumer queue over a ring of slots. Only one thread may
+ * offer elements and only one thread may take them. Neither side takes locks: the producer publishes an element by
+ * advancing the tail with a volatile write, and the consumer frees a slot by advancing the head with an ordered
+ * write. Each side keeps a cached copy of the other side's index, so it only reads the shared index when the cached
+ * one says the ring is full or empty. The consumer can take elements in batches, with a single update of the head.
+ * A consumer without work spins for a while and then parks; the producer wakes it up when it publishes an element
+ * @param <E> Type of the elements
+ */
+public class SpscRingBuffer<E> {
+
+    /**
+     * Positions of the head and the tail in the indexes array, 128 bytes apart from each other and from the array
+     * header, so the producer and the consumer do not write the same cache line
+     */
+    private static final int HEAD = 16;
+    private static final int TAIL = 32;
+
+    private final Object[] elements;
+
+    private final int mask;
+
+    /**
+     * Head (next element to take) and tail (next slot to fill), as counters that never wrap around
+     */
+    private final AtomicLongArray indexes = new AtomicLongArray(48);
+
+    /**
+     * Last head seen by the producer
+     */
+    private long producerHead;
+
+    /**
+     * Last tail seen by the consumer
+     */
+    private long consumerTail;
+
+    private volatile Thread consumer;
+
+    private volatile boolean consumerParked;
+
+    // Constructor
+    public SpscRingBuffer(int capacity) {
+        if(capacity < 2 || Integer.bitCount(capacity) != 1){
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * This method adds an element. Only the producer thread may call it
+     * @param element The element
+     * @return Boolean: True if added, false if the ring is full
+     */
+    public boolean offer(E element){
+        long tail = indexes.getPlain(TAIL);
+        if(tail - producerHead > mask){
+            producerHead = indexes.getAcquire(HEAD);
+            if(tail - producerHead > mask){
+                return false;
+            }
+        }
+        elements[(int) tail & mask] = element;
+        // A volatile write, so it is ordered before the read of the parked flag: either the producer sees the flag
+        // or the consumer sees the element when it checks the ring again before parking
+        indexes.set(TAIL, tail + 1);
+        if(consumerParked){
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * This method adds an element, spinning while the ring is full. Only the producer thread may call it
+     * @param element The element
+     */
+    public void put(E element){
+        while(!offer(element)){
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * This method takes the oldest element. Only the consumer thread may call it
+     * @return The element, or null if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll(){
+        long head = indexes.getPlain(HEAD);
+        if(head == consumerTail){
+            consumerTail = indexes.getAcquire(TAIL);
+            if(head == consumerTail){
+                return null;
+            }
+        }
+        int slot = (int) head & mask;
+        E element = (E) elements[slot];
+        elements[slot] = null;
+        indexes.setRelease(HEAD, head + 1);
+        return element;
+    }
+
+    /**
+     * This method takes the oldest elements, up to a maximum. Only the consumer thread may call it
+     * @param batch Array where the elements are copied, starting at index 0
+     * @param max Maximum number of elements to take
+     * @return The number of elements taken
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(E[] batch, int max){
+        long head = indexes.getPlain(HEAD);
+        if(consumerTail - head < max){
+            consumerTail = indexes.getAcquire(TAIL);
+        }
+        int count = (int) Math.min(max, consumerTail - head);
+        for(int i = 0; i < count; i++){
+            int slot = (int) (head + i) & mask;
+            batch[i] = (E) elements[slot];
+            elements[slot] = null;
+        }
+        if(count > 0){
+            indexes.setRelease(HEAD, head + count);
+        }
+        return count;
+    }
+
+    /**
+     * This method waits until the ring has elements, or until the maximum wait expires. Only the consumer thread
+     * may call it
+     * @param spins Checks made with Thread.onSpinWait() before parking
+     * @param parkNanos Maximum time parked. The producer wakes the consumer up earlier when it adds an element
+     */
+    public void await(int spins, long parkNanos){
+        for(int i = 0; i < spins; i++){
+            if(!isEmpty()){
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        if(parkNanos <= 0){
+            return;
+        }
+        consumer = Thread.currentThread();
+        consumerParked = true;
+        // The ring is checked again after announcing the park, with a volatile read ordered after the flag, so an
+        // element added meanwhile is either seen here or its producer sees the flag and unparks this thread
+        if(indexes.get(TAIL) == indexes.getPlain(HEAD)){
+            LockSupport.parkNanos(this, parkNanos);
+        }
+        consumerParked = false;
+    }
+
+    private boolean isEmpty(){
+        return indexes.getAcquire(TAIL) == indexes.getPlain(HEAD);
+    }
+
+    /**
+     * This method returns the number of elements in the ring. It can be called by any thread, and the value may
+     * be stale by the time it is returned
+     * @return The number of elements
+     */
+    public int size(){
+        long head = indexes.get(HEAD);
+        long tail = indexes.get(TAIL);
+        return (int) Math.max(0, Math.min(tail - head, elements.length));
+    }
+
+    public int capacity() { return elements.length; }
+}
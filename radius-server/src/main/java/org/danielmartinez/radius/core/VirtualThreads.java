@@ -0,0 +1,33 @@
+package org.danielmartinez.radius.core;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * This class creates the executor of the VIRTUAL_THREADS mode, which processes every request on a virtual thread of
+ * its own. Virtual threads need Java 21: this is the version of the class for older runtimes, which have none, and
+ * the jar carries the version for Java 21 and later in META-INF/versions/21 (multi-release jar). Classes loaded from
+ * a directory instead of the jar always get this version
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * This method checks if the runtime supports virtual threads
+     * @return Boolean: True if newThreadPerTaskExecutor() can be called
+     */
+    public static boolean isSupported(){
+        return false;
+    }
+
+    /**
+     * This method creates an executor that starts a new virtual thread for every task
+     * @param name: Prefix of the names of the threads, followed by a counter
+     * @return ExecutorService: The executor
+     * @throws UnsupportedOperationException Always, since the runtime has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name){
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+}
@@ -0,0 +1,131 @@
+package org.danielmartinez.radius.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.danielmartinez.radius.logging.LogEvent;
+import org.danielmartinez.radius.logging.RadiusLogger;
+import org.danielmartinez.radius.transport.ReceivedDatagram;
+
+/**
+ * This class implements a pool of worker threads that process the datagrams handed over by the receiver threads.
+ * Every worker owns a bounded queue, and datagrams are assigned to a worker by their source address and port.
+ * Thus, all the packets sent by the same RADIUS Client are processed in arrival order, so a retransmission is never
+ * processed before the original request with the same Identifier (RFC 2865, section 3)
+ */
+public class WorkerPool {
+    /**
+     * One bounded queue per worker thread
+     */
+    private final BlockingQueue<ReceivedDatagram>[] queues;
+
+    /**
+     * Worker threads
+     */
+    private final Thread[] workers;
+
+    /**
+     * Processing logic applied to every datagram
+     */
+    private final Consumer<ReceivedDatagram> handler;
+
+    /**
+     * Number of datagrams dropped because the queue of their worker was full
+     */
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    // Constructor
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WorkerPool(int workerThreads, int queueCapacity, Consumer<ReceivedDatagram> handler) {
+        this.queues = new BlockingQueue[workerThreads];
+        this.workers = new Thread[workerThreads];
+        this.handler = handler;
+
+        for(int i = 0; i < workerThreads; i++){
+            BlockingQueue<ReceivedDatagram> queue = new ArrayBlockingQueue<>(queueCapacity);
+            queues[i] = queue;
+            workers[i] = new Thread(() -> work(queue), "radius-worker-" + i);
+            workers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * This method starts all the worker threads
+     */
+    public void start(){
+        for(Thread worker: workers){
+            worker.start();
+        }
+    }
+
+    /**
+     * This method stops all the worker threads. The datagrams still queued are discarded
+     */
+    public void stop(){
+        running = false;
+        for(Thread worker: workers){
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * This method hands a datagram over to the worker assigned to its source. It never blocks the receiver thread
+     * @param datagram: The received datagram
+     * @return Boolean: True if queued, false if dropped because the worker queue is full
+     */
+    public boolean submit(ReceivedDatagram datagram){
+        int worker = (datagram.sourceHash() & Integer.MAX_VALUE) % queues.length;
+        if(queues[worker].offer(datagram)){
+            return true;
+        }
+        droppedDatagrams.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * This method returns the number of datagrams waiting to be processed in all the queues
+     * @return The total queue depth
+     */
+    public int getQueueDepth(){
+        int depth = 0;
+        for(BlockingQueue<ReceivedDatagram> queue: queues){
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * This method returns the number of datagrams waiting in the queue of each worker
+     * @return The queue depth of every worker
+     */
+    public int[] getQueueDepthPerWorker(){
+        int[] depths = new int[queues.length];
+        for(int i = 0; i < queues.length; i++){
+            depths[i] = queues[i].size();
+        }
+        return depths;
+    }
+
+    public long getDroppedDatagrams() { return droppedDatagrams.get(); }
+
+    /**
+     * This method contains the loop executed by every worker thread
+     * @param queue: The queue owned by the worker
+     */
+    private void work(BlockingQueue<ReceivedDatagram> queue){
+        while(running){
+            try {
+                handler.accept(queue.take());
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e){
+                RadiusLogger.get().log(LogEvent.RUNTIME_ERROR, e.getMessage());
+            }
+        }
+    }
+}
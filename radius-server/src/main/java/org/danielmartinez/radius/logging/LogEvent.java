@@ -0,0 +1,54 @@
+package org.danielmartinez.radius.logging;
+
+/**
+ * This enum lists the events logged by the server. Every event has a fixed level, and sampling and rate limits are
+ * applied per event
+ */
+public enum LogEvent {
+    SERVER_STARTED(LogLevel.INFO, "port"),
+    CLIENTS_LOADED(LogLevel.INFO, "clients"),
+    USERS_LOADED(LogLevel.INFO, "users"),
+    USER_DATABASE_LOADED(LogLevel.INFO, "generation"),
+    REPLY_PROFILES_LOADED(LogLevel.INFO, "users"),
+    WORKER_POOL_STARTED(LogLevel.INFO, "workers"),
+    PIPELINE_STARTED(LogLevel.INFO, "lanes"),
+    SHARDS_STARTED(LogLevel.INFO, "shards"),
+    VIRTUAL_THREADS_STARTED(LogLevel.INFO, "receivers"),
+    QUEUE_REPORT(LogLevel.INFO, "depth"),
+    PACKET_RECEIVED(LogLevel.DEBUG, null),
+    RESPONSE_SENT(LogLevel.DEBUG, null),
+    DUPLICATE_REPLAYED(LogLevel.DEBUG, null),
+    ACCESS_ACCEPT(LogLevel.INFO, null),
+    ACCESS_REJECT(LogLevel.INFO, null),
+    STATUS_SERVER(LogLevel.INFO, null),
+    ACCOUNTING_REQUEST(LogLevel.DEBUG, "status_type"),
+    PACKET_DISCARDED(LogLevel.WARN, null),
+    QUEUE_FULL(LogLevel.WARN, "depth"),
+    PACKET_SHED(LogLevel.WARN, null),
+    LOG_SUPPRESSED(LogLevel.WARN, "dropped"),
+    IO_ERROR(LogLevel.ERROR, null),
+    RUNTIME_ERROR(LogLevel.ERROR, null);
+
+    private final LogLevel level;
+
+    private final String key;
+
+    /**
+     * Name of the numeric value of the event in the output
+     */
+    private final String valueKey;
+
+    // Constructor
+    LogEvent(LogLevel level, String valueKey) {
+        this.level = level;
+        this.key = name().toLowerCase();
+        this.valueKey = valueKey == null ? "value" : valueKey;
+    }
+
+    // Getters
+    public LogLevel getLevel() { return level; }
+
+    public String getKey() { return key; }
+
+    public String getValueKey() { return valueKey; }
+}
@@ -0,0 +1,13 @@
+package org.danielmartinez.radius.logging;
+
+/**
+ * Severity levels of the log events, from the most to the least verbose
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    // Disables the log
+    OFF
+}
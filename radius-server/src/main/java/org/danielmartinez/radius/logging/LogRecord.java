@@ -0,0 +1,53 @@
+package org.danielmartinez.radius.logging;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Slot of the ring buffer of the logger. Slots are allocated once and reused, the fields are written by the thread
+ * that logs the event and read by the writer thread once the slot is published
+ */
+final class LogRecord {
+
+    /**
+     * Maximum number of attribute types kept in a packet summary
+     */
+    static final int MAX_ATTRIBUTES = 32;
+
+    /**
+     * Sequence of the record stored in the slot. The slot is readable when it equals the sequence of the reader
+     */
+    volatile long sequence;
+
+    long timeMillis;
+    LogEvent event;
+    String thread;
+    InetSocketAddress source;
+    String detail;
+    long value;
+    boolean hasValue;
+
+    // Packet summary. Only the header and the attribute types are kept, never the attribute values
+    boolean hasPacket;
+    int code;
+    int identifier;
+    int length;
+    int attributeCount;
+    final byte[] attributeTypes = new byte[MAX_ATTRIBUTES];
+
+    // Constructor
+    LogRecord(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * This method removes the references held by the record, so they can be garbage collected
+     */
+    void clear(){
+        event = null;
+        thread = null;
+        source = null;
+        detail = null;
+        hasValue = false;
+        hasPacket = false;
+    }
+}
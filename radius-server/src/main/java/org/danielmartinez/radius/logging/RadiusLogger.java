@@ -0,0 +1,463 @@
+package org.danielmartinez.radius.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements the log of the server. Threads that log an event only fill a preallocated slot of a
+ * lock-free ring buffer, and a background thread formats and writes the events, so the packet path never waits for
+ * the console.
+ * Every event goes through three filters before it takes a slot: the minimum level, a sampling rate (one event out of
+ * every N) and a rate limit (maximum events per second). Events that do not pass them cost a few comparisons and
+ * counter updates. When the ring buffer is full the event is dropped instead of blocking the caller; dropped and
+ * rate limited events are reported periodically.
+ * Packets are summarized by their header and attribute types, which are formatted by the writer thread. Attribute
+ * values are never logged, so credentials do not reach the log
+ */
+public class RadiusLogger {
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Logger of the process
+     */
+    private static volatile RadiusLogger instance;
+
+    /**
+     * Sampling and rate limit state of an event
+     */
+    private static final class EventPolicy {
+        final int sampleEvery;
+        final AtomicLong occurrences = new AtomicLong();
+        volatile long windowSecond;
+        final AtomicInteger windowCount = new AtomicInteger();
+
+        EventPolicy(int sampleEvery) {
+            this.sampleEvery = sampleEvery;
+        }
+    }
+
+    private final LogLevel level;
+
+    private final int rateLimitPerSecond;
+
+    private final EventPolicy[] policies;
+
+    private final LogRecord[] ring;
+
+    private final int mask;
+
+    /**
+     * Next sequence to be claimed by a producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next sequence to be read by the writer thread. Only the writer thread updates it
+     */
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder rateLimited = new LongAdder();
+
+    private final Writer output;
+
+    private final Thread writer;
+
+    private volatile boolean closing;
+
+    // Constructor
+    public RadiusLogger(LogLevel level, int bufferSize, int rateLimitPerSecond, Map<LogEvent, Integer> sampling,
+                        OutputStream output) {
+        if(bufferSize < 1){
+            throw new IllegalArgumentException("The log buffer size must be positive");
+        }
+        this.level = level;
+        this.rateLimitPerSecond = rateLimitPerSecond;
+
+        this.policies = new EventPolicy[LogEvent.values().length];
+        for(LogEvent event: LogEvent.values()){
+            policies[event.ordinal()] = new EventPolicy(Math.max(1, sampling.getOrDefault(event, 1)));
+        }
+
+        int capacity = Integer.highestOneBit(bufferSize - 1) << 1;
+        this.ring = new LogRecord[Math.max(2, capacity)];
+        this.mask = ring.length - 1;
+        for(int i = 0; i < ring.length; i++){
+            ring[i] = new LogRecord(i);
+        }
+
+        this.output = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16);
+        this.writer = new Thread(this::write, "radius-log-writer");
+        this.writer.setDaemon(true);
+        if(level != LogLevel.OFF){
+            this.writer.start();
+        }
+    }
+
+    /**
+     * This method returns the logger of the process. Until one is configured, events of level INFO and above are
+     * written to the standard output
+     * @return The logger
+     */
+    public static RadiusLogger get(){
+        RadiusLogger logger = instance;
+        if(logger == null){
+            synchronized (RadiusLogger.class){
+                if(instance == null){
+                    install(new RadiusLogger(LogLevel.INFO, 8192, 1000, Map.of(), System.out));
+                }
+                logger = instance;
+            }
+        }
+        return logger;
+    }
+
+    /**
+     * This method replaces the logger of the process. The events pending in the previous logger are written first
+     * @param logger The new logger
+     */
+    public static synchronized void install(RadiusLogger logger){
+        RadiusLogger previous = instance;
+        instance = logger;
+        if(previous != null){
+            previous.close();
+        } else {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> instance.close(), "radius-log-shutdown"));
+        }
+    }
+
+    /**
+     * This method parses a list of sampling rates in the format event1:N,event2:M. Each listed event is logged once
+     * every N occurrences
+     * @param value The list of sampling rates
+     * @return The sampling rate of every listed event
+     */
+    public static Map<LogEvent, Integer> parseSampling(String value){
+        Map<LogEvent, Integer> sampling = new EnumMap<>(LogEvent.class);
+        if(value == null || value.isEmpty()){
+            return sampling;
+        }
+        for(String entry: value.split(",")){
+            int separator = entry.indexOf(':');
+            if(separator < 1){
+                throw new IllegalArgumentException("Invalid log sampling: " + entry);
+            }
+            int rate = Integer.parseInt(entry.substring(separator + 1));
+            if(rate < 1){
+                throw new IllegalArgumentException("The log sampling rate must be positive: " + entry);
+            }
+            sampling.put(LogEvent.valueOf(entry.substring(0, separator).trim().toUpperCase()), rate);
+        }
+        return sampling;
+    }
+
+    /**
+     * This method checks the level of an event, without applying sampling or rate limits. It allows callers to skip
+     * building the details of disabled events
+     * @param event The event
+     * @return Boolean: True if events of its level are logged
+     */
+    public boolean isEnabled(LogEvent event){
+        return event.getLevel().compareTo(level) >= 0 && level != LogLevel.OFF;
+    }
+
+    /**
+     * This method logs an event
+     * @param event The event
+     * @param detail Description of the event, may be null
+     */
+    public void log(LogEvent event, String detail){
+        LogRecord record = claim(event);
+        if(record != null){
+            record.detail = detail;
+            publish(record);
+        }
+    }
+
+    /**
+     * This method logs an event with a numeric value
+     * @param event The event
+     * @param detail Description of the event, may be null
+     * @param value Value of the event, written with the value key of the event
+     */
+    public void log(LogEvent event, String detail, long value){
+        LogRecord record = claim(event);
+        if(record != null){
+            record.detail = detail;
+            record.value = value;
+            record.hasValue = true;
+            publish(record);
+        }
+    }
+
+    /**
+     * This method logs an event related to a RADIUS Client
+     * @param event The event
+     * @param source Address and port of the client
+     * @param detail Description of the event, may be null
+     */
+    public void log(LogEvent event, InetSocketAddress source, String detail){
+        LogRecord record = claim(event);
+        if(record != null){
+            record.source = source;
+            record.detail = detail;
+            publish(record);
+        }
+    }
+
+    /**
+     * This method logs an event related to a RADIUS Client with a numeric value
+     * @param event The event
+     * @param source Address and port of the client
+     * @param detail Description of the event, may be null
+     * @param value Value of the event, written with the value key of the event
+     */
+    public void log(LogEvent event, InetSocketAddress source, String detail, long value){
+        LogRecord record = claim(event);
+        if(record != null){
+            record.source = source;
+            record.detail = detail;
+            record.value = value;
+            record.hasValue = true;
+            publish(record);
+        }
+    }
+
+    /**
+     * This method logs an event related to a RADIUS packet. The header and the attribute types of the packet are
+     * copied, so the buffer can be reused as soon as the method returns
+     * @param event The event
+     * @param source Address and port of the client
+     * @param packet Buffer that holds the packet, starting at its position
+     * @param detail Description of the event, may be null
+     */
+    public void logPacket(LogEvent event, InetSocketAddress source, ByteBuffer packet, String detail){
+        LogRecord record = claim(event);
+        if(record == null){
+            return;
+        }
+        record.source = source;
+        record.detail = detail;
+        summarize(record, packet);
+        publish(record);
+    }
+
+    /**
+     * This method applies the level, sampling and rate limit of an event and, if it passes them, claims a slot of
+     * the ring buffer
+     * @param event The event
+     * @return The slot where the event is written, or null if the event is not logged
+     */
+    private LogRecord claim(LogEvent event){
+        if(!isEnabled(event)){
+            return null;
+        }
+
+        EventPolicy policy = policies[event.ordinal()];
+        if(policy.sampleEvery > 1 && policy.occurrences.getAndIncrement() % policy.sampleEvery != 0){
+            return null;
+        }
+
+        if(rateLimitPerSecond > 0){
+            long second = System.nanoTime() / REPORT_INTERVAL_NANOS;
+            if(second != policy.windowSecond){
+                // Racing threads may reset the window more than once, which only lets a few more events through
+                policy.windowSecond = second;
+                policy.windowCount.set(0);
+            }
+            if(policy.windowCount.incrementAndGet() > rateLimitPerSecond){
+                rateLimited.increment();
+                return null;
+            }
+        }
+
+        // Bounded multi-producer queue: a slot can be claimed when its sequence equals the tail
+        while(true){
+            long sequence = tail.get();
+            LogRecord record = ring[(int) sequence & mask];
+            long available = record.sequence;
+            if(available == sequence){
+                if(tail.compareAndSet(sequence, sequence + 1)){
+                    record.timeMillis = System.currentTimeMillis();
+                    record.event = event;
+                    record.thread = Thread.currentThread().getName();
+                    return record;
+                }
+            } else if(available < sequence){
+                // The writer has not consumed this slot yet, the buffer is full
+                dropped.increment();
+                return null;
+            }
+        }
+    }
+
+    private void publish(LogRecord record){
+        record.sequence = record.sequence + 1;
+    }
+
+    private static void summarize(LogRecord record, ByteBuffer packet){
+        int start = packet.position();
+        int available = packet.limit() - start;
+        if(available < 4){
+            return;
+        }
+        record.hasPacket = true;
+        record.code = packet.get(start) & 0xFF;
+        record.identifier = packet.get(start + 1) & 0xFF;
+        record.length = packet.getShort(start + 2) & 0xFFFF;
+
+        int end = start + Math.min(record.length, available);
+        int count = 0;
+        for(int offset = start + 20; offset + 1 < end && count < LogRecord.MAX_ATTRIBUTES; count++){
+            int attributeLength = packet.get(offset + 1) & 0xFF;
+            if(attributeLength < 2){
+                break;
+            }
+            record.attributeTypes[count] = packet.get(offset);
+            offset += attributeLength;
+        }
+        record.attributeCount = count;
+    }
+
+    /**
+     * This method contains the loop of the writer thread
+     */
+    private void write(){
+        StringBuilder line = new StringBuilder(256);
+        long nextReport = System.nanoTime() + REPORT_INTERVAL_NANOS;
+        long reportedDropped = 0;
+        long reportedRateLimited = 0;
+
+        try {
+            while(true){
+                int written = drain(line);
+
+                if(System.nanoTime() - nextReport >= 0){
+                    nextReport = System.nanoTime() + REPORT_INTERVAL_NANOS;
+                    long currentDropped = dropped.sum();
+                    long currentRateLimited = rateLimited.sum();
+                    if(currentDropped != reportedDropped || currentRateLimited != reportedRateLimited){
+                        line.setLength(0);
+                        format(line, System.currentTimeMillis(), LogEvent.LOG_SUPPRESSED,
+                                Thread.currentThread().getName());
+                        line.append(" dropped=").append(currentDropped - reportedDropped)
+                                .append(" rate_limited=").append(currentRateLimited - reportedRateLimited)
+                                .append('\n');
+                        output.append(line);
+                        reportedDropped = currentDropped;
+                        reportedRateLimited = currentRateLimited;
+                    }
+                }
+
+                if(written == 0){
+                    output.flush();
+                    if(closing){
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e){
+            System.err.println("Log writer stopped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method writes the published records
+     * @param line Builder reused to format every record
+     * @return The number of records written
+     */
+    private int drain(StringBuilder line) throws IOException {
+        int written = 0;
+        while(true){
+            LogRecord record = ring[(int) head & mask];
+            if(record.sequence != head + 1){
+                return written;
+            }
+
+            line.setLength(0);
+            format(line, record);
+            output.append(line);
+
+            record.clear();
+            record.sequence = head + ring.length;
+            head++;
+            written++;
+        }
+    }
+
+    private static void format(StringBuilder line, LogRecord record){
+        format(line, record.timeMillis, record.event, record.thread);
+        if(record.source != null){
+            line.append(" src=").append(record.source.getAddress().getHostAddress())
+                    .append(':').append(record.source.getPort());
+        }
+        if(record.hasPacket){
+            line.append(" code=").append(record.code)
+                    .append(" id=").append(record.identifier)
+                    .append(" len=").append(record.length)
+                    .append(" attrs=[");
+            for(int i = 0; i < record.attributeCount; i++){
+                if(i > 0){
+                    line.append(',');
+                }
+                line.append(record.attributeTypes[i] & 0xFF);
+            }
+            line.append(']');
+        }
+        if(record.hasValue){
+            line.append(' ').append(record.event.getValueKey()).append('=').append(record.value);
+        }
+        if(record.detail != null){
+            line.append(" msg=\"").append(record.detail.replace("\"", "'")).append('"');
+        }
+        line.append('\n');
+    }
+
+    private static void format(StringBuilder line, long timeMillis, LogEvent event, String thread){
+        line.append(Instant.ofEpochMilli(timeMillis))
+                .append(' ').append(event.getLevel())
+                .append(' ').append(event.getKey())
+                .append(" thread=").append(thread);
+    }
+
+    /**
+     * This method stops the writer thread once every published event has been written
+     */
+    public void close(){
+        closing = true;
+        if(writer.isAlive()){
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Getters
+    public LogLevel getLevel() { return level; }
+
+    public long getDroppedEvents() { return dropped.sum(); }
+
+    public long getRateLimitedEvents() { return rateLimited.sum(); }
+}
@@ -0,0 +1,74 @@
+package org.danielmartinez.radius.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the JMX view of the metrics of several servers added up, such as the shards that listen on the same
+ * port. The servers keep recording in metrics of their own, so nothing is shared while packets are processed, and
+ * the totals are only added up when they are read
+ */
+public class AggregatedMetrics implements ServerMetricsMXBean {
+
+    private final List<ServerMetrics> parts;
+
+    // Constructor
+    public AggregatedMetrics(List<ServerMetrics> parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * This method registers the metrics in the platform MBean server, with the same type as ServerMetrics
+     * @param name Value of the name key of the MBean, to tell apart several servers in the same process
+     */
+    public void register(String name){
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            mBeanServer.registerMBean(this,
+                    new ObjectName("org.danielmartinez.radius:type=ServerMetrics,name=" + ObjectName.quote(name)));
+        } catch (InstanceAlreadyExistsException e){
+            throw new IllegalStateException("Metrics are already registered for " + name, e);
+        } catch (JMException e){
+            throw new IllegalStateException("Metrics cannot be registered: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * This method adds up the metrics of the servers
+     * @return New metrics with the totals at the time of the call
+     */
+    public ServerMetrics sum(){
+        return ServerMetrics.sum(parts);
+    }
+
+    @Override
+    public Map<String, Long> getPacketsReceived() { return sum().getPacketsReceived(); }
+
+    @Override
+    public Map<String, Long> getResponsesSent() { return sum().getResponsesSent(); }
+
+    @Override
+    public Map<String, Long> getAccessRejects() { return sum().getAccessRejects(); }
+
+    @Override
+    public Map<String, Long> getPacketsDiscarded() { return sum().getPacketsDiscarded(); }
+
+    @Override
+    public Map<String, Double> getLatencies() { return sum().getLatencies(); }
+
+    @Override
+    public String getSummary() { return sum().getSummary(); }
+
+    // Getters
+    public List<ServerMetrics> getParts() { return parts; }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
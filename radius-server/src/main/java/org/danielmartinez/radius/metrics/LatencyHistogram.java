@@ -0,0 +1,184 @@
+package org.danielmartinez.radius.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class implements a latency histogram with log-linear buckets, in the style of HdrHistogram: every power of
+ * two is split into 32 buckets, so any recorded value is kept with a relative error below 3%. Values from 0 to about
+ * one minute (2^36 ns) are tracked, larger ones are counted in the last bucket.
+ * Recording does not allocate and does not take locks. The counts are striped by thread, so threads that record
+ * at the same time do not update the same cache lines
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bits of every value kept below its highest bit: 2^5 = 32 buckets per power of two
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Highest power of two that is tracked
+     */
+    private static final int MAX_EXPONENT = 36;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray[] stripes;
+
+    private final int stripeMask;
+
+    private final AtomicLong max = new AtomicLong();
+
+    // Constructor
+    public LatencyHistogram() {
+        int stripeCount = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+        this.stripes = new AtomicLongArray[stripeCount];
+        for(int i = 0; i < stripeCount; i++){
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * This method records a latency
+     * @param nanos The latency in nanoseconds. Negative values are recorded as 0
+     */
+    public void record(long nanos){
+        long value = Math.max(0, nanos);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        stripes[stripe].getAndIncrement(bucketOf(value));
+
+        long currentMax = max.get();
+        while(value > currentMax && !max.compareAndSet(currentMax, value)){
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * This method adds the values recorded in another histogram to this one, to aggregate the histograms of
+     * several servers. The values recorded in the other histogram meanwhile may be missed
+     * @param other The other histogram
+     */
+    public void add(LatencyHistogram other){
+        long[] counts = other.snapshot();
+        for(int i = 0; i < BUCKETS; i++){
+            if(counts[i] > 0){
+                stripes[0].getAndAdd(i, counts[i]);
+            }
+        }
+        long otherMax = other.getMax();
+        long currentMax = max.get();
+        while(otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)){
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * This method calculates the bucket of a value
+     * @param value The value
+     * @return The index of the bucket
+     */
+    static int bucketOf(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if(exponent > MAX_EXPONENT){
+            return BUCKETS - 1;
+        }
+        // The highest SUB_BUCKET_BITS + 1 bits of the value, in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+
+    /**
+     * This method calculates the highest value that falls in a bucket
+     * @param bucket The index of the bucket
+     * @return The highest value of the bucket
+     */
+    static long highestValueOf(int bucket){
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * This method adds the counts of every stripe
+     * @return The count of every bucket
+     */
+    private long[] snapshot(){
+        long[] counts = new long[BUCKETS];
+        for(AtomicLongArray stripe: stripes){
+            for(int i = 0; i < BUCKETS; i++){
+                counts[i] += stripe.get(i);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * This method returns the number of recorded values
+     * @return The number of recorded values
+     */
+    public long getCount(){
+        long count = 0;
+        for(long bucketCount: snapshot()){
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    /**
+     * This method calculates a percentile of the recorded values
+     * @param percentile The percentile, in the range [0 - 100]
+     * @return The value in nanoseconds below which the given percentage of values fall, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile){
+        long[] counts = snapshot();
+        long total = 0;
+        for(long count: counts){
+            total += count;
+        }
+        if(total == 0){
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+            if(seen >= rank){
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getMax() { return max.get(); }
+
+    /**
+     * This method summarizes the histogram, with the percentiles in microseconds
+     * @return The summary
+     */
+    @Override
+    public String toString() {
+        return "count=" + getCount() +
+                " p50=" + micros(getValueAtPercentile(50)) +
+                " p90=" + micros(getValueAtPercentile(90)) +
+                " p99=" + micros(getValueAtPercentile(99)) +
+                " p99.9=" + micros(getValueAtPercentile(99.9)) +
+                " max=" + micros(getMax());
+    }
+
+    private static String micros(long nanos){
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,357 @@
+package org.danielmartinez.radius.metrics;
+
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects the metrics of a RADIUS Server: packets received and responses sent per RADIUS Code,
+ * Access-Reject responses per reason, discarded packets per reason and the latency of every processing stage.
+ * Counters are LongAdder instances, which are striped internally, and latencies are recorded in LatencyHistogram
+ * instances, so recording does not allocate and does not take locks. Reasons are matched against the constants of
+ * RadiusConstants by reference first, so the usual case does not compare strings
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+    /**
+     * Processing stages with a latency histogram
+     */
+    public enum Stage {
+        // View of the packet over the received buffer, including the validation of its layout
+        PARSE,
+        // Password lookup and validation of the User-Password hash
+        AUTH,
+        // Encoding of the response and its Response Authenticator
+        ENCODE,
+        // Whole processing of a packet, from the client lookup to the encoded response
+        TOTAL
+    }
+
+    private static final String OTHER = "other";
+
+    private static final String[] REJECT_REASONS = {
+            RadiusConstants.ACCESS_REJECT_NO_PASSWORD,
+            RadiusConstants.ACCESS_REJECT_NO_USER_NAME,
+            RadiusConstants.ACCESS_REJECT_BAD_CREDENTIALS,
+            RadiusConstants.ACCESS_REJECT_UNKNOWN_USER_NAME,
+            RadiusConstants.ACCESS_REJECT_LOCKED_OUT
+    };
+
+    private static final String[] REJECT_KEYS = {
+            "no_password",
+            "no_user_name",
+            "bad_credentials",
+            "unknown_user_name",
+            "locked_out"
+    };
+
+    private static final String[] DISCARD_REASONS = {
+            RadiusConstants.ACCESS_REJECT_NO_SHARED_SECRET,
+            RadiusConstants.PACKET_DISCARDED_PACKET_LENGTH,
+            RadiusConstants.PACKET_DISCARDED_RADIUS_LENGTH_SHORT,
+            RadiusConstants.PACKET_DISCARDED_RADIUS_LENGTH_LONG,
+            RadiusConstants.PACKET_DISCARDED_RADIUS_CODE_WRONG,
+            RadiusConstants.PACKET_DISCARDED_RADIUS_CODE_UNKNOWN,
+            RadiusConstants.PACKET_DISCARDED_ATTRIBUTE_MALFORMED,
+            RadiusConstants.PACKET_DISCARDED_MESSAGE_AUTHENTICATOR,
+            RadiusConstants.PACKET_DISCARDED_QUEUE_FULL,
+            RadiusConstants.PACKET_DISCARDED_ACCOUNTING_AUTHENTICATOR,
+            RadiusConstants.PACKET_DISCARDED_ACCOUNTING_LOG,
+            RadiusConstants.PACKET_DISCARDED_OVERLOAD,
+            RadiusConstants.PACKET_DISCARDED_RATE_LIMIT,
+            RadiusConstants.PACKET_DISCARDED_DEADLINE,
+            RadiusConstants.PACKET_DISCARDED_CREDENTIAL_BACKEND,
+            RadiusConstants.PACKET_DISCARDED_PENDING_LIMIT
+    };
+
+    private static final String[] DISCARD_KEYS = {
+            "unknown_client",
+            "packet_length",
+            "radius_length_short",
+            "radius_length_long",
+            "radius_code_wrong",
+            "radius_code_unknown",
+            "attribute_malformed",
+            "message_authenticator",
+            "queue_full",
+            "accounting_authenticator",
+            "accounting_log",
+            "overload",
+            "rate_limited",
+            "deadline",
+            "credential_backend",
+            "pending_limit"
+    };
+
+    /**
+     * Discards caused by load rather than by the packet, written on a line of their own
+     */
+    private static final List<String> SHED_KEYS = Arrays.asList("queue_full", "overload", "rate_limited", "deadline",
+            "credential_backend", "pending_limit");
+
+    private final LongAdder[] packetsReceived = newCounters(256);
+
+    private final LongAdder[] responsesSent = newCounters(256);
+
+    private final LongAdder[] accessRejects = newCounters(REJECT_REASONS.length + 1);
+
+    private final LongAdder[] packetsDiscarded = newCounters(DISCARD_REASONS.length + 1);
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Stage.values().length];
+
+    // Constructor
+    public ServerMetrics() {
+        for(int i = 0; i < latencies.length; i++){
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    private static LongAdder[] newCounters(int size){
+        LongAdder[] counters = new LongAdder[size];
+        for(int i = 0; i < size; i++){
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    /**
+     * This method registers the metrics in the platform MBean server
+     * @param name Value of the name key of the MBean, to tell apart several servers in the same process
+     */
+    public void register(String name){
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            mBeanServer.registerMBean(this,
+                    new ObjectName("org.danielmartinez.radius:type=ServerMetrics,name=" + ObjectName.quote(name)));
+        } catch (InstanceAlreadyExistsException e){
+            throw new IllegalStateException("Metrics are already registered for " + name, e);
+        } catch (JMException e){
+            throw new IllegalStateException("Metrics cannot be registered: " + e.getMessage(), e);
+        }
+    }
+
+    // Recording
+
+    public void packetReceived(int code){
+        packetsReceived[code & 0xFF].increment();
+    }
+
+    public void responseSent(int code){
+        responsesSent[code & 0xFF].increment();
+    }
+
+    public void accessRejected(String reason){
+        accessRejects[indexOf(REJECT_REASONS, reason)].increment();
+    }
+
+    public void packetDiscarded(String reason){
+        packetsDiscarded[indexOf(DISCARD_REASONS, reason)].increment();
+    }
+
+    public void recordLatency(Stage stage, long nanos){
+        latencies[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * This method adds the metrics of another server to these ones
+     * @param other The metrics of the other server
+     */
+    public void add(ServerMetrics other){
+        add(packetsReceived, other.packetsReceived);
+        add(responsesSent, other.responsesSent);
+        add(accessRejects, other.accessRejects);
+        add(packetsDiscarded, other.packetsDiscarded);
+        for(int i = 0; i < latencies.length; i++){
+            latencies[i].add(other.latencies[i]);
+        }
+    }
+
+    private static void add(LongAdder[] counters, LongAdder[] others){
+        for(int i = 0; i < counters.length; i++){
+            long value = others[i].sum();
+            if(value > 0){
+                counters[i].add(value);
+            }
+        }
+    }
+
+    /**
+     * This method adds up the metrics of several servers, such as the shards that listen on the same port
+     * @param parts The metrics of every server
+     * @return New metrics with the totals of the servers at the time of the call
+     */
+    public static ServerMetrics sum(List<ServerMetrics> parts){
+        ServerMetrics total = new ServerMetrics();
+        for(ServerMetrics part: parts){
+            total.add(part);
+        }
+        return total;
+    }
+
+    /**
+     * This method finds a reason in a list of reasons
+     * @param reasons The list of reasons
+     * @param reason The reason
+     * @return The index of the reason, or the length of the list if it is not found
+     */
+    private static int indexOf(String[] reasons, String reason){
+        for(int i = 0; i < reasons.length; i++){
+            if(reasons[i] == reason){
+                return i;
+            }
+        }
+        for(int i = 0; i < reasons.length; i++){
+            if(reasons[i].equals(reason)){
+                return i;
+            }
+        }
+        return reasons.length;
+    }
+
+    // Reading
+
+    public long getPacketsReceived(int code) { return packetsReceived[code & 0xFF].sum(); }
+
+    public long getResponsesSent(int code) { return responsesSent[code & 0xFF].sum(); }
+
+    public LatencyHistogram getLatency(Stage stage) { return latencies[stage.ordinal()]; }
+
+    /**
+     * This method returns the number of received packets of any RADIUS Code
+     * @return The number of received packets
+     */
+    public long getTotalPacketsReceived(){
+        long total = 0;
+        for(LongAdder counter: packetsReceived){
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getPacketsReceived() {
+        return byCode(packetsReceived);
+    }
+
+    @Override
+    public Map<String, Long> getResponsesSent() {
+        return byCode(responsesSent);
+    }
+
+    @Override
+    public Map<String, Long> getAccessRejects() {
+        return byReason(REJECT_KEYS, accessRejects);
+    }
+
+    @Override
+    public Map<String, Long> getPacketsDiscarded() {
+        return byReason(DISCARD_KEYS, packetsDiscarded);
+    }
+
+    @Override
+    public Map<String, Double> getLatencies() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for(Stage stage: Stage.values()){
+            LatencyHistogram histogram = latencies[stage.ordinal()];
+            String prefix = stage.name().toLowerCase();
+            values.put(prefix + "_p50", histogram.getValueAtPercentile(50) / 1000.0);
+            values.put(prefix + "_p90", histogram.getValueAtPercentile(90) / 1000.0);
+            values.put(prefix + "_p99", histogram.getValueAtPercentile(99) / 1000.0);
+            values.put(prefix + "_p99.9", histogram.getValueAtPercentile(99.9) / 1000.0);
+            values.put(prefix + "_max", histogram.getMax() / 1000.0);
+        }
+        return values;
+    }
+
+    @Override
+    public String getSummary() {
+        return String.join("\n", toLines());
+    }
+
+    /**
+     * This method writes all the metrics in text format
+     * @return One line per group of counters and per latency histogram
+     */
+    public List<String> toLines(){
+        List<String> lines = new ArrayList<>();
+        lines.add("received " + format(getPacketsReceived()));
+        lines.add("sent " + format(getResponsesSent()));
+        lines.add("rejects " + format(getAccessRejects()));
+        Map<String, Long> discards = getPacketsDiscarded();
+        Map<String, Long> shed = new LinkedHashMap<>();
+        for(String key: SHED_KEYS){
+            shed.put(key, discards.remove(key));
+        }
+        lines.add("discards " + format(discards));
+        lines.add("shed " + format(shed));
+        for(Stage stage: Stage.values()){
+            lines.add(stage.name().toLowerCase() + " " + latencies[stage.ordinal()]);
+        }
+        return lines;
+    }
+
+    private static Map<String, Long> byCode(LongAdder[] counters){
+        Map<String, Long> values = new LinkedHashMap<>();
+        for(int code = 0; code < counters.length; code++){
+            long value = counters[code].sum();
+            if(value > 0){
+                values.put(codeName(code), value);
+            }
+        }
+        return values;
+    }
+
+    private static Map<String, Long> byReason(String[] keys, LongAdder[] counters){
+        Map<String, Long> values = new LinkedHashMap<>();
+        for(int i = 0; i < keys.length; i++){
+            values.put(keys[i], counters[i].sum());
+        }
+        values.put(OTHER, counters[keys.length].sum());
+        return values;
+    }
+
+    private static String format(Map<String, Long> values){
+        StringBuilder text = new StringBuilder();
+        for(Map.Entry<String, Long> value: values.entrySet()){
+            if(text.length() > 0){
+                text.append(' ');
+            }
+            text.append(value.getKey()).append('=').append(value.getValue());
+        }
+        return text.toString();
+    }
+
+    /**
+     * This method returns the name of a RADIUS Code
+     * @param code The RADIUS Code
+     * @return The name of the code, or the code itself if it is not known
+     */
+    public static String codeName(int code){
+        switch(code){
+            case RadiusConstants.ACCESS_REQUEST_CODE: return "access_request";
+            case RadiusConstants.ACCESS_ACCEPT_CODE: return "access_accept";
+            case RadiusConstants.ACCESS_REJECT_CODE: return "access_reject";
+            case RadiusConstants.ACCOUNTING_REQUEST_CODE: return "accounting_request";
+            case RadiusConstants.ACCOUNTING_RESPONSE_CODE: return "accounting_response";
+            case RadiusConstants.ACCESS_CHALLENGE_CODE: return "access_challenge";
+            case RadiusConstants.STATUS_SERVER_CODE: return "status_server";
+            case RadiusConstants.STATUS_CLIENT_CODE: return "status_client";
+            default: return "code_" + code;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
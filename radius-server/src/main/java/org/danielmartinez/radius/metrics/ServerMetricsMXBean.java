@@ -0,0 +1,39 @@
+package org.danielmartinez.radius.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of a RADIUS Server. Latencies are given in microseconds
+ */
+public interface ServerMetricsMXBean {
+
+    /**
+     * @return The number of received packets per RADIUS Code
+     */
+    Map<String, Long> getPacketsReceived();
+
+    /**
+     * @return The number of sent responses per RADIUS Code
+     */
+    Map<String, Long> getResponsesSent();
+
+    /**
+     * @return The number of Access-Reject responses per reason
+     */
+    Map<String, Long> getAccessRejects();
+
+    /**
+     * @return The number of discarded packets per reason
+     */
+    Map<String, Long> getPacketsDiscarded();
+
+    /**
+     * @return The 50th, 90th, 99th and 99.9th percentiles and the maximum latency of every stage, in microseconds
+     */
+    Map<String, Double> getLatencies();
+
+    /**
+     * @return All the metrics in text format, one line per group
+     */
+    String getSummary();
+}
@@ -0,0 +1,101 @@
+package org.danielmartinez.radius.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects the metrics of a stage of the request pipeline: the time every request waited in the input
+ * queue of the stage, the time the stage spent on it, the size of the batches it took and the fraction of time it
+ * was busy. The stage with the highest busy fraction, or whose requests wait the longest, is the bottleneck
+ */
+public class StageMetrics {
+
+    private final String name;
+
+    private final LatencyHistogram wait = new LatencyHistogram();
+
+    private final LatencyHistogram service = new LatencyHistogram();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder busyNanos = new LongAdder();
+
+    /**
+     * Threads that run the stage, to turn the busy time into a fraction
+     */
+    private final int threads;
+
+    private final long startNanos = System.nanoTime();
+
+    // Constructor
+    public StageMetrics(String name, int threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    /**
+     * This method records a request taken by the stage
+     * @param waitNanos Time the request waited in the input queue
+     * @param serviceNanos Time the stage spent on the request
+     */
+    public void recordRequest(long waitNanos, long serviceNanos){
+        wait.record(waitNanos);
+        service.record(serviceNanos);
+        requests.increment();
+    }
+
+    /**
+     * This method records a batch of requests taken by the stage
+     * @param busy Time the stage spent on the whole batch
+     */
+    public void recordBatch(long busy){
+        batches.increment();
+        busyNanos.add(busy);
+    }
+
+    // Getters
+    public String getName() { return name; }
+
+    public LatencyHistogram getWait() { return wait; }
+
+    public LatencyHistogram getService() { return service; }
+
+    public long getRequests() { return requests.sum(); }
+
+    public long getBatches() { return batches.sum(); }
+
+    /**
+     * This method calculates the average number of requests taken at once
+     * @return The average batch size, or 0 if no batch was taken
+     */
+    public double getAverageBatch(){
+        long batchCount = batches.sum();
+        return batchCount == 0 ? 0 : (double) requests.sum() / batchCount;
+    }
+
+    /**
+     * This method calculates the fraction of time the threads of the stage were processing requests
+     * @return The busy fraction since the stage was created, in the range [0 - 1]
+     */
+    public double getUtilization(){
+        long elapsed = (System.nanoTime() - startNanos) * threads;
+        return elapsed <= 0 ? 0 : Math.min(1, (double) busyNanos.sum() / elapsed);
+    }
+
+    @Override
+    public String toString() {
+        return name +
+                " requests=" + getRequests() +
+                String.format(Locale.ROOT, " batch=%.1f busy=%.1f%%", getAverageBatch(), getUtilization() * 100) +
+                " wait_p50=" + micros(wait.getValueAtPercentile(50)) +
+                " wait_p99=" + micros(wait.getValueAtPercentile(99)) +
+                " service_p50=" + micros(service.getValueAtPercentile(50)) +
+                " service_p99=" + micros(service.getValueAtPercentile(99));
+    }
+
+    private static String micros(long nanos){
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+    }
+}
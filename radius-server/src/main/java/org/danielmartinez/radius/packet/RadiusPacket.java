@@ -2,11 +2,7 @@ package org.danielmartinez.radius.packet;
 
 import org.danielmartinez.radius.util.RadiusConstants;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -108,36 +104,25 @@ public class RadiusPacket {
      */
     public void setAuthenticatorResponse(RadiusPacket receivedRadiusPacket, byte[] sharedSecret,
                                          List<Attribute> responseAttributes){
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        DataOutputStream dos = new DataOutputStream(baos);
-
-        try {
-            dos.writeByte(this.getCode());
-            dos.writeByte(this.getIdentifier());
-            dos.writeShort(this.getLength());
-            dos.write(receivedRadiusPacket.getAuthenticator());
-
-            for(Attribute attribute: responseAttributes){
-                dos.writeByte(attribute.getType());
-                dos.writeByte(attribute.getLength());
-                dos.write(attribute.getValue());
-            }
-
-            dos.write(sharedSecret);
-
-            dos.flush();
-            byte[] hashBody = baos.toByteArray();
-
-            MessageDigest md5 = MessageDigest.getInstance("MD5");
-            md5.update(hashBody);
-            this.setAuthenticator(md5.digest());
-
-            dos.close();
-            baos.close();
+        setAuthenticatorResponse(receivedRadiusPacket.getAuthenticator(), sharedSecret, responseAttributes);
+    }
 
-        } catch (IOException | NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * This method calculates and sets the Authenticator Response field
+     * @param requestAuthenticator Authenticator field of the received RADIUS Packet that triggers the response
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     */
+    public void setAuthenticatorResponse(byte[] requestAuthenticator, byte[] sharedSecret,
+                                         List<Attribute> responseAttributes){
+        ByteBuffer hashBody = ByteBuffer.allocate(RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH
+                + ResponseEncoder.attributesLength(responseAttributes));
+        new ResponseEncoder().encode(hashBody, this.getCode(), this.getIdentifier(), requestAuthenticator,
+                responseAttributes, sharedSecret);
+
+        byte[] responseAuthenticator = new byte[16];
+        hashBody.position(4);
+        hashBody.get(responseAuthenticator);
+        this.setAuthenticator(responseAuthenticator);
     }
 
     /**
@@ -145,31 +130,21 @@ public class RadiusPacket {
      * @return The packet in byte array format
      */
     public byte[] toByteArray(){
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        DataOutputStream dos = new DataOutputStream(baos);
-
-        try {
-            dos.writeByte(this.getCode());
-            dos.writeByte(this.getIdentifier());
-            dos.writeShort(this.getLength());
-            dos.write(this.getAuthenticator());
-
-            for(Attribute attribute: this.attributes){
-                dos.writeByte(attribute.getType());
-                dos.writeByte(attribute.getLength());
-                dos.write(attribute.getValue());
-            }
-
-            dos.flush();
-            byte[] responsePacket = baos.toByteArray();
-            dos.close();
-            baos.close();
-
-            return responsePacket;
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        byte[] responsePacket = new byte[calculateLength()];
+        ByteBuffer buffer = ByteBuffer.wrap(responsePacket);
+
+        buffer.put((byte) this.getCode());
+        buffer.put((byte) this.getIdentifier());
+        buffer.putShort((short) this.getLength());
+        buffer.put(this.getAuthenticator());
+
+        for(Attribute attribute: this.attributes){
+            buffer.put((byte) attribute.getType());
+            buffer.put((byte) attribute.getLength());
+            buffer.put(attribute.getValue());
         }
+
+        return responsePacket;
     }
 
     /**
@@ -177,30 +152,10 @@ public class RadiusPacket {
      * @return The length of the RadiusPacket
      */
     public int calculateLength(){
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        DataOutputStream dos = new DataOutputStream(baos);
-        int radiusPacketLength;
-
-        try {
-            dos.writeByte(this.getCode());
-            dos.writeByte(this.getIdentifier());
-            dos.writeShort(this.getLength());
-            dos.write(this.getAuthenticator());
-
-            for(Attribute attribute: this.attributes){
-                dos.writeByte(attribute.getType());
-                dos.writeByte(attribute.getLength());
-                dos.write(attribute.getValue());
-            }
-
-            dos.flush();
-            byte[] bytePacket = baos.toByteArray();
-            radiusPacketLength = bytePacket.length;
-            dos.close();
-            baos.close();
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        int radiusPacketLength = 4 + this.getAuthenticator().length;
+
+        for(Attribute attribute: this.attributes){
+            radiusPacketLength += 2 + attribute.getValue().length;
         }
 
         return radiusPacketLength;
@@ -213,11 +168,23 @@ public class RadiusPacket {
      * @return Access-Accept RADIUS response
      */
     public static RadiusPacket createAccessAccept(RadiusPacket receivedRadiusPacket, byte[] sharedSecret){
+        return createAccessAccept(receivedRadiusPacket.getIdentifier(), receivedRadiusPacket.getAuthenticator(),
+                sharedSecret);
+    }
+
+    /**
+     * This method creates an Access-Accept RADIUS response
+     * @param identifier Identifier field of the received RADIUS Packet
+     * @param requestAuthenticator Authenticator field of the received RADIUS Packet
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @return Access-Accept RADIUS response
+     */
+    public static RadiusPacket createAccessAccept(int identifier, byte[] requestAuthenticator, byte[] sharedSecret){
         RadiusPacket accessAcceptPacket = new RadiusPacket(RadiusConstants.ACCESS_ACCEPT_CODE,
-                receivedRadiusPacket.getIdentifier(), receivedRadiusPacket.getAuthenticator());
+                identifier, requestAuthenticator);
 
         accessAcceptPacket.setLength(accessAcceptPacket.calculateLength());
-        accessAcceptPacket.setAuthenticatorResponse(receivedRadiusPacket, sharedSecret,
+        accessAcceptPacket.setAuthenticatorResponse(requestAuthenticator, sharedSecret,
                 accessAcceptPacket.getAttributes());
 
         return accessAcceptPacket;
@@ -231,8 +198,22 @@ public class RadiusPacket {
      * @return Access-Reject RADIUS response
      */
     public static RadiusPacket createAccessReject(RadiusPacket receivedRadiusPacket, byte[] sharedSecret, String reason){
+        return createAccessReject(receivedRadiusPacket.getIdentifier(), receivedRadiusPacket.getAuthenticator(),
+                sharedSecret, reason);
+    }
+
+    /**
+     * This method creates an Access-Reject RADIUS response
+     * @param identifier Identifier field of the received RADIUS Packet
+     * @param requestAuthenticator Authenticator field of the received RADIUS Packet
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @param reason The reason why the received RADIUS Packet is not accepted
+     * @return Access-Reject RADIUS response
+     */
+    public static RadiusPacket createAccessReject(int identifier, byte[] requestAuthenticator, byte[] sharedSecret,
+                                                  String reason){
         RadiusPacket accessRejectPacket = new RadiusPacket(RadiusConstants.ACCESS_REJECT_CODE,
-                receivedRadiusPacket.getIdentifier(), receivedRadiusPacket.getAuthenticator());
+                identifier, requestAuthenticator);
 
         accessRejectPacket.setLength(accessRejectPacket.calculateLength());
 
@@ -240,7 +221,7 @@ public class RadiusPacket {
         // Test Client, it is not implemented
         // accessRejectPacket.setAttribute(RadiusConstants.REPLY_MESSAGE, 0, reason.getBytes());
 
-        accessRejectPacket.setAuthenticatorResponse(receivedRadiusPacket, sharedSecret,
+        accessRejectPacket.setAuthenticatorResponse(requestAuthenticator, sharedSecret,
                 accessRejectPacket.getAttributes());
 
         return accessRejectPacket;
@@ -0,0 +1,279 @@
+package org.danielmartinez.radius.packet;
+
+import org.danielmartinez.radius.exception.RadiusException;
+import org.danielmartinez.radius.util.Digests;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a read-only view of a RADIUS Packet held in a buffer. Fields are read from the buffer when they are
+ * requested, so no copy of the packet is made. Attributes are traversed with a cursor that exposes the offsets of
+ * the current attribute. A view can be reused for many packets by calling wrap() again
+ */
+public class RadiusPacketView {
+    private static final byte[] ZERO_AUTHENTICATOR = new byte[16];
+
+    /**
+     * Buffer that holds the packet
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Index of the Code field in the buffer
+     */
+    private int start;
+
+    /**
+     * Value of the Length field
+     */
+    private int length;
+
+    /**
+     * Index of the current attribute in the buffer. The cursor is before the first attribute when it is -1
+     */
+    private int cursor;
+
+    // Constructor
+    public RadiusPacketView() {
+    }
+
+    /**
+     * This method points the view to the packet held between the position and the limit of the buffer. The length
+     * of the packet and the layout of its attributes are validated, so the accessors never read outside the packet
+     * @param buffer: Buffer that holds the UDP Data
+     * @return RadiusPacketView: This view
+     */
+    public RadiusPacketView wrap(ByteBuffer buffer){
+        int rawLength = buffer.remaining();
+        if(rawLength < RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH || rawLength >
+                RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_PACKET_LENGTH);
+        }
+
+        int start = buffer.position();
+        int radiusLength = ((buffer.get(start + 2) & 0xFF) << 8) | (buffer.get(start + 3) & 0xFF);
+
+        if(radiusLength < RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_RADIUS_LENGTH_SHORT);
+        }
+
+        // Octets beyond the Length field are padding, but a packet shorter than the Length field is discarded
+        if(radiusLength > rawLength){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_PACKET_LENGTH);
+        }
+
+        // Every attribute must fit in the packet
+        int end = start + radiusLength;
+        int position = start + RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH;
+        while(position < end){
+            if(position + 2 > end){
+                throw new RadiusException(RadiusConstants.PACKET_DISCARDED_ATTRIBUTE_MALFORMED);
+            }
+            int attributeLength = buffer.get(position + 1) & 0xFF;
+            if(attributeLength < 2 || position + attributeLength > end){
+                throw new RadiusException(RadiusConstants.PACKET_DISCARDED_ATTRIBUTE_MALFORMED);
+            }
+            position += attributeLength;
+        }
+
+        this.buffer = buffer;
+        this.start = start;
+        this.length = radiusLength;
+        this.cursor = -1;
+        return this;
+    }
+
+    // Getters
+    public ByteBuffer getBuffer() { return buffer; }
+
+    public int getCode() { return buffer.get(start) & 0xFF; }
+
+    public int getIdentifier() { return buffer.get(start + 1) & 0xFF; }
+
+    public int getLength() { return length; }
+
+    /**
+     * This method returns the index in the buffer where the Authenticator field starts
+     * @return Index of the first of the 16 Authenticator bytes
+     */
+    public int getAuthenticatorOffset() { return start + 4; }
+
+    /**
+     * This method copies the Authenticator field
+     * @param destination: Array where the 16 bytes are copied
+     * @param offset: Index in the destination array
+     */
+    public void copyAuthenticator(byte[] destination, int offset){
+        copy(getAuthenticatorOffset(), destination, offset, 16);
+    }
+
+    /**
+     * This method copies the Authenticator field into a new array
+     * @return The Authenticator field
+     */
+    public byte[] getAuthenticator(){
+        byte[] authenticator = new byte[16];
+        copyAuthenticator(authenticator, 0);
+        return authenticator;
+    }
+
+    /**
+     * This method moves the cursor back before the first attribute
+     */
+    public void resetAttributes(){
+        cursor = -1;
+    }
+
+    /**
+     * This method moves the cursor to the next attribute
+     * @return Boolean: True if the cursor points to an attribute, false if there are no more attributes
+     */
+    public boolean nextAttribute(){
+        int next = cursor < 0 ? start + RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH : cursor + attributeLength();
+        if(next >= start + length){
+            cursor = start + length;
+            return false;
+        }
+        cursor = next;
+        return true;
+    }
+
+    /**
+     * Fields of the attribute the cursor points to
+     */
+    public int attributeType() { return buffer.get(cursor) & 0xFF; }
+
+    public int attributeLength() { return buffer.get(cursor + 1) & 0xFF; }
+
+    public int attributeValueOffset() { return cursor + 2; }
+
+    public int attributeValueLength() { return attributeLength() - 2; }
+
+    /**
+     * This method looks for the first attribute of a given type, without moving the cursor
+     * @param type: Attribute Type
+     * @return The index in the buffer of the attribute Type field, or -1 if the attribute is not present
+     */
+    public int findAttribute(int type){
+        int end = start + length;
+        int position = start + RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH;
+        while(position < end){
+            if((buffer.get(position) & 0xFF) == type){
+                return position;
+            }
+            position += buffer.get(position + 1) & 0xFF;
+        }
+        return -1;
+    }
+
+    /**
+     * This method copies the Value field of the attribute found at a given index
+     * @param attributeOffset: Index of the attribute, as returned by findAttribute()
+     * @return The Value field of the attribute
+     */
+    public byte[] copyAttributeValue(int attributeOffset){
+        byte[] value = new byte[(buffer.get(attributeOffset + 1) & 0xFF) - 2];
+        copy(attributeOffset + 2, value, 0, value.length);
+        return value;
+    }
+
+    /**
+     * This method reads the Value field of an attribute of type integer (RFC 2865, section 5), which is a 32 bit
+     * unsigned value
+     * @param attributeOffset: Index of the attribute, as returned by findAttribute()
+     * @return The value, or -1 if the attribute is not 4 bytes long
+     */
+    public long integerAttributeValue(int attributeOffset){
+        if((buffer.get(attributeOffset + 1) & 0xFF) != 6){
+            return -1;
+        }
+        return buffer.getInt(attributeOffset + 2) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * This method checks the Request Authenticator of an Accounting-Request:
+     * RequestAuth = MD5(Code+ID+Length+16 zero octets+Attributes+Secret) (RFC 2866, section 3)
+     * @param sharedSecret: Shared Secret between RADIUS Client and Server
+     * @return Boolean: True if the Request Authenticator matches
+     */
+    public boolean verifyAccountingAuthenticator(byte[] sharedSecret){
+        MessageDigest md5 = Digests.md5();
+        int position = buffer.position();
+        int limit = buffer.limit();
+        try {
+            buffer.limit(start + 4).position(start);
+            md5.update(buffer);
+            md5.update(ZERO_AUTHENTICATOR);
+            buffer.limit(start + length).position(start + RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH);
+            md5.update(buffer);
+        } finally {
+            buffer.limit(limit).position(position);
+        }
+        md5.update(sharedSecret);
+
+        byte[] expected = md5.digest();
+        int difference = 0;
+        for(int i = 0; i < 16; i++){
+            difference |= expected[i] ^ buffer.get(start + 4 + i);
+        }
+        return difference == 0;
+    }
+
+    /**
+     * This method checks a Message-Authenticator attribute: its value must be the HMAC-MD5 of the packet, keyed with
+     * the Shared Secret and computed with the attribute value zeroed (RFC 3579, section 3.2)
+     * @param attributeOffset: Index of the Message-Authenticator attribute, as returned by findAttribute()
+     * @param sharedSecret: Shared Secret between RADIUS Client and Server
+     * @return Boolean: True if the attribute is well formed and its value matches
+     */
+    public boolean verifyMessageAuthenticator(int attributeOffset, byte[] sharedSecret){
+        if((buffer.get(attributeOffset + 1) & 0xFF) != 18){
+            return false;
+        }
+        byte[] packet = new byte[length];
+        copy(start, packet, 0, length);
+        byte[] received = Arrays.copyOfRange(packet, attributeOffset - start + 2, attributeOffset - start + 18);
+        Arrays.fill(packet, attributeOffset - start + 2, attributeOffset - start + 18, (byte) 0);
+
+        byte[] expected = Digests.newHmacMd5(sharedSecret).doFinal(packet);
+        return MessageDigest.isEqual(expected, received);
+    }
+
+    /**
+     * This method builds a RadiusPacket object with all the fields of the viewed packet
+     * @return RadiusPacket: Fields of the packet parsed to Java Data format
+     */
+    public RadiusPacket toRadiusPacket(){
+        List<Attribute> attributes = new ArrayList<>();
+
+        int end = start + length;
+        int position = start + RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH;
+        while(position < end){
+            int attributeLength = buffer.get(position + 1) & 0xFF;
+            attributes.add(new Attribute(buffer.get(position) & 0xFF, attributeLength, copyAttributeValue(position)));
+            position += attributeLength;
+        }
+
+        return new RadiusPacket(getCode(), getIdentifier(), length, getAuthenticator(), attributes);
+    }
+
+    @Override
+    public String toString() {
+        return toRadiusPacket().toString();
+    }
+
+    private void copy(int index, byte[] destination, int offset, int count){
+        if(buffer.hasArray()){
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + index, destination, offset, count);
+            return;
+        }
+        for(int i = 0; i < count; i++){
+            destination[offset + i] = buffer.get(index + i);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.danielmartinez.radius.packet;
+
+import org.danielmartinez.radius.util.Digests;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import javax.crypto.Mac;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class encodes RADIUS responses straight into a buffer supplied by the caller. The packet is written once:
+ * the Length field is computed from the attribute sizes, the Request Authenticator is written in the Authenticator
+ * field, the written region is hashed together with the Shared Secret and the result is patched in as the Response
+ * Authenticator (RFC 2865, section 3).
+ * The Shared Secret is hashed last, so there is no primed state to reuse and the MD5 digest of the current thread
+ * is used instead. An encoder keeps a scratch array, so it must not be shared between threads
+ */
+public class ResponseEncoder {
+    /**
+     * Scratch array where the Response Authenticator is computed
+     */
+    private final byte[] responseAuthenticator = new byte[16];
+
+    // Constructor
+    public ResponseEncoder() {
+    }
+
+    /**
+     * This method encodes an Access-Accept response
+     * @param destination Buffer where the response is written, starting at its position
+     * @param request View of the received RADIUS Packet that triggers the response
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @return The length of the response
+     */
+    public int encodeAccessAccept(ByteBuffer destination, RadiusPacketView request, byte[] sharedSecret){
+        return encode(destination, RadiusConstants.ACCESS_ACCEPT_CODE, request, Collections.emptyList(), sharedSecret);
+    }
+
+    /**
+     * This method encodes an Access-Accept response with attributes that are already encoded, such as the reply
+     * profile of the user. The attributes are copied as they are: only the header and the Response Authenticator
+     * are computed
+     * @param destination Buffer where the response is written, starting at its position
+     * @param request View of the received RADIUS Packet that triggers the response
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @param encodedAttributes Attributes of the response, encoded as in the Attributes field
+     * @return The length of the response
+     */
+    public int encodeAccessAccept(ByteBuffer destination, RadiusPacketView request, byte[] sharedSecret,
+                                  byte[] encodedAttributes){
+        int start = destination.position();
+        int length = RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH + encodedAttributes.length;
+        if(length > RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH || start + length > destination.capacity()){
+            throw new IllegalArgumentException("The response does not fit in the buffer: " + length + " bytes");
+        }
+        destination.limit(destination.capacity());
+        writeHeader(destination, RadiusConstants.ACCESS_ACCEPT_CODE, request.getIdentifier(), length,
+                request.getBuffer(), request.getAuthenticatorOffset());
+        destination.put(encodedAttributes);
+        destination.flip().position(start);
+        writeResponseAuthenticator(destination, start, sharedSecret);
+        return length;
+    }
+
+    /**
+     * This method encodes an Access-Reject response
+     * @param destination Buffer where the response is written, starting at its position
+     * @param request View of the received RADIUS Packet that triggers the response
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @param reason The reason why the received RADIUS Packet is not accepted
+     * @return The length of the response
+     */
+    public int encodeAccessReject(ByteBuffer destination, RadiusPacketView request, byte[] sharedSecret,
+                                  String reason){
+        // * NOTE: The reason is not sent as a Reply-Message attribute, because it is not processed by the Test Client
+        return encode(destination, RadiusConstants.ACCESS_REJECT_CODE, request, Collections.emptyList(), sharedSecret);
+    }
+
+    /**
+     * This method encodes a response to a received RADIUS Packet
+     * @param destination Buffer where the response is written, starting at its position
+     * @param code Code field of the response
+     * @param request View of the received RADIUS Packet that triggers the response
+     * @param attributes Attributes of the response
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @return The length of the response
+     */
+    public int encode(ByteBuffer destination, int code, RadiusPacketView request, List<Attribute> attributes,
+                      byte[] sharedSecret){
+        return encode(destination, code, request.getIdentifier(), request.getBuffer(),
+                request.getAuthenticatorOffset(), attributes, sharedSecret);
+    }
+
+    /**
+     * This method encodes a response to a received RADIUS Packet
+     * @param destination Buffer where the response is written, starting at its position
+     * @param code Code field of the response
+     * @param identifier Identifier field of the received RADIUS Packet
+     * @param requestAuthenticator Authenticator field of the received RADIUS Packet
+     * @param attributes Attributes of the response
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @return The length of the response
+     */
+    public int encode(ByteBuffer destination, int code, int identifier, byte[] requestAuthenticator,
+                      List<Attribute> attributes, byte[] sharedSecret){
+        return encode(destination, code, identifier, ByteBuffer.wrap(requestAuthenticator), 0, attributes,
+                sharedSecret);
+    }
+
+    /**
+     * This method writes the response and computes its Response Authenticator in place. When it returns, the
+     * position of the destination buffer is the first byte of the response and its limit is the last byte, so the
+     * buffer is ready to be sent
+     * @param destination Buffer where the response is written, starting at its position
+     * @param code Code field of the response
+     * @param identifier Identifier field of the received RADIUS Packet
+     * @param requestBuffer Buffer that holds the Request Authenticator
+     * @param requestAuthenticatorOffset Index of the Request Authenticator in requestBuffer
+     * @param attributes Attributes of the response
+     * @param sharedSecret Shared Secret between RADIUS Client and Server
+     * @return The length of the response
+     */
+    public int encode(ByteBuffer destination, int code, int identifier, ByteBuffer requestBuffer,
+                      int requestAuthenticatorOffset, List<Attribute> attributes, byte[] sharedSecret){
+        int start = destination.position();
+        int length = RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH + attributesLength(attributes);
+
+        if(length > RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH || start + length > destination.capacity()){
+            throw new IllegalArgumentException("The response does not fit in the buffer: " + length + " bytes");
+        }
+        destination.limit(destination.capacity());
+
+        writeHeader(destination, code, identifier, length, requestBuffer, requestAuthenticatorOffset);
+
+        // Attributes
+        int messageAuthenticatorOffset = -1;
+        for(int i = 0; i < attributes.size(); i++){
+            Attribute attribute = attributes.get(i);
+            destination.put((byte) attribute.getType());
+            destination.put((byte) (attribute.getValue().length + 2));
+            if(attribute.getType() == RadiusConstants.MESSAGE_AUTHENTICATOR){
+                messageAuthenticatorOffset = destination.position();
+            }
+            destination.put(attribute.getValue());
+        }
+        destination.flip().position(start);
+
+        // Message-Authenticator = HMAC-MD5(Secret, Packet), computed with the Request Authenticator and with the
+        // attribute value zeroed (RFC 3579, section 3.2)
+        if(messageAuthenticatorOffset >= 0){
+            for(int i = 0; i < 16; i++){
+                destination.put(messageAuthenticatorOffset + i, (byte) 0);
+            }
+            Mac hmac = Digests.newHmacMd5(sharedSecret);
+            hmac.update(destination.duplicate());
+            byte[] messageAuthenticator = hmac.doFinal();
+            for(int i = 0; i < 16; i++){
+                destination.put(messageAuthenticatorOffset + i, messageAuthenticator[i]);
+            }
+        }
+
+        writeResponseAuthenticator(destination, start, sharedSecret);
+
+        return length;
+    }
+
+    /**
+     * This method writes the Code, Identifier and Length fields, and the Request Authenticator, which takes the
+     * place of the Response Authenticator while the response is hashed
+     */
+    private static void writeHeader(ByteBuffer destination, int code, int identifier, int length,
+                                    ByteBuffer requestBuffer, int requestAuthenticatorOffset){
+        destination.put((byte) code);
+        destination.put((byte) identifier);
+        destination.putShort((short) length);
+        for(int i = 0; i < 16; i++){
+            destination.put(requestBuffer.get(requestAuthenticatorOffset + i));
+        }
+    }
+
+    /**
+     * This method hashes the response between the position and the limit of the buffer, and patches the result in
+     * as the Response Authenticator. The position of the buffer is left at the start of the response
+     */
+    private void writeResponseAuthenticator(ByteBuffer destination, int start, byte[] sharedSecret){
+        // ResponseAuth = MD5(Code+ID+Length+RequestAuth+Attributes+Secret)
+        MessageDigest md5 = Digests.md5();
+        md5.update(destination);
+        md5.update(sharedSecret);
+        try {
+            md5.digest(responseAuthenticator, 0, 16);
+        } catch (DigestException e) {
+            throw new RuntimeException(e);
+        }
+
+        for(int i = 0; i < 16; i++){
+            destination.put(start + 4 + i, responseAuthenticator[i]);
+        }
+        destination.position(start);
+    }
+
+    /**
+     * This method calculates the length of the Attributes field from the size of every attribute
+     * @param attributes Attributes of a packet
+     * @return The length of the Attributes field
+     */
+    public static int attributesLength(List<Attribute> attributes){
+        int length = 0;
+        for(int i = 0; i < attributes.size(); i++){
+            int attributeLength = attributes.get(i).getValue().length + 2;
+            if(attributeLength > 255){
+                throw new IllegalArgumentException("Attribute " + attributes.get(i).getType() + " is too long");
+            }
+            length += attributeLength;
+        }
+        return length;
+    }
+}
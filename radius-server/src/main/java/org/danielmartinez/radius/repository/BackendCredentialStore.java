@@ -0,0 +1,92 @@
+package org.danielmartinez.radius.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * This class looks up the user credentials in a CredentialBackend, through a cache of the passwords. The server
+ * only knows the users it has looked up, so it cannot list them, and it cannot add them: they are managed in the
+ * backend
+ */
+public class BackendCredentialStore implements CredentialStore {
+
+    private final CredentialCache<String, byte[]> passwords;
+
+    // Constructor
+    public BackendCredentialStore(CredentialCache<String, byte[]> passwords) {
+        this.passwords = passwords;
+    }
+
+    @Override
+    public boolean put(byte[] username, byte[] password) {
+        throw new UnsupportedOperationException("The users are managed in the credential backend");
+    }
+
+    /**
+     * This method looks up the password of a user, waiting for the backend if it is not cached. The backend does
+     * not validate what it returns, so a password that does not fit in the array cannot be checked, and the user
+     * is treated as if it did not exist
+     * @throws org.danielmartinez.radius.exception.RadiusException If the backend does not answer in time
+     */
+    @Override
+    public int getPassword(ByteBuffer buffer, int offset, int length, byte[] password) {
+        byte[] value = passwords.get(username(buffer, offset, length));
+        if(value == null || value.length > password.length){
+            return -1;
+        }
+        System.arraycopy(value, 0, password, 0, value.length);
+        return value.length;
+    }
+
+    @Override
+    public CompletableFuture<?> preparePassword(ByteBuffer buffer, int offset, int length) {
+        String username = username(buffer, offset, length);
+        if(passwords.contains(username)){
+            return null;
+        }
+        CompletableFuture<byte[]> password = passwords.getAsync(username);
+        return password.isDone() ? null : password;
+    }
+
+    private static String username(ByteBuffer buffer, int offset, int length){
+        byte[] username = new byte[length];
+        for(int i = 0; i < length; i++){
+            username[i] = buffer.get(offset + i);
+        }
+        return new String(username, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The users of the backend cannot be listed, so no user name is given to the action
+     */
+    @Override
+    public void forEachUserName(Consumer<byte[]> action) {
+    }
+
+    @Override
+    public boolean holdsAllUsers() { return false; }
+
+    /**
+     * @return 0, since the users of the backend are not counted
+     */
+    @Override
+    public int size() { return 0; }
+
+    @Override
+    public long getFootprintBytes() { return 0; }
+
+    /**
+     * This method returns the cache of the passwords
+     * @return The cache
+     */
+    public CredentialCache<String, byte[]> getPasswords() { return passwords; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "passwords=" + passwords +
+                ']';
+    }
+}
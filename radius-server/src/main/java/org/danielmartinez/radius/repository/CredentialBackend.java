@@ -0,0 +1,29 @@
+package org.danielmartinez.radius.repository;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * This interface represents an external store of the users and the clients, such as a subscriber database or a
+ * directory, that the server queries when they are not known locally. Calls may be slow and may fail, so the server
+ * never calls a backend from the threads that process requests: it goes through a CredentialCache, which loads
+ * on threads of its own and bounds the time a request waits. Implementations must be thread-safe
+ */
+public interface CredentialBackend {
+
+    /**
+     * This method loads the password of a user
+     * @param username User name
+     * @return The plain password, or null if the user does not exist
+     * @throws IOException If the backend cannot be queried
+     */
+    byte[] loadPassword(String username) throws IOException;
+
+    /**
+     * This method loads the Shared Secret of a client
+     * @param clientAddress Source address of the client
+     * @return The Shared Secret, or null if the address is not a client
+     * @throws IOException If the backend cannot be queried
+     */
+    byte[] loadSharedSecret(InetAddress clientAddress) throws IOException;
+}
@@ -0,0 +1,352 @@
+package org.danielmartinez.radius.repository;
+
+import org.danielmartinez.radius.exception.RadiusException;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class caches the values loaded from a slow backend, such as the passwords of users or the Shared Secrets of
+ * clients. It is a bounded set-associative table like DuplicateRequestCache: when a set is full, an expired entry or
+ * else the oldest one is evicted. Entries expire after a time to live, and the keys the backend does not know are
+ * cached too, for a shorter time, so repeated requests of unknown users do not reach the backend.
+ * Loads run on the threads of an executor and never on the caller: concurrent misses of a key wait for the same
+ * load (single flight), so a hundred requests of one user query the backend once, and every caller waits at most
+ * the load timeout. A hit on an entry close to its expiration reloads it in the background (refresh-ahead), so the
+ * entries that are used never expire in front of a request. Lookups do not take locks
+ * @param <K> Type of the keys
+ * @param <V> Type of the values. A null value means that the backend does not know the key
+ */
+public class CredentialCache<K, V> {
+
+    /**
+     * Entries in every set of the table
+     */
+    private static final int WAYS = 4;
+
+    /**
+     * Logic that loads the value of a key from the backend
+     */
+    public interface Loader<K, V> {
+        V load(K key) throws IOException;
+    }
+
+    /**
+     * Cached value of a key. Entries are immutable
+     */
+    private static final class Entry<K, V> {
+        final K key;
+        final V value;
+        final long loadedNanos;
+        final long expiresNanos;
+
+        Entry(K key, V value, long loadedNanos, long expiresNanos) {
+            this.key = key;
+            this.value = value;
+            this.loadedNanos = loadedNanos;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry<K, V>> table;
+
+    private final int setMask;
+
+    private final Loader<K, V> loader;
+
+    private final Executor executor;
+
+    /**
+     * Source of the current time in nanoseconds, against which the ages and expirations of the entries are measured
+     */
+    private final LongSupplier clock;
+
+    private final long ttlNanos;
+
+    /**
+     * Time to live of the keys the backend does not know. 0 disables the negative caching
+     */
+    private final long negativeTtlNanos;
+
+    /**
+     * Age of an entry after which a hit reloads it in the background. 0 disables the refresh-ahead
+     */
+    private final long refreshAfterNanos;
+
+    /**
+     * Maximum time a caller waits for a load
+     */
+    private final long loadTimeoutNanos;
+
+    /**
+     * Loads in progress, shared by all the callers that miss the same key
+     */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder backendLoads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Constructor
+    public CredentialCache(int capacity, long ttl, long negativeTtl, double refreshAhead, long loadTimeout,
+                           TimeUnit unit, Loader<K, V> loader, Executor executor) {
+        this(capacity, ttl, negativeTtl, refreshAhead, loadTimeout, unit, loader, executor, System::nanoTime);
+    }
+
+    /**
+     * This constructor takes the clock of the entries, so their expiration can be driven without waiting for it.
+     * The load timeout is always measured in real time
+     */
+    public CredentialCache(int capacity, long ttl, long negativeTtl, double refreshAhead, long loadTimeout,
+                           TimeUnit unit, Loader<K, V> loader, Executor executor, LongSupplier clock) {
+        if(refreshAhead < 0 || refreshAhead >= 1){
+            throw new IllegalArgumentException("The refresh-ahead fraction must be at least 0 and less than 1");
+        }
+        int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+        this.table = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+        this.loader = loader;
+        this.executor = executor;
+        this.clock = clock;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.refreshAfterNanos = refreshAhead == 0 ? 0 : (long) (ttlNanos * refreshAhead);
+        this.loadTimeoutNanos = unit.toNanos(loadTimeout);
+    }
+
+    /**
+     * This method returns the value of a key, loading it from the backend if it is not cached
+     * @param key The key
+     * @return The value, or null if the backend does not know the key
+     * @throws RadiusException If the backend fails or does not answer within the load timeout
+     */
+    public V get(K key){
+        long now = clock.getAsLong();
+        Entry<K, V> entry = find(key, now);
+        if(entry != null){
+            return hit(entry, now);
+        }
+        misses.increment();
+        CompletableFuture<V> load = load(key);
+        try {
+            return load.get(loadTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_CREDENTIAL_BACKEND);
+        } catch (ExecutionException | TimeoutException e){
+            throw new RadiusException(RadiusConstants.PACKET_DISCARDED_CREDENTIAL_BACKEND);
+        }
+    }
+
+    /**
+     * This method returns the value of a key without waiting for it. The future completes on a loader thread when
+     * the key is not cached, so the caller can go on with other work; it is completed already when it is cached
+     * @param key The key
+     * @return A future of the value, whose value is null if the backend does not know the key. It can be given a
+     *         timeout or cancelled without affecting the other callers that wait for the same load
+     */
+    public CompletableFuture<V> getAsync(K key){
+        long now = clock.getAsLong();
+        Entry<K, V> entry = find(key, now);
+        if(entry != null){
+            return CompletableFuture.completedFuture(hit(entry, now));
+        }
+        misses.increment();
+        return load(key).copy();
+    }
+
+    /**
+     * This method checks if the backend is known not to have a key, without waiting. A key that is not cached is
+     * loaded in the background, and it is not known to be absent until its load completes
+     * @param key The key
+     * @return Boolean: True if the key is cached as unknown to the backend
+     */
+    public boolean isAbsent(K key){
+        long now = clock.getAsLong();
+        Entry<K, V> entry = find(key, now);
+        if(entry != null){
+            return hit(entry, now) == null;
+        }
+        misses.increment();
+        load(key);
+        return false;
+    }
+
+    /**
+     * This method checks if the value of a key is cached, without counting a hit or a miss
+     * @param key The key
+     * @return Boolean: True if get() returns without waiting
+     */
+    public boolean contains(K key){
+        return find(key, clock.getAsLong()) != null;
+    }
+
+    /**
+     * This method removes the cached value of a key, so the next lookup loads it again
+     * @param key The key
+     */
+    public void invalidate(K key){
+        int set = set(key);
+        for(int i = set; i < set + WAYS; i++){
+            Entry<K, V> entry = table.get(i);
+            if(entry != null && entry.key.equals(key)){
+                table.compareAndSet(i, entry, null);
+            }
+        }
+    }
+
+    private V hit(Entry<K, V> entry, long now){
+        if(entry.value == null){
+            negativeHits.increment();
+        } else {
+            hits.increment();
+            if(refreshAfterNanos > 0 && now - entry.loadedNanos >= refreshAfterNanos
+                    && !loads.containsKey(entry.key)){
+                refreshes.increment();
+                load(entry.key);
+            }
+        }
+        return entry.value;
+    }
+
+    /**
+     * This method starts the load of a key, unless it is already being loaded
+     * @return The load of the key
+     */
+    private CompletableFuture<V> load(K key){
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inProgress = loads.putIfAbsent(key, load);
+        if(inProgress != null){
+            coalesced.increment();
+            return inProgress;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = loader.load(key);
+                    backendLoads.increment();
+                    store(key, value);
+                    loads.remove(key, load);
+                    load.complete(value);
+                } catch (IOException | RuntimeException e){
+                    // A failed load is not cached. An entry being refreshed is used until it expires
+                    failures.increment();
+                    loads.remove(key, load);
+                    load.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e){
+            failures.increment();
+            loads.remove(key, load);
+            load.completeExceptionally(e);
+        }
+        return load;
+    }
+
+    private Entry<K, V> find(K key, long now){
+        int set = set(key);
+        for(int i = set; i < set + WAYS; i++){
+            Entry<K, V> entry = table.get(i);
+            if(entry != null && entry.key.equals(key)){
+                return entry.expiresNanos - now > 0 ? entry : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method stores a loaded value in the slot of its key, a free slot, an expired entry or the oldest one
+     */
+    private void store(K key, V value){
+        long now = clock.getAsLong();
+        long ttl = value == null ? negativeTtlNanos : ttlNanos;
+        int set = set(key);
+        int victim = -1;
+        int free = -1;
+        int oldest = set;
+        long oldestAge = -1;
+        for(int i = set; i < set + WAYS; i++){
+            Entry<K, V> entry = table.get(i);
+            if(entry != null && entry.key.equals(key)){
+                victim = i;
+                break;
+            }
+            if(entry == null || entry.expiresNanos - now <= 0){
+                if(free < 0){
+                    free = i;
+                }
+            } else if(now - entry.loadedNanos > oldestAge){
+                oldest = i;
+                oldestAge = now - entry.loadedNanos;
+            }
+        }
+        if(victim < 0){
+            victim = free >= 0 ? free : oldest;
+        }
+        Entry<K, V> replaced = table.get(victim);
+        if(ttl == 0){
+            // Negative caching is disabled: only forget the previous value of the key
+            if(replaced != null && replaced.key.equals(key)){
+                table.compareAndSet(victim, replaced, null);
+            }
+            return;
+        }
+        if(replaced != null && !replaced.key.equals(key) && replaced.expiresNanos - now > 0){
+            evictions.increment();
+        }
+        table.set(victim, new Entry<>(key, value, now, now + ttl));
+    }
+
+    private int set(K key){
+        int hash = key.hashCode() * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & setMask) * WAYS;
+    }
+
+    // Getters
+    public long getHits() { return hits.sum(); }
+
+    public long getNegativeHits() { return negativeHits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public long getBackendLoads() { return backendLoads.sum(); }
+
+    public long getCoalesced() { return coalesced.sum(); }
+
+    public long getRefreshes() { return refreshes.sum(); }
+
+    public long getFailures() { return failures.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+
+    public int getCapacity() { return table.length(); }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "hits=" + getHits() +
+                ", negativeHits=" + getNegativeHits() +
+                ", misses=" + getMisses() +
+                ", loads=" + getBackendLoads() +
+                ", coalesced=" + getCoalesced() +
+                ", refreshes=" + getRefreshes() +
+                ", failures=" + getFailures() +
+                ", evictions=" + getEvictions() +
+                ']';
+    }
+}
@@ -0,0 +1,75 @@
+package org.danielmartinez.radius.repository;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * This interface represents the storage of the user credentials: user names and their plain passwords. User names
+ * are UTF-8 bytes, so a User-Name attribute can be looked up straight from the packet where it was received.
+ * Implementations are shared by all the threads of the server: lookups do not take locks and may run while users
+ * are being added
+ */
+public interface CredentialStore {
+
+    /**
+     * Maximum length of a User-Name value (RFC 2865, section 5.1)
+     */
+    int MAXIMUM_USER_NAME_LENGTH = 253;
+
+    /**
+     * Maximum length of a password that can be sent in a User-Password attribute (RFC 2865, section 5.2)
+     */
+    int MAXIMUM_PASSWORD_LENGTH = 128;
+
+    /**
+     * This method adds a user, or replaces its password if it already exists
+     * @param username User name, in UTF-8
+     * @param password Plain password
+     * @return Boolean: True if the user is new
+     */
+    boolean put(byte[] username, byte[] password);
+
+    /**
+     * This method looks up the password of a user
+     * @param buffer Buffer that holds the user name, in UTF-8
+     * @param offset Index of the user name in the buffer
+     * @param length Length of the user name
+     * @param password Array where the password is copied, at least MAXIMUM_PASSWORD_LENGTH bytes long
+     * @return The length of the password, or -1 if the user does not exist
+     */
+    int getPassword(ByteBuffer buffer, int offset, int length, byte[] password);
+
+    /**
+     * This method starts loading the password of a user when it cannot be looked up without waiting, such as when
+     * it comes from a slow backend and it is not cached
+     * @param buffer Buffer that holds the user name, in UTF-8
+     * @param offset Index of the user name in the buffer
+     * @param length Length of the user name
+     * @return Null if getPassword() does not have to wait, or a future completed when it does not
+     */
+    default CompletableFuture<?> preparePassword(ByteBuffer buffer, int offset, int length) { return null; }
+
+    /**
+     * This method applies an action to the name of every user, in no particular order
+     * @param action Action that receives every user name, in UTF-8
+     */
+    void forEachUserName(Consumer<byte[]> action);
+
+    /**
+     * This method tells if the store holds every user, so a user it does not list does not exist. The filter of
+     * known users is only used with the stores that do
+     * @return Boolean: True if every user is in the store
+     */
+    default boolean holdsAllUsers() { return true; }
+
+    /**
+     * @return The number of users
+     */
+    int size();
+
+    /**
+     * @return An estimation of the memory taken by the store, in bytes
+     */
+    long getFootprintBytes();
+}
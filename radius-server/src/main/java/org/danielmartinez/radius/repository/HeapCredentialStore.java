@@ -0,0 +1,78 @@
+package org.danielmartinez.radius.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class stores the user credentials in a ConcurrentHashMap keyed by the user name as a String. Every lookup
+ * decodes the user name into a String. It suits small user bases
+ */
+public class HeapCredentialStore implements CredentialStore {
+
+    /**
+     * Estimated heap bytes of a map node, its String key with its array, and the array of the password, without
+     * the characters of the user name and the password
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 32 + 24 + 16 + 16;
+
+    private final Map<String, byte[]> passwords = new ConcurrentHashMap<>();
+
+    // Constructor
+    public HeapCredentialStore() {
+    }
+
+    @Override
+    public boolean put(byte[] username, byte[] password) {
+        if(username.length > MAXIMUM_USER_NAME_LENGTH){
+            throw new IllegalArgumentException("The user name is longer than " + MAXIMUM_USER_NAME_LENGTH + " bytes");
+        }
+        if(password.length > MAXIMUM_PASSWORD_LENGTH){
+            throw new IllegalArgumentException("The password is longer than " + MAXIMUM_PASSWORD_LENGTH + " bytes");
+        }
+        return passwords.put(new String(username, StandardCharsets.UTF_8), password.clone()) == null;
+    }
+
+    @Override
+    public int getPassword(ByteBuffer buffer, int offset, int length, byte[] password) {
+        byte[] username = new byte[length];
+        for(int i = 0; i < length; i++){
+            username[i] = buffer.get(offset + i);
+        }
+        byte[] value = passwords.get(new String(username, StandardCharsets.UTF_8));
+        if(value == null){
+            return -1;
+        }
+        System.arraycopy(value, 0, password, 0, value.length);
+        return value.length;
+    }
+
+    @Override
+    public void forEachUserName(Consumer<byte[]> action) {
+        for(String username: passwords.keySet()){
+            action.accept(username.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public int size() { return passwords.size(); }
+
+    @Override
+    public long getFootprintBytes() {
+        long bytes = 0;
+        for(Map.Entry<String, byte[]> entry: passwords.entrySet()){
+            bytes += ENTRY_OVERHEAD_BYTES + entry.getKey().length() + entry.getValue().length;
+        }
+        // Table of the map, one reference per bucket at a load factor of 0.75
+        return bytes + passwords.size() * 8L * 4 / 3;
+    }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "users=" + size() +
+                ']';
+    }
+}
@@ -0,0 +1,114 @@
+package org.danielmartinez.radius.repository;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * This class looks up the user credentials in the sections of a user database file mapped in memory. The table and
+ * the records have the layout of OffHeapCredentialStore, so lookups work the same way and do not allocate, but
+ * nothing is copied when the file is opened: the operating system reads the pages the lookups touch, and keeps
+ * them in its page cache. The store is read-only, since the file is shared with the builder of the next generation
+ */
+public class MappedCredentialStore implements CredentialStore {
+
+    /**
+     * Slots of the table: the high half of the hash of a user name and the offset of its record, 0 if empty
+     */
+    private final ByteBuffer table;
+
+    private final int slotMask;
+
+    /**
+     * Records of the users: user name length, password length, user name and password
+     */
+    private final ByteBuffer data;
+
+    private final int size;
+
+    // Constructor
+    public MappedCredentialStore(ByteBuffer table, ByteBuffer data, int size) {
+        int slots = table.capacity() / 8;
+        if(slots == 0 || Integer.bitCount(slots) != 1 || size >= slots){
+            throw new IllegalArgumentException("Invalid user table of " + slots + " slots");
+        }
+        this.table = table;
+        this.slotMask = slots - 1;
+        this.data = data;
+        this.size = size;
+    }
+
+    @Override
+    public boolean put(byte[] username, byte[] password) {
+        throw new UnsupportedOperationException("The user database is read-only, a new generation must be built");
+    }
+
+    @Override
+    public int getPassword(ByteBuffer buffer, int offset, int length, byte[] password) {
+        long hash = OffHeapCredentialStore.hash(buffer, offset, length);
+        int tag = (int) (hash >>> 32);
+        int slot = (int) hash & slotMask;
+        while(true){
+            long entry = table.getLong(slot * 8);
+            if(entry == 0){
+                return -1;
+            }
+            int record = (int) entry;
+            if((int) (entry >>> 32) == tag && matches(record, buffer, offset, length)){
+                int passwordLength = data.get(record + 1) & 0xFF;
+                int passwordStart = record + 2 + length;
+                for(int i = 0; i < passwordLength; i++){
+                    password[i] = data.get(passwordStart + i);
+                }
+                return passwordLength;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    private boolean matches(int record, ByteBuffer key, int offset, int length){
+        if((data.get(record) & 0xFF) != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(data.get(record + 2 + i) != key.get(offset + i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachUserName(Consumer<byte[]> action) {
+        for(int slot = 0; slot <= slotMask; slot++){
+            long entry = table.getLong(slot * 8);
+            if(entry != 0){
+                int record = (int) entry;
+                byte[] username = new byte[data.get(record) & 0xFF];
+                for(int i = 0; i < username.length; i++){
+                    username[i] = data.get(record + 2 + i);
+                }
+                action.accept(username);
+            }
+        }
+    }
+
+    @Override
+    public int size() { return size; }
+
+    /**
+     * This method returns the bytes of the file mapped by the store. Only the pages touched by the lookups take
+     * physical memory, in the page cache of the operating system and not in the Java heap
+     * @return The mapped bytes
+     */
+    @Override
+    public long getFootprintBytes() { return (long) table.capacity() + data.capacity(); }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "users=" + size +
+                ", slots=" + (slotMask + 1) +
+                ", dataBytes=" + data.capacity() +
+                ']';
+    }
+}
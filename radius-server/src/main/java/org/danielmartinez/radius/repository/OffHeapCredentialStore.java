@@ -0,0 +1,283 @@
+package org.danielmartinez.radius.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
+
+/**
+ * This class stores the user credentials outside the Java heap, so millions of users neither grow the heap nor the
+ * GC pauses. Users are records in a data region: the length of the user name (1 byte), the length of the password
+ * (1 byte), the user name and the password, one after another. An open-addressing table with linear probing maps
+ * the hash of a user name to its record. Every slot of the table is 8 bytes: the high half of the hash, to skip most
+ * records that do not match, and the offset of the record. Lookups compare the user name byte by byte against the
+ * buffer where it was received, and copy the password into an array given by the caller, so they do not allocate.
+ * Additions are serialized, while lookups take no locks: a record is completely written before its slot is
+ * published with a release write, and grown regions are published through a volatile field. Replacing a password
+ * appends a new record, and the old one is left as garbage
+ */
+public class OffHeapCredentialStore implements CredentialStore {
+
+    /**
+     * Ordered access to the slots of the table
+     */
+    private static final VarHandle SLOTS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    /**
+     * Offset of the first record. Offset 0 is never used, so an empty slot is 0
+     */
+    private static final int FIRST_RECORD = 8;
+
+    /**
+     * Maximum fraction of used slots before the table is grown
+     */
+    private static final double MAXIMUM_LOAD = 0.5;
+
+    /**
+     * Table and data region, replaced together when any of them grows
+     */
+    private static final class Regions {
+        final ByteBuffer table;
+        final int slotMask;
+        final ByteBuffer data;
+
+        Regions(ByteBuffer table, ByteBuffer data) {
+            this.table = table;
+            this.slotMask = table.capacity() / 8 - 1;
+            this.data = data;
+        }
+    }
+
+    private volatile Regions regions;
+
+    /**
+     * End of the last record in the data region. Only read and written by the thread that adds users
+     */
+    private int dataEnd = FIRST_RECORD;
+
+    private volatile int size;
+
+    private long garbageBytes;
+
+    // Constructor
+    public OffHeapCredentialStore() {
+        this(1024, 32);
+    }
+
+    /**
+     * @param expectedUsers Number of users the store is sized for. It grows beyond it when needed
+     * @param averageRecordBytes Expected average length of a user name plus its password
+     */
+    public OffHeapCredentialStore(int expectedUsers, int averageRecordBytes) {
+        long wantedSlots = Math.max(16, (long) (expectedUsers / MAXIMUM_LOAD));
+        int slots = (int) Math.min(1 << 27, Long.highestOneBit(wantedSlots - 1) << 1);
+        long dataBytes = FIRST_RECORD + (long) Math.max(16, expectedUsers) * (2 + averageRecordBytes);
+        this.regions = new Regions(allocate((long) slots * 8), allocate(dataBytes));
+    }
+
+    @Override
+    public synchronized boolean put(byte[] username, byte[] password) {
+        if(username.length > MAXIMUM_USER_NAME_LENGTH){
+            throw new IllegalArgumentException("The user name is longer than " + MAXIMUM_USER_NAME_LENGTH + " bytes");
+        }
+        if(password.length > MAXIMUM_PASSWORD_LENGTH){
+            throw new IllegalArgumentException("The password is longer than " + MAXIMUM_PASSWORD_LENGTH + " bytes");
+        }
+
+        ByteBuffer key = ByteBuffer.wrap(username);
+        long hash = hash(key, 0, username.length);
+        Regions current = regions;
+        int slot = find(current, key, 0, username.length, hash);
+        boolean added = slot < 0;
+        if(added && size + 1 > (current.slotMask + 1) * MAXIMUM_LOAD){
+            current = growTable(current);
+            slot = find(current, key, 0, username.length, hash);
+        }
+        if(!added){
+            long previous = (long) SLOTS.getAcquire(current.table, slot * 8);
+            int previousRecord = (int) previous;
+            garbageBytes += 2 + (current.data.get(previousRecord) & 0xFF)
+                    + (current.data.get(previousRecord + 1) & 0xFF);
+        }
+
+        int recordLength = 2 + username.length + password.length;
+        if((long) dataEnd + recordLength > current.data.capacity()){
+            current = growData(current, recordLength);
+        }
+        int record = dataEnd;
+        ByteBuffer data = current.data;
+        data.put(record, (byte) username.length);
+        data.put(record + 1, (byte) password.length);
+        for(int i = 0; i < username.length; i++){
+            data.put(record + 2 + i, username[i]);
+        }
+        for(int i = 0; i < password.length; i++){
+            data.put(record + 2 + username.length + i, password[i]);
+        }
+        dataEnd += recordLength;
+
+        int target = added ? ~slot : slot;
+        SLOTS.setRelease(current.table, target * 8, (hash & 0xFFFFFFFF00000000L) | record);
+        if(added){
+            size++;
+        }
+        return added;
+    }
+
+    @Override
+    public int getPassword(ByteBuffer buffer, int offset, int length, byte[] password) {
+        Regions current = regions;
+        int slot = find(current, buffer, offset, length, hash(buffer, offset, length));
+        if(slot < 0){
+            return -1;
+        }
+        int record = (int) (long) SLOTS.getAcquire(current.table, slot * 8);
+        ByteBuffer data = current.data;
+        int passwordLength = data.get(record + 1) & 0xFF;
+        int passwordStart = record + 2 + length;
+        for(int i = 0; i < passwordLength; i++){
+            password[i] = data.get(passwordStart + i);
+        }
+        return passwordLength;
+    }
+
+    /**
+     * This method looks for the slot of a user name
+     * @return The slot of the user name, or the complement of the empty slot where it would be added
+     */
+    private static int find(Regions regions, ByteBuffer key, int offset, int length, long hash){
+        int tag = (int) (hash >>> 32);
+        int slot = (int) hash & regions.slotMask;
+        while(true){
+            long entry = (long) SLOTS.getAcquire(regions.table, slot * 8);
+            if(entry == 0){
+                return ~slot;
+            }
+            if((int) (entry >>> 32) == tag && matches(regions.data, (int) entry, key, offset, length)){
+                return slot;
+            }
+            slot = (slot + 1) & regions.slotMask;
+        }
+    }
+
+    private static boolean matches(ByteBuffer data, int record, ByteBuffer key, int offset, int length){
+        if((data.get(record) & 0xFF) != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(data.get(record + 2 + i) != key.get(offset + i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method doubles the table and moves every slot to its new position. The data region is kept
+     */
+    private Regions growTable(Regions current){
+        if(current.slotMask + 1 >= 1 << 27){
+            throw new IllegalStateException("The credential store cannot hold more users");
+        }
+        ByteBuffer table = allocate((long) (current.slotMask + 1) * 16);
+        int slotMask = table.capacity() / 8 - 1;
+        for(int slot = 0; slot <= current.slotMask; slot++){
+            long entry = current.table.getLong(slot * 8);
+            if(entry != 0){
+                ByteBuffer data = current.data;
+                int record = (int) entry;
+                int target = (int) hash(data, record + 2, data.get(record) & 0xFF) & slotMask;
+                while(table.getLong(target * 8) != 0){
+                    target = (target + 1) & slotMask;
+                }
+                table.putLong(target * 8, entry);
+            }
+        }
+        regions = new Regions(table, current.data);
+        return regions;
+    }
+
+    /**
+     * This method doubles the data region, or more if a record does not fit, and copies the records into it. The
+     * table is copied too, so the slots added later are never seen by a reader of the old data region
+     */
+    private Regions growData(Regions current, int recordLength){
+        long capacity = Math.max((long) current.data.capacity() * 2, (long) dataEnd + recordLength);
+        if(capacity > Integer.MAX_VALUE){
+            capacity = Integer.MAX_VALUE;
+            if((long) dataEnd + recordLength > capacity){
+                throw new IllegalStateException("The credential store cannot hold more users");
+            }
+        }
+        ByteBuffer data = allocate(capacity);
+        ByteBuffer records = current.data.duplicate();
+        records.limit(dataEnd).position(0);
+        data.put(records).clear();
+        ByteBuffer table = allocate(current.table.capacity());
+        table.put(current.table.duplicate().clear()).clear();
+        regions = new Regions(table, data);
+        return regions;
+    }
+
+    private static ByteBuffer allocate(long bytes){
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * This method hashes a user name. It is also the hash of the user database files, so it must not change
+     */
+    static long hash(ByteBuffer buffer, int offset, int length){
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < length; i++){
+            hash = (hash ^ (buffer.get(offset + i) & 0xFF)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public void forEachUserName(Consumer<byte[]> action) {
+        Regions current = regions;
+        for(int slot = 0; slot <= current.slotMask; slot++){
+            long entry = (long) SLOTS.getAcquire(current.table, slot * 8);
+            if(entry != 0){
+                int record = (int) entry;
+                byte[] username = new byte[current.data.get(record) & 0xFF];
+                for(int i = 0; i < username.length; i++){
+                    username[i] = current.data.get(record + 2 + i);
+                }
+                action.accept(username);
+            }
+        }
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public long getFootprintBytes() {
+        Regions current = regions;
+        return (long) current.table.capacity() + current.data.capacity();
+    }
+
+    /**
+     * This method returns the bytes of the records whose password was replaced
+     * @return The bytes of the data region that are no longer used
+     */
+    public synchronized long getGarbageBytes() { return garbageBytes; }
+
+    @Override
+    public String toString() {
+        Regions current = regions;
+        return "[" +
+                "users=" + size +
+                ", slots=" + (current.slotMask + 1) +
+                ", dataBytes=" + current.data.capacity() +
+                ", garbageBytes=" + getGarbageBytes() +
+                ']';
+    }
+}
@@ -0,0 +1,190 @@
+package org.danielmartinez.radius.repository;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * This class implements a binary trie of IP prefixes (CIDR ranges) that resolves an address to the value of its
+ * longest matching prefix. IPv4 and IPv6 prefixes are kept in separate tries.
+ * Nodes are stored in parallel int arrays instead of objects, so tens of thousands of prefixes take little memory and
+ * a lookup only follows array indexes. Insertions are serialized, while lookups take no locks: a node is completely
+ * written before it is linked to its parent, and grown arrays are published through a volatile field
+ */
+public class PrefixTrie<V> {
+
+    /**
+     * Nodes of one trie. Index 0 is the root, and child index 0 means "no child" because the root is never a child
+     */
+    private static final class Nodes {
+        final int[] zero;
+        final int[] one;
+        final Object[] values;
+        int size = 1;
+
+        Nodes(int capacity) {
+            this.zero = new int[capacity];
+            this.one = new int[capacity];
+            this.values = new Object[capacity];
+        }
+
+        Nodes grow(){
+            Nodes grown = new Nodes(zero.length * 2);
+            System.arraycopy(zero, 0, grown.zero, 0, size);
+            System.arraycopy(one, 0, grown.one, 0, size);
+            System.arraycopy(values, 0, grown.values, 0, size);
+            grown.size = size;
+            return grown;
+        }
+    }
+
+    private volatile Nodes ipv4 = new Nodes(64);
+
+    private volatile Nodes ipv6 = new Nodes(64);
+
+    private int prefixCount;
+
+    // Constructor
+    public PrefixTrie() {
+    }
+
+    /**
+     * This method adds a prefix. If the prefix already exists, its value is replaced
+     * @param cidr Address or range in CIDR notation, e.g. 192.168.0.0/16. An address without length is a host prefix
+     * @param value The value of the prefix
+     */
+    public void add(String cidr, V value){
+        int slash = cidr.indexOf('/');
+        InetAddress address = parseAddress(slash < 0 ? cidr : cidr.substring(0, slash));
+        int maxLength = address.getAddress().length * 8;
+        int prefixLength = slash < 0 ? maxLength : Integer.parseInt(cidr.substring(slash + 1));
+        add(address, prefixLength, value);
+    }
+
+    /**
+     * This method adds a prefix. If the prefix already exists, its value is replaced
+     * @param address Network address
+     * @param prefixLength Number of significant bits of the address
+     * @param value The value of the prefix
+     */
+    public synchronized void add(InetAddress address, int prefixLength, V value){
+        byte[] bytes = address.getAddress();
+        if(prefixLength < 0 || prefixLength > bytes.length * 8){
+            throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+        }
+
+        boolean isIpv4 = bytes.length == 4;
+        Nodes nodes = isIpv4 ? ipv4 : ipv6;
+        int node = 0;
+
+        for(int bit = 0; bit < prefixLength; bit++){
+            boolean isOne = ((bytes[bit >>> 3] >>> (7 - (bit & 7))) & 1) == 1;
+            int child = isOne ? nodes.one[node] : nodes.zero[node];
+
+            if(child == 0){
+                if(nodes.size == nodes.zero.length){
+                    nodes = nodes.grow();
+                    publish(isIpv4, nodes);
+                }
+                child = nodes.size++;
+                if(isOne){
+                    nodes.one[node] = child;
+                } else {
+                    nodes.zero[node] = child;
+                }
+            }
+            node = child;
+        }
+
+        if(nodes.values[node] == null){
+            prefixCount++;
+        }
+        nodes.values[node] = value;
+        publish(isIpv4, nodes);
+    }
+
+    /**
+     * This method looks for the longest prefix that contains an address
+     * @param address The address
+     * @return The value of the longest matching prefix, or null if no prefix contains the address
+     */
+    @SuppressWarnings("unchecked")
+    public V longestMatch(InetAddress address){
+        if(address instanceof Inet4Address){
+            // The hash code of an IPv4 address is the address itself, which avoids copying its bytes
+            int bits = address.hashCode();
+            Nodes nodes = ipv4;
+            Object match = nodes.values[0];
+            int node = 0;
+            for(int bit = 31; bit >= 0; bit--){
+                node = ((bits >>> bit) & 1) == 1 ? nodes.one[node] : nodes.zero[node];
+                if(node == 0){
+                    break;
+                }
+                if(nodes.values[node] != null){
+                    match = nodes.values[node];
+                }
+            }
+            return (V) match;
+        }
+
+        byte[] bytes = address.getAddress();
+        Nodes nodes = ipv6;
+        Object match = nodes.values[0];
+        int node = 0;
+        for(int bit = 0; bit < bytes.length * 8; bit++){
+            node = ((bytes[bit >>> 3] >>> (7 - (bit & 7))) & 1) == 1 ? nodes.one[node] : nodes.zero[node];
+            if(node == 0){
+                break;
+            }
+            if(nodes.values[node] != null){
+                match = nodes.values[node];
+            }
+        }
+        return (V) match;
+    }
+
+    /**
+     * This method returns the number of prefixes in the trie
+     * @return The number of prefixes
+     */
+    public synchronized int size(){
+        return prefixCount;
+    }
+
+    /**
+     * This method returns the number of nodes used by both tries, as a measure of their memory footprint
+     * @return The number of nodes
+     */
+    public synchronized int nodeCount(){
+        return ipv4.size + ipv6.size;
+    }
+
+    private void publish(boolean isIpv4, Nodes nodes){
+        if(isIpv4){
+            ipv4 = nodes;
+        } else {
+            ipv6 = nodes;
+        }
+    }
+
+    private static InetAddress parseAddress(String address){
+        // Only literal addresses are accepted, so no name resolution is attempted
+        if(!address.matches("[0-9.]+") && !address.contains(":")){
+            throw new IllegalArgumentException("Invalid IP address: " + address);
+        }
+        try {
+            return InetAddress.getByName(address);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid IP address: " + address, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "prefixes=" + size() +
+                ", nodes=" + nodeCount() +
+                ']';
+    }
+}
@@ -0,0 +1,396 @@
+package org.danielmartinez.radius.repository;
+
+import org.danielmartinez.radius.packet.Attribute;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the reply profiles of the users: the attributes sent in the Access-Accept of every user, such as
+ * Session-Timeout, Idle-Timeout or Filter-Id. Profiles are defined per group and per user, and they are compiled
+ * once into blocks of encoded attributes, which are copied as they are into the Attributes field of the response.
+ * Users of a group without attributes of their own share the block of the group.
+ * Instances are immutable: a change of the profiles compiles a new instance, which replaces the current one at once.
+ * Blocks are looked up straight from the User-Name bytes of the request, in an open-addressing table, so a lookup
+ * does not allocate
+ */
+public final class ReplyProfiles {
+
+    /**
+     * Name of the group whose attributes are sent to the users without a profile
+     */
+    public static final String DEFAULT_GROUP = "default";
+
+    private static final byte[] NO_ATTRIBUTES = new byte[0];
+
+    /**
+     * Profiles that send no attributes
+     */
+    public static final ReplyProfiles EMPTY = new Builder().build();
+
+    /**
+     * Maximum length of a block, so that the Access-Accept fits in a RADIUS packet
+     */
+    private static final int MAXIMUM_BLOCK_LENGTH = RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH
+            - RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH;
+
+    /**
+     * Formats of the attribute values
+     */
+    private enum ValueType {
+        // 32-bit unsigned integer
+        INTEGER,
+        // IPv4 address
+        ADDRESS,
+        // UTF-8 text
+        TEXT
+    }
+
+    private static final String[] ATTRIBUTE_NAMES = {
+            "Service-Type", "Framed-Protocol", "Framed-IP-Address", "Framed-IP-Netmask", "Framed-Routing",
+            "Filter-Id", "Framed-MTU", "Framed-Compression", "Reply-Message", "Framed-Route", "Class",
+            "Session-Timeout", "Idle-Timeout", "Termination-Action"
+    };
+
+    private static final int[] ATTRIBUTE_TYPES = {
+            RadiusConstants.SERVICE_TYPE, RadiusConstants.FRAMED_PROTOCOL, RadiusConstants.FRAMED_IP_ADDRESS,
+            RadiusConstants.FRAMED_IP_NETMASK, RadiusConstants.FRAMED_ROUTING, RadiusConstants.FILTER_ID,
+            RadiusConstants.FRAMED_MTU, RadiusConstants.FRAMED_COMPRESSION, RadiusConstants.REPLY_MESSAGE,
+            RadiusConstants.FRAMED_ROUTE, RadiusConstants.CLASS, RadiusConstants.SESSION_TIMEOUT,
+            RadiusConstants.IDLE_TIMEOUT, RadiusConstants.TERMINATION_ACTION
+    };
+
+    private static final ValueType[] ATTRIBUTE_VALUES = {
+            ValueType.INTEGER, ValueType.INTEGER, ValueType.ADDRESS, ValueType.ADDRESS, ValueType.INTEGER,
+            ValueType.TEXT, ValueType.INTEGER, ValueType.INTEGER, ValueType.TEXT, ValueType.TEXT, ValueType.TEXT,
+            ValueType.INTEGER, ValueType.INTEGER, ValueType.INTEGER
+    };
+
+    /**
+     * User names in UTF-8, indexed by slot. Null slots are free
+     */
+    private final byte[][] userNames;
+
+    /**
+     * Encoded attributes of every user, indexed by slot
+     */
+    private final byte[][] blocks;
+
+    private final int slotMask;
+
+    private final int users;
+
+    private final int groups;
+
+    /**
+     * Encoded attributes of the users without a profile
+     */
+    private final byte[] defaultBlock;
+
+    /**
+     * Bytes of the distinct blocks
+     */
+    private final long encodedBytes;
+
+    private ReplyProfiles(Map<String, byte[]> userBlocks, byte[] defaultBlock, int groups, long encodedBytes) {
+        int slots = Integer.highestOneBit(Math.max(1, userBlocks.size() * 2 - 1)) * 2;
+        this.userNames = new byte[slots][];
+        this.blocks = new byte[slots][];
+        this.slotMask = slots - 1;
+        for(Map.Entry<String, byte[]> user: userBlocks.entrySet()){
+            byte[] userName = user.getKey().getBytes(StandardCharsets.UTF_8);
+            int slot = (int) OffHeapCredentialStore.hash(ByteBuffer.wrap(userName), 0, userName.length) & slotMask;
+            while(userNames[slot] != null){
+                slot = (slot + 1) & slotMask;
+            }
+            userNames[slot] = userName;
+            blocks[slot] = user.getValue();
+        }
+        this.users = userBlocks.size();
+        this.groups = groups;
+        this.defaultBlock = defaultBlock;
+        this.encodedBytes = encodedBytes;
+    }
+
+    /**
+     * This method looks up the encoded attributes of a user
+     * @param buffer Buffer that holds the User-Name
+     * @param offset Index of the User-Name in the buffer
+     * @param length Length of the User-Name
+     * @return The attributes, encoded as in the Attributes field of a RADIUS packet, which must not be modified. It
+     *         is the block of the default group if the user has no profile, and it is empty if there is none
+     */
+    public byte[] lookup(ByteBuffer buffer, int offset, int length){
+        if(users == 0){
+            return defaultBlock;
+        }
+        int slot = (int) OffHeapCredentialStore.hash(buffer, offset, length) & slotMask;
+        byte[] userName;
+        while((userName = userNames[slot]) != null){
+            if(equals(userName, buffer, offset, length)){
+                return blocks[slot];
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return defaultBlock;
+    }
+
+    private static boolean equals(byte[] userName, ByteBuffer buffer, int offset, int length){
+        if(userName.length != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(userName[i] != buffer.get(offset + i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method checks if the profiles send no attributes to any user
+     * @return Boolean: True if every lookup returns an empty block
+     */
+    public boolean isEmpty(){
+        return users == 0 && defaultBlock.length == 0;
+    }
+
+    /**
+     * This method reads and compiles the profiles of a file. Every line defines a group or a user, followed by its
+     * attributes, separated by whitespace:
+     *     group gold Session-Timeout=86400 Idle-Timeout=900 Filter-Id=gold
+     *     user frans1 group=gold Framed-IP-Address=10.0.0.1
+     * A user gets the attributes of its group, except the ones of the types it defines itself. The group named
+     * "default" is sent to the users without a profile. Empty lines and lines starting with # are skipped
+     * @param file Path of the file
+     * @return The compiled profiles
+     * @throws IllegalArgumentException If a line is not valid, naming the line
+     */
+    public static ReplyProfiles load(Path file) throws IOException {
+        Builder builder = new Builder();
+        try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+            String line;
+            int number = 0;
+            while((line = reader.readLine()) != null){
+                number++;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                try {
+                    parseLine(builder, line.split("\\s+"));
+                } catch (IllegalArgumentException e){
+                    throw new IllegalArgumentException(file + ", line " + number + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        try {
+            return builder.build();
+        } catch (IllegalArgumentException e){
+            throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void parseLine(Builder builder, String[] fields){
+        if(fields.length < 2 || !(fields[0].equals("group") || fields[0].equals("user"))){
+            throw new IllegalArgumentException("Expected 'group <name>' or 'user <name>'");
+        }
+        String group = null;
+        List<Attribute> attributes = new ArrayList<>();
+        for(int i = 2; i < fields.length; i++){
+            int separator = fields[i].indexOf('=');
+            if(separator <= 0){
+                throw new IllegalArgumentException("Expected <attribute>=<value>: " + fields[i]);
+            }
+            String name = fields[i].substring(0, separator);
+            String value = fields[i].substring(separator + 1);
+            if(name.equals("group") && fields[0].equals("user")){
+                group = value;
+            } else {
+                attributes.add(parseAttribute(name, value));
+            }
+        }
+        if(fields[0].equals("group")){
+            builder.addGroup(fields[1], attributes);
+        } else {
+            builder.addUser(fields[1], group, attributes);
+        }
+    }
+
+    /**
+     * This method encodes the value of an attribute given by its name
+     * @param name Name of the attribute, as in RFC 2865
+     * @param value Value in text format: a number, an IPv4 address or text, depending on the attribute
+     * @return The attribute
+     */
+    public static Attribute parseAttribute(String name, String value){
+        int index = Arrays.asList(ATTRIBUTE_NAMES).indexOf(name);
+        if(index < 0){
+            throw new IllegalArgumentException("Unknown reply attribute: " + name);
+        }
+        byte[] encoded;
+        switch(ATTRIBUTE_VALUES[index]){
+            case INTEGER:
+                long number = Long.parseLong(value);
+                if(number < 0 || number > 0xFFFFFFFFL){
+                    throw new IllegalArgumentException("The value of " + name + " is out of range: " + value);
+                }
+                encoded = ByteBuffer.allocate(4).putInt((int) number).array();
+                break;
+            case ADDRESS:
+                encoded = parseAddress(name, value);
+                break;
+            case TEXT:
+            default:
+                encoded = value.getBytes(StandardCharsets.UTF_8);
+        }
+        if(encoded.length == 0 || encoded.length > 253){
+            throw new IllegalArgumentException("The value of " + name + " must be 1 to 253 bytes long");
+        }
+        return new Attribute(ATTRIBUTE_TYPES[index], encoded.length + 2, encoded);
+    }
+
+    private static byte[] parseAddress(String name, String value){
+        // Only literal IPv4 addresses, so that no name is resolved
+        if(!value.matches("\\d{1,3}(\\.\\d{1,3}){3}")){
+            throw new IllegalArgumentException("The value of " + name + " is not an IPv4 address: " + value);
+        }
+        try {
+            return InetAddress.getByName(value).getAddress();
+        } catch (UnknownHostException e){
+            throw new IllegalArgumentException("The value of " + name + " is not an IPv4 address: " + value, e);
+        }
+    }
+
+    // Getters
+    public int getUserCount() { return users; }
+
+    public int getGroupCount() { return groups; }
+
+    public long getEncodedBytes() { return encodedBytes; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "users=" + users +
+                ", groups=" + groups +
+                ", defaultAttributes=" + defaultBlock.length +
+                ", encodedBytes=" + encodedBytes +
+                ']';
+    }
+
+    /**
+     * This class collects the groups and users of the profiles and compiles them
+     */
+    public static final class Builder {
+
+        private final Map<String, List<Attribute>> groups = new LinkedHashMap<>();
+
+        private final Map<String, String> userGroups = new LinkedHashMap<>();
+
+        private final Map<String, List<Attribute>> userAttributes = new LinkedHashMap<>();
+
+        /**
+         * This method defines a group, or replaces it
+         * @param name Name of the group
+         * @param attributes Attributes sent to the users of the group
+         * @return This builder
+         */
+        public Builder addGroup(String name, List<Attribute> attributes){
+            groups.put(name, new ArrayList<>(attributes));
+            return this;
+        }
+
+        /**
+         * This method defines the profile of a user, or replaces it
+         * @param name User name
+         * @param group Name of the group of the user, or null
+         * @param attributes Attributes of the user, which replace the ones of the same types of the group
+         * @return This builder
+         */
+        public Builder addUser(String name, String group, List<Attribute> attributes){
+            userGroups.put(name, group);
+            userAttributes.put(name, new ArrayList<>(attributes));
+            return this;
+        }
+
+        /**
+         * This method encodes every profile
+         * @return The compiled profiles
+         * @throws IllegalArgumentException If a user names an unknown group or a profile does not fit in a packet
+         */
+        public ReplyProfiles build(){
+            long encodedBytes = 0;
+            Map<String, byte[]> groupBlocks = new HashMap<>();
+            for(Map.Entry<String, List<Attribute>> group: groups.entrySet()){
+                byte[] block = encode("group " + group.getKey(), group.getValue());
+                groupBlocks.put(group.getKey(), block);
+                encodedBytes += block.length;
+            }
+
+            Map<String, byte[]> userBlocks = new LinkedHashMap<>();
+            for(Map.Entry<String, List<Attribute>> user: userAttributes.entrySet()){
+                String group = userGroups.get(user.getKey());
+                if(group != null && !groups.containsKey(group)){
+                    throw new IllegalArgumentException("User " + user.getKey() + " is in unknown group " + group);
+                }
+                if(user.getValue().isEmpty()){
+                    // Users without attributes of their own share the block of their group
+                    userBlocks.put(user.getKey(), group == null ? NO_ATTRIBUTES : groupBlocks.get(group));
+                    continue;
+                }
+                List<Attribute> attributes = new ArrayList<>();
+                if(group != null){
+                    for(Attribute attribute: groups.get(group)){
+                        if(!hasType(user.getValue(), attribute.getType())){
+                            attributes.add(attribute);
+                        }
+                    }
+                }
+                attributes.addAll(user.getValue());
+                byte[] block = encode("user " + user.getKey(), attributes);
+                userBlocks.put(user.getKey(), block);
+                encodedBytes += block.length;
+            }
+
+            byte[] defaultBlock = groupBlocks.getOrDefault(DEFAULT_GROUP, NO_ATTRIBUTES);
+            return new ReplyProfiles(userBlocks, defaultBlock, groups.size(), encodedBytes);
+        }
+
+        private static boolean hasType(List<Attribute> attributes, int type){
+            for(Attribute attribute: attributes){
+                if(attribute.getType() == type){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static byte[] encode(String profile, List<Attribute> attributes){
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            for(Attribute attribute: attributes){
+                block.write(attribute.getType());
+                block.write(attribute.getValue().length + 2);
+                block.write(attribute.getValue(), 0, attribute.getValue().length);
+            }
+            if(block.size() > MAXIMUM_BLOCK_LENGTH){
+                throw new IllegalArgumentException("The attributes of " + profile + " do not fit in a packet");
+            }
+            return block.size() == 0 ? NO_ATTRIBUTES : block.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.danielmartinez.radius.repository;
+
+import org.danielmartinez.radius.util.Digests;
+
+import java.security.MessageDigest;
+
+/**
+ * This class represents the Shared Secret of a RADIUS Client together with an MD5 state that has already
+ * hashed it. Every hash of the password hiding algorithm starts with the Shared Secret (RFC 2865, section 5.2),
+ * so cloning the primed state avoids hashing the secret again for every block of every request.
+ * MD5 only hashes full 64-byte blocks, so a shorter secret is merely buffered by the primed state. In that case
+ * cloning costs more than updating the digest of the current thread with the secret, which is done instead
+ */
+public class SharedSecret {
+    /**
+     * Shared Secret between the RADIUS Client and the Server
+     */
+    private final byte[] secret;
+
+    private static final int MD5_BLOCK_LENGTH = 64;
+
+    /**
+     * MD5 state after hashing the Shared Secret. It is never updated, only cloned. It is null if the secret is
+     * shorter than one MD5 block or the MD5 implementation does not support cloning its state
+     */
+    private final MessageDigest primedMd5;
+
+    // Constructor
+    public SharedSecret(byte[] secret) {
+        this.secret = secret;
+        this.primedMd5 = secret.length >= MD5_BLOCK_LENGTH ? newPrimedMd5(secret) : null;
+    }
+
+    // Getters
+    public byte[] getBytes() { return secret; }
+
+    /**
+     * This method returns an MD5 digest that has already been updated with the Shared Secret
+     * @return A digest equivalent to a new MD5 digest updated with the Shared Secret
+     */
+    public MessageDigest newPrimedDigest(){
+        if(primedMd5 != null){
+            try {
+                return (MessageDigest) primedMd5.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        MessageDigest md5 = Digests.md5();
+        md5.update(secret);
+        return md5;
+    }
+
+    /**
+     * This method hides a password as the User-Password attribute of an Access-Request (RFC 2865, section 5.2).
+     * Every MD5 hash starts from newPrimedDigest(), so a long secret is not hashed again.
+     * The server uses it to encode the passwords of its database and a RADIUS Client to build its requests
+     * @param plainPassword Plain user password
+     * @param requestAuthenticator Request Authenticator field of the request
+     * @return The hidden password, padded to a multiple of 16 bytes
+     */
+    public byte[] hidePassword(byte[] plainPassword, byte[] requestAuthenticator){
+        byte[] hiddenPassword = new byte[Digests.paddedPasswordLength(plainPassword.length)];
+        System.arraycopy(plainPassword, 0, hiddenPassword, 0, plainPassword.length);
+
+        byte[] bn = new byte[16];
+        for (int i = 0; i < hiddenPassword.length; i += 16) {
+            // b1 = MD5(S + RA), bi = MD5(S + c(i-1))
+            MessageDigest md5 = newPrimedDigest();
+            if (i == 0) {
+                md5.update(requestAuthenticator, 0, 16);
+            } else {
+                md5.update(hiddenPassword, i - 16, 16);
+            }
+            Digests.digest(md5, bn);
+
+            // perform the XOR as specified by RFC 2865.
+            for (int j = 0; j < 16; j++) {
+                hiddenPassword[i + j] = (byte) (bn[j] ^ hiddenPassword[i + j]);
+            }
+        }
+
+        return hiddenPassword;
+    }
+
+    private static MessageDigest newPrimedMd5(byte[] secret){
+        MessageDigest md5 = Digests.newMd5();
+        md5.update(secret);
+        try {
+            md5.clone();
+            return md5;
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.danielmartinez.radius.repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * This class stands in for an external credential backend: it keeps the users and the clients in memory, and every
+ * call waits a fixed latency, as a query to a remote database would. It is used to run the server and the load
+ * tests with a backend behind the credential cache, and to see how many calls reach it
+ */
+public class SimulatedCredentialBackend implements CredentialBackend {
+
+    private final Map<String, byte[]> passwords = new ConcurrentHashMap<>();
+
+    private final PrefixTrie<byte[]> sharedSecrets = new PrefixTrie<>();
+
+    /**
+     * IP addresses and CIDR ranges of the clients, in the order they were added
+     */
+    private final List<String> clientIds = new CopyOnWriteArrayList<>();
+
+    /**
+     * Time every call waits before it answers
+     */
+    private final long latencyNanos;
+
+    private final LongAdder calls = new LongAdder();
+
+    // Constructor
+    public SimulatedCredentialBackend(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    @Override
+    public byte[] loadPassword(String username) throws IOException {
+        simulateLatency();
+        byte[] password = passwords.get(username);
+        return password == null ? null : password.clone();
+    }
+
+    @Override
+    public byte[] loadSharedSecret(InetAddress clientAddress) throws IOException {
+        simulateLatency();
+        byte[] sharedSecret = sharedSecrets.longestMatch(clientAddress);
+        return sharedSecret == null ? null : sharedSecret.clone();
+    }
+
+    private void simulateLatency() throws IOException {
+        calls.increment();
+        try {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while querying the backend", e);
+        }
+    }
+
+    /**
+     * This method adds a user, or replaces its password
+     * @param username User name
+     * @param password Plain password
+     */
+    public void addUser(String username, byte[] password){
+        passwords.put(username, password.clone());
+    }
+
+    /**
+     * This method adds a client
+     * @param clientId IP address or CIDR range of the client
+     * @param sharedSecret Shared Secret of the client
+     */
+    public void addClient(String clientId, byte[] sharedSecret){
+        sharedSecrets.add(clientId, sharedSecret.clone());
+        clientIds.add(clientId);
+    }
+
+    /**
+     * This method adds the users listed in a file, in the format of UserManager.loadUsers()
+     * @param usersFile Path of the file
+     * @return The number of users added
+     */
+    public int loadUsers(Path usersFile) throws IOException {
+        return read(usersFile, (username, password) -> addUser(username, password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * This method adds the clients listed in a file, in the format of UserManager.loadClients()
+     * @param clientsFile Path of the file
+     * @return The number of clients added
+     */
+    public int loadClients(Path clientsFile) throws IOException {
+        return read(clientsFile, (clientId, secret) -> addClient(clientId, secret.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static int read(Path file, BiConsumer<String, String> consumer) throws IOException {
+        int lines = 0;
+        try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                String[] fields = line.split("\\s+", 2);
+                if(fields.length != 2){
+                    throw new IllegalArgumentException("Invalid line in " + file + ": " + fields[0]);
+                }
+                consumer.accept(fields[0], fields[1]);
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // Getters
+    public long getCalls() { return calls.sum(); }
+
+    public List<String> getClientIds() { return clientIds; }
+
+    public long getLatencyNanos() { return latencyNanos; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "users=" + passwords.size() +
+                ", clients=" + sharedSecrets.size() +
+                ", calls=" + getCalls() +
+                ']';
+    }
+}
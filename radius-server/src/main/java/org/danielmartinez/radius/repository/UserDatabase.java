@@ -0,0 +1,182 @@
+package org.danielmartinez.radius.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class opens a user database file: one generation of the users and the clients of the server, built offline
+ * by UserDatabaseWriter. The file is mapped in memory instead of parsed, so it opens in milliseconds whatever the
+ * number of users: the users are looked up in place by a MappedCredentialStore, and only the filter of known users
+ * and the few clients are copied into the heap.
+ * The file starts with a header of HEADER_BYTES, little-endian:
+ * magic, version, generation, users, slots of the table, clients, hashes and capacity of the filter, the offset and
+ * length of the four sections (table, filter, data and clients), the creation time and the CRC32 of the header.
+ * Every section starts at a multiple of 8 bytes. The table and the data have the layout of OffHeapCredentialStore,
+ * and a client is the length (2 bytes) and the UTF-8 bytes of its IP address or CIDR range, and the length (2 bytes)
+ * and the bytes of its Shared Secret.
+ * Only the header is checked when the file is opened, so it must never be modified in place: a new generation is
+ * written to another file and renamed over the previous one, and the mappings of the previous one stay valid
+ */
+public class UserDatabase {
+
+    /**
+     * "RADB"
+     */
+    static final int MAGIC = 0x52414442;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 128;
+
+    /**
+     * Index of the CRC32 of the header, which covers all the bytes before it
+     */
+    static final int CHECKSUM_OFFSET = 120;
+
+    /**
+     * Client of the database: an IP address or CIDR range and its Shared Secret
+     */
+    public static final class Client {
+        private final String address;
+        private final byte[] sharedSecret;
+
+        Client(String address, byte[] sharedSecret) {
+            this.address = address;
+            this.sharedSecret = sharedSecret;
+        }
+
+        // Getters
+        public String getAddress() { return address; }
+
+        public byte[] getSharedSecret() { return sharedSecret.clone(); }
+    }
+
+    private final Path path;
+
+    private final long generation;
+
+    private final long createdMillis;
+
+    private final long fileBytes;
+
+    private final MappedCredentialStore credentialStore;
+
+    private final UserNameFilter userNameFilter;
+
+    private final List<Client> clients;
+
+    // Constructor
+    private UserDatabase(Path path, long generation, long createdMillis, long fileBytes,
+                         MappedCredentialStore credentialStore, UserNameFilter userNameFilter, List<Client> clients) {
+        this.path = path;
+        this.generation = generation;
+        this.createdMillis = createdMillis;
+        this.fileBytes = fileBytes;
+        this.credentialStore = credentialStore;
+        this.userNameFilter = userNameFilter;
+        this.clients = clients;
+    }
+
+    /**
+     * This method opens a user database file and maps its users in memory
+     * @param path Path of the file
+     * @return The database
+     * @throws IOException If the file cannot be read or it is not a valid user database
+     */
+    public static UserDatabase open(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long fileBytes = channel.size();
+            if(fileBytes < HEADER_BYTES){
+                throw new IOException("Invalid user database " + path + ": the file is too short");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining()){
+                if(channel.read(header, header.position()) < 0){
+                    throw new IOException("Invalid user database " + path + ": the file is too short");
+                }
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(header.array(), 0, CHECKSUM_OFFSET);
+            if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(CHECKSUM_OFFSET) != checksum.getValue()){
+                throw new IOException("Invalid user database " + path + ": wrong magic, version or checksum");
+            }
+
+            long generation = header.getLong(8);
+            int users = header.getInt(16);
+            int clientCount = header.getInt(24);
+            int filterHashes = header.getInt(28);
+            int filterCapacity = header.getInt(32);
+            ByteBuffer table = map(channel, path, header.getLong(40), header.getLong(48));
+            ByteBuffer filterBits = map(channel, path, header.getLong(56), header.getLong(64));
+            ByteBuffer data = map(channel, path, header.getLong(72), header.getLong(80));
+            ByteBuffer clientRecords = map(channel, path, header.getLong(88), header.getLong(96));
+
+            try {
+                MappedCredentialStore store = new MappedCredentialStore(table, data, users);
+                UserNameFilter filter = UserNameFilter.read(filterBits, filterHashes, filterCapacity, users);
+                List<Client> clients = new ArrayList<>(clientCount);
+                for(int i = 0; i < clientCount; i++){
+                    String address = new String(readField(clientRecords), StandardCharsets.UTF_8);
+                    clients.add(new Client(address, readField(clientRecords)));
+                }
+                return new UserDatabase(path, generation, header.getLong(104), fileBytes, store, filter,
+                        Collections.unmodifiableList(clients));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e){
+                throw new IOException("Invalid user database " + path + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * This method maps a section of the file. The mapping stays valid after the channel is closed
+     */
+    private static ByteBuffer map(FileChannel channel, Path path, long offset, long length) throws IOException {
+        if(offset < HEADER_BYTES || length < 0 || length > Integer.MAX_VALUE || offset + length > channel.size()){
+            throw new IOException("Invalid user database " + path + ": a section is out of the file");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] readField(ByteBuffer buffer){
+        byte[] field = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(field);
+        return field;
+    }
+
+    // Getters
+    public Path getPath() { return path; }
+
+    public long getGeneration() { return generation; }
+
+    public long getCreatedMillis() { return createdMillis; }
+
+    public long getFileBytes() { return fileBytes; }
+
+    public MappedCredentialStore getCredentialStore() { return credentialStore; }
+
+    public UserNameFilter getUserNameFilter() { return userNameFilter; }
+
+    public List<Client> getClients() { return clients; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "path=" + path +
+                ", generation=" + generation +
+                ", users=" + credentialStore.size() +
+                ", clients=" + clients.size() +
+                ", bytes=" + fileBytes +
+                ']';
+    }
+}
@@ -0,0 +1,289 @@
+package org.danielmartinez.radius.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class builds a user database file, the format opened by UserDatabase. Users and clients are collected in
+ * the heap, and the file is written at once: the table is sized for the final number of users, and the records of
+ * replaced passwords are left out. The file is written next to the target, flushed to the disk and renamed over
+ * the target, so a server never maps a file that is partly written
+ */
+public class UserDatabaseWriter {
+
+    /**
+     * Maximum fraction of used slots of the table, as in OffHeapCredentialStore
+     */
+    private static final double MAXIMUM_LOAD = 0.5;
+
+    /**
+     * Fraction of unknown user names the filter of the file lets through to the table
+     */
+    private final double falsePositiveRate;
+
+    /**
+     * Records of the users, as in OffHeapCredentialStore. Index 0 is never used, so an empty slot is 0
+     */
+    private byte[] data = new byte[1024];
+
+    private int dataEnd = 8;
+
+    /**
+     * Slots of the users: the high half of the hash of the user name and the index of the record
+     */
+    private long[] slots = new long[1024];
+
+    private int users;
+
+    private final List<UserDatabase.Client> clients = new ArrayList<>();
+
+    // Constructor
+    public UserDatabaseWriter(double falsePositiveRate) {
+        if(falsePositiveRate <= 0 || falsePositiveRate >= 1){
+            throw new IllegalArgumentException("The false positive rate must be between 0 and 1");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * This method adds a user, or replaces its password if it was already added
+     * @param username User name, in UTF-8
+     * @param password Plain password
+     * @return Boolean: True if the user is new
+     */
+    public boolean addUser(byte[] username, byte[] password){
+        if(username.length > CredentialStore.MAXIMUM_USER_NAME_LENGTH){
+            throw new IllegalArgumentException("The user name is longer than "
+                    + CredentialStore.MAXIMUM_USER_NAME_LENGTH + " bytes");
+        }
+        if(password.length > CredentialStore.MAXIMUM_PASSWORD_LENGTH){
+            throw new IllegalArgumentException("The password is longer than "
+                    + CredentialStore.MAXIMUM_PASSWORD_LENGTH + " bytes");
+        }
+        if(users + 1 > slots.length * MAXIMUM_LOAD){
+            slots = rehash(slots, slots.length * 2);
+        }
+
+        int recordLength = 2 + username.length + password.length;
+        if((long) dataEnd + recordLength > Integer.MAX_VALUE - 8){
+            throw new IllegalStateException("The user database cannot hold more users");
+        }
+        if(dataEnd + recordLength > data.length){
+            data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max((long) data.length * 2, (long) dataEnd + recordLength)));
+        }
+        int record = dataEnd;
+        data[record] = (byte) username.length;
+        data[record + 1] = (byte) password.length;
+        System.arraycopy(username, 0, data, record + 2, username.length);
+        System.arraycopy(password, 0, data, record + 2 + username.length, password.length);
+        dataEnd += recordLength;
+
+        long hash = OffHeapCredentialStore.hash(ByteBuffer.wrap(username), 0, username.length);
+        int slot = find(slots, hash, username);
+        boolean added = slots[slot] == 0;
+        slots[slot] = (hash & 0xFFFFFFFF00000000L) | record;
+        if(added){
+            users++;
+        }
+        return added;
+    }
+
+    /**
+     * This method adds a client
+     * @param address IP address or CIDR range of the client, e.g. 192.168.1.10 or 10.0.0.0/8
+     * @param sharedSecret Shared Secret of the client
+     */
+    public void addClient(String address, byte[] sharedSecret){
+        // Reject the ranges the server would not parse
+        new PrefixTrie<Boolean>().add(address, Boolean.TRUE);
+        if(sharedSecret.length == 0 || sharedSecret.length > 0xFFFF){
+            throw new IllegalArgumentException("Invalid Shared Secret of client " + address);
+        }
+        clients.add(new UserDatabase.Client(address, sharedSecret.clone()));
+    }
+
+    /**
+     * This method writes the database and replaces the target file atomically
+     * @param target Path of the database file
+     * @param generation Generation of the database, which identifies it in the logs of the server
+     */
+    public void write(Path target, long generation) throws IOException {
+        int tableSlots = Math.max(16, Integer.highestOneBit((int) Math.max(1, users / MAXIMUM_LOAD) - 1) << 1);
+        long[] table = new long[tableSlots];
+        ByteBuffer records = ByteBuffer.allocate(Math.max(8, compactedBytes()));
+        records.position(8);
+        for(long slot: slots){
+            if(slot != 0){
+                int record = (int) slot;
+                int length = 2 + (data[record] & 0xFF) + (data[record + 1] & 0xFF);
+                long hash = OffHeapCredentialStore.hash(ByteBuffer.wrap(data), record + 2, data[record] & 0xFF);
+                int index = (int) hash & (tableSlots - 1);
+                while(table[index] != 0){
+                    index = (index + 1) & (tableSlots - 1);
+                }
+                table[index] = (slot & 0xFFFFFFFF00000000L) | records.position();
+                records.put(data, record, length);
+            }
+        }
+
+        UserNameFilter filter = new UserNameFilter(Math.max(1, users), falsePositiveRate);
+        for(long slot: slots){
+            if(slot != 0){
+                int record = (int) slot;
+                filter.add(Arrays.copyOfRange(data, record + 2, record + 2 + (data[record] & 0xFF)));
+            }
+        }
+
+        int clientBytes = 0;
+        for(UserDatabase.Client client: clients){
+            clientBytes += 4 + client.getAddress().getBytes(StandardCharsets.UTF_8).length
+                    + client.getSharedSecret().length;
+        }
+
+        long tableOffset = UserDatabase.HEADER_BYTES;
+        long filterOffset = tableOffset + tableSlots * 8L;
+        long dataOffset = filterOffset + filter.getFootprintBytes();
+        long clientsOffset = align(dataOffset + records.position());
+        long fileBytes = align(clientsOffset + clientBytes);
+
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            MappedByteBuffer section = map(channel, tableOffset, tableSlots * 8L);
+            for(long slot: table){
+                section.putLong(slot);
+            }
+            section.force();
+
+            section = map(channel, filterOffset, filter.getFootprintBytes());
+            filter.writeTo(section);
+            section.force();
+
+            section = map(channel, dataOffset, records.position());
+            section.put(records.array(), 0, records.position());
+            section.force();
+
+            section = map(channel, clientsOffset, clientBytes);
+            for(UserDatabase.Client client: clients){
+                writeField(section, client.getAddress().getBytes(StandardCharsets.UTF_8));
+                writeField(section, client.getSharedSecret());
+            }
+            section.force();
+
+            // The header is written last, so an interrupted build never leaves a valid header
+            ByteBuffer header = ByteBuffer.allocate(UserDatabase.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0, UserDatabase.MAGIC);
+            header.putInt(4, UserDatabase.VERSION);
+            header.putLong(8, generation);
+            header.putInt(16, users);
+            header.putInt(20, tableSlots);
+            header.putInt(24, clients.size());
+            header.putInt(28, filter.getHashes());
+            header.putInt(32, filter.getCapacity());
+            header.putLong(40, tableOffset);
+            header.putLong(48, tableSlots * 8L);
+            header.putLong(56, filterOffset);
+            header.putLong(64, filter.getFootprintBytes());
+            header.putLong(72, dataOffset);
+            header.putLong(80, records.position());
+            header.putLong(88, clientsOffset);
+            header.putLong(96, clientBytes);
+            header.putLong(104, System.currentTimeMillis());
+            CRC32 checksum = new CRC32();
+            checksum.update(header.array(), 0, UserDatabase.CHECKSUM_OFFSET);
+            header.putLong(UserDatabase.CHECKSUM_OFFSET, checksum.getValue());
+            long position = 0;
+            while(header.hasRemaining()){
+                position += channel.write(header, position);
+            }
+            if(channel.size() < fileBytes){
+                channel.write(ByteBuffer.allocate(1), fileBytes - 1);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * This method computes the bytes of the records of the users, without the replaced ones
+     */
+    private int compactedBytes(){
+        long bytes = 8;
+        for(long slot: slots){
+            if(slot != 0){
+                int record = (int) slot;
+                bytes += 2 + (data[record] & 0xFF) + (data[record + 1] & 0xFF);
+            }
+        }
+        return (int) bytes;
+    }
+
+    /**
+     * This method looks for the slot of a user name
+     * @return The slot of the user name, or the empty slot where it would be added
+     */
+    private int find(long[] slots, long hash, byte[] username){
+        int tag = (int) (hash >>> 32);
+        int mask = slots.length - 1;
+        int slot = (int) hash & mask;
+        while(slots[slot] != 0){
+            int record = (int) slots[slot];
+            if((int) (slots[slot] >>> 32) == tag && (data[record] & 0xFF) == username.length
+                    && Arrays.equals(data, record + 2, record + 2 + username.length, username, 0,
+                    username.length)){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private long[] rehash(long[] current, int length){
+        long[] grown = new long[length];
+        for(long slot: current){
+            if(slot != 0){
+                int record = (int) slot;
+                int target = (int) OffHeapCredentialStore.hash(ByteBuffer.wrap(data), record + 2,
+                        data[record] & 0xFF) & (length - 1);
+                while(grown[target] != 0){
+                    target = (target + 1) & (length - 1);
+                }
+                grown[target] = slot;
+            }
+        }
+        return grown;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static void writeField(ByteBuffer buffer, byte[] field){
+        buffer.putShort((short) field.length);
+        buffer.put(field);
+    }
+
+    private static long align(long offset){
+        return (offset + 7) & ~7L;
+    }
+
+    // Getters
+    public int getUsers() { return users; }
+
+    public int getClients() { return clients.size(); }
+}
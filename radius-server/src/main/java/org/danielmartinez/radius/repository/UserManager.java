@@ -0,0 +1,581 @@
+package org.danielmartinez.radius.repository;
+
+import org.danielmartinez.radius.util.Digests;
+import org.danielmartinez.radius.util.PooledThreadLocal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import java.security.MessageDigest;
+
+/**
+ * This class implements all the logic related to the User Authentication.
+ * A single instance is shared by all the threads of the server: lookups do not take locks, and users and clients
+ * can be added at any time while requests are being authenticated
+ */
+public class UserManager {
+    /**
+     * Store of user-password pairs. It is replaced when a user database is installed
+     */
+    private volatile CredentialStore userPasswordRepository;
+
+    /**
+     * Prefix trie to store client-sharedSecret pairs. Clients are registered by IP address or CIDR range, and the
+     * Shared Secret of a packet is the one of the longest range that contains its source address. It is replaced
+     * when a user database is installed
+     */
+    private volatile PrefixTrie<SharedSecret> clientSharedSecretRepository;
+
+    /**
+     * User database whose users and clients are in use, or null if they were added one by one
+     */
+    private volatile UserDatabase userDatabase;
+
+    /**
+     * Attributes sent in the Access-Accept of every user. They are replaced at once when they are recompiled
+     */
+    private volatile ReplyProfiles replyProfiles = ReplyProfiles.EMPTY;
+
+    /**
+     * Cache of the Shared Secrets of the clients of a credential backend, looked up when the source address is not
+     * in the prefix trie. Null if there is no backend
+     */
+    private final CredentialCache<InetAddress, SharedSecret> clientSecretCache;
+
+    /**
+     * Ranges of the addresses whose Shared Secret may be in the credential backend. Packets from other addresses
+     * are from unknown clients without querying the backend, so they cannot make it load one address after another
+     */
+    private final PrefixTrie<Boolean> backendClientRanges = new PrefixTrie<>();
+
+    /**
+     * User names the filter of known users is sized for initially. The filter doubles its size when it is full
+     */
+    private static final int INITIAL_FILTER_CAPACITY = 1024;
+
+    /**
+     * Fraction of unknown user names the filter of known users lets through to the user store
+     */
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Filter of the known user names, checked before the user store. It is replaced when it is rebuilt, and it is
+     * null if the store does not hold every user
+     */
+    private volatile UserNameFilter userNameFilter = new UserNameFilter(INITIAL_FILTER_CAPACITY,
+            FILTER_FALSE_POSITIVE_RATE);
+
+    /**
+     * Scratch block used by each thread to validate hashes
+     */
+    private static final PooledThreadLocal<byte[]> SCRATCH = PooledThreadLocal.withInitial(() -> new byte[16]);
+
+    /**
+     * Scratch array used by each thread to hold the password of the user being authenticated
+     */
+    private static final PooledThreadLocal<byte[]> PASSWORD = PooledThreadLocal.withInitial(
+            () -> new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH]);
+
+    // Constructor
+    public UserManager() {
+        this(new HeapCredentialStore());
+    }
+
+    // Constructor
+    public UserManager(CredentialStore credentialStore) {
+        this.userPasswordRepository = credentialStore;
+        this.clientSharedSecretRepository = new PrefixTrie<>();
+        this.clientSecretCache = null;
+        setUp();
+    }
+
+    /**
+     * This constructor looks up the users and the clients in a credential backend, through caches. No default user
+     * or client is added
+     * @param credentialStore Store of the users, backed by the cache of the passwords
+     * @param clientSecretCache Cache of the Shared Secrets of the clients
+     */
+    public UserManager(BackendCredentialStore credentialStore,
+                       CredentialCache<InetAddress, SharedSecret> clientSecretCache) {
+        this.userPasswordRepository = credentialStore;
+        this.clientSharedSecretRepository = new PrefixTrie<>();
+        this.clientSecretCache = clientSecretCache;
+        this.userNameFilter = null;
+    }
+
+    /**
+     * This method inserts some data when initializing UserManager
+     */
+    public void setUp(){
+        addUser("frans1", "fran123!".getBytes());
+        addUser("frans2", "fran123!".getBytes());
+
+        addClient("127.0.0.0/8", "ABC".getBytes());
+        addClient("::1", "ABC".getBytes());
+    }
+
+    /**
+     * This method registers the clients listed in a file. Every line contains an IP address or CIDR range and its
+     * Shared Secret, separated by whitespace. Empty lines and lines starting with # are ignored
+     * @param clientsFile Path of the file
+     * @return The number of clients registered
+     */
+    public int loadClients(Path clientsFile) throws IOException {
+        int clients = 0;
+        try(BufferedReader reader = Files.newBufferedReader(clientsFile, StandardCharsets.UTF_8)){
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                String[] fields = line.split("\\s+", 2);
+                if(fields.length != 2){
+                    throw new IllegalArgumentException("Invalid client: " + line);
+                }
+                addClient(fields[0], fields[1].getBytes(StandardCharsets.UTF_8));
+                clients++;
+            }
+        }
+        return clients;
+    }
+
+    /**
+     * This method registers the users listed in a file, in bulk: the filter of known users is rebuilt once, after
+     * all of them are stored. Every line contains a user name and its password, separated by whitespace. Empty
+     * lines and lines starting with # are ignored. Users are not found until the whole file is loaded
+     * @param usersFile Path of the file
+     * @return The number of users registered
+     */
+    public synchronized int loadUsers(Path usersFile) throws IOException {
+        checkWritable();
+        int users = 0;
+        try(BufferedReader reader = Files.newBufferedReader(usersFile, StandardCharsets.UTF_8)){
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                String[] fields = line.split("\\s+", 2);
+                if(fields.length != 2){
+                    throw new IllegalArgumentException("Invalid user: " + fields[0]);
+                }
+                userPasswordRepository.put(fields[0].getBytes(StandardCharsets.UTF_8),
+                        fields[1].getBytes(StandardCharsets.UTF_8));
+                users++;
+            }
+        } finally {
+            rebuildUserNameFilter();
+        }
+        return users;
+    }
+
+    /**
+     * This method replaces all the users and clients with the ones of a user database, while requests are being
+     * authenticated. Lookups never take locks: the filter of known users, the users and the clients of the
+     * database are published one after another, so a request that overlaps the swap may see a user or a client
+     * of the previous generation, or miss one that only the new generation has. The previous generation is
+     * unmapped by the garbage collector once no request uses it.
+     * The users of a database are read-only: addUser() and loadUsers() fail until another store is installed
+     * @param database The user database
+     * @return The database that was replaced, or null if there was none
+     */
+    public synchronized UserDatabase install(UserDatabase database) {
+        PrefixTrie<SharedSecret> clients = new PrefixTrie<>();
+        for(UserDatabase.Client client: database.getClients()){
+            clients.add(client.getAddress(), new SharedSecret(client.getSharedSecret()));
+        }
+        UserDatabase previous = userDatabase;
+        userNameFilter = database.getUserNameFilter();
+        userPasswordRepository = database.getCredentialStore();
+        clientSharedSecretRepository = clients;
+        userDatabase = database;
+        return previous;
+    }
+
+    /**
+     * Method to retrieve the user database in use
+     * @return The database, or null if the users were added one by one
+     */
+    public UserDatabase getUserDatabase() {
+        return userDatabase;
+    }
+
+    /**
+     * Method to add a user-password pair to the repository. The user is added to the filter of known users before
+     * the repository, so a lookup never misses a user that is already in the repository
+     * @param username username
+     * @param password password
+     */
+    public synchronized void addUser(String username, byte[] password) {
+        checkWritable();
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        userNameFilter.add(name);
+        if(userNameFilter.isFull()){
+            rebuildUserNameFilter(userNameFilter.getCapacity() * 2, name);
+        }
+        userPasswordRepository.put(name, password);
+    }
+
+    private void checkWritable() {
+        if(!userPasswordRepository.holdsAllUsers()){
+            throw new UnsupportedOperationException("The users are managed in the credential backend");
+        }
+        if(userDatabase != null){
+            throw new UnsupportedOperationException("The users of " + userDatabase.getPath()
+                    + " are read-only, a new generation must be built");
+        }
+    }
+
+    /**
+     * This method rebuilds the filter of known users from the repository, sized for the current number of users
+     */
+    public synchronized void rebuildUserNameFilter() {
+        if(!userPasswordRepository.holdsAllUsers()){
+            return;
+        }
+        rebuildUserNameFilter(Math.max(INITIAL_FILTER_CAPACITY, userPasswordRepository.size() * 2), null);
+    }
+
+    /**
+     * This method builds a new filter of known users and replaces the current one. Lookups keep using the current
+     * filter until the new one holds every user
+     * @param capacity Number of users the new filter is sized for
+     * @param pendingUser User being added that is not in the repository yet, may be null
+     */
+    private void rebuildUserNameFilter(int capacity, byte[] pendingUser) {
+        UserNameFilter filter = new UserNameFilter(capacity, FILTER_FALSE_POSITIVE_RATE);
+        userPasswordRepository.forEachUserName(filter::add);
+        if(pendingUser != null){
+            filter.add(pendingUser);
+        }
+        userNameFilter = filter;
+    }
+
+    /**
+     * Method to add a client-sharedSecret pair to the repository
+     * @param clientId IP address or CIDR range of the client, e.g. 192.168.1.10 or 10.0.0.0/8
+     * @param sharedSecret sharedSecret
+     */
+    public void addClient(String clientId, byte[] sharedSecret) {
+        clientSharedSecretRepository.add(clientId, new SharedSecret(sharedSecret));
+    }
+
+    /**
+     * Method to authenticate a user
+     * @param username username
+     * @return password
+     */
+    public byte[] getPassword(String username) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] password = PASSWORD.get();
+        int passwordLength = userPasswordRepository.getPassword(ByteBuffer.wrap(name), 0, name.length, password);
+        return passwordLength < 0 ? null : Arrays.copyOf(password, passwordLength);
+    }
+
+    /**
+     * Method to retrieve the shared secret for a client
+     * @param clientAddress Source address of the client
+     * @return sharedSecret, or null if the address is not in any registered range
+     */
+    public byte[] getSharedSecret(InetAddress clientAddress) {
+        SharedSecret sharedSecret = getClientSecret(clientAddress);
+        return sharedSecret == null ? null : sharedSecret.getBytes();
+    }
+
+    /**
+     * Method to retrieve the shared secret for a client, together with its primed MD5 state. It does not allocate
+     * for IPv4 addresses registered locally. Other addresses are looked up in the credential backend, if any
+     * @param clientAddress Source address of the client
+     * @return sharedSecret, or null if the address is not in any registered range
+     * @throws org.danielmartinez.radius.exception.RadiusException If the backend does not answer in time
+     */
+    public SharedSecret getClientSecret(InetAddress clientAddress) {
+        SharedSecret sharedSecret = clientSharedSecretRepository.longestMatch(clientAddress);
+        if(sharedSecret == null && isBackendClientAddress(clientAddress)){
+            // Waits for the credential backend if the client is not cached
+            sharedSecret = clientSecretCache.get(clientAddress);
+        }
+        return sharedSecret;
+    }
+
+    /**
+     * Method to check if a client is surely unknown. It never waits for the credential backend: a client that is
+     * not cached is loaded in the background and is not unknown meanwhile, so its packets wait for the load instead
+     * of being discarded. Addresses outside the backend client ranges are unknown without querying the backend
+     * @param clientAddress Source address of the client
+     * @return boolean: True if the address is not a client
+     */
+    public boolean isUnknownClient(InetAddress clientAddress) {
+        return clientSharedSecretRepository.longestMatch(clientAddress) == null
+                && (!isBackendClientAddress(clientAddress) || clientSecretCache.isAbsent(clientAddress));
+    }
+
+    /**
+     * Method to start loading the Shared Secret of a client when identifying it would wait for the credential
+     * backend
+     * @param clientAddress Source address of the client
+     * @return Null if the client can be identified without waiting, or a future completed when it can
+     */
+    public CompletableFuture<?> prepareClientSecret(InetAddress clientAddress) {
+        if(clientSharedSecretRepository.longestMatch(clientAddress) != null || !isBackendClientAddress(clientAddress)
+                || clientSecretCache.contains(clientAddress)){
+            return null;
+        }
+        CompletableFuture<SharedSecret> sharedSecret = clientSecretCache.getAsync(clientAddress);
+        return sharedSecret.isDone() ? null : sharedSecret;
+    }
+
+    /**
+     * Method to add a range of addresses whose Shared Secret is looked up in the credential backend. Without any,
+     * the backend is never queried for clients
+     * @param clientId IP address or CIDR range
+     */
+    public void addBackendClientRange(String clientId) {
+        backendClientRanges.add(clientId, Boolean.TRUE);
+    }
+
+    private boolean isBackendClientAddress(InetAddress clientAddress) {
+        return clientSecretCache != null && backendClientRanges.longestMatch(clientAddress) != null;
+    }
+
+    /**
+     * Method to retrieve the number of registered clients
+     * @return The number of addresses and ranges registered
+     */
+    public int getClientCount() {
+        return clientSharedSecretRepository.size();
+    }
+
+    /**
+     * Method to check if a user may exist, reading the User-Name straight from the buffer where it was received. It
+     * does not allocate nor look up the repository
+     * @param buffer Buffer that holds the User-Name
+     * @param offset Index of the User-Name value in the buffer
+     * @param length Length of the User-Name value
+     * @return boolean: False if the user does not exist, true if it probably exists
+     */
+    public boolean mightUserExist(ByteBuffer buffer, int offset, int length) {
+        UserNameFilter filter = userNameFilter;
+        return filter == null || filter.mightContain(buffer, offset, length);
+    }
+
+    /**
+     * Method to retrieve the filter of known users
+     * @return The current filter, or null if the store does not hold every user
+     */
+    public UserNameFilter getUserNameFilter() {
+        return userNameFilter;
+    }
+
+    /**
+     * Method to start loading the password of a user when authenticating it would wait for the credential backend
+     * @param buffer Buffer that holds the User-Name
+     * @param offset Index of the User-Name value in the buffer
+     * @param length Length of the User-Name value
+     * @return Null if the user can be authenticated without waiting, or a future completed when it can
+     */
+    public CompletableFuture<?> preparePassword(ByteBuffer buffer, int offset, int length) {
+        return userPasswordRepository.preparePassword(buffer, offset, length);
+    }
+
+    /**
+     * This method replaces the reply profiles of the users. Requests being encoded keep the profiles they looked
+     * up, and the following ones get the new profiles, so no response mixes both
+     * @param profiles The compiled profiles
+     * @return The profiles that were replaced
+     */
+    public ReplyProfiles installReplyProfiles(ReplyProfiles profiles) {
+        ReplyProfiles previous = replyProfiles;
+        replyProfiles = profiles;
+        return previous;
+    }
+
+    /**
+     * Method to retrieve the reply profiles of the users
+     * @return The profiles in use
+     */
+    public ReplyProfiles getReplyProfiles() {
+        return replyProfiles;
+    }
+
+    /**
+     * Method to check if a user exists
+     * @param username username
+     * @return boolean: True if exists
+     */
+    public boolean userExists(String username) {
+        return getPassword(username) != null;
+    }
+
+    /**
+     * Method to retrieve the store of user-password pairs
+     * @return The credential store
+     */
+    public CredentialStore getCredentialStore() {
+        return userPasswordRepository;
+    }
+
+    /**
+     * Method to retrieve the cache of the Shared Secrets of the credential backend
+     * @return The cache, or null if there is no backend
+     */
+    public CredentialCache<InetAddress, SharedSecret> getClientSecretCache() {
+        return clientSecretCache;
+    }
+
+    /**
+     * This method checks if a user is authenticated in the Server Database
+     * @param username Username
+     * @param clientHash The Hash provided by the received Packet which includes the encrypted password
+     * @param requestAuthenticator Request Authenticator field
+     * @param sharedSecret Shared Secret between the RADIUS Client and the Server
+     * @return Boolean: True if it is authenticated
+     */
+    public boolean isUserAuthenticated(byte[] username, byte[] clientHash, byte[] requestAuthenticator, byte[] sharedSecret){
+        return isUserAuthenticated(username, ByteBuffer.wrap(clientHash), 0, clientHash.length,
+                ByteBuffer.wrap(requestAuthenticator), 0, new SharedSecret(sharedSecret));
+    }
+
+    /**
+     * This method checks if a user is authenticated in the Server Database, reading the User-Password and the
+     * Request Authenticator straight from the buffers where they were received
+     * @param username Username
+     * @param hashBuffer Buffer that holds the Hash provided by the received Packet
+     * @param hashOffset Index of the Hash in hashBuffer
+     * @param hashLength Length of the Hash
+     * @param authenticatorBuffer Buffer that holds the Request Authenticator field
+     * @param authenticatorOffset Index of the Request Authenticator in authenticatorBuffer
+     * @param sharedSecret Shared Secret between the RADIUS Client and the Server
+     * @return Boolean: True if it is authenticated
+     */
+    public boolean isUserAuthenticated(byte[] username, ByteBuffer hashBuffer, int hashOffset, int hashLength,
+                                       ByteBuffer authenticatorBuffer, int authenticatorOffset,
+                                       SharedSecret sharedSecret){
+        return isUserAuthenticated(ByteBuffer.wrap(username), 0, username.length, hashBuffer, hashOffset,
+                hashLength, authenticatorBuffer, authenticatorOffset, sharedSecret);
+    }
+
+    /**
+     * This method checks if a user is authenticated in the Server Database, reading the User-Name, the
+     * User-Password and the Request Authenticator straight from the buffers where they were received. It does not
+     * allocate. It does not check the filter of known users: callers reject unknown users first with mightUserExist
+     * @param usernameBuffer Buffer that holds the Username, in UTF-8
+     * @param usernameOffset Index of the Username in usernameBuffer
+     * @param usernameLength Length of the Username
+     * @param hashBuffer Buffer that holds the Hash provided by the received Packet
+     * @param hashOffset Index of the Hash in hashBuffer
+     * @param hashLength Length of the Hash
+     * @param authenticatorBuffer Buffer that holds the Request Authenticator field
+     * @param authenticatorOffset Index of the Request Authenticator in authenticatorBuffer
+     * @param sharedSecret Shared Secret between the RADIUS Client and the Server
+     * @return Boolean: True if it is authenticated
+     */
+    public boolean isUserAuthenticated(ByteBuffer usernameBuffer, int usernameOffset, int usernameLength,
+                                       ByteBuffer hashBuffer, int hashOffset, int hashLength,
+                                       ByteBuffer authenticatorBuffer, int authenticatorOffset,
+                                       SharedSecret sharedSecret){
+        // Get User Password
+        byte[] plainPassword = PASSWORD.get();
+        int passwordLength = userPasswordRepository.getPassword(usernameBuffer, usernameOffset, usernameLength,
+                plainPassword);
+        if(passwordLength < 0){
+            return false;
+        }
+
+        // Validate Hash
+        return validateHash(plainPassword, passwordLength, hashBuffer, hashOffset, hashLength, authenticatorBuffer,
+                authenticatorOffset, sharedSecret);
+    }
+
+    /**
+     * This method encodes a password by using the RADIUS method defined in the RFC 2865, using MD5 as the hashing
+     * algoithm. The server calculates the hash with the user credentials and check if it matches the hash provided by
+     * the user/client
+     * @param plainPassword Plain user password, obtained in the Server database
+     * @param requestAuthenticator Request Authenticator field, provided by the user
+     * @param sharedSecret Shared Secret between the RADIUS Client and the Server
+     * @return The encoded password / hash in byte[] format
+     */
+    public byte[] encodePassword(byte[] plainPassword, byte[] requestAuthenticator, byte[] sharedSecret) {
+        return encodePassword(plainPassword, requestAuthenticator, new SharedSecret(sharedSecret));
+    }
+
+    /**
+     * This method encodes a password by using the RADIUS method defined in the RFC 2865. Every MD5 hash starts
+     * from the state primed with the Shared Secret, so the secret is not hashed again
+     * @param plainPassword Plain user password, obtained in the Server database
+     * @param requestAuthenticator Request Authenticator field, provided by the user
+     * @param sharedSecret Shared Secret between the RADIUS Client and the Server
+     * @return The encoded password / hash in byte[] format
+     */
+    public byte[] encodePassword(byte[] plainPassword, byte[] requestAuthenticator, SharedSecret sharedSecret) {
+        return sharedSecret.hidePassword(plainPassword, requestAuthenticator);
+    }
+
+    /**
+     * This method checks if the Hash provided by the user/client is the encoded form of the plain password. The
+     * encoded password is computed block by block and compared in place, without copying the received Hash
+     * @param plainPassword Plain user password, obtained in the Server database
+     * @param hashBuffer Buffer that holds the Hash provided by the Client
+     * @param hashOffset Index of the Hash in hashBuffer
+     * @param hashLength Length of the Hash
+     * @param authenticatorBuffer Buffer that holds the Request Authenticator field
+     * @param authenticatorOffset Index of the Request Authenticator in authenticatorBuffer
+     * @param sharedSecret Shared Secret between the RADIUS Client and the Server
+     * @return Boolean: True if it is equal
+     */
+    public boolean validateHash(byte[] plainPassword, ByteBuffer hashBuffer, int hashOffset, int hashLength,
+                                ByteBuffer authenticatorBuffer, int authenticatorOffset, SharedSecret sharedSecret){
+        return validateHash(plainPassword, plainPassword.length, hashBuffer, hashOffset, hashLength,
+                authenticatorBuffer, authenticatorOffset, sharedSecret);
+    }
+
+    private boolean validateHash(byte[] plainPassword, int passwordLength, ByteBuffer hashBuffer, int hashOffset,
+                                 int hashLength, ByteBuffer authenticatorBuffer, int authenticatorOffset,
+                                 SharedSecret sharedSecret){
+        if(hashLength == 0 || hashLength != Digests.paddedPasswordLength(passwordLength)){
+            return false;
+        }
+
+        byte[] block = SCRATCH.get();
+        int difference = 0;
+
+        for (int i = 0; i < hashLength; i += 16) {
+            // b1 = MD5(S + RA), bi = MD5(S + c(i-1)). As c(i-1) must match, the received one is hashed
+            for (int j = 0; j < 16; j++) {
+                block[j] = i == 0 ? authenticatorBuffer.get(authenticatorOffset + j)
+                        : hashBuffer.get(hashOffset + i - 16 + j);
+            }
+            MessageDigest md5 = sharedSecret.newPrimedDigest();
+            md5.update(block, 0, 16);
+            Digests.digest(md5, block);
+
+            // ci = pi XOR bi
+            for (int j = 0; j < 16; j++) {
+                int plain = i + j < passwordLength ? plainPassword[i + j] : 0;
+                difference |= (plain ^ block[j] ^ hashBuffer.get(hashOffset + i + j)) & 0xFF;
+            }
+        }
+
+        return difference == 0;
+    }
+
+    /**
+     * This method checks if the received hash and the hash calculated in the server side are equal
+     * @param clientHash Hash provided by the Client
+     * @param serverHash Hash calculated by the Server
+     * @return Boolean: True if it is equal
+     */
+    public boolean validateHash(byte[] clientHash, byte[] serverHash){
+        return Arrays.equals(clientHash, serverHash);
+    }
+}
@@ -0,0 +1,170 @@
+package org.danielmartinez.radius.repository;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class implements a Bloom filter over the user names known by the server. It answers whether a user name may
+ * exist reading the User-Name straight from the received packet, so the request of an unknown user is rejected
+ * without creating a String or looking it up in the user store. A negative answer is always right; a positive one
+ * is wrong with the false positive rate the filter was sized for.
+ * Every user name sets a fixed number of bits, derived from two 64-bit hashes (Kirsch-Mitzenmacher). Names are added
+ * at any time while other threads check the filter: bits are only ever set, with atomic updates, so a name is found
+ * as soon as it is added. Names are never removed, so the filter is rebuilt when it holds more names than it was
+ * sized for
+ */
+public class UserNameFilter {
+
+    private final AtomicLongArray bits;
+
+    /**
+     * Number of bits of the filter, a power of two
+     */
+    private final long bitMask;
+
+    /**
+     * Bits set by every user name
+     */
+    private final int hashes;
+
+    /**
+     * Number of user names the filter was sized for
+     */
+    private final int capacity;
+
+    private int size;
+
+    // Constructor
+    public UserNameFilter(int capacity, double falsePositiveRate) {
+        // m = -n ln(p) / ln(2)^2, rounded up to a power of two; k = m / n ln(2)
+        long optimalBits = (long) Math.ceil(-Math.max(1, capacity) * Math.log(falsePositiveRate)
+                / (Math.log(2) * Math.log(2)));
+        long bitCount = Math.max(64, Long.highestOneBit(Math.max(1, optimalBits - 1)) << 1);
+        this.bits = new AtomicLongArray((int) (bitCount / 64));
+        this.bitMask = bitCount - 1;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / Math.max(1, capacity) * Math.log(2)));
+        this.capacity = capacity;
+    }
+
+    // Constructor
+    private UserNameFilter(AtomicLongArray bits, int hashes, int capacity, int size) {
+        this.bits = bits;
+        this.bitMask = bits.length() * 64L - 1;
+        this.hashes = hashes;
+        this.capacity = capacity;
+        this.size = size;
+    }
+
+    /**
+     * This method reads a filter written by writeTo()
+     * @param buffer Buffer that holds the bits of the filter, from its position to its limit
+     * @param hashes Bits set by every user name
+     * @param capacity Number of user names the filter was sized for
+     * @param size Number of user names added to the filter
+     * @return The filter
+     */
+    public static UserNameFilter read(ByteBuffer buffer, int hashes, int capacity, int size){
+        int words = buffer.remaining() / 8;
+        if(words == 0 || Integer.bitCount(words) != 1 || hashes < 1){
+            throw new IllegalArgumentException("Invalid user name filter");
+        }
+        AtomicLongArray bits = new AtomicLongArray(words);
+        for(int i = 0; i < words; i++){
+            bits.lazySet(i, buffer.getLong(buffer.position() + i * 8));
+        }
+        return new UserNameFilter(bits, hashes, capacity, size);
+    }
+
+    /**
+     * This method writes the bits of the filter at the position of a buffer, getFootprintBytes() bytes
+     * @param buffer Buffer where the bits are written
+     */
+    public void writeTo(ByteBuffer buffer){
+        for(int i = 0; i < bits.length(); i++){
+            buffer.putLong(bits.get(i));
+        }
+    }
+
+    /**
+     * This method adds a user name. Concurrent calls must be serialized by the caller
+     * @param name The user name, in UTF-8
+     */
+    public void add(byte[] name){
+        ByteBuffer buffer = ByteBuffer.wrap(name);
+        long hash1 = hash(buffer, 0, name.length, 0x9e3779b97f4a7c15L);
+        long hash2 = hash(buffer, 0, name.length, 0xc2b2ae3d27d4eb4fL) | 1;
+        for(int i = 0; i < hashes; i++){
+            long bit = (hash1 + i * hash2) & bitMask;
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if((bits.get(word) & mask) == 0){
+                bits.getAndAccumulate(word, mask, (current, added) -> current | added);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * This method checks if a user name may have been added
+     * @param buffer Buffer that holds the user name, in UTF-8
+     * @param offset Index of the user name in the buffer
+     * @param length Length of the user name
+     * @return Boolean: False if the user name was never added, true if it probably was
+     */
+    public boolean mightContain(ByteBuffer buffer, int offset, int length){
+        long hash1 = hash(buffer, offset, length, 0x9e3779b97f4a7c15L);
+        long hash2 = hash(buffer, offset, length, 0xc2b2ae3d27d4eb4fL) | 1;
+        for(int i = 0; i < hashes; i++){
+            long bit = (hash1 + i * hash2) & bitMask;
+            if((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method checks if the filter holds more user names than it was sized for, so its false positive rate is
+     * higher than expected
+     * @return Boolean: True if the filter should be rebuilt with a larger capacity
+     */
+    public boolean isFull(){
+        return size > capacity;
+    }
+
+    private static long hash(ByteBuffer buffer, int offset, int length, long seed){
+        long hash = seed ^ length;
+        for(int i = 0; i < length; i++){
+            hash = (hash ^ (buffer.get(offset + i) & 0xFF)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    // Getters
+    public int getCapacity() { return capacity; }
+
+    public int getSize() { return size; }
+
+    public int getHashes() { return hashes; }
+
+    /**
+     * This method returns the memory taken by the bits of the filter
+     * @return The size of the filter in bytes
+     */
+    public long getFootprintBytes() { return bits.length() * 8L; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "size=" + size +
+                ", capacity=" + capacity +
+                ", bytes=" + getFootprintBytes() +
+                ", hashes=" + hashes +
+                ']';
+    }
+}
@@ -0,0 +1,73 @@
+package org.danielmartinez.radius.transport;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements a bounded pool of reusable ByteBuffers, so the receive and reply paths do not allocate
+ * a buffer per packet once the pool is warm
+ */
+public class BufferPool {
+    /**
+     * Buffers ready to be reused
+     */
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * Capacity of every buffer
+     */
+    private final int bufferSize;
+
+    /**
+     * True if the pool holds direct (off-heap) buffers
+     */
+    private final boolean direct;
+
+    /**
+     * Number of buffers allocated because the pool was empty
+     */
+    private final AtomicLong allocations = new AtomicLong();
+
+    // Constructor
+    public BufferPool(int poolSize, int bufferSize, boolean direct) {
+        this.buffers = new ArrayBlockingQueue<>(poolSize);
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+
+        for(int i = 0; i < poolSize; i++){
+            buffers.offer(allocate());
+        }
+    }
+
+    /**
+     * This method takes a cleared buffer from the pool. If the pool is empty a new buffer is allocated
+     * @return A buffer with position 0 and limit equal to its capacity
+     */
+    public ByteBuffer acquire(){
+        ByteBuffer buffer = buffers.poll();
+        if(buffer == null){
+            allocations.incrementAndGet();
+            return allocate();
+        }
+        return buffer;
+    }
+
+    /**
+     * This method gives a buffer back to the pool. If the pool is full the buffer is left to the garbage collector
+     * @param buffer: The buffer to release
+     */
+    public void release(ByteBuffer buffer){
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    public int getAvailable() { return buffers.size(); }
+
+    public long getAllocations() { return allocations.get(); }
+
+    private ByteBuffer allocate(){
+        return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+    }
+}
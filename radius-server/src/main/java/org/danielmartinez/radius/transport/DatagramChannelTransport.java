@@ -0,0 +1,85 @@
+package org.danielmartinez.radius.transport;
+
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * This class implements a Transport over java.nio.channels.DatagramChannel. Datagrams are received into and sent
+ * from pooled direct buffers, so the kernel copies them without an intermediate heap buffer and, once the pool is
+ * warm, the receive and reply paths do not allocate buffers
+ */
+public class DatagramChannelTransport implements Transport {
+    private final DatagramChannel channel;
+
+    private final BufferPool bufferPool;
+
+    // Constructor
+    public DatagramChannelTransport(int port, int bufferPoolSize) throws IOException {
+        this(port, bufferPoolSize, false);
+    }
+
+    /**
+     * @param reusePort: If true, the channel is bound with SO_REUSEPORT, so several transports can listen on the
+     *                 port and the kernel spreads the datagrams among them by source address and port
+     */
+    public DatagramChannelTransport(int port, int bufferPoolSize, boolean reusePort) throws IOException {
+        this.channel = DatagramChannel.open();
+        try {
+            if(reusePort){
+                if(!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)){
+                    throw new IOException("SO_REUSEPORT is not supported on this platform");
+                }
+                this.channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            this.channel.bind(new InetSocketAddress(port));
+        } catch (IOException e){
+            channel.close();
+            throw e;
+        }
+        this.bufferPool = new BufferPool(bufferPoolSize, RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH, true);
+    }
+
+    @Override
+    public ReceivedDatagram receive() throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+
+        try {
+            InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+            buffer.flip();
+            return new ReceivedDatagram(buffer, source);
+        } catch (IOException e){
+            bufferPool.release(buffer);
+            throw e;
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer response, InetSocketAddress target) throws IOException {
+        channel.send(response, target);
+    }
+
+    @Override
+    public ByteBuffer acquireBuffer() {
+        return bufferPool.acquire();
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    @Override
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
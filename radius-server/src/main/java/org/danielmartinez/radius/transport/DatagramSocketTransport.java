@@ -0,0 +1,100 @@
+package org.danielmartinez.radius.transport;
+
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+
+/**
+ * This class implements a Transport over java.net.DatagramSocket. Datagrams are received straight into pooled
+ * heap buffers, so no copy is needed to hand them over to another thread
+ */
+public class DatagramSocketTransport implements Transport {
+    private final DatagramSocket socket;
+
+    private final BufferPool bufferPool;
+
+    /**
+     * DatagramPackets reused by every receiver and sender thread
+     */
+    private final ThreadLocal<DatagramPacket> receivePacket =
+            ThreadLocal.withInitial(() -> new DatagramPacket(new byte[0], 0));
+    private final ThreadLocal<DatagramPacket> sendPacket =
+            ThreadLocal.withInitial(() -> new DatagramPacket(new byte[0], 0));
+
+    // Constructor
+    public DatagramSocketTransport(int port, int bufferPoolSize) throws IOException {
+        this(port, bufferPoolSize, false);
+    }
+
+    /**
+     * @param reusePort: If true, the socket is bound with SO_REUSEPORT, so several transports can listen on the
+     *                 port and the kernel spreads the datagrams among them by source address and port
+     */
+    public DatagramSocketTransport(int port, int bufferPoolSize, boolean reusePort) throws IOException {
+        // Unbound, so the option is set before the bind
+        this.socket = new DatagramSocket(null);
+        try {
+            if(reusePort){
+                if(!socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)){
+                    throw new IOException("SO_REUSEPORT is not supported on this platform");
+                }
+                this.socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            this.socket.bind(new InetSocketAddress(port));
+        } catch (IOException e){
+            socket.close();
+            throw e;
+        }
+        this.bufferPool = new BufferPool(bufferPoolSize, RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH, false);
+    }
+
+    @Override
+    public ReceivedDatagram receive() throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        DatagramPacket packet = receivePacket.get();
+        packet.setData(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+
+        try {
+            socket.receive(packet);
+        } catch (IOException e){
+            bufferPool.release(buffer);
+            throw e;
+        }
+
+        buffer.limit(packet.getLength());
+        return new ReceivedDatagram(buffer, (InetSocketAddress) packet.getSocketAddress());
+    }
+
+    @Override
+    public void send(ByteBuffer response, InetSocketAddress target) throws IOException {
+        DatagramPacket packet = sendPacket.get();
+        packet.setData(response.array(), response.arrayOffset() + response.position(), response.remaining());
+        packet.setSocketAddress(target);
+        socket.send(packet);
+    }
+
+    @Override
+    public ByteBuffer acquireBuffer() {
+        return bufferPool.acquire();
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    @Override
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
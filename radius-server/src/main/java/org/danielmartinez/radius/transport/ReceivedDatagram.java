@@ -0,0 +1,49 @@
+package org.danielmartinez.radius.transport;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * This class represents a UDP datagram received by a Transport. Its data lives in a buffer owned by the datagram,
+ * so it can be processed by another thread while the receiver keeps reading from the socket
+ */
+public class ReceivedDatagram {
+    /**
+     * UDP Data. Position 0 is the first byte of the datagram and the limit is the received length
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Source address and port of the datagram
+     */
+    private final InetSocketAddress source;
+
+    /**
+     * Time when the datagram was received, to measure how long it waited before being processed
+     */
+    private final long receivedNanos;
+
+    // Constructor
+    public ReceivedDatagram(ByteBuffer data, InetSocketAddress source) {
+        this.data = data;
+        this.source = source;
+        this.receivedNanos = System.nanoTime();
+    }
+
+    // Getters
+    public ByteBuffer getData() { return data; }
+
+    public InetSocketAddress getSource() { return source; }
+
+    public long getReceivedNanos() { return receivedNanos; }
+
+    /**
+     * This method returns a hash of the datagram source. Datagrams from the same address and port always
+     * get the same value, so they can be processed in the order they arrived
+     * @return The hash of the source address and port
+     */
+    public int sourceHash(){
+        int hash = 31 * source.getAddress().hashCode() + source.getPort();
+        return hash ^ (hash >>> 16);
+    }
+}
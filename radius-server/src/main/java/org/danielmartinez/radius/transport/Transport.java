@@ -0,0 +1,44 @@
+package org.danielmartinez.radius.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * This interface represents the UDP endpoint used by the RADIUS Server to receive requests and send responses.
+ * All the methods can be called concurrently by several threads
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * This method blocks until a datagram is received
+     * @return ReceivedDatagram: The received datagram, whose buffer must be given back with release()
+     */
+    ReceivedDatagram receive() throws IOException;
+
+    /**
+     * This method sends a response datagram
+     * @param response: Buffer whose content between position and limit is sent
+     * @param target: Destination address and port
+     */
+    void send(ByteBuffer response, InetSocketAddress target) throws IOException;
+
+    /**
+     * This method takes a buffer where a response can be written
+     * @return A cleared buffer, which must be given back with release()
+     */
+    ByteBuffer acquireBuffer();
+
+    /**
+     * This method gives back a buffer obtained from receive() or acquireBuffer()
+     * @param buffer: The buffer to release
+     */
+    void release(ByteBuffer buffer);
+
+    /**
+     * This method returns the local port where the transport listens
+     * @return The local UDP port
+     */
+    int getLocalPort();
+}
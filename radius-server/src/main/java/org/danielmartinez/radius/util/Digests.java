@@ -0,0 +1,79 @@
+package org.danielmartinez.radius.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.DigestException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class keeps one reusable MD5 MessageDigest per thread, so the packet path does not look up the
+ * provider and build a new digest for every hash
+ */
+public class Digests {
+
+    private static final PooledThreadLocal<MessageDigest> MD5 = PooledThreadLocal.withInitial(Digests::newMd5);
+
+    private Digests() {
+    }
+
+    /**
+     * This method returns the MD5 digest of the current thread, ready to be updated
+     * @return The reset MD5 digest of the current thread
+     */
+    public static MessageDigest md5(){
+        MessageDigest md5 = MD5.get();
+        md5.reset();
+        return md5;
+    }
+
+    /**
+     * This method creates a new MD5 digest
+     * @return A new MD5 digest
+     */
+    public static MessageDigest newMd5(){
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method creates a new HMAC-MD5 keyed with a Shared Secret, as used by the Message-Authenticator attribute
+     * @param key The key
+     * @return A new HMAC-MD5
+     */
+    public static Mac newHmacMd5(byte[] key){
+        try {
+            Mac hmac = Mac.getInstance("HmacMD5");
+            hmac.init(new SecretKeySpec(key, "HmacMD5"));
+            return hmac;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method calculates the length of a password once padded to a multiple of 16 bytes
+     * @param passwordLength Length of the plain password
+     * @return The padded length
+     */
+    public static int paddedPasswordLength(int passwordLength){
+        return passwordLength % 16 == 0 ? passwordLength : passwordLength + 16 - (passwordLength % 16);
+    }
+
+    /**
+     * This method completes an MD5 hash into the first 16 bytes of a buffer, and resets the digest
+     * @param md5 The digest
+     * @param output Buffer of at least 16 bytes
+     */
+    public static void digest(MessageDigest md5, byte[] output){
+        try {
+            md5.digest(output, 0, 16);
+        } catch (DigestException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.danielmartinez.radius.util;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * This class keeps a value per thread, like ThreadLocal, that can also be used by threads that only live for one
+ * task, such as the virtual thread started for every request. Those threads give their values back to a shared pool
+ * with releaseAll() when the task ends, so the next one reuses them instead of building its own. Threads that never
+ * call releaseAll() keep their values for their whole life, as with a ThreadLocal.
+ * The pools are bounded array queues, which do not allocate when a value is given back. Instances are never
+ * removed, so they must be kept in static fields
+ * @param <T> Type of the values
+ */
+public final class PooledThreadLocal<T> {
+
+    /**
+     * Values kept in the pool of every instance. Values given back to a full pool are left to the garbage collector
+     */
+    private static final int POOL_CAPACITY = 1024;
+
+    private static final List<PooledThreadLocal<?>> INSTANCES = new CopyOnWriteArrayList<>();
+
+    private final Supplier<? extends T> factory;
+
+    private final BlockingQueue<T> pool = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+    private final ThreadLocal<T> values = new ThreadLocal<>();
+
+    // Constructor
+    private PooledThreadLocal(Supplier<? extends T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * This method creates a per-thread value
+     * @param factory Creates a value when a thread needs one and the pool is empty
+     * @return The per-thread value
+     */
+    public static <T> PooledThreadLocal<T> withInitial(Supplier<? extends T> factory){
+        PooledThreadLocal<T> local = new PooledThreadLocal<>(factory);
+        INSTANCES.add(local);
+        return local;
+    }
+
+    /**
+     * This method returns the value of the current thread, taken from the pool or created the first time the
+     * thread asks for it
+     * @return The value of the current thread
+     */
+    public T get(){
+        T value = values.get();
+        if(value == null){
+            value = pool.poll();
+            if(value == null){
+                value = factory.get();
+            }
+            values.set(value);
+        }
+        return value;
+    }
+
+    /**
+     * This method gives the values of the current thread back to their pools. The thread must not use them
+     * afterwards: it gets other ones if it asks again
+     */
+    public static void releaseAll(){
+        for(PooledThreadLocal<?> local: INSTANCES){
+            local.release();
+        }
+    }
+
+    private void release(){
+        T value = values.get();
+        if(value != null){
+            values.remove();
+            pool.offer(value);
+        }
+    }
+}
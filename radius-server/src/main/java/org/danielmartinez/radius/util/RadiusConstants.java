@@ -148,6 +148,48 @@ public class RadiusConstants {
     // Type 39: Framed-AppleTalk-Zone
     public static final int FRAMED_APPLETALK_ZONE = 39;
 
+    // Type 40: Acct-Status-Type (RFC 2866)
+    public static final int ACCT_STATUS_TYPE = 40;
+
+    // Type 41: Acct-Delay-Time (RFC 2866)
+    public static final int ACCT_DELAY_TIME = 41;
+
+    // Type 42: Acct-Input-Octets (RFC 2866)
+    public static final int ACCT_INPUT_OCTETS = 42;
+
+    // Type 43: Acct-Output-Octets (RFC 2866)
+    public static final int ACCT_OUTPUT_OCTETS = 43;
+
+    // Type 44: Acct-Session-Id (RFC 2866)
+    public static final int ACCT_SESSION_ID = 44;
+
+    // Type 45: Acct-Authentic (RFC 2866)
+    public static final int ACCT_AUTHENTIC = 45;
+
+    // Type 46: Acct-Session-Time (RFC 2866)
+    public static final int ACCT_SESSION_TIME = 46;
+
+    // Type 47: Acct-Input-Packets (RFC 2866)
+    public static final int ACCT_INPUT_PACKETS = 47;
+
+    // Type 48: Acct-Output-Packets (RFC 2866)
+    public static final int ACCT_OUTPUT_PACKETS = 48;
+
+    // Type 49: Acct-Terminate-Cause (RFC 2866)
+    public static final int ACCT_TERMINATE_CAUSE = 49;
+
+    // Type 50: Acct-Multi-Session-Id (RFC 2866)
+    public static final int ACCT_MULTI_SESSION_ID = 50;
+
+    // Type 51: Acct-Link-Count (RFC 2866)
+    public static final int ACCT_LINK_COUNT = 51;
+
+    // Type 52: Acct-Input-Gigawords (RFC 2869)
+    public static final int ACCT_INPUT_GIGAWORDS = 52;
+
+    // Type 53: Acct-Output-Gigawords (RFC 2869)
+    public static final int ACCT_OUTPUT_GIGAWORDS = 53;
+
     // Type 60: CHAP-Challenge
     public static final int CHAP_CHALLENGE = 60;
 
@@ -160,6 +202,18 @@ public class RadiusConstants {
     // Type 63: Login-LAT-Port
     public static final int LOGIN_LAT_PORT = 63;
 
+    // Type 80: Message-Authenticator (RFC 3579)
+    public static final int MESSAGE_AUTHENTICATOR = 80;
+
+    /**
+     * Acct-Status-Type values (RFC 2866)
+     */
+    public static final int ACCT_STATUS_START = 1;
+    public static final int ACCT_STATUS_STOP = 2;
+    public static final int ACCT_STATUS_INTERIM_UPDATE = 3;
+    public static final int ACCT_STATUS_ACCOUNTING_ON = 7;
+    public static final int ACCT_STATUS_ACCOUNTING_OFF = 8;
+
     /**
      * Access-Reject reasons
      */
@@ -168,6 +222,7 @@ public class RadiusConstants {
     public static final String ACCESS_REJECT_NO_USER_NAME = "USER_NAME SHOULD be specified";
     public static final String ACCESS_REJECT_NO_SHARED_SECRET = "SHARED_SECRET does not exist for this client";
     public static final String ACCESS_REJECT_UNKNOWN_USER_NAME = "Unknown USER_NAME";
+    public static final String ACCESS_REJECT_LOCKED_OUT = "Too many failed logins of the user or the calling station";
 
     /**
      * Packet discarded reasons
@@ -177,6 +232,16 @@ public class RadiusConstants {
     public static final String PACKET_DISCARDED_RADIUS_LENGTH_LONG = "The RADIUS length field is too long";
     public static final String PACKET_DISCARDED_RADIUS_CODE_WRONG = "The RADIUS code field is out of bounds";
     public static final String PACKET_DISCARDED_RADIUS_CODE_UNKNOWN = "The RADIUS code field is unknown";
+    public static final String PACKET_DISCARDED_ATTRIBUTE_MALFORMED = "The RADIUS attributes field is malformed";
+    public static final String PACKET_DISCARDED_MESSAGE_AUTHENTICATOR = "The Message-Authenticator is missing or wrong";
+    public static final String PACKET_DISCARDED_QUEUE_FULL = "The worker queue is full";
+    public static final String PACKET_DISCARDED_ACCOUNTING_AUTHENTICATOR = "The Accounting Request Authenticator is wrong";
+    public static final String PACKET_DISCARDED_ACCOUNTING_LOG = "The accounting record cannot be stored";
+    public static final String PACKET_DISCARDED_OVERLOAD = "The server has too many requests in flight";
+    public static final String PACKET_DISCARDED_RATE_LIMIT = "The RADIUS Client exceeded its request rate";
+    public static final String PACKET_DISCARDED_DEADLINE = "The request is older than the retransmission timeout";
+    public static final String PACKET_DISCARDED_PENDING_LIMIT = "Too many authentications are pending";
+    public static final String PACKET_DISCARDED_CREDENTIAL_BACKEND = "The credential backend failed or did not answer in time";
 
     /**
      * Other constants
@@ -0,0 +1,31 @@
+package org.danielmartinez.radius.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class creates the executor of the VIRTUAL_THREADS mode, which processes every request on a virtual thread of
+ * its own. This is the version of the class for Java 21 and later, in META-INF/versions/21 of the multi-release jar
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * This method checks if the runtime supports virtual threads
+     * @return Boolean: True if newThreadPerTaskExecutor() can be called
+     */
+    public static boolean isSupported(){
+        return true;
+    }
+
+    /**
+     * This method creates an executor that starts a new virtual thread for every task
+     * @param name: Prefix of the names of the threads, followed by a counter
+     * @return ExecutorService: The executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name){
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 1).factory());
+    }
+}
@@ -0,0 +1,94 @@
+package org.danielmartinez.radius.accounting;
+
+import org.danielmartinez.radius.packet.RadiusPacketView;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the totals of the session table: the counters of a session are cumulative, so they must reach the totals
+ * of its user once, however many records report them
+ */
+class SessionTableTest {
+
+    private final SessionTable table = new SessionTable(16, 16, 1, TimeUnit.HOURS);
+
+    private final InetAddress nas = InetAddress.getLoopbackAddress();
+
+    @AfterEach
+    void tearDown(){
+        table.close();
+    }
+
+    private static RadiusPacketView accountingRequest(int statusType, String sessionId, long inputOctets){
+        ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+        integerAttribute(attributes, RadiusConstants.ACCT_STATUS_TYPE, statusType);
+        stringAttribute(attributes, RadiusConstants.ACCT_SESSION_ID, sessionId);
+        stringAttribute(attributes, RadiusConstants.USER_NAME, "frans1");
+        integerAttribute(attributes, RadiusConstants.ACCT_INPUT_OCTETS, inputOctets);
+
+        ByteBuffer packet = ByteBuffer.allocate(20 + attributes.size());
+        packet.put((byte) RadiusConstants.ACCOUNTING_REQUEST_CODE).put((byte) 1)
+                .putShort((short) packet.capacity()).put(new byte[16]).put(attributes.toByteArray()).flip();
+        return new RadiusPacketView().wrap(packet);
+    }
+
+    private static void integerAttribute(ByteArrayOutputStream attributes, int type, long value){
+        attributes.write(type);
+        attributes.write(6);
+        attributes.writeBytes(ByteBuffer.allocate(4).putInt((int) value).array());
+    }
+
+    private static void stringAttribute(ByteArrayOutputStream attributes, int type, String value){
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        attributes.write(type);
+        attributes.write(bytes.length + 2);
+        attributes.writeBytes(bytes);
+    }
+
+    @Test
+    void countersReachTheTotalsOnce(){
+        assertTrue(table.update(accountingRequest(RadiusConstants.ACCT_STATUS_START, "s1", 0), nas, 1));
+        assertTrue(table.update(accountingRequest(RadiusConstants.ACCT_STATUS_INTERIM_UPDATE, "s1", 100), nas, 2));
+        assertTrue(table.update(accountingRequest(RadiusConstants.ACCT_STATUS_STOP, "s1", 250), nas, 3));
+
+        UserAccounting totals = table.getUserAccounting("frans1");
+        assertEquals(250, totals.getInputOctets());
+        assertEquals(0, totals.getActiveSessions());
+        assertEquals(0, table.getActiveSessions());
+    }
+
+    @Test
+    void aRetransmittedStopDoesNotAddToTheTotals(){
+        table.update(accountingRequest(RadiusConstants.ACCT_STATUS_START, "s1", 0), nas, 1);
+        table.update(accountingRequest(RadiusConstants.ACCT_STATUS_STOP, "s1", 250), nas, 2);
+
+        assertFalse(table.update(accountingRequest(RadiusConstants.ACCT_STATUS_STOP, "s1", 250), nas, 3));
+
+        assertEquals(250, table.getUserAccounting("frans1").getInputOctets());
+        assertEquals(1, table.getUserAccounting("frans1").getSessions());
+        assertEquals(0, table.getActiveSessions());
+        assertEquals(1, table.getStops());
+        assertEquals(1, table.getUntracked());
+    }
+
+    @Test
+    void recordsOfAnUnknownSessionAreUntracked(){
+        assertFalse(table.update(accountingRequest(RadiusConstants.ACCT_STATUS_INTERIM_UPDATE, "s2", 100), nas, 1));
+        assertFalse(table.update(accountingRequest(RadiusConstants.ACCT_STATUS_STOP, "s2", 200), nas, 2));
+
+        assertEquals(0, table.getActiveSessions());
+        assertEquals(0, table.getTrackedUsers());
+        assertEquals(2, table.getUntracked());
+    }
+}
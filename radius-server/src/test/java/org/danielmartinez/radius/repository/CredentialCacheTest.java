@@ -0,0 +1,263 @@
+package org.danielmartinez.radius.repository;
+
+import org.danielmartinez.radius.exception.RadiusException;
+import org.danielmartinez.radius.util.RadiusConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the credential cache and the backend credential store against SimulatedCredentialBackend, a local
+ * stand-in for the backend. The entries age on a clock that the tests advance, and the loads that must be in
+ * progress wait on a latch, so no test depends on how fast the machine runs it. Loads run on a single thread:
+ * once a task queued after a load has run, the load has stored its value
+ */
+@Timeout(10)
+class CredentialCacheTest {
+
+    private static final byte[] PASSWORD = "fran123!".getBytes(StandardCharsets.UTF_8);
+
+    private static final long TTL_SECONDS = 60;
+
+    private final ExecutorService loaders = Executors.newSingleThreadExecutor();
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final SimulatedCredentialBackend backend = new SimulatedCredentialBackend(0, TimeUnit.MILLISECONDS);
+
+    /**
+     * Loads wait for it while it is not counted down
+     */
+    private final CountDownLatch backendAnswers = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown(){
+        backendAnswers.countDown();
+        loaders.shutdownNow();
+    }
+
+    private CredentialCache<String, byte[]> newCache(int capacity, long negativeTtl, double refreshAhead,
+                                                     long loadTimeoutMillis){
+        return new CredentialCache<>(capacity, TimeUnit.SECONDS.toMillis(TTL_SECONDS), negativeTtl, refreshAhead,
+                loadTimeoutMillis, TimeUnit.MILLISECONDS, this::loadPassword, loaders, nanos::get);
+    }
+
+    private byte[] loadPassword(String username) throws IOException {
+        try {
+            backendAnswers.await();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        return backend.loadPassword(username);
+    }
+
+    private void advance(long time, TimeUnit unit){
+        nanos.addAndGet(unit.toNanos(time));
+    }
+
+    private void awaitLoads() throws Exception {
+        loaders.submit(() -> { }).get();
+    }
+
+    @Test
+    void concurrentMissesOfOneKeyLoadItOnce() throws Exception {
+        backend.addUser("frans1", PASSWORD);
+        CredentialCache<String, byte[]> cache = newCache(64, 0, 0, 5_000);
+
+        int callers = 32;
+        ExecutorService threads = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for(int i = 0; i < callers; i++){
+                results.add(threads.submit(() -> cache.get("frans1")));
+            }
+            // Every caller misses while the backend holds the first load
+            while(cache.getMisses() < callers){
+                Thread.onSpinWait();
+            }
+            backendAnswers.countDown();
+            for(Future<byte[]> result: results){
+                assertArrayEquals(PASSWORD, result.get());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, backend.getCalls());
+        assertEquals(1, cache.getBackendLoads());
+        assertEquals(callers - 1, cache.getCoalesced());
+    }
+
+    @Test
+    void positiveEntriesExpireAfterTheirTimeToLive(){
+        backendAnswers.countDown();
+        backend.addUser("frans1", PASSWORD);
+        CredentialCache<String, byte[]> cache = newCache(64, 1, 0, 5_000);
+
+        assertArrayEquals(PASSWORD, cache.get("frans1"));
+        advance(TTL_SECONDS, TimeUnit.SECONDS);
+        advance(-1, TimeUnit.NANOSECONDS);
+        assertTrue(cache.contains("frans1"));
+        assertArrayEquals(PASSWORD, cache.get("frans1"));
+        assertEquals(1, backend.getCalls());
+
+        advance(1, TimeUnit.NANOSECONDS);
+        assertFalse(cache.contains("frans1"));
+        assertArrayEquals(PASSWORD, cache.get("frans1"));
+        assertEquals(2, backend.getCalls());
+    }
+
+    @Test
+    void negativeEntriesExpireAfterTheirOwnTimeToLive(){
+        backendAnswers.countDown();
+        CredentialCache<String, byte[]> cache = newCache(64, 300, 0, 5_000);
+
+        assertNull(cache.get("nobody"));
+        assertNull(cache.get("nobody"));
+        assertTrue(cache.isAbsent("nobody"));
+        assertEquals(1, backend.getCalls());
+        assertEquals(2, cache.getNegativeHits());
+
+        // The user is added to the backend, but the server only sees it once the negative entry expires
+        backend.addUser("nobody", PASSWORD);
+        advance(299, TimeUnit.MILLISECONDS);
+        assertNull(cache.get("nobody"));
+        advance(1, TimeUnit.MILLISECONDS);
+        assertFalse(cache.contains("nobody"));
+        assertArrayEquals(PASSWORD, cache.get("nobody"));
+        assertEquals(2, backend.getCalls());
+    }
+
+    @Test
+    void negativeCachingCanBeDisabled(){
+        backendAnswers.countDown();
+        CredentialCache<String, byte[]> cache = newCache(64, 0, 0, 5_000);
+
+        assertNull(cache.get("nobody"));
+        assertNull(cache.get("nobody"));
+        assertFalse(cache.contains("nobody"));
+        assertEquals(2, backend.getCalls());
+    }
+
+    @Test
+    void refreshAheadServesTheStaleValueWhileItReloads() throws Exception {
+        backend.addUser("frans1", PASSWORD);
+        // Entries older than half of the time to live are reloaded by the next hit
+        CredentialCache<String, byte[]> cache = newCache(64, 0, 0.5, 5_000);
+        CompletableFuture<byte[]> first = cache.getAsync("frans1");
+        backendAnswers.countDown();
+        assertArrayEquals(PASSWORD, first.get());
+        awaitLoads();
+
+        byte[] newPassword = "changed".getBytes(StandardCharsets.UTF_8);
+        backend.addUser("frans1", newPassword);
+        advance(TTL_SECONDS / 2, TimeUnit.SECONDS);
+
+        // The reload waits for the backend, which is only allowed to answer once the stale value was returned
+        CountDownLatch staleServed = new CountDownLatch(1);
+        loaders.execute(() -> {
+            try {
+                staleServed.await();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertArrayEquals(PASSWORD, cache.get("frans1"));
+        assertArrayEquals(PASSWORD, cache.get("frans1"));
+        assertEquals(1, cache.getRefreshes());
+        staleServed.countDown();
+
+        awaitLoads();
+        assertArrayEquals(newPassword, cache.get("frans1"));
+        assertEquals(2, backend.getCalls());
+        assertEquals(1, cache.getRefreshes());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void loadsAreAbandonedAfterTheBackendTimeout(){
+        backend.addUser("frans1", PASSWORD);
+        BackendCredentialStore store = new BackendCredentialStore(newCache(64, 0, 0, 100));
+        ByteBuffer username = ByteBuffer.wrap("frans1".getBytes(StandardCharsets.UTF_8));
+
+        // The backend never answers while the caller waits, so only the timeout can return the call
+        long start = System.nanoTime();
+        RadiusException e = assertThrows(RadiusException.class,
+                () -> store.getPassword(username, 0, username.remaining(),
+                        new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH]));
+
+        assertEquals(RadiusConstants.PACKET_DISCARDED_CREDENTIAL_BACKEND, e.getMessage());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, backend.getCalls());
+    }
+
+    @Test
+    void storeLoadsPasswordsAsynchronously() throws Exception {
+        backend.addUser("frans1", PASSWORD);
+        BackendCredentialStore store = new BackendCredentialStore(newCache(64, 0, 0, 5_000));
+        ByteBuffer username = ByteBuffer.wrap("frans1".getBytes(StandardCharsets.UTF_8));
+
+        Future<?> load = store.preparePassword(username, 0, username.remaining());
+        assertFalse(load.isDone());
+        backendAnswers.countDown();
+        load.get();
+        assertNull(store.preparePassword(username, 0, username.remaining()));
+
+        byte[] password = new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH];
+        assertEquals(PASSWORD.length, store.getPassword(username, 0, username.remaining(), password));
+        assertEquals(1, backend.getCalls());
+    }
+
+    @Test
+    void oversizedBackendPasswordsFailTheLookup(){
+        backendAnswers.countDown();
+        backend.addUser("frans1", new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH + 1]);
+        BackendCredentialStore store = new BackendCredentialStore(newCache(64, 0, 0, 5_000));
+        ByteBuffer username = ByteBuffer.wrap("frans1".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(-1, store.getPassword(username, 0, username.remaining(),
+                new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH]));
+    }
+
+    @Test
+    void aFullSetEvictsItsOldestEntry(){
+        backendAnswers.countDown();
+        // A capacity of 4 is a single set of 4 entries, so every key falls in it
+        CredentialCache<String, byte[]> cache = newCache(4, 0, 0, 5_000);
+        for(int i = 0; i < 4; i++){
+            backend.addUser("user" + i, PASSWORD);
+            cache.get("user" + i);
+            advance(1, TimeUnit.SECONDS);
+        }
+        assertEquals(0, cache.getEvictions());
+
+        backend.addUser("user4", PASSWORD);
+        cache.get("user4");
+
+        assertEquals(1, cache.getEvictions());
+        assertFalse(cache.contains("user0"));
+        for(int i = 1; i <= 4; i++){
+            assertTrue(cache.contains("user" + i));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.danielmartinez.radius.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the limits that the heap credential store shares with the off-heap one: the passwords it accepts must
+ * fit in the MAXIMUM_PASSWORD_LENGTH buffer that getPassword() fills
+ */
+class HeapCredentialStoreTest {
+
+    private final HeapCredentialStore store = new HeapCredentialStore();
+
+    @Test
+    void passwordsUpToTheMaximumLengthAreStored(){
+        byte[] username = "frans1".getBytes(StandardCharsets.UTF_8);
+        store.put(username, new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH]);
+
+        byte[] password = new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH];
+        assertEquals(CredentialStore.MAXIMUM_PASSWORD_LENGTH,
+                store.getPassword(ByteBuffer.wrap(username), 0, username.length, password));
+    }
+
+    @Test
+    void longerPasswordsAreRejected(){
+        assertThrows(IllegalArgumentException.class, () -> store.put("frans1".getBytes(StandardCharsets.UTF_8),
+                new byte[CredentialStore.MAXIMUM_PASSWORD_LENGTH + 1]));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void longerUserNamesAreRejected(){
+        assertThrows(IllegalArgumentException.class, () -> store.put(
+                new byte[CredentialStore.MAXIMUM_USER_NAME_LENGTH + 1], "fran123!".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0, store.size());
+    }
+}
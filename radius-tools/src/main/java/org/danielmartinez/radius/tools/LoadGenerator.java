@@ -0,0 +1,244 @@
+package org.danielmartinez.radius.tools;
+
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements a UDP load generator for the RADIUS Server. It simulates several NAS, each one with its own
+ * socket and Shared Secret, that send PAP Access-Requests with a configurable mix of valid and wrong passwords, and
+ * optionally Accounting-Requests,
+ * either at a constant rate (open loop) or keeping a fixed number of requests outstanding (closed loop).
+ * At the end it prints the throughput and the latency percentiles
+ */
+public class LoadGenerator {
+
+    /**
+     * Accounting records of a session: Start, Interim-Update records and Stop
+     */
+    private static final int ACCOUNTING_RECORDS_PER_SESSION = 5;
+
+    private final LoadGeneratorOptions options;
+
+    private final LoadReport report = new LoadReport();
+
+    private final List<SimulatedNas> nasList = new ArrayList<>();
+
+    /**
+     * Outstanding request permits in CLOSED mode
+     */
+    private final Semaphore window;
+
+    private volatile boolean running = true;
+
+    /**
+     * Accounting records sent so far for every simulated session slot
+     */
+    private final long[] sessionRecords;
+
+    // Constructor
+    public LoadGenerator(LoadGeneratorOptions options) {
+        this.options = options;
+        this.window = new Semaphore(options.getConcurrency());
+        this.sessionRecords = new long[options.getAccountingSessions()];
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGeneratorOptions options = LoadGeneratorOptions.fromArgs(args);
+        System.out.println("Load generator started. Options: " + options + "\n");
+        new LoadGenerator(options).run();
+    }
+
+    /**
+     * This method runs the load test and prints the report
+     */
+    public void run() throws IOException, InterruptedException {
+        InetSocketAddress server = new InetSocketAddress(options.getHost(), options.getPort());
+        Runnable onCompletion = options.getMode() == LoadGeneratorOptions.LoadMode.CLOSED ? window::release : () -> {};
+
+        try(Selector selector = Selector.open()){
+            for(int i = 0; i < options.getNasCount(); i++){
+                DatagramChannel channel = DatagramChannel.open();
+                channel.bind(new InetSocketAddress(sourceAddress(i), 0));
+                channel.configureBlocking(false);
+                SimulatedNas nas = new SimulatedNas(channel, server, options.secretOf(i), report, onCompletion);
+                channel.register(selector, SelectionKey.OP_READ, nas);
+                nasList.add(nas);
+            }
+
+            Thread receiver = new Thread(() -> receive(selector), "loadgen-receiver");
+            Thread timer = new Thread(this::checkTimeouts, "loadgen-timer");
+            receiver.start();
+            timer.start();
+
+            long start = System.nanoTime();
+            send(start + TimeUnit.SECONDS.toNanos(options.getDurationSeconds()));
+            long elapsed = System.nanoTime() - start;
+
+            // Wait for the outstanding requests to be answered or given up
+            long drainDeadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos((long) options.getTimeoutMillis() * (options.getRetries() + 2));
+            while(outstanding() > 0 && System.nanoTime() < drainDeadline){
+                Thread.sleep(10);
+            }
+
+            running = false;
+            selector.wakeup();
+            receiver.join();
+            timer.join();
+
+            for(SimulatedNas nas: nasList){
+                nas.getChannel().close();
+            }
+            report.print(elapsed);
+        }
+    }
+
+    /**
+     * This method sends requests until the deadline, spreading them across all the NAS
+     * @param deadline: Time in nanoseconds when the test finishes
+     */
+    private void send(long deadline) throws IOException, InterruptedException {
+        Random random = new Random();
+        List<Map.Entry<String, String>> users = new ArrayList<>(options.getUsers().entrySet());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, options.getRate());
+        long nextSend = System.nanoTime();
+
+        for(long n = 0; System.nanoTime() < deadline; n++){
+            if(options.getMode() == LoadGeneratorOptions.LoadMode.OPEN){
+                // Constant rate: the schedule does not depend on the responses
+                nextSend += intervalNanos;
+                long wait = nextSend - System.nanoTime();
+                if(wait > 0){
+                    LockSupport.parkNanos(wait);
+                }
+            } else if(!window.tryAcquire(10, TimeUnit.MILLISECONDS)){
+                n--;
+                continue;
+            }
+
+            SimulatedNas nas = nasList.get((int) (n % nasList.size()));
+            Map.Entry<String, String> user = users.get(random.nextInt(users.size()));
+            boolean sent;
+            if(random.nextDouble() < options.getAccountingRatio()){
+                sent = sendAccountingRequest(nas, user.getKey(), random);
+            } else {
+                boolean reject = random.nextDouble() < options.getRejectRatio();
+                byte[] password = reject ? wrongPassword(random) : user.getValue().getBytes();
+                sent = nas.sendAccessRequest(user.getKey(), password, !reject);
+            }
+
+            if(!sent){
+                report.skipped.incrementAndGet();
+                if(options.getMode() == LoadGeneratorOptions.LoadMode.CLOSED){
+                    window.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * This method contains the loop of the thread that reads the responses of all the NAS
+     * @param selector: Selector where the channels of all the NAS are registered
+     */
+    private void receive(Selector selector){
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RadiusConstants.MAXIMUM_RADIUS_PACKET_LENGTH);
+        try {
+            while(running){
+                selector.select(10);
+                for(SelectionKey key: selector.selectedKeys()){
+                    SimulatedNas nas = (SimulatedNas) key.attachment();
+                    buffer.clear();
+                    while(nas.getChannel().receive(buffer) != null){
+                        buffer.flip();
+                        nas.onResponse(buffer);
+                        buffer.clear();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e){
+            System.out.println("IO: " + e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * This method contains the loop of the thread that retransmits the requests that timed out
+     */
+    private void checkTimeouts(){
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.getTimeoutMillis());
+        try {
+            while(running){
+                Thread.sleep(10);
+                long now = System.nanoTime();
+                for(SimulatedNas nas: nasList){
+                    nas.checkTimeouts(now, timeoutNanos, options.getRetries());
+                }
+            }
+        } catch (IOException e){
+            System.out.println("IO: " + e.getMessage() + "\n");
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int outstanding(){
+        int outstanding = 0;
+        for(SimulatedNas nas: nasList){
+            outstanding += nas.outstanding();
+        }
+        return outstanding;
+    }
+
+    /**
+     * This method sends an Accounting-Request for one of the simulated sessions. Sessions go through Start, a few
+     * Interim-Update records and Stop, and then start again with a new Acct-Session-Id
+     * @param nas: NAS that sends the request
+     * @param username: User of the session
+     * @param random: Source of the session choice
+     * @return Boolean: True if sent, false if all the Identifiers of the NAS are waiting for a response
+     */
+    private boolean sendAccountingRequest(SimulatedNas nas, String username, Random random) throws IOException {
+        int session = random.nextInt(sessionRecords.length);
+        long record = sessionRecords[session]++;
+        long generation = record / ACCOUNTING_RECORDS_PER_SESSION;
+        int step = (int) (record % ACCOUNTING_RECORDS_PER_SESSION);
+        int statusType = step == 0 ? RadiusConstants.ACCT_STATUS_START
+                : step == ACCOUNTING_RECORDS_PER_SESSION - 1 ? RadiusConstants.ACCT_STATUS_STOP
+                : RadiusConstants.ACCT_STATUS_INTERIM_UPDATE;
+        String sessionId = String.format("%08X-%04X", generation, session);
+        return nas.sendAccountingRequest(username, sessionId, statusType, step * 60);
+    }
+
+    private byte[] wrongPassword(Random random){
+        byte[] password = new byte[options.getRejectPasswordLength()];
+        for(int i = 0; i < password.length; i++){
+            password[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return password;
+    }
+
+    /**
+     * This method returns the source address of a NAS
+     * @param nasIndex: Index of the NAS
+     * @return 127.0.0.1 + nasIndex if every NAS has its own address, 127.0.0.1 otherwise
+     */
+    private InetAddress sourceAddress(int nasIndex) throws IOException {
+        int address = 0x7F000001 + (options.isDistinctSourceAddresses() ? nasIndex : 0);
+        return InetAddress.getByAddress(new byte[]{(byte) (address >>> 24), (byte) (address >>> 16),
+                (byte) (address >>> 8), (byte) address});
+    }
+}
@@ -0,0 +1,255 @@
+package org.danielmartinez.radius.tools;
+
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class contains the options of the load generator
+ */
+public class LoadGeneratorOptions {
+
+    /**
+     * Load models supported by the load generator
+     */
+    public enum LoadMode {
+        // Requests are sent at a constant rate, whether or not the previous ones were answered
+        OPEN,
+        // A fixed number of requests is kept outstanding, a new one is sent when another completes
+        CLOSED
+    }
+
+    private String host = "127.0.0.1";
+
+    private int port = RadiusConstants.RADIUS_LISTENING_PORT;
+
+    /**
+     * Number of simulated NAS. Each one sends from its own UDP socket
+     */
+    private int nasCount = 1;
+
+    /**
+     * If true, NAS i sends from the loopback address 127.0.0.1 + i instead of sharing 127.0.0.1
+     */
+    private boolean distinctSourceAddresses = false;
+
+    /**
+     * Shared Secret of every NAS. The first %d, if any, is replaced by the NAS index
+     */
+    private String secret = "ABC";
+
+    /**
+     * Credentials of the users known by the server, used for the requests that must be accepted
+     */
+    private Map<String, String> users = new LinkedHashMap<>(Map.of("frans1", "fran123!", "frans2", "fran123!"));
+
+    /**
+     * Fraction of requests sent with a wrong password, in the range [0 - 1]
+     */
+    private double rejectRatio = 0.0;
+
+    /**
+     * Length of the wrong passwords, so long User-Password attributes can be tested
+     */
+    private int rejectPasswordLength = 16;
+
+    /**
+     * Fraction of requests sent as Accounting-Requests instead of Access-Requests, in the range [0 - 1]
+     */
+    private double accountingRatio = 0.0;
+
+    /**
+     * Accounting sessions open at the same time across all the NAS
+     */
+    private int accountingSessions = 1024;
+
+    private LoadMode mode = LoadMode.CLOSED;
+
+    /**
+     * Requests per second in OPEN mode
+     */
+    private int rate = 1000;
+
+    /**
+     * Outstanding requests in CLOSED mode
+     */
+    private int concurrency = 16;
+
+    private int durationSeconds = 10;
+
+    /**
+     * Milliseconds to wait for a response before retransmitting the request
+     */
+    private int timeoutMillis = 1000;
+
+    /**
+     * Retransmissions of a request before giving up
+     */
+    private int retries = 2;
+
+    // Constructor
+    public LoadGeneratorOptions() {
+    }
+
+    /**
+     * This method builds the options from the command line arguments. Every argument follows the format
+     * --option=value
+     * @param args: Command line arguments
+     * @return LoadGeneratorOptions: The options with the given values applied over the defaults
+     */
+    public static LoadGeneratorOptions fromArgs(String[] args){
+        LoadGeneratorOptions options = new LoadGeneratorOptions();
+
+        for(String arg: args){
+            if(!arg.startsWith("--") || !arg.contains("=")){
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+
+            String option = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            switch(option){
+                case "host":
+                    options.host = value;
+                    break;
+                case "port":
+                    options.port = Integer.parseInt(value);
+                    break;
+                case "nas":
+                    options.nasCount = Integer.parseInt(value);
+                    break;
+                case "distinct-source-addresses":
+                    options.distinctSourceAddresses = Boolean.parseBoolean(value);
+                    break;
+                case "secret":
+                    options.secret = value;
+                    break;
+                case "users":
+                    options.users = parseUsers(value);
+                    break;
+                case "reject-ratio":
+                    options.rejectRatio = Double.parseDouble(value);
+                    break;
+                case "reject-password-length":
+                    options.rejectPasswordLength = Integer.parseInt(value);
+                    break;
+                case "accounting-ratio":
+                    options.accountingRatio = Double.parseDouble(value);
+                    break;
+                case "accounting-sessions":
+                    options.accountingSessions = Integer.parseInt(value);
+                    break;
+                case "mode":
+                    options.mode = LoadMode.valueOf(value.toUpperCase());
+                    break;
+                case "rate":
+                    options.rate = Integer.parseInt(value);
+                    break;
+                case "concurrency":
+                    options.concurrency = Integer.parseInt(value);
+                    break;
+                case "duration":
+                    options.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "timeout":
+                    options.timeoutMillis = Integer.parseInt(value);
+                    break;
+                case "retries":
+                    options.retries = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        if(options.nasCount < 1 || options.nasCount > 65535){
+            throw new IllegalArgumentException("Invalid number of NAS: " + options.nasCount);
+        }
+        if(options.rejectRatio < 0 || options.rejectRatio > 1){
+            throw new IllegalArgumentException("The reject ratio must be in the range [0 - 1]");
+        }
+        if(options.accountingRatio < 0 || options.accountingRatio > 1){
+            throw new IllegalArgumentException("The accounting ratio must be in the range [0 - 1]");
+        }
+        if(options.accountingSessions < 1){
+            throw new IllegalArgumentException("At least one accounting session is required");
+        }
+        if(options.rejectPasswordLength < 1 || options.rejectPasswordLength > 128){
+            throw new IllegalArgumentException("The password length must be in the range [1 - 128]");
+        }
+        return options;
+    }
+
+    /**
+     * This method parses a list of users in the format user1:password1,user2:password2
+     * @param value: The list of users
+     * @return The users and their passwords
+     */
+    private static Map<String, String> parseUsers(String value){
+        Map<String, String> users = new LinkedHashMap<>();
+        for(String user: value.split(",")){
+            int separator = user.indexOf(':');
+            if(separator < 1){
+                throw new IllegalArgumentException("Invalid user: " + user);
+            }
+            users.put(user.substring(0, separator), user.substring(separator + 1));
+        }
+        return users;
+    }
+
+    /**
+     * This method returns the Shared Secret of a NAS
+     * @param nasIndex: Index of the NAS
+     * @return The Shared Secret in byte[] format
+     */
+    public byte[] secretOf(int nasIndex){
+        return (secret.contains("%d") ? String.format(secret, nasIndex) : secret).getBytes();
+    }
+
+    // Getters
+    public String getHost() { return host; }
+
+    public int getPort() { return port; }
+
+    public int getNasCount() { return nasCount; }
+
+    public boolean isDistinctSourceAddresses() { return distinctSourceAddresses; }
+
+    public Map<String, String> getUsers() { return users; }
+
+    public double getRejectRatio() { return rejectRatio; }
+
+    public int getRejectPasswordLength() { return rejectPasswordLength; }
+
+    public double getAccountingRatio() { return accountingRatio; }
+
+    public int getAccountingSessions() { return accountingSessions; }
+
+    public LoadMode getMode() { return mode; }
+
+    public int getRate() { return rate; }
+
+    public int getConcurrency() { return concurrency; }
+
+    public int getDurationSeconds() { return durationSeconds; }
+
+    public int getTimeoutMillis() { return timeoutMillis; }
+
+    public int getRetries() { return retries; }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "target=" + host + ":" + port +
+                ", nas=" + nasCount +
+                ", mode=" + mode +
+                (mode == LoadMode.OPEN ? ", rate=" + rate : ", concurrency=" + concurrency) +
+                ", duration=" + durationSeconds + "s" +
+                ", rejectRatio=" + rejectRatio +
+                ", accountingRatio=" + accountingRatio +
+                ", timeout=" + timeoutMillis + "ms" +
+                ", retries=" + retries +
+                ']';
+    }
+}
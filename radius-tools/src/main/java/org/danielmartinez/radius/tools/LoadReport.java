@@ -0,0 +1,69 @@
+package org.danielmartinez.radius.tools;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class collects the results of a load test and prints the throughput and latency report
+ */
+public class LoadReport {
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong retransmissions = new AtomicLong();
+    final AtomicLong accepted = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong accounted = new AtomicLong();
+    final AtomicLong unexpected = new AtomicLong();
+    final AtomicLong invalid = new AtomicLong();
+    final AtomicLong timeouts = new AtomicLong();
+    final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Latency of every completed request in nanoseconds, measured from its first transmission
+     */
+    private long[] latencies = new long[1 << 16];
+    private int latencyCount;
+
+    /**
+     * This method records the latency of a completed request
+     * @param latencyNanos: Time between the first transmission and the response
+     */
+    public synchronized void recordLatency(long latencyNanos){
+        if(latencyCount == latencies.length){
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[latencyCount++] = latencyNanos;
+    }
+
+    /**
+     * This method prints the report
+     * @param elapsedNanos: Duration of the test
+     */
+    public synchronized void print(long elapsedNanos){
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        long completed = accepted.get() + rejected.get() + accounted.get() + unexpected.get();
+
+        System.out.println("---------------------------------------- \n");
+        System.out.printf("Duration:          %.2f s%n", seconds);
+        System.out.printf("Requests sent:     %d (%d retransmissions, %d not sent: no free Identifier)%n",
+                sent.get(), retransmissions.get(), skipped.get());
+        System.out.printf("Responses:         %d Access-Accept, %d Access-Reject, %d Accounting-Response%n",
+                accepted.get(), rejected.get(), accounted.get());
+        System.out.printf("Errors:            %d unexpected code, %d bad Response Authenticator, %d timed out%n",
+                unexpected.get(), invalid.get(), timeouts.get());
+        System.out.printf("Throughput:        %.1f responses/s%n", completed / seconds);
+
+        if(sorted.length > 0){
+            System.out.printf("Latency (ms):      p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    percentile(sorted, 99.9), sorted[sorted.length - 1] / 1e6);
+        }
+        System.out.println("\n---------------------------------------- \n");
+    }
+
+    private static double percentile(long[] sorted, double percentile){
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,274 @@
+package org.danielmartinez.radius.tools;
+
+import org.danielmartinez.radius.packet.RadiusPacket;
+import org.danielmartinez.radius.repository.SharedSecret;
+import org.danielmartinez.radius.util.Digests;
+import org.danielmartinez.radius.util.RadiusConstants;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * This class simulates a NAS: it owns a UDP socket and a Shared Secret, builds PAP Access-Requests and
+ * Accounting-Requests with the RadiusPacket and Attribute classes, and keeps the requests waiting for a response,
+ * indexed by Identifier.
+ * Requests that time out are retransmitted with the same Identifier and Request Authenticator
+ */
+public class SimulatedNas {
+
+    /**
+     * A request waiting for its response
+     */
+    private static class PendingRequest {
+        byte[] packet;
+        byte[] requestAuthenticator;
+        int expectedCode;
+        long firstSentNanos;
+        long lastSentNanos;
+        int attempts;
+    }
+
+    private final DatagramChannel channel;
+
+    private final InetSocketAddress server;
+
+    private final byte[] sharedSecret;
+
+    private final LoadReport report;
+
+    /**
+     * Called every time a request completes, either answered or given up
+     */
+    private final Runnable onCompletion;
+
+    private final PendingRequest[] pending = new PendingRequest[256];
+
+    /**
+     * Shared Secret with its primed MD5 state, used to hide the passwords
+     */
+    private final SharedSecret primedSecret;
+
+    private final Random random = new Random();
+
+    private int nextIdentifier;
+
+    // Constructor
+    public SimulatedNas(DatagramChannel channel, InetSocketAddress server, byte[] sharedSecret, LoadReport report,
+                        Runnable onCompletion) {
+        this.channel = channel;
+        this.server = server;
+        this.sharedSecret = sharedSecret;
+        this.primedSecret = new SharedSecret(sharedSecret);
+        this.report = report;
+        this.onCompletion = onCompletion;
+    }
+
+    public DatagramChannel getChannel() { return channel; }
+
+    /**
+     * This method sends a new Access-Request
+     * @param username: User-Name attribute
+     * @param password: Plain password, hidden in the User-Password attribute
+     * @param expectAccept: True if the server must answer with an Access-Accept
+     * @return Boolean: True if sent, false if all the Identifiers are waiting for a response
+     */
+    public synchronized boolean sendAccessRequest(String username, byte[] password, boolean expectAccept)
+            throws IOException {
+        int identifier = freeIdentifier();
+        if(identifier < 0){
+            return false;
+        }
+
+        byte[] requestAuthenticator = new byte[16];
+        random.nextBytes(requestAuthenticator);
+
+        RadiusPacket request = new RadiusPacket(RadiusConstants.ACCESS_REQUEST_CODE, identifier,
+                requestAuthenticator);
+        byte[] usernameBytes = username.getBytes();
+        byte[] hiddenPassword = primedSecret.hidePassword(password, requestAuthenticator);
+        request.setAttribute(RadiusConstants.USER_NAME, usernameBytes.length + 2, usernameBytes);
+        request.setAttribute(RadiusConstants.USER_PASSWORD, hiddenPassword.length + 2, hiddenPassword);
+        request.setLength(request.calculateLength());
+
+        PendingRequest pendingRequest = new PendingRequest();
+        pendingRequest.packet = request.toByteArray();
+        pendingRequest.requestAuthenticator = requestAuthenticator;
+        pendingRequest.expectedCode = expectAccept ? RadiusConstants.ACCESS_ACCEPT_CODE
+                : RadiusConstants.ACCESS_REJECT_CODE;
+        pendingRequest.firstSentNanos = System.nanoTime();
+        pending[identifier] = pendingRequest;
+
+        transmit(pendingRequest);
+        report.sent.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * This method sends a new Accounting-Request (RFC 2866)
+     * @param username: User-Name attribute
+     * @param sessionId: Acct-Session-Id attribute
+     * @param statusType: Acct-Status-Type attribute
+     * @param sessionTime: Acct-Session-Time attribute, in seconds
+     * @return Boolean: True if sent, false if all the Identifiers are waiting for a response
+     */
+    public synchronized boolean sendAccountingRequest(String username, String sessionId, int statusType,
+                                                      int sessionTime)
+            throws IOException {
+        int identifier = freeIdentifier();
+        if(identifier < 0){
+            return false;
+        }
+
+        RadiusPacket request = new RadiusPacket(RadiusConstants.ACCOUNTING_REQUEST_CODE, identifier, new byte[16]);
+        byte[] usernameBytes = username.getBytes();
+        byte[] sessionIdBytes = sessionId.getBytes();
+        byte[] statusTypeBytes = ByteBuffer.allocate(4).putInt(statusType).array();
+        request.setAttribute(RadiusConstants.ACCT_STATUS_TYPE, statusTypeBytes.length + 2, statusTypeBytes);
+        request.setAttribute(RadiusConstants.ACCT_SESSION_ID, sessionIdBytes.length + 2, sessionIdBytes);
+        request.setAttribute(RadiusConstants.USER_NAME, usernameBytes.length + 2, usernameBytes);
+        byte[] sessionTimeBytes = ByteBuffer.allocate(4).putInt(sessionTime).array();
+        request.setAttribute(RadiusConstants.ACCT_SESSION_TIME, sessionTimeBytes.length + 2, sessionTimeBytes);
+        request.setLength(request.calculateLength());
+
+        // RequestAuth = MD5(Code+ID+Length+16 zero octets+Attributes+Secret)
+        byte[] packet = request.toByteArray();
+        MessageDigest md5 = Digests.md5();
+        md5.update(packet);
+        md5.update(sharedSecret);
+        byte[] requestAuthenticator = md5.digest();
+        System.arraycopy(requestAuthenticator, 0, packet, 4, 16);
+
+        PendingRequest pendingRequest = new PendingRequest();
+        pendingRequest.packet = packet;
+        pendingRequest.requestAuthenticator = requestAuthenticator;
+        pendingRequest.expectedCode = RadiusConstants.ACCOUNTING_RESPONSE_CODE;
+        pendingRequest.firstSentNanos = System.nanoTime();
+        pending[identifier] = pendingRequest;
+
+        transmit(pendingRequest);
+        report.sent.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * This method processes a response received by the socket of this NAS
+     * @param response: Buffer that holds the response between its position and its limit
+     */
+    public void onResponse(ByteBuffer response){
+        if(response.remaining() < RadiusConstants.MINIMUM_RADIUS_PACKET_LENGTH){
+            report.invalid.incrementAndGet();
+            return;
+        }
+
+        int code = response.get(0) & 0xFF;
+        int identifier = response.get(1) & 0xFF;
+        int length = ((response.get(2) & 0xFF) << 8) | (response.get(3) & 0xFF);
+
+        PendingRequest pendingRequest;
+        synchronized(this){
+            pendingRequest = pending[identifier];
+            if(pendingRequest == null || length > response.remaining()
+                    || !isResponseAuthenticatorValid(response, length, pendingRequest.requestAuthenticator)){
+                // A late duplicate or a response that cannot be trusted
+                report.invalid.incrementAndGet();
+                return;
+            }
+            pending[identifier] = null;
+        }
+
+        report.recordLatency(System.nanoTime() - pendingRequest.firstSentNanos);
+        if(code != pendingRequest.expectedCode){
+            report.unexpected.incrementAndGet();
+        } else if(code == RadiusConstants.ACCESS_ACCEPT_CODE){
+            report.accepted.incrementAndGet();
+        } else if(code == RadiusConstants.ACCESS_REJECT_CODE){
+            report.rejected.incrementAndGet();
+        } else if(code == RadiusConstants.ACCOUNTING_RESPONSE_CODE){
+            report.accounted.incrementAndGet();
+        } else {
+            report.unexpected.incrementAndGet();
+        }
+        onCompletion.run();
+    }
+
+    /**
+     * This method retransmits the requests whose timeout expired, or gives them up after the last retry
+     * @param now: Current time in nanoseconds
+     * @param timeoutNanos: Time to wait for a response
+     * @param retries: Retransmissions of a request before giving up
+     */
+    public void checkTimeouts(long now, long timeoutNanos, int retries) throws IOException {
+        int givenUp = 0;
+        synchronized(this){
+            for(int identifier = 0; identifier < pending.length; identifier++){
+                PendingRequest pendingRequest = pending[identifier];
+                if(pendingRequest == null || now - pendingRequest.lastSentNanos < timeoutNanos){
+                    continue;
+                }
+                if(pendingRequest.attempts > retries){
+                    pending[identifier] = null;
+                    givenUp++;
+                } else {
+                    transmit(pendingRequest);
+                    report.retransmissions.incrementAndGet();
+                }
+            }
+        }
+
+        for(int i = 0; i < givenUp; i++){
+            report.timeouts.incrementAndGet();
+            onCompletion.run();
+        }
+    }
+
+    /**
+     * This method returns the number of requests waiting for a response
+     * @return The number of outstanding requests
+     */
+    public synchronized int outstanding(){
+        int outstanding = 0;
+        for(PendingRequest pendingRequest: pending){
+            if(pendingRequest != null){
+                outstanding++;
+            }
+        }
+        return outstanding;
+    }
+
+    private void transmit(PendingRequest pendingRequest) throws IOException {
+        pendingRequest.lastSentNanos = System.nanoTime();
+        pendingRequest.attempts++;
+        channel.send(ByteBuffer.wrap(pendingRequest.packet), server);
+    }
+
+    private int freeIdentifier(){
+        for(int i = 0; i < pending.length; i++){
+            int identifier = (nextIdentifier + i) & 0xFF;
+            if(pending[identifier] == null){
+                nextIdentifier = identifier + 1;
+                return identifier;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method checks that ResponseAuth = MD5(Code+ID+Length+RequestAuth+Attributes+Secret)
+     */
+    private boolean isResponseAuthenticatorValid(ByteBuffer response, int length, byte[] requestAuthenticator){
+        byte[] packet = new byte[length];
+        response.duplicate().get(packet);
+        byte[] responseAuthenticator = new byte[16];
+        System.arraycopy(packet, 4, responseAuthenticator, 0, 16);
+        System.arraycopy(requestAuthenticator, 0, packet, 4, 16);
+
+        MessageDigest md5 = Digests.md5();
+        md5.update(packet);
+        md5.update(sharedSecret);
+        return MessageDigest.isEqual(md5.digest(), responseAuthenticator);
+    }
+}
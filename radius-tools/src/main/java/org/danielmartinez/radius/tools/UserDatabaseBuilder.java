@@ -0,0 +1,118 @@
+package org.danielmartinez.radius.tools;
+
+import org.danielmartinez.radius.repository.UserDatabase;
+import org.danielmartinez.radius.repository.UserDatabaseWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.BiConsumer;
+
+/**
+ * This class builds the user database file mapped by the RADIUS Server (--user-db) from text files of users and
+ * clients, the same files the server loads with --users and --clients. The new file replaces the previous one
+ * atomically, with the next generation number, so a running server installs it without a restart
+ */
+public class UserDatabaseBuilder {
+
+    public static void main(String[] args) throws IOException {
+        String usersFile = null;
+        String clientsFile = null;
+        String output = null;
+        long generation = 0;
+        double falsePositiveRate = 0.01;
+
+        for(String arg: args){
+            if(!arg.startsWith("--") || !arg.contains("=")){
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+
+            String option = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            switch(option){
+                case "users":
+                    usersFile = value;
+                    break;
+                case "clients":
+                    clientsFile = value;
+                    break;
+                case "output":
+                    output = value;
+                    break;
+                case "generation":
+                    generation = Long.parseLong(value);
+                    break;
+                case "false-positive-rate":
+                    falsePositiveRate = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if(usersFile == null || clientsFile == null || output == null){
+            throw new IllegalArgumentException("Usage: --users=<file> --clients=<file> --output=<file> "
+                    + "[--generation=<n>] [--false-positive-rate=<p>]");
+        }
+
+        Path target = Paths.get(output);
+        if(generation == 0){
+            generation = nextGeneration(target);
+        }
+
+        long start = System.nanoTime();
+        UserDatabaseWriter writer = new UserDatabaseWriter(falsePositiveRate);
+        read(Paths.get(usersFile), (name, password) -> writer.addUser(name.getBytes(StandardCharsets.UTF_8),
+                password.getBytes(StandardCharsets.UTF_8)));
+        read(Paths.get(clientsFile), (address, secret) -> writer.addClient(address,
+                secret.getBytes(StandardCharsets.UTF_8)));
+        writer.write(target, generation);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("User database " + target + " built: generation=" + generation + " users="
+                + writer.getUsers() + " clients=" + writer.getClients() + " bytes=" + Files.size(target)
+                + " millis=" + elapsedMillis);
+    }
+
+    /**
+     * This method finds the generation that follows the one of the current file
+     * @param target Path of the user database file
+     * @return The next generation, or 1 if there is no valid file yet
+     */
+    private static long nextGeneration(Path target){
+        if(!Files.exists(target)){
+            return 1;
+        }
+        try {
+            return UserDatabase.open(target).getGeneration() + 1;
+        } catch (IOException e){
+            System.out.println("The current file cannot be read, the generation starts again: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * This method reads a file of pairs separated by whitespace. Empty lines and lines starting with # are ignored
+     * @param file Path of the file
+     * @param consumer Logic applied to every pair
+     */
+    private static void read(Path file, BiConsumer<String, String> consumer) throws IOException {
+        try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                String[] fields = line.split("\\s+", 2);
+                if(fields.length != 2){
+                    throw new IllegalArgumentException("Invalid line in " + file + ": " + fields[0]);
+                }
+                consumer.accept(fields[0], fields[1]);
+            }
+        }
+    }
+}